@@ -202,6 +202,9 @@ public abstract class BaseConnector<T extends ConnectorConfiguration>
 
   @Override
   public void dispose() {
+    if (adapterMap != null) {
+      adapterMap.values().forEach(BaseAdapter::dispose);
+    }
     driver.close();
   }
 
@@ -34,13 +34,13 @@ import org.identityconnectors.framework.spi.operations.*;
  * class should be subclassed if your primary desire is to have full access on most/all of the data
  * types on the destination system.
  *
- * <p>Note that ConnId interfaces DeleteOp, CreateOp, UpdateOp and SearchOp&lt;String&gt; are
- * implemented. This means that this connector will be able to receive create, update, delete and
- * get/search requests from Midpoint.
+ * <p>Note that ConnId interfaces DeleteOp, CreateOp, UpdateOp, SearchOp&lt;String&gt; and SyncOp
+ * are implemented. This means that this connector will be able to receive create, update, delete,
+ * get/search and (for adapters implementing SyncCapableSource) LiveSync requests from Midpoint.
  */
 public abstract class BaseFullAccessConnector<T extends ConnectorConfiguration>
     extends BaseConnector<T>
-    implements DeleteOp, CreateOp, UpdateDeltaOp, SearchOp<Filter>, GetApiOp {
+    implements DeleteOp, CreateOp, UpdateDeltaOp, SearchOp<Filter>, SyncOp, GetApiOp {
 
   public BaseFullAccessConnector(Class<T> configurationTypeIn) {
     super(configurationTypeIn);
@@ -130,6 +130,20 @@ public abstract class BaseFullAccessConnector<T extends ConnectorConfiguration>
     }
   }
 
+  @Override
+  public void sync(
+      final ObjectClass objectClass,
+      final SyncToken token,
+      final SyncResultsHandler handler,
+      final OperationOptions options) {
+    getAdapter(objectClass).sync(token, handler, options);
+  }
+
+  @Override
+  public SyncToken getLatestSyncToken(final ObjectClass objectClass) {
+    return getAdapter(objectClass).getLatestSyncToken();
+  }
+
   /**
    * Method to manually invoke the connector and assure that we can successfully obtain a small
    * number of records from the destination API, without any authentication or general integration
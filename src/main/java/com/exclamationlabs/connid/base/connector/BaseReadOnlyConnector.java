@@ -28,17 +28,18 @@ import org.identityconnectors.framework.common.objects.filter.EqualsFilter;
 import org.identityconnectors.framework.common.objects.filter.Filter;
 import org.identityconnectors.framework.common.objects.filter.FilterTranslator;
 import org.identityconnectors.framework.spi.operations.SearchOp;
+import org.identityconnectors.framework.spi.operations.SyncOp;
 
 /**
  * Connector that allows read-only access on a destination system. This class should be subclassed
  * if your primary desire is to have just read-only access to the data types on the destination
  * system.
  *
- * <p>Note that only the ConnId SearchOp&lt;String&gt; interface is implemented for this class;
- * therefore this connector cannot take in create/update/delete requests from Midpoint.
+ * <p>Note that only the ConnId SearchOp&lt;String&gt; and SyncOp interfaces are implemented for
+ * this class; therefore this connector cannot take in create/update/delete requests from Midpoint.
  */
 public abstract class BaseReadOnlyConnector<T extends ConnectorConfiguration>
-    extends BaseConnector<T> implements SearchOp<Filter>, SearchApiOp, GetApiOp {
+    extends BaseConnector<T> implements SearchOp<Filter>, SyncOp, SearchApiOp, GetApiOp {
 
   public BaseReadOnlyConnector(Class<T> configurationTypeIn) {
     super(configurationTypeIn);
@@ -95,6 +96,20 @@ public abstract class BaseReadOnlyConnector<T extends ConnectorConfiguration>
     return getAdapter(objectClass).get(filter, handler, options, isEnhancedFiltering());
   }
 
+  @Override
+  public void sync(
+      final ObjectClass objectClass,
+      final SyncToken token,
+      final SyncResultsHandler handler,
+      final OperationOptions options) {
+    getAdapter(objectClass).sync(token, handler, options);
+  }
+
+  @Override
+  public SyncToken getLatestSyncToken(final ObjectClass objectClass) {
+    return getAdapter(objectClass).getLatestSyncToken();
+  }
+
   @Override
   protected boolean readEnabled() {
     return true;
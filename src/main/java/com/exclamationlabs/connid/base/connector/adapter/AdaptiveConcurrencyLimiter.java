@@ -0,0 +1,145 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import com.exclamationlabs.connid.base.connector.logging.Logger;
+import com.exclamationlabs.connid.base.connector.metrics.ConnectorMetrics;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of source API requests in flight for an adapter, adjusting the limit with an
+ * additive-increase/multiplicative-decrease (AIMD) strategy. While request latency stays near the
+ * lowest latency recently observed, the limit grows by roughly one per limit's worth of successful
+ * requests. When a request fails (for example, a 429 or 5xx response) the limit is halved, and when
+ * latency rises well above the baseline the limit is reduced slightly. The limit never exceeds the
+ * configured maximum (the adapter's thread count) and never drops below 1.
+ *
+ * <p>Used when EnhancedPaginationAndFiltering.getUseAdaptiveConcurrency() is true.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+  static final double DROPPED_BACKOFF_RATIO = 0.5;
+  static final double LATENCY_BACKOFF_RATIO = 0.9;
+  static final double LATENCY_TOLERANCE = 2.0;
+  // Number of samples after which the baseline latency is re-established, so that a source API
+  // that has become permanently slower does not hold the limit down indefinitely
+  static final int BASELINE_WINDOW_SAMPLES = 200;
+
+  private final String name;
+  private final int maximumLimit;
+
+  private double limit;
+  private int inFlight;
+  private long baselineNanos = Long.MAX_VALUE;
+  private long windowMinimumNanos = Long.MAX_VALUE;
+  private int windowSamples;
+
+  public AdaptiveConcurrencyLimiter(String name, int initialLimit, int maximumLimit) {
+    this.name = name;
+    this.maximumLimit = Math.max(1, maximumLimit);
+    this.limit = Math.min(this.maximumLimit, Math.max(1, initialLimit));
+    ConnectorMetrics.setGauge(getLimitMetricName(), getLimit());
+  }
+
+  public synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  public int getMaximumLimit() {
+    return maximumLimit;
+  }
+
+  /**
+   * Wait until the number of requests in flight is below the current limit, then reserve a slot
+   * for a new request. Every acquire() must be followed by onSuccess() or onDropped().
+   *
+   * @throws InterruptedException If the calling thread was interrupted while waiting.
+   */
+  public synchronized void acquire() throws InterruptedException {
+    while (inFlight >= getLimit()) {
+      wait();
+    }
+    inFlight++;
+  }
+
+  /**
+   * Release a slot for a request that completed successfully and adjust the limit using its
+   * latency.
+   *
+   * @param latencyNanos Time taken by the request, in nanoseconds.
+   */
+  public synchronized void onSuccess(long latencyNanos) {
+    release();
+    windowMinimumNanos = Math.min(windowMinimumNanos, latencyNanos);
+    if (++windowSamples >= BASELINE_WINDOW_SAMPLES) {
+      baselineNanos = windowMinimumNanos;
+      windowMinimumNanos = Long.MAX_VALUE;
+      windowSamples = 0;
+    } else {
+      baselineNanos = Math.min(baselineNanos, latencyNanos);
+    }
+
+    if (latencyNanos > baselineNanos * LATENCY_TOLERANCE) {
+      updateLimit(
+          limit * LATENCY_BACKOFF_RATIO,
+          String.format(
+              "latency %d ms above baseline %d ms",
+              TimeUnit.NANOSECONDS.toMillis(latencyNanos),
+              TimeUnit.NANOSECONDS.toMillis(baselineNanos)));
+    } else {
+      updateLimit(limit + (1.0 / limit), null);
+    }
+  }
+
+  /** Release a slot for a request that failed or was rejected by the source API. */
+  public synchronized void onDropped() {
+    release();
+    ConnectorMetrics.increment(name + ".concurrency.dropped");
+    updateLimit(limit * DROPPED_BACKOFF_RATIO, "request failed");
+  }
+
+  private void release() {
+    inFlight = Math.max(0, inFlight - 1);
+    notifyAll();
+  }
+
+  private void updateLimit(double newLimit, String reason) {
+    int previous = getLimit();
+    limit = Math.min(maximumLimit, Math.max(1.0, newLimit));
+    if (getLimit() != previous) {
+      ConnectorMetrics.setGauge(getLimitMetricName(), getLimit());
+      if (reason == null) {
+        Logger.trace(
+            this, String.format("Concurrency limit for %s raised to %d", name, getLimit()));
+      } else {
+        Logger.info(
+            this,
+            String.format(
+                "Concurrency limit for %s lowered from %d to %d (%s)",
+                name, previous, getLimit(), reason));
+      }
+    }
+  }
+
+  String getLimitMetricName() {
+    return name + ".concurrency.limit";
+  }
+}
@@ -19,6 +19,7 @@ package com.exclamationlabs.connid.base.connector.adapter;
 import com.exclamationlabs.connid.base.connector.configuration.basetypes.ResultsConfiguration;
 import com.exclamationlabs.connid.base.connector.filter.FilterType;
 import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import com.exclamationlabs.connid.base.connector.results.IdentitySnapshot;
 import com.exclamationlabs.connid.base.connector.results.ResultsFilter;
 import com.exclamationlabs.connid.base.connector.results.ResultsPaginator;
 import com.exclamationlabs.connid.base.connector.util.OperationOptionsDataFinder;
@@ -131,10 +132,7 @@ class AndFilterExecutor {
             ? new ResultsPaginator(options.getPageSize(), options.getPagedResultsOffset())
             : new ResultsPaginator(SearchExecutor.DEFAULT_FILTER_PAGE_SIZE, 0);
     Map<String, Object> prefetchData =
-        executor
-            .getAdapter()
-            .getDriver()
-            .getPrefetch(executor.getAdapter().getIdentityModelClass());
+        SearchExecutor.getPrefetchData(executor.getAdapter(), options);
     Set<IdentityModel> filteredResults =
         executor
             .getAdapter()
@@ -161,19 +159,40 @@ class AndFilterExecutor {
       ResultsHandler resultsHandler,
       OperationOptions options) {
     Map<String, Object> prefetchData =
-        executor
-            .getAdapter()
-            .getDriver()
-            .getPrefetch(executor.getAdapter().getIdentityModelClass());
+        SearchExecutor.getPrefetchData(executor.getAdapter(), options);
+
+    ResultsPaginator combinedResultsPaginator =
+        OperationOptionsDataFinder.hasValidPagingOptions(options.getOptions())
+            ? new ResultsPaginator(
+                options.getPageSize(),
+                SearchExecutor.correctConnIdOffset(options.getPagedResultsOffset()))
+            : new ResultsPaginator(SearchExecutor.DEFAULT_FILTER_PAGE_SIZE, 0);
+
+    if (executor.getEnhancedAdapter().getFilteringRequiresFullImport()
+        && IdentitySnapshotExecutor.execute(
+            executor,
+            snapshot -> findMatchingRows(snapshot, equalsSearch, andFilter),
+            combinedResultsPaginator.getCurrentOffset(),
+            combinedResultsPaginator.getPageSize(),
+            resultsHandler,
+            prefetchData)) {
+      // And filter evaluated using the snapshot of the last full import
+      return new SearchResult(null, -1, false);
+    }
 
     Set<IdentityModel> allResults;
     if (executor.getEnhancedAdapter().getFilteringRequiresFullImport()) {
-      // Perform paginated full import in order to perform And filter
+      // Perform paginated full import in order to perform And filter, keeping only records
+      // matching every filter as each page arrives
       int importBatchSize =
           ((ResultsConfiguration) executor.getAdapter().getConfiguration()).getImportBatchSize();
       allResults =
-          ImportAllExecutor.executeMultiPageImportProcess(
-              executor, importBatchSize, prefetchData, null);
+          ImportAllExecutor.executeFilteredImportProcess(
+              executor,
+              importBatchSize,
+              prefetchData,
+              identity -> matchesAllFilters(equalsSearch, andFilter, identity),
+              null);
     } else {
       allResults =
           executor
@@ -215,13 +234,6 @@ class AndFilterExecutor {
 
     Set<IdentityModel> exclusiveFilteredResults = performAndLogic(filteredResultList);
 
-    ResultsPaginator combinedResultsPaginator =
-        OperationOptionsDataFinder.hasValidPagingOptions(options.getOptions())
-            ? new ResultsPaginator(
-                options.getPageSize(),
-                SearchExecutor.correctConnIdOffset(options.getPagedResultsOffset()))
-            : new ResultsPaginator(SearchExecutor.DEFAULT_FILTER_PAGE_SIZE, 0);
-
     Set<IdentityModel> exclusiveFilteredResultsPage = new LinkedHashSet<>();
     exclusiveFilteredResults.stream()
         .skip(combinedResultsPaginator.getCurrentOffset())
@@ -237,6 +249,41 @@ class AndFilterExecutor {
     return new SearchResult(null, -1, false);
   }
 
+  private static int[] findMatchingRows(
+      IdentitySnapshot snapshot, boolean equalsSearch, AndFilter andFilter) {
+    int[] matchingRows = null;
+    for (Filter current : andFilter.getFilters()) {
+      AttributeFilter currentFilter = (AttributeFilter) current;
+      String filterValue =
+          AdapterValueTypeConverter.readSingleAttributeValueAsString(currentFilter.getAttribute());
+      int[] filterRows =
+          equalsSearch
+              ? snapshot.findRowsEqualsIgnoreCase(currentFilter.getName(), filterValue)
+              : snapshot.findRowsContainsIgnoreCase(currentFilter.getName(), filterValue);
+      matchingRows =
+          matchingRows == null ? filterRows : IdentitySnapshot.intersect(matchingRows, filterRows);
+    }
+    return matchingRows == null ? new int[0] : matchingRows;
+  }
+
+  private static boolean matchesAllFilters(
+      boolean equalsSearch, AndFilter andFilter, IdentityModel identity) {
+    for (Filter current : andFilter.getFilters()) {
+      AttributeFilter currentFilter = (AttributeFilter) current;
+      String filterValue =
+          AdapterValueTypeConverter.readSingleAttributeValueAsString(currentFilter.getAttribute());
+      String identityValue = identity.getValueBySearchableAttributeName(currentFilter.getName());
+      boolean matches =
+          equalsSearch
+              ? StringUtils.equalsIgnoreCase(filterValue, identityValue)
+              : StringUtils.containsIgnoreCase(identityValue, filterValue);
+      if (!matches) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private static Set<IdentityModel> performAndLogic(List<Set<IdentityModel>> filteredResultList) {
     Set<IdentityModel> buildSet = filteredResultList.get(0);
     for (int xx = 1; xx < filteredResultList.size(); xx++) {
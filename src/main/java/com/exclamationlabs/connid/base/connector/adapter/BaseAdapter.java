@@ -19,18 +19,25 @@ package com.exclamationlabs.connid.base.connector.adapter;
 import com.exclamationlabs.connid.base.connector.attribute.ConnectorAttribute;
 import com.exclamationlabs.connid.base.connector.configuration.ConnectorConfiguration;
 import com.exclamationlabs.connid.base.connector.configuration.DefaultConnectorConfiguration;
+import com.exclamationlabs.connid.base.connector.configuration.basetypes.RestConfiguration;
 import com.exclamationlabs.connid.base.connector.configuration.basetypes.ResultsConfiguration;
 import com.exclamationlabs.connid.base.connector.configuration.basetypes.ServiceConfiguration;
 import com.exclamationlabs.connid.base.connector.driver.Driver;
+import com.exclamationlabs.connid.base.connector.driver.OperationDeadline;
 import com.exclamationlabs.connid.base.connector.logging.Logger;
 import com.exclamationlabs.connid.base.connector.model.IdentityModel;
 import com.exclamationlabs.connid.base.connector.results.ResultsFilter;
 import com.exclamationlabs.connid.base.connector.results.ResultsPaginator;
 import com.exclamationlabs.connid.base.connector.util.OperationOptionsDataFinder;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.identityconnectors.framework.common.exceptions.AlreadyExistsException;
@@ -62,18 +69,41 @@ public abstract class BaseAdapter<T extends IdentityModel, U extends ConnectorCo
 
   protected Set<String> multiValueAttributeNames;
 
+  protected Set<String> notReturnedByDefaultAttributeNames = Collections.emptySet();
+
+  private final Map<String, Function<T, ?>> attributeProviders = new LinkedHashMap<>();
+
+  private Set<String> defaultAttributeNames;
+
+  // Identity of the destination system instance, computed once per configuration
+  private volatile String instanceId;
+
   SearchExecutor searchExecutor;
 
   public BaseAdapter() {}
 
   public void init() {
     multiValueAttributeNames = new HashSet<>();
+    notReturnedByDefaultAttributeNames = new HashSet<>();
     Set<ConnectorAttribute> attributes = getConnectorAttributes();
     for (ConnectorAttribute attribute : attributes) {
       if (attribute.getFlags().contains(AttributeInfo.Flags.MULTIVALUED)) {
         multiValueAttributeNames.add(attribute.getName());
       }
+      if (attribute.getFlags().contains(AttributeInfo.Flags.NOT_RETURNED_BY_DEFAULT)) {
+        notReturnedByDefaultAttributeNames.add(attribute.getName());
+      }
     }
+    // Change notifications may arrive before the first sync request
+    WebhookReceiver.register(this);
+  }
+
+  /**
+   * Release the resources held for this adapter, such as its webhook endpoint. Called when the
+   * connector instance is disposed.
+   */
+  public void dispose() {
+    WebhookReceiver.unregister(this);
   }
 
   /**
@@ -104,11 +134,37 @@ public abstract class BaseAdapter<T extends IdentityModel, U extends ConnectorCo
   /**
    * Given an input IdentityModel, build the list of ConnId Attributes to be received to Midpoint.
    *
+   * <p>Adapters that register attribute providers using addAttributeProvider() do not need to
+   * override this method; by default the Attributes are built from all registered providers.
+   * Adapters that do not register attribute providers must override this method.
+   *
    * @param model IdentityModel implementation holding object data.
    * @return Set of ConnId Attribute objects holding name and value information to be received by
    *     Midpoint.
    */
-  protected abstract Set<Attribute> constructAttributes(T model);
+  protected Set<Attribute> constructAttributes(T model) {
+    Set<Attribute> attributes = new HashSet<>();
+    for (Map.Entry<String, Function<T, ?>> provider : attributeProviders.entrySet()) {
+      attributes.add(buildProvidedAttribute(provider.getKey(), provider.getValue().apply(model)));
+    }
+    return attributes;
+  }
+
+  /**
+   * Register a function that supplies the value of a single attribute from an IdentityModel. When
+   * providers are registered, constructConnectorObject() only evaluates the providers for
+   * attributes requested by Midpoint (or, if no attributes were requested, those returned by
+   * default), instead of invoking constructAttributes() to build every attribute.
+   *
+   * <p>Providers should be registered in the Adapter constructor. The value returned by a provider
+   * may be a single value, a Collection of values, or null.
+   *
+   * @param attributeName ConnId attribute name the provider pertains to.
+   * @param provider Function that reads the attribute value from the IdentityModel.
+   */
+  protected final void addAttributeProvider(String attributeName, Function<T, ?> provider) {
+    attributeProviders.put(attributeName, provider);
+  }
 
   /**
    * Given a set of Attribute information received from Midpoint, build a new IdentityModel with
@@ -143,36 +199,40 @@ public abstract class BaseAdapter<T extends IdentityModel, U extends ConnectorCo
    * @return new unique identifier for newly created type
    */
   public final Uid create(Set<Attribute> attributes) {
-    T model = constructModel(attributes, null, null, true);
-    String newId;
-
-    try {
-      newId = getDriver().create(getIdentityModelClass(), model);
-    } catch (AlreadyExistsException aee) {
-      if (supportsDuplicateErrorReturnsId()) {
-        try {
-          IdentityModel duplicateModel =
-              getDriver().getOneByName(getIdentityModelClass(), model.getIdentityNameValue());
-          if (duplicateModel != null && duplicateModel.getIdentityIdValue() != null) {
-            newId = duplicateModel.getIdentityIdValue();
-          } else {
+    try (OperationDeadline.Attachment ignored = beginOperation()) {
+      T model = constructModel(attributes, null, null, true);
+      String newId;
+
+      try {
+        newId = getDriver().create(getIdentityModelClass(), model);
+      } catch (AlreadyExistsException aee) {
+        if (supportsDuplicateErrorReturnsId()) {
+          try {
+            IdentityModel duplicateModel =
+                getDriver().getOneByName(getIdentityModelClass(), model.getIdentityNameValue());
+            if (duplicateModel != null && duplicateModel.getIdentityIdValue() != null) {
+              newId = duplicateModel.getIdentityIdValue();
+            } else {
+              throw new AlreadyExistsException(
+                  "Driver/invocator could not obtain existing"
+                      + " record for duplicate creation lookup");
+            }
+          } catch (UnsupportedOperationException uoe) {
+            throw new AlreadyExistsException(
+                "Driver/invocator does not" + " support duplicate creation lookup", uoe);
+          } catch (ConnectorException ce) {
             throw new AlreadyExistsException(
-                "Driver/invocator could not obtain existing"
-                    + " record for duplicate creation lookup");
+                "Unexpected error occurred while attempting " + "duplicate creation lookup", ce);
           }
-        } catch (UnsupportedOperationException uoe) {
-          throw new AlreadyExistsException(
-              "Driver/invocator does not" + " support duplicate creation lookup", uoe);
-        } catch (ConnectorException ce) {
-          throw new AlreadyExistsException(
-              "Unexpected error occurred while attempting " + "duplicate creation lookup", ce);
+        } else {
+          throw aee;
         }
-      } else {
-        throw aee;
       }
-    }
 
-    return new Uid(newId);
+      IdentitySnapshotExecutor.invalidate(this);
+      PrefetchCache.invalidate(this);
+      return new Uid(newId);
+    }
   }
 
   /**
@@ -184,15 +244,19 @@ public abstract class BaseAdapter<T extends IdentityModel, U extends ConnectorCo
    * @return unique identifier applicable to the type that was just updated
    */
   public final Set<AttributeDelta> updateDelta(Uid uid, Set<AttributeDelta> attributes) {
-    ConsolidatedValues consolidated = consolidateAttributeValues(attributes);
-    T model =
-        constructModel(
-            consolidated.modifiedValues,
-            consolidated.addedMultiValues,
-            consolidated.removedMultiValues,
-            false);
-    getDriver().update(getIdentityModelClass(), uid.getUidValue(), model);
-    return new HashSet<>();
+    try (OperationDeadline.Attachment ignored = beginOperation()) {
+      ConsolidatedValues consolidated = consolidateAttributeValues(attributes);
+      T model =
+          constructModel(
+              consolidated.modifiedValues,
+              consolidated.addedMultiValues,
+              consolidated.removedMultiValues,
+              false);
+      getDriver().update(getIdentityModelClass(), uid.getUidValue(), model);
+      IdentitySnapshotExecutor.invalidate(this);
+      PrefetchCache.invalidate(this);
+      return new HashSet<>();
+    }
   }
 
   /**
@@ -201,7 +265,11 @@ public abstract class BaseAdapter<T extends IdentityModel, U extends ConnectorCo
    * @param uid Unique identifier for the data item to be deleted.
    */
   public final void delete(Uid uid) {
-    getDriver().delete(getIdentityModelClass(), uid.getUidValue());
+    try (OperationDeadline.Attachment ignored = beginOperation()) {
+      getDriver().delete(getIdentityModelClass(), uid.getUidValue());
+      IdentitySnapshotExecutor.invalidate(this);
+      PrefetchCache.invalidate(this);
+    }
   }
 
   /**
@@ -214,9 +282,46 @@ public abstract class BaseAdapter<T extends IdentityModel, U extends ConnectorCo
    */
   @SuppressWarnings({"unchecked"})
   public ConnectorObject getObject(Uid uid, OperationOptions options) {
-    IdentityModel matchingItem =
-        getDriver().getOne(getIdentityModelClass(), uid.getUidValue(), options.getOptions());
-    return matchingItem == null ? null : constructConnectorObject((T) matchingItem);
+    try (OperationDeadline.Attachment ignored = beginOperation()) {
+      GetObjectCollapser collapser = GetObjectCollapser.forAdapter(this);
+      IdentityModel matchingItem =
+          collapser == null
+              ? getDriver().getOne(getIdentityModelClass(), uid.getUidValue(), options.getOptions())
+              : collapser.getOne(this, uid.getUidValue(), options.getOptions());
+      if (matchingItem == null) {
+        return null;
+      }
+      IdentityNameIndex.record(this, matchingItem);
+      return constructConnectorObject(
+          (T) matchingItem, SearchExecutor.getRequestedAttributes(this, options));
+    }
+  }
+
+  /**
+   * Service a LiveSync request from IAM, passing the items of this data type changed on the
+   * destination system since the given token. Only supported if the adapter implements
+   * SyncCapableSource.
+   *
+   * @param token Token received by the previous sync, or null to request all changes.
+   * @param handler ConnId SyncResultsHandler object used to send changes back to IAM system.
+   * @param options OperationOptions object received by connector.
+   */
+  public void sync(SyncToken token, SyncResultsHandler handler, OperationOptions options) {
+    try (OperationDeadline.Attachment ignored = beginOperation()) {
+      SyncExecutor.execute(this, token, handler, options);
+    }
+  }
+
+  /**
+   * Obtain the token from which a later sync will report changes to items of this data type. Only
+   * supported if the adapter implements SyncCapableSource.
+   *
+   * @return Latest sync token, or null if the destination system did not report one.
+   */
+  public SyncToken getLatestSyncToken() {
+    try (OperationDeadline.Attachment ignored = beginOperation()) {
+      return SyncExecutor.getLatestSyncToken(this);
+    }
   }
 
   /**
@@ -236,15 +341,16 @@ public abstract class BaseAdapter<T extends IdentityModel, U extends ConnectorCo
       ResultsHandler resultsHandler,
       OperationOptions options,
       boolean hasEnhancedFiltering) {
-
-    if (this instanceof EnhancedPaginationAndFiltering) {
-      if (searchExecutor == null) {
-        searchExecutor = new SearchExecutor(this);
+    try (OperationDeadline.Attachment ignored = beginOperation()) {
+      if (this instanceof EnhancedPaginationAndFiltering) {
+        if (searchExecutor == null) {
+          searchExecutor = new SearchExecutor(this);
+        }
+        return searchExecutor.execute(queryFilter, resultsHandler, options);
+      } else {
+        legacyGetHandling(queryFilter, resultsHandler, options, hasEnhancedFiltering);
+        return new SearchResult();
       }
-      return searchExecutor.execute(queryFilter, resultsHandler, options);
-    } else {
-      legacyGetHandling(queryFilter, resultsHandler, options, hasEnhancedFiltering);
-      return new SearchResult();
     }
   }
 
@@ -427,9 +533,17 @@ public abstract class BaseAdapter<T extends IdentityModel, U extends ConnectorCo
     }
   }
 
-  @SuppressWarnings({"unchecked"})
   protected void passSetToResultsHandler(
       ResultsHandler resultsHandler, Set<IdentityModel> dataSet, boolean deep) {
+    passSetToResultsHandler(resultsHandler, dataSet, deep, null);
+  }
+
+  @SuppressWarnings({"unchecked"})
+  protected void passSetToResultsHandler(
+      ResultsHandler resultsHandler,
+      Set<IdentityModel> dataSet,
+      boolean deep,
+      Set<String> attributesToGet) {
     if (deep) {
       int passCount = 0;
       for (IdentityModel current : dataSet) {
@@ -441,7 +555,7 @@ public abstract class BaseAdapter<T extends IdentityModel, U extends ConnectorCo
         IdentityModel fullModel =
             getDriver().getOne(getIdentityModelClass(), current.getIdentityIdValue(), null);
         if (fullModel != null) {
-          resultsHandler.handle(constructConnectorObject((T) fullModel));
+          resultsHandler.handle(constructConnectorObject((T) fullModel, attributesToGet));
           passCount++;
         }
       }
@@ -454,7 +568,7 @@ public abstract class BaseAdapter<T extends IdentityModel, U extends ConnectorCo
       int passCount = 0;
       for (IdentityModel item : dataSet) {
         if (item != null) {
-          resultsHandler.handle(constructConnectorObject((T) item));
+          resultsHandler.handle(constructConnectorObject((T) item, attributesToGet));
           passCount++;
         }
       }
@@ -474,12 +588,39 @@ public abstract class BaseAdapter<T extends IdentityModel, U extends ConnectorCo
     return driver;
   }
 
+  /**
+   * Attach the deadline of a connector operation to the calling thread, if RestConfiguration
+   * operationTimeoutMillis is set and the thread is not already servicing an operation.
+   *
+   * @return Attachment to be closed when the operation completes, or null.
+   */
+  private OperationDeadline.Attachment beginOperation() {
+    return OperationDeadline.begin(
+        getConfiguration() instanceof RestConfiguration
+            ? ((RestConfiguration) getConfiguration()).getOperationTimeoutMillis()
+            : null);
+  }
+
   public U getConfiguration() {
     return configuration;
   }
 
   public void setConfiguration(U configurationInput) {
     configuration = configurationInput;
+    instanceId = null;
+  }
+
+  /**
+   * Return the identity of the destination system instance of the adapter's configuration (see
+   * ConnectorConfiguration.getInstanceId()), by which shared caches and files are keyed.
+   */
+  final String getInstanceId() {
+    String id = instanceId;
+    if (id == null) {
+      id = String.valueOf(getConfiguration().getInstanceId());
+      instanceId = id;
+    }
+    return id;
   }
 
   /**
@@ -508,14 +649,80 @@ public abstract class BaseAdapter<T extends IdentityModel, U extends ConnectorCo
   }
 
   protected final ConnectorObject constructConnectorObject(T model) {
+    return constructConnectorObject(model, null);
+  }
+
+  /**
+   * Build the ConnectorObject to be received by Midpoint for the given IdentityModel. Whether the
+   * attributes come from attribute providers or from constructAttributes(), only the requested
+   * attributes are included, or, if Midpoint did not limit the attributes to get, those not flagged
+   * NOT_RETURNED_BY_DEFAULT.
+   *
+   * @param model IdentityModel implementation holding object data.
+   * @param attributesToGet Attribute names requested by Midpoint, or null if all attributes
+   *     returned by default should be included.
+   * @return ConnectorObject holding the Uid, Name and requested attributes.
+   */
+  protected final ConnectorObject constructConnectorObject(T model, Set<String> attributesToGet) {
     ConnectorObjectBuilder builder = getConnectorObjectBuilder(model);
-    Set<Attribute> connectorAttributes = constructAttributes(model);
-    for (Attribute current : connectorAttributes) {
-      builder.addAttribute(AttributeBuilder.build(current.getName(), current.getValue()));
+    if (attributeProviders.isEmpty()) {
+      for (Attribute current : constructAttributes(model)) {
+        if (isAttributeReturned(current.getName(), attributesToGet)) {
+          builder.addAttribute(current);
+        }
+      }
+    } else {
+      for (Map.Entry<String, Function<T, ?>> provider : attributeProviders.entrySet()) {
+        String attributeName = provider.getKey();
+        if (isAttributeReturned(attributeName, attributesToGet)) {
+          builder.addAttribute(
+              buildProvidedAttribute(attributeName, provider.getValue().apply(model)));
+        }
+      }
     }
     return builder.build();
   }
 
+  /**
+   * Return the names of the attributes returned to Midpoint when it does not limit the attributes
+   * to get: all connector attributes not flagged NOT_RETURNED_BY_DEFAULT.
+   *
+   * @return Set of default attribute names.
+   */
+  final Set<String> getDefaultAttributeNames() {
+    if (defaultAttributeNames == null) {
+      Set<String> names = new LinkedHashSet<>();
+      for (ConnectorAttribute attribute : getConnectorAttributes()) {
+        if (!attribute.getFlags().contains(AttributeInfo.Flags.NOT_RETURNED_BY_DEFAULT)) {
+          names.add(attribute.getName());
+        }
+      }
+      defaultAttributeNames = Collections.unmodifiableSet(names);
+    }
+    return defaultAttributeNames;
+  }
+
+  @SuppressWarnings({"unchecked"})
+  final ConnectorObject constructConnectorObjectForIdentity(
+      IdentityModel model, Set<String> attributesToGet) {
+    return constructConnectorObject((T) model, attributesToGet);
+  }
+
+  private boolean isAttributeReturned(String attributeName, Set<String> attributesToGet) {
+    if (attributesToGet != null) {
+      return attributesToGet.contains(attributeName);
+    }
+    return notReturnedByDefaultAttributeNames == null
+        || !notReturnedByDefaultAttributeNames.contains(attributeName);
+  }
+
+  private static Attribute buildProvidedAttribute(String attributeName, Object value) {
+    if (value instanceof Collection) {
+      return AttributeBuilder.build(attributeName, (Collection<?>) value);
+    }
+    return AttributeBuilder.build(attributeName, value);
+  }
+
   protected final ConnectorObjectBuilder getConnectorObjectBuilder(IdentityModel identity) {
     return new ConnectorObjectBuilder()
         .setObjectClass(getType())
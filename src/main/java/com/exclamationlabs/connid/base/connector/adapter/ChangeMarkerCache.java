@@ -0,0 +1,139 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import com.exclamationlabs.connid.base.connector.configuration.basetypes.ResultsConfiguration;
+import com.exclamationlabs.connid.base.connector.metrics.ConnectorMetrics;
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory cache of detailed identities, keyed by UID and the value of the change marker attribute
+ * declared by the adapter (see EnhancedPaginationAndFiltering.getChangeMarkerAttribute()). When a
+ * search result page holds partial identities, the detailed identity is reused for every identity
+ * whose marker is unchanged since its getOne, so that repeated full reconciliations only cost a
+ * getOne for each identity changed in the meantime.
+ *
+ * <p>The least recently used entries are discarded beyond changeMarkerCacheMaximumEntries. Entries
+ * do not otherwise expire, since a changed identity always presents a different marker.
+ */
+public class ChangeMarkerCache {
+
+  public static final int DEFAULT_MAXIMUM_ENTRIES = 100000;
+
+  // Cache of each adapter object class and destination instance, by the import snapshot key
+  private static final Map<String, Map<String, CacheEntry>> CACHES = new ConcurrentHashMap<>();
+
+  private ChangeMarkerCache() {}
+
+  /**
+   * Obtain the change marker value of a partial identity returned by getAll.
+   *
+   * @param adapter Adapter for the object class being searched.
+   * @param identity Partial identity.
+   * @return Marker value, or null if the adapter does not declare a change marker attribute or the
+   *     identity has no value for it.
+   */
+  static String getMarker(BaseAdapter<?, ?> adapter, IdentityModel identity) {
+    String markerAttribute = getMarkerAttribute(adapter);
+    if (markerAttribute == null || identity == null || identity.getIdentityIdValue() == null) {
+      return null;
+    }
+    return identity.getValueBySearchableAttributeName(markerAttribute);
+  }
+
+  /**
+   * Obtain the detailed identity last retrieved for a UID, if its change marker is unchanged.
+   *
+   * @param adapter Adapter for the object class being searched.
+   * @param id Identity UID value.
+   * @param marker Current change marker value, from getMarker().
+   * @return Cached detailed identity, or null if none is held for this UID and marker.
+   */
+  static IdentityModel lookup(BaseAdapter<?, ?> adapter, String id, String marker) {
+    if (marker == null) {
+      return null;
+    }
+    CacheEntry entry = getCache(adapter).get(id);
+    if (entry == null || !marker.equals(entry.marker)) {
+      ConnectorMetrics.increment(getMetricPrefix(adapter) + ".miss");
+      return null;
+    }
+    ConnectorMetrics.increment(getMetricPrefix(adapter) + ".hit");
+    return entry.identity;
+  }
+
+  static void record(BaseAdapter<?, ?> adapter, String id, String marker, IdentityModel identity) {
+    if (marker != null && identity != null) {
+      getCache(adapter).put(id, new CacheEntry(marker, identity));
+    }
+  }
+
+  static void clear(BaseAdapter<?, ?> adapter) {
+    CACHES.remove(IdentitySnapshotExecutor.getSnapshotKey(adapter));
+  }
+
+  private static Map<String, CacheEntry> getCache(BaseAdapter<?, ?> adapter) {
+    int maximumEntries = getMaximumEntries(adapter);
+    return CACHES.computeIfAbsent(
+        IdentitySnapshotExecutor.getSnapshotKey(adapter),
+        key ->
+            Collections.synchronizedMap(
+                new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+                  @Override
+                  protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                    return size() > maximumEntries;
+                  }
+                }));
+  }
+
+  private static String getMarkerAttribute(BaseAdapter<?, ?> adapter) {
+    if (!(adapter instanceof EnhancedPaginationAndFiltering)) {
+      return null;
+    }
+    EnhancedPaginationAndFiltering enhancedAdapter = (EnhancedPaginationAndFiltering) adapter;
+    return enhancedAdapter.getSearchResultsContainsAllAttributes()
+        ? null
+        : enhancedAdapter.getChangeMarkerAttribute();
+  }
+
+  private static int getMaximumEntries(BaseAdapter<?, ?> adapter) {
+    Integer maximum =
+        adapter.getConfiguration() instanceof ResultsConfiguration
+            ? ((ResultsConfiguration) adapter.getConfiguration())
+                .getChangeMarkerCacheMaximumEntries()
+            : null;
+    return maximum == null || maximum <= 0 ? DEFAULT_MAXIMUM_ENTRIES : maximum;
+  }
+
+  private static String getMetricPrefix(BaseAdapter<?, ?> adapter) {
+    return adapter.getIdentityModelClass().getSimpleName() + ".changeMarker";
+  }
+
+  private static class CacheEntry {
+    private final String marker;
+    private final IdentityModel identity;
+
+    CacheEntry(String marker, IdentityModel identity) {
+      this.marker = marker;
+      this.identity = identity;
+    }
+  }
+}
@@ -25,6 +25,7 @@ import com.exclamationlabs.connid.base.connector.util.OperationOptionsDataFinder
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 import org.apache.commons.lang3.StringUtils;
 import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
 import org.identityconnectors.framework.common.objects.*;
@@ -65,24 +66,28 @@ class ContainsFilterExecutor {
               FilterType.ContainsFilter);
         } else if (filterCapable.getEqualsFilterAttributes().contains(containsFilter.getName())) {
           Map<String, Object> prefetchData =
-              executor
-                  .getAdapter()
-                  .getDriver()
-                  .getPrefetch(executor.getAdapter().getIdentityModelClass());
+              SearchExecutor.getPrefetchData(executor.getAdapter(), options);
+          ResultsFilter resultsFilter =
+              new ResultsFilter(
+                  containsFilter.getName(),
+                  AdapterValueTypeConverter.readSingleAttributeValueAsString(
+                      containsFilter.getAttribute()),
+                  FilterType.EqualsFilter);
           Set<IdentityModel> matchingResults =
               executor
                   .getAdapter()
                   .getDriver()
                   .getAll(
                       executor.getAdapter().getIdentityModelClass(),
-                      new ResultsFilter(
-                          containsFilter.getName(),
-                          AdapterValueTypeConverter.readSingleAttributeValueAsString(
-                              containsFilter.getAttribute()),
-                          FilterType.EqualsFilter),
+                      resultsFilter,
                       resultsPaginator,
                       null,
                       prefetchData);
+          Integer totalResults =
+              executor.getAdapter() instanceof PaginationCapableSource
+                  ? SearchExecutor.getTotalResults(
+                      executor.getAdapter(), resultsFilter, resultsPaginator, prefetchData)
+                  : Integer.valueOf(matchingResults.size());
           matchingResults =
               SearchExecutor.performManualPaginationIfNeeded(
                   executor.getEnhancedAdapter(), matchingResults, resultsPaginator);
@@ -92,8 +97,8 @@ class ContainsFilterExecutor {
               matchingResults,
               resultsHandler,
               prefetchData);
-          return new SearchResult(
-              resultsPaginator.getTokenAsString(), -1, resultsPaginator.getNoMoreResults());
+          return SearchExecutor.buildSearchResult(
+              resultsPaginator, totalResults, matchingResults.size());
         } else {
           if (StringUtils.equals(Uid.NAME, containsFilter.getName())) {
             return performManualUidSearch(
@@ -101,7 +106,8 @@ class ContainsFilterExecutor {
                 executor.getEnhancedAdapter(),
                 containsFilter,
                 resultsPaginator,
-                resultsHandler);
+                resultsHandler,
+                options);
           } else if (executor.getEnhancedAdapter().getSearchResultsContainsNameAttribute()
               && StringUtils.equals(Name.NAME, containsFilter.getName())) {
             return performManualNameSearch(
@@ -109,7 +115,8 @@ class ContainsFilterExecutor {
                 executor.getEnhancedAdapter(),
                 containsFilter,
                 resultsPaginator,
-                resultsHandler);
+                resultsHandler,
+                options);
           }
           throw new InvalidAttributeValueException(
               String.format(
@@ -124,7 +131,8 @@ class ContainsFilterExecutor {
               executor.getEnhancedAdapter(),
               containsFilter,
               resultsPaginator,
-              resultsHandler);
+              resultsHandler,
+              options);
         } else if (executor.getEnhancedAdapter().getSearchResultsContainsNameAttribute()
             && StringUtils.equals(Name.NAME, containsFilter.getName())) {
           return performManualNameSearch(
@@ -132,7 +140,8 @@ class ContainsFilterExecutor {
               executor.getEnhancedAdapter(),
               containsFilter,
               resultsPaginator,
-              resultsHandler);
+              resultsHandler,
+              options);
         } else {
           throw new InvalidAttributeValueException(
               String.format(
@@ -156,22 +165,43 @@ class ContainsFilterExecutor {
       }
       // No direct API filter, get all results and return matches
       Map<String, Object> prefetchData =
-          executor
-              .getAdapter()
-              .getDriver()
-              .getPrefetch(executor.getAdapter().getIdentityModelClass());
+          SearchExecutor.getPrefetchData(executor.getAdapter(), options);
       int offset =
           OperationOptionsDataFinder.hasValidPagingOptions(options.getOptions())
               ? resultsPaginator.getCurrentOffset()
               : 0;
+      final String filterValue =
+          AdapterValueTypeConverter.readSingleAttributeValueAsString(containsFilter.getAttribute());
+      Predicate<IdentityModel> matchesFilter =
+          identity ->
+              StringUtils.containsIgnoreCase(
+                  identity.getValueBySearchableAttributeName(containsFilter.getName()),
+                  filterValue);
+      if (executor.getEnhancedAdapter().getFilteringRequiresFullImport()
+          && IdentitySnapshotExecutor.execute(
+              executor,
+              snapshot ->
+                  snapshot.findRowsContainsIgnoreCase(containsFilter.getName(), filterValue),
+              SearchExecutor.correctConnIdOffset(offset),
+              resultsPaginator.getPageSize(),
+              resultsHandler,
+              prefetchData)) {
+        // Filter evaluated using the snapshot of the last full import
+        return new SearchResult(null, -1, false);
+      }
       Set<IdentityModel> allResults;
       if (executor.getEnhancedAdapter().getFilteringRequiresFullImport()) {
-        // Perform paginated full import in order to perform contains filter
+        // Perform paginated full import in order to perform contains filter, keeping only matches
+        // and stopping once the requested page of matches has been found
         int importBatchSize =
             ((ResultsConfiguration) executor.getAdapter().getConfiguration()).getImportBatchSize();
         allResults =
-            ImportAllExecutor.executeMultiPageImportProcess(
-                executor, importBatchSize, prefetchData, null);
+            ImportAllExecutor.executeFilteredImportProcess(
+                executor,
+                importBatchSize,
+                prefetchData,
+                matchesFilter,
+                SearchExecutor.correctConnIdOffset(offset) + resultsPaginator.getPageSize());
       } else {
         // get all results up to API max and return matches
         allResults =
@@ -185,15 +215,9 @@ class ContainsFilterExecutor {
                     null,
                     prefetchData);
       }
-      final String filterValue =
-          AdapterValueTypeConverter.readSingleAttributeValueAsString(containsFilter.getAttribute());
       Set<IdentityModel> filteredResults = new LinkedHashSet<>();
       allResults.stream()
-          .filter(
-              identity ->
-                  StringUtils.containsIgnoreCase(
-                      identity.getValueBySearchableAttributeName(containsFilter.getName()),
-                      filterValue))
+          .filter(matchesFilter)
           .skip(SearchExecutor.correctConnIdOffset(offset))
           .limit(resultsPaginator.getPageSize())
           .forEachOrdered(filteredResults::add);
@@ -212,9 +236,9 @@ class ContainsFilterExecutor {
       EnhancedPaginationAndFiltering enhancedAdapter,
       ContainsFilter containsFilter,
       ResultsPaginator resultsPaginator,
-      ResultsHandler resultsHandler) {
-    Map<String, Object> prefetchData =
-        adapter.getDriver().getPrefetch(adapter.getIdentityModelClass());
+      ResultsHandler resultsHandler,
+      OperationOptions options) {
+    Map<String, Object> prefetchData = SearchExecutor.getPrefetchData(adapter, options);
     Set<IdentityModel> matchingResults =
         adapter
             .getDriver()
@@ -243,9 +267,9 @@ class ContainsFilterExecutor {
       EnhancedPaginationAndFiltering enhancedAdapter,
       ContainsFilter containsFilter,
       ResultsPaginator resultsPaginator,
-      ResultsHandler resultsHandler) {
-    Map<String, Object> prefetchData =
-        adapter.getDriver().getPrefetch(adapter.getIdentityModelClass());
+      ResultsHandler resultsHandler,
+      OperationOptions options) {
+    Map<String, Object> prefetchData = SearchExecutor.getPrefetchData(adapter, options);
     Set<IdentityModel> matchingResults =
         adapter
             .getDriver()
@@ -0,0 +1,39 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+/**
+ * Since Base Connector 5.2, this interface may be implemented by BaseAdapters whose respective
+ * source API can report the total number of matching records, either through a dedicated count
+ * request (such as a count endpoint or OData $count) or by a total field returned alongside a page
+ * of results. When implemented, the total is reported to Midpoint as remainingPagedResults on the
+ * SearchResult, and full imports with a known total can request all page offsets up front.
+ *
+ * <p>If the total is returned alongside a page of results, the driver/invocator should supply it
+ * using ResultsPaginator.setTotalResults() during getAll.
+ */
+public interface CountCapableSource {
+
+  /**
+   * Return true to indicate that the driver/invocator implements getCount() and can obtain the
+   * total number of records with a separate request. Return false if the total is only supplied by
+   * getAll through ResultsPaginator.setTotalResults().
+   *
+   * @return True/false as described.
+   */
+  boolean hasCountRequest();
+}
@@ -93,4 +93,41 @@ public interface EnhancedPaginationAndFiltering {
   default Integer getImportUsingPaginationThreadCount() {
     return 1;
   }
+
+  /**
+   * If true, getSubsequentRequestThreadCount() and getImportUsingPaginationThreadCount() are
+   * treated as upper bounds rather than fixed thread counts. The number of requests in flight
+   * starts low, rises while the source API's latency remains stable and backs off when requests
+   * fail or latency spikes (see AdaptiveConcurrencyLimiter).
+   *
+   * @return true to adapt concurrency to the source API, false (the default) to always use the
+   *     configured thread counts.
+   */
+  default boolean getUseAdaptiveConcurrency() {
+    return false;
+  }
+
+  /**
+   * When getSubsequentRequestThreadCount() is greater than 1, identity details are passed to the
+   * ResultsHandler as soon as each getOne completes. If true (the default), they are still passed
+   * in the order returned by getAll; if false, they are passed in the order they complete.
+   *
+   * @return true to preserve getAll ordering of detailed identities.
+   */
+  default boolean getSubsequentRequestResultsOrdered() {
+    return true;
+  }
+
+  /**
+   * Name of an attribute returned by getAll (see getSearchResultsAttributesPresent()) whose value
+   * changes whenever the identity changes, such as a lastModified timestamp, version or etag. When
+   * set and getSearchResultsContainsAllAttributes() is false, identity details obtained by getOne
+   * are kept in memory along with this value, and getOne is only repeated for identities whose
+   * value has changed since.
+   *
+   * @return Change marker attribute name, or null (the default) to always invoke getOne.
+   */
+  default String getChangeMarkerAttribute() {
+    return null;
+  }
 }
@@ -25,6 +25,7 @@ import com.exclamationlabs.connid.base.connector.util.OperationOptionsDataFinder
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 import org.apache.commons.lang3.StringUtils;
 import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
 import org.identityconnectors.framework.common.objects.OperationOptions;
@@ -64,37 +65,41 @@ public class EqualsFilterExecutor {
         } else if (filterCapable.getContainsFilterAttributes().contains(equalsFilter.getName())) {
           // Fallback option - must search using Contains filter since it is only manner available
           Map<String, Object> prefetchData =
-              executor
-                  .getAdapter()
-                  .getDriver()
-                  .getPrefetch(executor.getAdapter().getIdentityModelClass());
+              SearchExecutor.getPrefetchData(executor.getAdapter(), options);
           ResultsPaginator resultsPaginator =
               OperationOptionsDataFinder.hasValidPagingOptions(options.getOptions())
                   ? new ResultsPaginator(options.getPageSize(), options.getPagedResultsOffset())
                   : new ResultsPaginator(SearchExecutor.DEFAULT_FILTER_PAGE_SIZE, 0);
 
+          ResultsFilter resultsFilter =
+              new ResultsFilter(
+                  equalsFilter.getName(),
+                  AdapterValueTypeConverter.readSingleAttributeValueAsString(
+                      equalsFilter.getAttribute()),
+                  FilterType.ContainsFilter);
           Set<IdentityModel> matchingResults =
               executor
                   .getAdapter()
                   .getDriver()
                   .getAll(
                       executor.getAdapter().getIdentityModelClass(),
-                      new ResultsFilter(
-                          equalsFilter.getName(),
-                          AdapterValueTypeConverter.readSingleAttributeValueAsString(
-                              equalsFilter.getAttribute()),
-                          FilterType.ContainsFilter),
+                      resultsFilter,
                       resultsPaginator,
                       null,
                       prefetchData);
+          Integer totalResults =
+              executor.getAdapter() instanceof PaginationCapableSource
+                  ? SearchExecutor.getTotalResults(
+                      executor.getAdapter(), resultsFilter, resultsPaginator, prefetchData)
+                  : Integer.valueOf(matchingResults.size());
           SearchExecutor.processResultsPage(
               executor.getAdapter(),
               executor.getEnhancedAdapter(),
               matchingResults,
               resultsHandler,
               prefetchData);
-          return new SearchResult(
-              resultsPaginator.getTokenAsString(), -1, resultsPaginator.getNoMoreResults());
+          return SearchExecutor.buildSearchResult(
+              resultsPaginator, totalResults, matchingResults.size());
         } else {
           throw new InvalidAttributeValueException(
               String.format(
@@ -134,18 +139,37 @@ public class EqualsFilterExecutor {
               ? resultsPaginator.getCurrentOffset()
               : 0;
       Map<String, Object> prefetchData =
-          executor
-              .getAdapter()
-              .getDriver()
-              .getPrefetch(executor.getAdapter().getIdentityModelClass());
+          SearchExecutor.getPrefetchData(executor.getAdapter(), options);
+      final String filterValue =
+          AdapterValueTypeConverter.readSingleAttributeValueAsString(equalsFilter.getAttribute());
+      Predicate<IdentityModel> matchesFilter =
+          identity ->
+              StringUtils.equalsIgnoreCase(
+                  filterValue, identity.getValueBySearchableAttributeName(equalsFilter.getName()));
+      if (executor.getEnhancedAdapter().getFilteringRequiresFullImport()
+          && IdentitySnapshotExecutor.execute(
+              executor,
+              snapshot -> snapshot.findRowsEqualsIgnoreCase(equalsFilter.getName(), filterValue),
+              SearchExecutor.correctConnIdOffset(offset),
+              resultsPaginator.getPageSize(),
+              resultsHandler,
+              prefetchData)) {
+        // Filter evaluated using the snapshot of the last full import
+        return new SearchResult(null, -1, false);
+      }
       Set<IdentityModel> allResults;
       if (executor.getEnhancedAdapter().getFilteringRequiresFullImport()) {
-        // Perform paginated full import in order to perform equals filter
+        // Perform paginated full import in order to perform equals filter, keeping only matches
+        // and stopping once the requested page of matches has been found
         int importBatchSize =
             ((ResultsConfiguration) executor.getAdapter().getConfiguration()).getImportBatchSize();
         allResults =
-            ImportAllExecutor.executeMultiPageImportProcess(
-                executor, importBatchSize, prefetchData, null);
+            ImportAllExecutor.executeFilteredImportProcess(
+                executor,
+                importBatchSize,
+                prefetchData,
+                matchesFilter,
+                SearchExecutor.correctConnIdOffset(offset) + resultsPaginator.getPageSize());
       } else {
         // get all results up to API max and return matches
         allResults =
@@ -159,15 +183,9 @@ public class EqualsFilterExecutor {
                     null,
                     prefetchData);
       }
-      final String filterValue =
-          AdapterValueTypeConverter.readSingleAttributeValueAsString(equalsFilter.getAttribute());
       Set<IdentityModel> filteredResults = new LinkedHashSet<>();
       allResults.stream()
-          .filter(
-              identity ->
-                  StringUtils.equalsIgnoreCase(
-                      filterValue,
-                      identity.getValueBySearchableAttributeName(equalsFilter.getName())))
+          .filter(matchesFilter)
           .skip(SearchExecutor.correctConnIdOffset(offset))
           .limit(resultsPaginator.getPageSize())
           .forEachOrdered(filteredResults::add);
@@ -0,0 +1,297 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import com.exclamationlabs.connid.base.connector.configuration.basetypes.ResultsConfiguration;
+import com.exclamationlabs.connid.base.connector.driver.OperationDeadline;
+import com.exclamationlabs.connid.base.connector.metrics.ConnectorMetrics;
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import java.util.*;
+import java.util.concurrent.*;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.exceptions.OperationTimeoutException;
+
+/**
+ * Collapses getObject requests for one object class arriving on different threads within a short
+ * window (getObjectBatchWindowMillis) into a single batched lookup. The first request of a window
+ * waits for the window to pass, or for detailBatchSize distinct ids to be requested, then retrieves
+ * all ids of the batch: with a single getMany request if the driver supports it (see
+ * Driver.supportsGetMany()), otherwise with getOne requests spread over a bounded pool of threads
+ * (getSubsequentRequestThreadCount, so that bursts do not exceed the concurrency the source API
+ * allows). Each caller then receives the result for its own id; callers requesting the same id
+ * share a single lookup.
+ *
+ * <p>Collapsers are shared by the connector instances of an adapter object class connected to the
+ * same destination system instance (see ConnectorConfiguration.getInstanceId()), since concurrent
+ * operations are normally serviced by different pooled connector instances, and a batch may be
+ * retrieved through the driver of any of them. Requests of other resources, such as other tenants
+ * of the same connector, are never collapsed together. Only requests with equal operation options
+ * are collapsed, since the options are passed to the driver as prefetch data.
+ */
+class GetObjectCollapser {
+
+  static final int DEFAULT_FAN_OUT_THREADS = 4;
+
+  // Collapser of each adapter object class and destination instance, by the import snapshot key
+  private static final Map<String, GetObjectCollapser> COLLAPSERS = new ConcurrentHashMap<>();
+
+  private final long windowNanos;
+  private final int maximumBatchSize;
+  private final int fanOutThreads;
+  private final Map<String, Batch> openBatches = new HashMap<>();
+  private ExecutorService fanOutPool;
+
+  private GetObjectCollapser(long windowNanos, int maximumBatchSize, int fanOutThreads) {
+    this.windowNanos = windowNanos;
+    this.maximumBatchSize = maximumBatchSize;
+    this.fanOutThreads = fanOutThreads;
+  }
+
+  /**
+   * Obtain the collapser shared by the connector instances of an adapter object class connected to
+   * the adapter's destination system instance.
+   *
+   * @param adapter Adapter whose getObject requests are collapsed.
+   * @return Collapser, or null if getObjectBatchWindowMillis is not configured.
+   */
+  static GetObjectCollapser forAdapter(BaseAdapter<?, ?> adapter) {
+    if (!(adapter.getConfiguration() instanceof ResultsConfiguration)) {
+      return null;
+    }
+    ResultsConfiguration configuration = (ResultsConfiguration) adapter.getConfiguration();
+    Integer windowMillis = configuration.getGetObjectBatchWindowMillis();
+    if (windowMillis == null || windowMillis <= 0) {
+      return null;
+    }
+    return COLLAPSERS.computeIfAbsent(
+        IdentitySnapshotExecutor.getSnapshotKey(adapter),
+        key -> {
+          Integer batchSize = configuration.getDetailBatchSize();
+          Integer threadCount =
+              adapter instanceof EnhancedPaginationAndFiltering
+                  ? ((EnhancedPaginationAndFiltering) adapter).getSubsequentRequestThreadCount()
+                  : null;
+          return new GetObjectCollapser(
+              TimeUnit.MILLISECONDS.toNanos(windowMillis),
+              batchSize == null || batchSize <= 0
+                  ? SearchExecutor.DEFAULT_DETAIL_BATCH_SIZE
+                  : batchSize,
+              threadCount == null || threadCount <= 0 ? DEFAULT_FAN_OUT_THREADS : threadCount);
+        });
+  }
+
+  static void clear(BaseAdapter<?, ?> adapter) {
+    GetObjectCollapser removed =
+        COLLAPSERS.remove(IdentitySnapshotExecutor.getSnapshotKey(adapter));
+    if (removed != null) {
+      removed.shutdown();
+    }
+  }
+
+  /**
+   * Obtain a single identity, as part of a batch of concurrent requests.
+   *
+   * @param adapter Adapter servicing the getObject request; the batch is retrieved through the
+   *     driver of the first request in the batch, which waits for the whole batch so that its
+   *     driver is not released while other requests of the batch still use it.
+   * @param id Id of the identity.
+   * @param options Operation options of the getObject request, passed to the driver as prefetch
+   *     data.
+   * @return Identity, or null if it was not found.
+   */
+  IdentityModel getOne(BaseAdapter<?, ?> adapter, String id, Map<String, Object> options) {
+    String optionsKey = getOptionsKey(options);
+    Batch batch;
+    boolean leader = false;
+    CompletableFuture<IdentityModel> result;
+    synchronized (this) {
+      batch = openBatches.get(optionsKey);
+      if (batch == null) {
+        batch = new Batch(options);
+        openBatches.put(optionsKey, batch);
+        leader = true;
+      }
+      result = batch.add(id);
+      if (batch.size() >= maximumBatchSize) {
+        openBatches.remove(optionsKey);
+        batch.close();
+      }
+    }
+    if (leader) {
+      batch.awaitClose(windowNanos);
+      synchronized (this) {
+        openBatches.remove(optionsKey, batch);
+      }
+      dispatch(adapter, batch);
+      awaitResult(
+          CompletableFuture.allOf(batch.results.values().toArray(new CompletableFuture<?>[0]))
+              .handle((done, failure) -> null));
+    }
+    return awaitResult(result);
+  }
+
+  private void dispatch(BaseAdapter<?, ?> adapter, Batch batch) {
+    String metricPrefix = adapter.getIdentityModelClass().getSimpleName() + ".getObject";
+    ConnectorMetrics.increment(metricPrefix + ".batches");
+    ConnectorMetrics.add(metricPrefix + ".collapsedRequests", batch.requestCount);
+    if (adapter.getDriver().supportsGetMany(adapter.getIdentityModelClass())) {
+      try {
+        Map<String, IdentityModel> found =
+            adapter
+                .getDriver()
+                .getMany(adapter.getIdentityModelClass(), batch.results.keySet(), batch.options);
+        batch.results.forEach(
+            (id, future) -> future.complete(found == null ? null : found.get(id)));
+      } catch (RuntimeException getManyFailure) {
+        batch.results.values().forEach(future -> future.completeExceptionally(getManyFailure));
+      }
+      return;
+    }
+    OperationDeadline deadline = OperationDeadline.current();
+    ExecutorService pool = getFanOutPool();
+    for (Map.Entry<String, CompletableFuture<IdentityModel>> entry : batch.results.entrySet()) {
+      Runnable getOneTask =
+          () -> {
+            try {
+              entry
+                  .getValue()
+                  .complete(
+                      adapter
+                          .getDriver()
+                          .getOne(adapter.getIdentityModelClass(), entry.getKey(), batch.options));
+            } catch (RuntimeException getOneFailure) {
+              entry.getValue().completeExceptionally(getOneFailure);
+            }
+          };
+      try {
+        pool.execute(deadline == null ? getOneTask : deadline.wrap(getOneTask));
+      } catch (RejectedExecutionException rejected) {
+        entry.getValue().completeExceptionally(rejected);
+      }
+    }
+  }
+
+  private synchronized ExecutorService getFanOutPool() {
+    if (fanOutPool == null) {
+      ThreadPoolExecutor pool =
+          new ThreadPoolExecutor(
+              fanOutThreads,
+              fanOutThreads,
+              60L,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<>(),
+              runnable -> {
+                Thread thread = new Thread(runnable, "get-object-fan-out");
+                thread.setDaemon(true);
+                return thread;
+              });
+      // Threads are released while no getObject bursts arrive
+      pool.allowCoreThreadTimeOut(true);
+      fanOutPool = pool;
+    }
+    return fanOutPool;
+  }
+
+  private synchronized void shutdown() {
+    if (fanOutPool != null) {
+      fanOutPool.shutdown();
+      fanOutPool = null;
+    }
+  }
+
+  private static <T> T awaitResult(CompletableFuture<T> result) {
+    OperationDeadline deadline = OperationDeadline.current();
+    try {
+      return deadline == null
+          ? result.get()
+          : result.get(deadline.getRemainingMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new ConnectorException("Interrupted while awaiting batched getObject", ie);
+    } catch (TimeoutException te) {
+      throw new OperationTimeoutException("Operation deadline passed awaiting batched getObject");
+    } catch (ExecutionException ee) {
+      if (ee.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ee.getCause();
+      }
+      throw new ConnectorException("Batched getObject failed", ee.getCause());
+    }
+  }
+
+  /**
+   * Build a key that is equal for equal operation options, including array values (such as the
+   * attributes to get).
+   */
+  static String getOptionsKey(Map<String, Object> options) {
+    if (options == null || options.isEmpty()) {
+      return "";
+    }
+    StringBuilder key = new StringBuilder();
+    new TreeMap<>(options)
+        .forEach(
+            (name, value) ->
+                key.append(name)
+                    .append('=')
+                    .append(
+                        value instanceof Object[]
+                            ? Arrays.deepToString((Object[]) value)
+                            : String.valueOf(value))
+                    .append('\u0000'));
+    return key.toString();
+  }
+
+  /** Ids requested within one window, with the future completed for each distinct id. */
+  private static class Batch {
+    private final Map<String, Object> options;
+    private final Map<String, CompletableFuture<IdentityModel>> results = new LinkedHashMap<>();
+    private int requestCount;
+    private boolean closed;
+
+    Batch(Map<String, Object> options) {
+      this.options = options;
+    }
+
+    // Guarded by the collapser
+    CompletableFuture<IdentityModel> add(String id) {
+      requestCount++;
+      return results.computeIfAbsent(id, newId -> new CompletableFuture<>());
+    }
+
+    int size() {
+      return results.size();
+    }
+
+    synchronized void close() {
+      closed = true;
+      notifyAll();
+    }
+
+    synchronized void awaitClose(long timeoutNanos) {
+      long deadlineNanos = System.nanoTime() + timeoutNanos;
+      long remainingNanos = timeoutNanos;
+      try {
+        while (!closed && remainingNanos > 0) {
+          TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+          remainingNanos = deadlineNanos - System.nanoTime();
+        }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+      closed = true;
+    }
+  }
+}
@@ -23,9 +23,11 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Predicate;
 import org.apache.commons.lang3.StringUtils;
 import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
 import org.identityconnectors.framework.common.objects.Name;
+import org.identityconnectors.framework.common.objects.OperationOptions;
 import org.identityconnectors.framework.common.objects.ResultsHandler;
 import org.identityconnectors.framework.common.objects.Uid;
 import org.identityconnectors.framework.common.objects.filter.AttributeFilter;
@@ -46,7 +48,10 @@ class GetOneExecutor {
   // handler)
   // SAD ERROR OUTCOME: UID value supplied is blank/empty
   protected static boolean byUID(
-      SearchExecutor executor, Filter filter, ResultsHandler resultsHandler)
+      SearchExecutor executor,
+      Filter filter,
+      ResultsHandler resultsHandler,
+      OperationOptions options)
       throws InvalidAttributeValueException {
     boolean executeGetOne = false;
     if (filter instanceof AttributeFilter) {
@@ -67,15 +72,16 @@ class GetOneExecutor {
                 .getOne(
                     executor.getAdapter().getIdentityModelClass(),
                     uidValue,
-                    executor
-                        .getAdapter()
-                        .getDriver()
-                        .getPrefetch(executor.getAdapter().getIdentityModelClass()));
+                    SearchExecutor.getPrefetchData(executor.getAdapter(), options));
         executeGetOne = true;
         if (singleItem != null) {
           executor
               .getAdapter()
-              .passSetToResultsHandler(resultsHandler, Collections.singleton(singleItem), false);
+              .passSetToResultsHandler(
+                  resultsHandler,
+                  Collections.singleton(singleItem),
+                  false,
+                  SearchExecutor.getRequestedAttributes(executor.getAdapter(), options));
         }
       }
     }
@@ -94,7 +100,10 @@ class GetOneExecutor {
   // Unless error, HAPPY OUTCOME 2: getOneByName is invoked (may or may not have been a match sent
   // to result handler)
   protected static boolean byName(
-      SearchExecutor executor, Filter filter, ResultsHandler resultsHandler)
+      SearchExecutor executor,
+      Filter filter,
+      ResultsHandler resultsHandler,
+      OperationOptions options)
       throws InvalidAttributeValueException {
     boolean executeGetOneByName = false;
     boolean callGetOneByNameAPI = false;
@@ -126,10 +135,7 @@ class GetOneExecutor {
         }
 
         Map<String, Object> prefetchData =
-            executor
-                .getAdapter()
-                .getDriver()
-                .getPrefetch(executor.getAdapter().getIdentityModelClass());
+            SearchExecutor.getPrefetchData(executor.getAdapter(), options);
         if (executeGetOneByName) {
           if (callGetOneByNameAPI) {
             IdentityModel singleItem =
@@ -142,19 +148,38 @@ class GetOneExecutor {
               executor
                   .getAdapter()
                   .passSetToResultsHandler(
-                      resultsHandler, Collections.singleton(singleItem), false);
+                      resultsHandler,
+                      Collections.singleton(singleItem),
+                      false,
+                      SearchExecutor.getRequestedAttributes(prefetchData));
             }
-          } else {
+          } else if (!executeGetOneByIndexedName(
+              executor, filterValue, resultsHandler, prefetchData)) {
             // Find single name using API max results or full import
+            Predicate<IdentityModel> matchesName =
+                identity ->
+                    StringUtils.equalsIgnoreCase(filterValue, identity.getIdentityNameValue());
+            if (executor.getEnhancedAdapter().getFilteringRequiresFullImport()
+                && IdentitySnapshotExecutor.execute(
+                    executor,
+                    snapshot -> snapshot.findRowsEqualsIgnoreCase(Name.NAME, filterValue),
+                    0,
+                    1,
+                    resultsHandler,
+                    prefetchData)) {
+              // Name found (or not present) using the snapshot of the last full import
+              return true;
+            }
             Set<IdentityModel> allIdentityResults;
             if (executor.getEnhancedAdapter().getFilteringRequiresFullImport()) {
-              // Perform paginated full import in order to find single name value
+              // Perform paginated full import in order to find single name value, stopping once
+              // it has been found
               int importBatchSize =
                   ((ResultsConfiguration) executor.getAdapter().getConfiguration())
                       .getImportBatchSize();
               allIdentityResults =
-                  ImportAllExecutor.executeMultiPageImportProcess(
-                      executor, importBatchSize, prefetchData, null);
+                  ImportAllExecutor.executeFilteredImportProcess(
+                      executor, importBatchSize, prefetchData, matchesName, 1);
             } else {
 
               allIdentityResults =
@@ -169,12 +194,7 @@ class GetOneExecutor {
                           prefetchData);
             }
             Optional<IdentityModel> match =
-                allIdentityResults.stream()
-                    .filter(
-                        identity ->
-                            StringUtils.equalsIgnoreCase(
-                                filterValue, identity.getIdentityNameValue()))
-                    .findFirst();
+                allIdentityResults.stream().filter(matchesName).findFirst();
             if (match.isPresent()) {
               IdentityModel fetchedIdentity;
               if (!executor.getEnhancedAdapter().getSearchResultsContainsAllAttributes()) {
@@ -192,7 +212,10 @@ class GetOneExecutor {
               executor
                   .getAdapter()
                   .passSetToResultsHandler(
-                      resultsHandler, Collections.singleton(fetchedIdentity), false);
+                      resultsHandler,
+                      Collections.singleton(fetchedIdentity),
+                      false,
+                      SearchExecutor.getRequestedAttributes(prefetchData));
             }
           }
         }
@@ -200,4 +223,41 @@ class GetOneExecutor {
     }
     return executeGetOneByName;
   }
+
+  /**
+   * Attempt to find the record with the given name using the UID held for that name in the name
+   * index, verifying the name of the record obtained by getOne.
+   *
+   * @return true if the record was found and passed to the results handler, false if the name was
+   *     not indexed or the indexed entry was stale.
+   */
+  private static boolean executeGetOneByIndexedName(
+      SearchExecutor executor,
+      String filterValue,
+      ResultsHandler resultsHandler,
+      Map<String, Object> prefetchData) {
+    String indexedId = IdentityNameIndex.lookup(executor.getAdapter(), filterValue);
+    if (indexedId == null) {
+      return false;
+    }
+    IdentityModel indexedIdentity =
+        executor
+            .getAdapter()
+            .getDriver()
+            .getOne(executor.getAdapter().getIdentityModelClass(), indexedId, prefetchData);
+    if (indexedIdentity == null
+        || !StringUtils.equalsIgnoreCase(filterValue, indexedIdentity.getIdentityNameValue())) {
+      // Record was deleted or renamed since it was indexed
+      IdentityNameIndex.remove(executor.getAdapter(), filterValue);
+      return false;
+    }
+    executor
+        .getAdapter()
+        .passSetToResultsHandler(
+            resultsHandler,
+            Collections.singleton(indexedIdentity),
+            false,
+            SearchExecutor.getRequestedAttributes(prefetchData));
+    return true;
+  }
 }
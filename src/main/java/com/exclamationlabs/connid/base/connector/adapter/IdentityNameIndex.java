@@ -0,0 +1,160 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import com.exclamationlabs.connid.base.connector.configuration.basetypes.ResultsConfiguration;
+import com.exclamationlabs.connid.base.connector.metrics.ConnectorMetrics;
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory index from identity name to UID, for adapters without a getOneByName API. The index is
+ * populated from the records passing through the adapter, one page at a time (getAll pages,
+ * getObject results and full-import filter scans), so that a later Name equals search can be
+ * answered by a single getOne for the indexed UID instead of a max-results scan or full import.
+ *
+ * <p>Entries expire after nameIndexTtlSeconds, and the least recently used entries are discarded
+ * beyond nameIndexMaximumEntries. Since an entry may still be stale within that time (for example
+ * after a rename in the destination system), callers must verify the name of the record obtained
+ * for an indexed UID and remove the entry if it does not match.
+ */
+public class IdentityNameIndex {
+
+  public static final int DEFAULT_MAXIMUM_ENTRIES = 100000;
+
+  // Index of each adapter object class and destination instance, by the import snapshot key
+  private static final Map<String, Map<String, IndexEntry>> INDEXES = new ConcurrentHashMap<>();
+
+  private IdentityNameIndex() {}
+
+  static void record(BaseAdapter<?, ?> adapter, IdentityModel identity) {
+    if (identity != null) {
+      record(adapter, Collections.singleton(identity));
+    }
+  }
+
+  /**
+   * Record the names of a page of identities, taking the index lock once for the whole page.
+   *
+   * @param adapter Adapter for the object class of the identities.
+   * @param identities Identities obtained from the driver.
+   */
+  static void record(BaseAdapter<?, ?> adapter, Collection<IdentityModel> identities) {
+    Long ttlMillis = getTtlMillis(adapter);
+    if (ttlMillis == null || identities == null || identities.isEmpty()) {
+      return;
+    }
+    long expiresMillis = System.currentTimeMillis() + ttlMillis;
+    Map<String, IndexEntry> index = getIndex(adapter);
+    synchronized (index) {
+      for (IdentityModel identity : identities) {
+        if (identity != null
+            && identity.getIdentityNameValue() != null
+            && identity.getIdentityIdValue() != null) {
+          index.put(
+              normalize(identity.getIdentityNameValue()),
+              new IndexEntry(identity.getIdentityIdValue(), expiresMillis));
+        }
+      }
+    }
+  }
+
+  /**
+   * Obtain the UID last seen for a record with the given name.
+   *
+   * @param adapter Adapter for the object class being searched.
+   * @param name Identity name value (compared case-insensitively).
+   * @return Indexed UID, or null if the name index is not configured or no unexpired entry exists.
+   */
+  static String lookup(BaseAdapter<?, ?> adapter, String name) {
+    if (getTtlMillis(adapter) == null || name == null) {
+      return null;
+    }
+    Map<String, IndexEntry> index = getIndex(adapter);
+    IndexEntry entry = index.get(normalize(name));
+    if (entry == null) {
+      ConnectorMetrics.increment(getMetricPrefix(adapter) + ".miss");
+      return null;
+    }
+    if (entry.expiresMillis < System.currentTimeMillis()) {
+      index.remove(normalize(name), entry);
+      ConnectorMetrics.increment(getMetricPrefix(adapter) + ".expired");
+      return null;
+    }
+    ConnectorMetrics.increment(getMetricPrefix(adapter) + ".hit");
+    return entry.id;
+  }
+
+  static void remove(BaseAdapter<?, ?> adapter, String name) {
+    if (getTtlMillis(adapter) != null && name != null) {
+      getIndex(adapter).remove(normalize(name));
+      ConnectorMetrics.increment(getMetricPrefix(adapter) + ".stale");
+    }
+  }
+
+  private static Map<String, IndexEntry> getIndex(BaseAdapter<?, ?> adapter) {
+    int maximumEntries = getMaximumEntries(adapter);
+    return INDEXES.computeIfAbsent(
+        IdentitySnapshotExecutor.getSnapshotKey(adapter),
+        key ->
+            Collections.synchronizedMap(
+                new LinkedHashMap<String, IndexEntry>(16, 0.75f, true) {
+                  @Override
+                  protected boolean removeEldestEntry(Map.Entry<String, IndexEntry> eldest) {
+                    return size() > maximumEntries;
+                  }
+                }));
+  }
+
+  private static Long getTtlMillis(BaseAdapter<?, ?> adapter) {
+    if (!(adapter.getConfiguration() instanceof ResultsConfiguration)) {
+      return null;
+    }
+    Integer ttl = ((ResultsConfiguration) adapter.getConfiguration()).getNameIndexTtlSeconds();
+    return ttl == null || ttl <= 0 ? null : TimeUnit.SECONDS.toMillis(ttl);
+  }
+
+  private static int getMaximumEntries(BaseAdapter<?, ?> adapter) {
+    Integer maximum =
+        ((ResultsConfiguration) adapter.getConfiguration()).getNameIndexMaximumEntries();
+    return maximum == null || maximum <= 0 ? DEFAULT_MAXIMUM_ENTRIES : maximum;
+  }
+
+  private static String getMetricPrefix(BaseAdapter<?, ?> adapter) {
+    return adapter.getIdentityModelClass().getSimpleName() + ".nameIndex";
+  }
+
+  private static String normalize(String name) {
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  private static class IndexEntry {
+    private final String id;
+    private final long expiresMillis;
+
+    IndexEntry(String id, long expiresMillis) {
+      this.id = id;
+      this.expiresMillis = expiresMillis;
+    }
+  }
+}
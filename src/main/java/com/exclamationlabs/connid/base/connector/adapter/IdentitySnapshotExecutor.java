@@ -0,0 +1,463 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import com.exclamationlabs.connid.base.connector.configuration.basetypes.ResultsConfiguration;
+import com.exclamationlabs.connid.base.connector.logging.Logger;
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import com.exclamationlabs.connid.base.connector.results.IdentitySnapshot;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.apache.commons.lang3.StringUtils;
+import org.identityconnectors.framework.common.objects.ResultsHandler;
+
+/**
+ * Executor used by the filter executors, for adapters whose filtering requires a full import, to
+ * evaluate filters against a snapshot of the last full import (see IdentitySnapshot) instead of
+ * importing all records again.
+ *
+ * <p>Snapshot files are written to the configured importSnapshotDirectory and reused, by this and
+ * other connector instances of the same destination system instance, until they are older than
+ * importSnapshotTtlSeconds. When
+ * importRetentionSeconds is configured, the snapshot of the most recent import (including a full
+ * import requested by Midpoint) is also retained in memory for that many seconds. Both are
+ * discarded when a record of the object class is created, updated or deleted through the adapter.
+ *
+ * <p>Each snapshot file is decoded only once (per file modification time) and the decoded snapshot
+ * is shared by subsequent searches, which only take the per-key lock when the snapshot must be
+ * read or built.
+ */
+public class IdentitySnapshotExecutor {
+
+  public static final int DEFAULT_SNAPSHOT_TTL_SECONDS = 900;
+
+  private static final String SNAPSHOT_FILE_SUFFIX = ".snapshot";
+
+  // Serializes the building of each snapshot within this JVM, by snapshot key
+  private static final Map<String, Object> SNAPSHOT_LOCKS = new ConcurrentHashMap<>();
+
+  // Snapshots of recent imports retained in memory, by snapshot key (per destination instance)
+  private static final Map<String, RetainedSnapshot> RETAINED_SNAPSHOTS =
+      new ConcurrentHashMap<>();
+
+  // Snapshot files already decoded, by snapshot key
+  private static final Map<String, LoadedSnapshot> LOADED_SNAPSHOTS = new ConcurrentHashMap<>();
+
+  // Incremented whenever the snapshot for a key is invalidated
+  private static final Map<String, AtomicLong> GENERATIONS = new ConcurrentHashMap<>();
+
+  private IdentitySnapshotExecutor() {}
+
+  /**
+   * Evaluate a filter against the import snapshot and pass the requested page of matching records
+   * to the results handler. Matching records are obtained from the driver by id (getOne) only for
+   * that page.
+   *
+   * @param executor SearchExecutor for the current search.
+   * @param rowFinder Finds the ascending row positions matching the filter within the snapshot.
+   * @param offset Zero-based offset of the first matching record to be returned.
+   * @param pageSize Maximum number of matching records to be returned.
+   * @param resultsHandler ResultsHandler receiving the matching records.
+   * @param prefetchData Prefetch data for the current search.
+   * @return true if the filter was evaluated using the snapshot, false if import snapshots are not
+   *     configured or the snapshot does not hold an attribute required by the filter.
+   */
+  static boolean execute(
+      SearchExecutor executor,
+      Function<IdentitySnapshot, int[]> rowFinder,
+      int offset,
+      int pageSize,
+      ResultsHandler resultsHandler,
+      Map<String, Object> prefetchData) {
+    IdentitySnapshot snapshot = getSnapshot(executor, prefetchData);
+    if (snapshot == null) {
+      return false;
+    }
+    int[] matchingRows;
+    try {
+      matchingRows = rowFinder.apply(snapshot);
+    } catch (IllegalArgumentException notHeld) {
+      Logger.debug(
+          IdentitySnapshotExecutor.class,
+          "Filter cannot be evaluated using import snapshot: " + notHeld.getMessage());
+      return false;
+    }
+    Set<IdentityModel> pageOfResults =
+        snapshot.rehydrate(
+            IdentitySnapshot.page(matchingRows, offset, pageSize),
+            id ->
+                executor
+                    .getAdapter()
+                    .getDriver()
+                    .getOne(executor.getAdapter().getIdentityModelClass(), id, prefetchData));
+    executor
+        .getAdapter()
+        .passSetToResultsHandler(
+            resultsHandler,
+            pageOfResults,
+            false,
+            SearchExecutor.getRequestedAttributes(prefetchData));
+    return true;
+  }
+
+  /**
+   * Obtain the import snapshot for the adapter's object class. A snapshot retained in memory from
+   * a recent import is used first; otherwise the snapshot file is loaded if it is still fresh, or
+   * a full import is performed (and written to a new snapshot file, if configured).
+   *
+   * @param executor SearchExecutor for the current search.
+   * @param prefetchData Prefetch data for the current search.
+   * @return Import snapshot, or null if neither import snapshot files nor import retention are
+   *     configured.
+   */
+  static IdentitySnapshot getSnapshot(SearchExecutor executor, Map<String, Object> prefetchData) {
+    BaseAdapter<?, ?> adapter = executor.getAdapter();
+    if (!isEnabled(adapter)) {
+      return null;
+    }
+    String snapshotKey = getSnapshotKey(adapter);
+    Path snapshotFile = getSnapshotFile(adapter);
+    IdentitySnapshot snapshot = getSnapshotInMemory(executor, snapshotKey, snapshotFile);
+    if (snapshot != null) {
+      return snapshot;
+    }
+    synchronized (SNAPSHOT_LOCKS.computeIfAbsent(snapshotKey, key -> new Object())) {
+      // Another search may have read or built the snapshot meanwhile
+      snapshot = getSnapshotInMemory(executor, snapshotKey, snapshotFile);
+      if (snapshot != null) {
+        return snapshot;
+      }
+      long generation = getGeneration(snapshotKey);
+      if (snapshotFile != null) {
+        snapshot = readFreshSnapshot(executor, snapshotKey, snapshotFile, generation);
+      }
+      if (snapshot == null) {
+        snapshot = buildSnapshot(executor, prefetchData);
+        writeSnapshotFile(snapshotKey, snapshot, snapshotFile, generation);
+      }
+      retainSnapshot(adapter, snapshotKey, snapshot, generation);
+      return snapshot;
+    }
+  }
+
+  /**
+   * Begin recording the records passed through a full import, so that the completed import can be
+   * retained (and written to the snapshot file, if configured) for subsequent filter and name
+   * searches.
+   *
+   * @param executor SearchExecutor for the current import.
+   * @return New recording, or null if the adapter's filtering does not require a full import, or
+   *     neither import snapshot files nor import retention are configured.
+   */
+  static Recording startRecording(SearchExecutor executor) {
+    if (!executor.getEnhancedAdapter().getFilteringRequiresFullImport()
+        || !isEnabled(executor.getAdapter())) {
+      return null;
+    }
+    return new Recording(executor);
+  }
+
+  /**
+   * Discard the retained snapshot and the snapshot file for the adapter's object class, because a
+   * record of that object class was created, updated or deleted through the adapter.
+   *
+   * @param adapter Adapter through which the record was changed.
+   */
+  static void invalidate(BaseAdapter<?, ?> adapter) {
+    if (!isEnabled(adapter)) {
+      return;
+    }
+    String snapshotKey = getSnapshotKey(adapter);
+    // Snapshots obtained from imports in progress are no longer current either
+    GENERATIONS.computeIfAbsent(snapshotKey, key -> new AtomicLong()).incrementAndGet();
+    RETAINED_SNAPSHOTS.remove(snapshotKey);
+    LOADED_SNAPSHOTS.remove(snapshotKey);
+    Path snapshotFile = getSnapshotFile(adapter);
+    if (snapshotFile != null) {
+      try {
+        Files.deleteIfExists(snapshotFile);
+      } catch (IOException deleteFailure) {
+        Logger.warn(
+            IdentitySnapshotExecutor.class,
+            "Unable to delete import snapshot " + snapshotFile,
+            deleteFailure);
+      }
+    }
+    Logger.debug(IdentitySnapshotExecutor.class, "Invalidated import snapshot " + snapshotKey);
+  }
+
+  static Path getSnapshotFile(BaseAdapter<?, ?> adapter) {
+    if (!(adapter.getConfiguration() instanceof ResultsConfiguration)) {
+      return null;
+    }
+    String directory =
+        ((ResultsConfiguration) adapter.getConfiguration()).getImportSnapshotDirectory();
+    if (StringUtils.isBlank(directory)) {
+      return null;
+    }
+    return Paths.get(directory, getSnapshotKey(adapter) + SNAPSHOT_FILE_SUFFIX);
+  }
+
+  /**
+   * Key of the adapter's object class on the destination system instance of its configuration,
+   * naming the snapshot file and keying every cache shared between connector instances. It is
+   * never derived from the configuration name, which is the same for all production resources.
+   */
+  static String getSnapshotKey(BaseAdapter<?, ?> adapter) {
+    return String.join(
+            "-",
+            adapter.getInstanceId(),
+            adapter.getClass().getSimpleName(),
+            adapter.getIdentityModelClass().getSimpleName())
+        .replaceAll("[^A-Za-z0-9._-]", "_");
+  }
+
+  private static boolean isEnabled(BaseAdapter<?, ?> adapter) {
+    return getSnapshotFile(adapter) != null || getRetentionSeconds(adapter) != null;
+  }
+
+  private static Integer getRetentionSeconds(BaseAdapter<?, ?> adapter) {
+    if (!(adapter.getConfiguration() instanceof ResultsConfiguration)) {
+      return null;
+    }
+    Integer retention =
+        ((ResultsConfiguration) adapter.getConfiguration()).getImportRetentionSeconds();
+    return retention == null || retention <= 0 ? null : retention;
+  }
+
+  private static long getGeneration(String snapshotKey) {
+    return GENERATIONS.computeIfAbsent(snapshotKey, key -> new AtomicLong()).get();
+  }
+
+  private static IdentitySnapshot getRetainedSnapshot(
+      BaseAdapter<?, ?> adapter, String snapshotKey) {
+    RetainedSnapshot retained = RETAINED_SNAPSHOTS.get(snapshotKey);
+    Integer retentionSeconds = getRetentionSeconds(adapter);
+    if (retained == null || retentionSeconds == null) {
+      return null;
+    }
+    if (System.currentTimeMillis() - retained.retainedMillis
+        > TimeUnit.SECONDS.toMillis(retentionSeconds)) {
+      RETAINED_SNAPSHOTS.remove(snapshotKey, retained);
+      return null;
+    }
+    return retained.snapshot;
+  }
+
+  private static void retainSnapshot(
+      BaseAdapter<?, ?> adapter, String snapshotKey, IdentitySnapshot snapshot, long generation) {
+    if (getRetentionSeconds(adapter) == null) {
+      return;
+    }
+    RETAINED_SNAPSHOTS.put(snapshotKey, new RetainedSnapshot(snapshot));
+    if (getGeneration(snapshotKey) != generation) {
+      // Invalidated while the snapshot was being obtained
+      RETAINED_SNAPSHOTS.remove(snapshotKey);
+    }
+  }
+
+  /**
+   * Obtain the snapshot retained from a recent import, or the snapshot decoded from the current
+   * snapshot file, without reading the file again.
+   */
+  private static IdentitySnapshot getSnapshotInMemory(
+      SearchExecutor executor, String snapshotKey, Path snapshotFile) {
+    IdentitySnapshot snapshot = getRetainedSnapshot(executor.getAdapter(), snapshotKey);
+    if (snapshot != null || snapshotFile == null) {
+      return snapshot;
+    }
+    LoadedSnapshot loaded = LOADED_SNAPSHOTS.get(snapshotKey);
+    if (loaded == null) {
+      return null;
+    }
+    try {
+      if (loaded.generation == getGeneration(snapshotKey)
+          && loaded.modified.equals(getFreshModifiedTime(executor, snapshotFile))
+          && loaded.snapshot.getAttributeNames().containsAll(getSnapshotAttributes(executor))) {
+        return loaded.snapshot;
+      }
+    } catch (IOException unreadable) {
+      // Treated as a snapshot that is no longer current
+    }
+    LOADED_SNAPSHOTS.remove(snapshotKey, loaded);
+    return null;
+  }
+
+  private static void writeSnapshotFile(
+      String snapshotKey, IdentitySnapshot snapshot, Path snapshotFile, long generation) {
+    if (snapshotFile == null) {
+      return;
+    }
+    try {
+      snapshot.writeTo(snapshotFile);
+      LOADED_SNAPSHOTS.put(
+          snapshotKey,
+          new LoadedSnapshot(snapshot, Files.getLastModifiedTime(snapshotFile), generation));
+      if (getGeneration(snapshotKey) != generation) {
+        // Invalidated while the file was being written, possibly before invalidate deleted it
+        LOADED_SNAPSHOTS.remove(snapshotKey);
+        Files.deleteIfExists(snapshotFile);
+      }
+    } catch (IOException writeFailure) {
+      Logger.warn(
+          IdentitySnapshotExecutor.class,
+          "Unable to write import snapshot " + snapshotFile,
+          writeFailure);
+    }
+  }
+
+  private static FileTime getFreshModifiedTime(SearchExecutor executor, Path snapshotFile)
+      throws IOException {
+    if (!Files.exists(snapshotFile)) {
+      return null;
+    }
+    FileTime modified = Files.getLastModifiedTime(snapshotFile);
+    long ageMillis = System.currentTimeMillis() - modified.toMillis();
+    return ageMillis > TimeUnit.SECONDS.toMillis(getSnapshotTtlSeconds(executor)) ? null : modified;
+  }
+
+  private static IdentitySnapshot readFreshSnapshot(
+      SearchExecutor executor, String snapshotKey, Path snapshotFile, long generation) {
+    try {
+      FileTime modified = getFreshModifiedTime(executor, snapshotFile);
+      if (modified == null) {
+        Logger.debug(
+            IdentitySnapshotExecutor.class,
+            "Import snapshot " + snapshotFile + " is missing or has expired");
+        return null;
+      }
+      long ageMillis = System.currentTimeMillis() - modified.toMillis();
+      IdentitySnapshot snapshot = IdentitySnapshot.readFrom(snapshotFile);
+      if (!snapshot.getAttributeNames().containsAll(getSnapshotAttributes(executor))) {
+        Logger.debug(
+            IdentitySnapshotExecutor.class,
+            "Import snapshot " + snapshotFile + " does not hold the current search attributes");
+        return null;
+      }
+      Logger.debug(
+          IdentitySnapshotExecutor.class,
+          String.format(
+              "Using import snapshot %s of %d records, %d seconds old",
+              snapshotFile, snapshot.size(), TimeUnit.MILLISECONDS.toSeconds(ageMillis)));
+      LOADED_SNAPSHOTS.put(snapshotKey, new LoadedSnapshot(snapshot, modified, generation));
+      return snapshot;
+    } catch (IOException readFailure) {
+      Logger.warn(
+          IdentitySnapshotExecutor.class,
+          "Unable to read import snapshot " + snapshotFile + ", importing again",
+          readFailure);
+      return null;
+    }
+  }
+
+  private static IdentitySnapshot buildSnapshot(
+      SearchExecutor executor, Map<String, Object> prefetchData) {
+    IdentitySnapshot snapshot = new IdentitySnapshot(getSnapshotAttributes(executor));
+    int importBatchSize =
+        ((ResultsConfiguration) executor.getAdapter().getConfiguration()).getImportBatchSize();
+    ImportAllExecutor.executeConsumingImportProcess(
+        executor, importBatchSize, prefetchData, snapshot::add);
+    snapshot.trimToSize();
+    Logger.info(
+        IdentitySnapshotExecutor.class,
+        String.format(
+            "Built import snapshot of %d %s records",
+            snapshot.size(), executor.getAdapter().getIdentityModelClass().getSimpleName()));
+    return snapshot;
+  }
+
+  private static Set<String> getSnapshotAttributes(SearchExecutor executor) {
+    Set<String> attributes = executor.getEnhancedAdapter().getSearchResultsAttributesPresent();
+    return attributes == null ? Collections.emptySet() : attributes;
+  }
+
+  private static int getSnapshotTtlSeconds(SearchExecutor executor) {
+    Integer ttl =
+        ((ResultsConfiguration) executor.getAdapter().getConfiguration())
+            .getImportSnapshotTtlSeconds();
+    return ttl == null || ttl < 0 ? DEFAULT_SNAPSHOT_TTL_SECONDS : ttl;
+  }
+
+  private static class RetainedSnapshot {
+    private final IdentitySnapshot snapshot;
+    private final long retainedMillis;
+
+    RetainedSnapshot(IdentitySnapshot snapshot) {
+      this.snapshot = snapshot;
+      this.retainedMillis = System.currentTimeMillis();
+    }
+  }
+
+  private static class LoadedSnapshot {
+    private final IdentitySnapshot snapshot;
+    private final FileTime modified;
+    private final long generation;
+
+    LoadedSnapshot(IdentitySnapshot snapshot, FileTime modified, long generation) {
+      this.snapshot = snapshot;
+      this.modified = modified;
+      this.generation = generation;
+    }
+  }
+
+  /** Records the records passed through a full import into a new snapshot. */
+  static class Recording {
+    private final SearchExecutor executor;
+    private final String snapshotKey;
+    private final long generation;
+    private final IdentitySnapshot snapshot;
+
+    Recording(SearchExecutor executor) {
+      this.executor = executor;
+      this.snapshotKey = getSnapshotKey(executor.getAdapter());
+      this.generation = getGeneration(snapshotKey);
+      this.snapshot = new IdentitySnapshot(getSnapshotAttributes(executor));
+    }
+
+    void record(Set<IdentityModel> pageOfIdentityResults) {
+      pageOfIdentityResults.forEach(snapshot::add);
+    }
+
+    /** Retain the snapshot of the completed import, unless invalidated since it began. */
+    void complete() {
+      if (getGeneration(snapshotKey) != generation) {
+        return;
+      }
+      snapshot.trimToSize();
+      synchronized (SNAPSHOT_LOCKS.computeIfAbsent(snapshotKey, key -> new Object())) {
+        writeSnapshotFile(
+            snapshotKey, snapshot, getSnapshotFile(executor.getAdapter()), generation);
+        retainSnapshot(executor.getAdapter(), snapshotKey, snapshot, generation);
+      }
+      Logger.debug(
+          IdentitySnapshotExecutor.class,
+          String.format(
+              "Retained import snapshot of %d %s records",
+              snapshot.size(), executor.getAdapter().getIdentityModelClass().getSimpleName()));
+    }
+  }
+}
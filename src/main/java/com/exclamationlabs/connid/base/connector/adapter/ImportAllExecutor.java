@@ -17,14 +17,23 @@
 package com.exclamationlabs.connid.base.connector.adapter;
 
 import com.exclamationlabs.connid.base.connector.configuration.basetypes.ResultsConfiguration;
+import com.exclamationlabs.connid.base.connector.driver.OperationDeadline;
 import com.exclamationlabs.connid.base.connector.logging.Logger;
+import com.exclamationlabs.connid.base.connector.metrics.ConnectorMetrics;
 import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import com.exclamationlabs.connid.base.connector.results.AdaptivePageSizeController;
 import com.exclamationlabs.connid.base.connector.results.ResultsFilter;
 import com.exclamationlabs.connid.base.connector.results.ResultsPaginator;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import org.apache.commons.lang3.BooleanUtils;
 import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.exceptions.OperationTimeoutException;
+import org.identityconnectors.framework.common.objects.OperationOptions;
 import org.identityconnectors.framework.common.objects.ResultsHandler;
+import org.identityconnectors.framework.common.objects.SearchResult;
 
 /**
  * Executor used by SearchExecutor to Import all Identity records for a given Object Class from a
@@ -46,19 +55,35 @@ public class ImportAllExecutor {
   // - continue with next set of index values until end is reached or no more results remain.
   // Scenario 2: OperationOptions pagination values are NOT submitted AND filter is NULL AND
   // Adapter DOES NOT implement PaginationCapableSource
-  // - Invoke getAll with dummy Pagination and dummy Filter.
-  // - Loop through Set of records in groups of X (where X is importBatchSize value)
+  // - Invoke streamAll with dummy Pagination and dummy Filter.
+  // - Buffer streamed records in groups of X (where X is importBatchSize value)
   // - For each group, call getOne for each record UNLESS getSearchResultsContainAllAttributes is
   // true
   // - pass items in that group to the results handler
   // - continue until all groups have been processed.
   // For both Scenario 1 and 2, HAPPY OUTCOME 4: getAll perform full import is invoked
-  protected static boolean execute(SearchExecutor executor, ResultsHandler resultsHandler) {
+  // For Scenario 1, if the Adapter implements CountCapableSource and the total number of records
+  // is known (from a count request or from the total reported with the first page), all remaining
+  // page offsets are requested in parallel (up to getImportUsingPaginationThreadCount) instead of
+  // discovering the end of the import by a short page.
+  // When multiple import threads (or fetch-ahead pages) are configured, pages are fetched ahead on
+  // background threads while the calling thread passes earlier pages to the results handler.
+  // If import snapshots or import retention are configured, the records passed through the import
+  // are also recorded as the snapshot used by subsequent filter and name searches.
+  // For Scenario 1, if import checkpoints are configured, the position of the import is committed
+  // after each page is passed to the results handler, and an import that previously failed resumes
+  // from its last committed page (see ImportCheckpoint).
+  // For Scenario 1, if the search has a time budget, no further page is requested once the budget
+  // is nearly exhausted, and a SearchResult cookie resuming at the next page is returned (see
+  // SearchBudget). The import checkpoint, if any, is then removed in favour of the cookie.
+  // Scenario 2 does not honor the time budget: a stream can neither be stopped nor resumed at a
+  // page, so the whole stream is passed and a warning is logged if a budget was requested.
+  protected static SearchResult execute(
+      SearchExecutor executor, ResultsHandler resultsHandler, OperationOptions options) {
     Map<String, Object> prefetchData =
-        executor
-            .getAdapter()
-            .getDriver()
-            .getPrefetch(executor.getAdapter().getIdentityModelClass());
+        SearchExecutor.getPrefetchData(executor.getAdapter(), options);
+    IdentitySnapshotExecutor.Recording recording =
+        IdentitySnapshotExecutor.startRecording(executor);
     if (executor.getAdapter() instanceof PaginationCapableSource) {
       PaginationCapableSource paginationCheck = (PaginationCapableSource) executor.getAdapter();
       int pageSize =
@@ -67,50 +92,82 @@ public class ImportAllExecutor {
           && paginationCheck.getSearchResultsMaximum() < pageSize) {
         pageSize = paginationCheck.getSearchResultsMaximum();
       }
-      executeMultiPageImportProcess(executor, pageSize, prefetchData, resultsHandler);
+      ImportCollector collector = new ImportCollector(null, null, null);
+      collector.setBudget(SearchBudget.start(executor.getAdapter(), options));
+      SearchBudget.ImportPosition resumePosition =
+          SearchBudget.readImportCookie(options == null ? null : options.getPagedResultsCookie());
+      ImportCheckpoint checkpoint = null;
+      if (resumePosition != null) {
+        collector.setResume(resumePosition.offset, resumePosition.pageToken);
+      } else {
+        checkpoint = ImportCheckpoint.open(executor.getAdapter(), options);
+        collector.setCheckpoint(checkpoint);
+        if (checkpoint != null && checkpoint.isResumed()) {
+          collector.setResume(checkpoint.getResumeOffset(), checkpoint.getResumeToken());
+        }
+      }
+      if (collector.isResumed()) {
+        // Records passed before the import resumed cannot be recorded in the snapshot
+        recording = null;
+        executeMultiPageImportProcess(
+            executor,
+            pageSize,
+            collector.getNextOffset(),
+            prefetchData,
+            resultsHandler,
+            collector);
+      } else {
+        collector.setRecording(recording);
+        executeImportProcess(executor, pageSize, prefetchData, resultsHandler, collector);
+      }
+      if (collector.isStopped()) {
+        Logger.info(
+            ImportAllExecutor.class,
+            String.format(
+                "Import of %s stopped by search time budget at offset %d",
+                executor.getAdapter().getIdentityModelClass().getSimpleName(),
+                collector.getNextOffset()));
+        if (checkpoint != null) {
+          // The resume cookie carries the position of the import from here on; a checkpoint left
+          // behind would only be resumed by a later import requested without the cookie
+          checkpoint.complete();
+        }
+        return new SearchResult(collector.getResumeCookie(), -1, false);
+      }
+      if (checkpoint != null) {
+        checkpoint.complete();
+      }
 
     } else {
-      // API has no pagination capability, manually paginate here
-      int currentOffset = 0;
+      // API has no pagination capability, manually paginate here as results are streamed
       int pageSize =
           ((ResultsConfiguration) executor.getAdapter().getConfiguration()).getImportBatchSize();
-      boolean importComplete = false;
-      Set<IdentityModel> fullIdentityResults =
-          executor
-              .getAdapter()
-              .getDriver()
-              .getAll(
-                  executor.getAdapter().getIdentityModelClass(),
-                  new ResultsFilter(),
-                  new ResultsPaginator(),
-                  null,
-                  prefetchData);
-      while (!importComplete) {
-        if (fullIdentityResults.size() < pageSize
-            || (currentOffset + pageSize) >= fullIdentityResults.size()) {
-          importComplete = true;
-        }
-
-        Set<IdentityModel> pageOfIdentityResults = new LinkedHashSet<>();
-        fullIdentityResults.stream()
-            .skip(currentOffset)
-            .limit(pageSize)
-            .forEachOrdered(pageOfIdentityResults::add);
-        if (pageOfIdentityResults.size() < pageSize) {
-          importComplete = true;
-        } else {
-          currentOffset += pageSize;
-        }
-
-        SearchExecutor.processResultsPage(
-            executor.getAdapter(),
-            executor.getEnhancedAdapter(),
-            pageOfIdentityResults,
-            resultsHandler,
-            prefetchData);
-      } // end while
+      if (SearchBudget.start(executor.getAdapter(), options) != null) {
+        Logger.warn(
+            ImportAllExecutor.class,
+            String.format(
+                "Search time budget is not applied to streamed imports of %s; "
+                    + "passing all streamed records",
+                executor.getAdapter().getIdentityModelClass().getSimpleName()));
+      }
+      PageBuffer pageBuffer =
+          new PageBuffer(executor, pageSize, prefetchData, resultsHandler, recording);
+      executor
+          .getAdapter()
+          .getDriver()
+          .streamAll(
+              executor.getAdapter().getIdentityModelClass(),
+              new ResultsFilter(),
+              new ResultsPaginator(),
+              null,
+              prefetchData,
+              pageBuffer);
+      pageBuffer.finish();
+    }
+    if (recording != null) {
+      recording.complete();
     }
-    return true;
+    return new SearchResult();
   }
 
   protected static Set<IdentityModel> executeMultiPageImportProcess(
@@ -118,85 +175,377 @@ public class ImportAllExecutor {
       int pageSize,
       Map<String, Object> prefetchData,
       ResultsHandler resultsHandler) {
+    ImportCollector collector = new ImportCollector(null, null, null);
+    executeImportProcess(executor, pageSize, prefetchData, resultsHandler, collector);
+    return collector.getResults();
+  }
+
+  /**
+   * Import all records in pages, retaining only those matching the given filter as each page
+   * arrives instead of accumulating the entire source before filtering. The import stops early
+   * once matchLimit matching records have been found.
+   *
+   * @param executor SearchExecutor for the current search.
+   * @param pageSize Number of records to request per page.
+   * @param prefetchData Prefetch data for the current search.
+   * @param filter Records not matching this predicate are discarded as each page is received.
+   * @param matchLimit Number of matching records after which the import may stop, or null to
+   *     import all records.
+   * @return Set of matching records, in import order.
+   * @throws ConnectorException If more matching records are retained than the configured
+   *     filterImportMaximumMatches.
+   */
+  protected static Set<IdentityModel> executeFilteredImportProcess(
+      SearchExecutor executor,
+      int pageSize,
+      Map<String, Object> prefetchData,
+      Predicate<IdentityModel> filter,
+      Integer matchLimit) {
+    ImportCollector collector =
+        new ImportCollector(filter, matchLimit, getConfiguredFilterImportMaximumMatches(executor));
+    executeImportProcess(executor, pageSize, prefetchData, null, collector);
+    Logger.debug(
+        ImportAllExecutor.class,
+        String.format(
+            "Filtered import of %s retained %d of %d records scanned%s",
+            executor.getAdapter().getIdentityModelClass().getSimpleName(),
+            collector.getResults().size(),
+            collector.getScannedCount(),
+            collector.isComplete() ? " (stopped early at match limit)" : ""));
+    return collector.getResults();
+  }
+
+  /**
+   * Import all records in pages, passing each record to the given consumer as its page arrives
+   * without retaining any records.
+   *
+   * @param executor SearchExecutor for the current search.
+   * @param pageSize Number of records to request per page.
+   * @param prefetchData Prefetch data for the current search.
+   * @param consumer Receives each imported record, on the calling thread.
+   */
+  protected static void executeConsumingImportProcess(
+      SearchExecutor executor,
+      int pageSize,
+      Map<String, Object> prefetchData,
+      Consumer<IdentityModel> consumer) {
+    // A filter that consumes each record and retains none of them
+    ImportCollector collector =
+        new ImportCollector(
+            identity -> {
+              consumer.accept(identity);
+              return false;
+            },
+            null,
+            null);
+    executeImportProcess(executor, pageSize, prefetchData, null, collector);
+  }
+
+  private static void executeImportProcess(
+      SearchExecutor executor,
+      int pageSize,
+      Map<String, Object> prefetchData,
+      ResultsHandler resultsHandler,
+      ImportCollector collector) {
+    if (executor.getAdapter() instanceof CountCapableSource) {
+      executeCountCapableImportProcess(executor, pageSize, prefetchData, resultsHandler, collector);
+    } else {
+      executeMultiPageImportProcess(executor, pageSize, 0, prefetchData, resultsHandler, collector);
+    }
+  }
+
+  private static void executeMultiPageImportProcess(
+      SearchExecutor executor,
+      int pageSize,
+      int startOffset,
+      Map<String, Object> prefetchData,
+      ResultsHandler resultsHandler,
+      ImportCollector collector) {
     int throttle = executor.getEnhancedAdapter().getImportUsingPaginationThreadCount();
-    if (throttle < 2) {
-      return executeMultiPageImportProcessNoMultiThread(
-          executor, pageSize, prefetchData, resultsHandler);
+    if (throttle < 2 && getConfiguredFetchAheadPages(executor) == null) {
+      executeMultiPageImportProcessNoMultiThread(
+          executor, pageSize, startOffset, prefetchData, resultsHandler, collector);
+    } else {
+      executePipelinedImportProcess(
+          executor, pageSize, startOffset, null, prefetchData, resultsHandler, collector);
     }
-    boolean importComplete = false;
-    int currentOffset = 0;
-    Set<IdentityModel> fullCollectedResults = new LinkedHashSet<>();
-    while (!importComplete) {
-      List<Future<Set<IdentityModel>>> pageImportExecutions = new ArrayList<>();
-      for (int xx = 0; xx < throttle; xx++) {
-        pageImportExecutions.add(
-            importSinglePageExecution(
-                executor, new ResultsPaginator(pageSize, currentOffset), prefetchData));
-        currentOffset += pageSize;
-      }
-      for (Future<Set<IdentityModel>> oneExecution : pageImportExecutions) {
-        try {
-          Set<IdentityModel> pageOfIdentityResults = oneExecution.get();
-          if (resultsHandler != null) {
-            SearchExecutor.processResultsPage(
-                executor.getAdapter(),
-                executor.getEnhancedAdapter(),
-                pageOfIdentityResults,
-                resultsHandler,
-                prefetchData);
-          } else {
-            fullCollectedResults.addAll(pageOfIdentityResults);
-          }
-          // Once we see the API return number of results smaller than the page size or 0, we know
-          // that import is complete
-          if (pageOfIdentityResults.size() < pageSize) {
-            importComplete = true;
-          }
+  }
 
-          Logger.trace(
+  private static void executeCountCapableImportProcess(
+      SearchExecutor executor,
+      int pageSize,
+      Map<String, Object> prefetchData,
+      ResultsHandler resultsHandler,
+      ImportCollector collector) {
+    int startOffset = 0;
+    Integer totalResults =
+        SearchExecutor.getTotalResults(
+            executor.getAdapter(), new ResultsFilter(), null, prefetchData);
+    if (totalResults == null) {
+      // Total may instead be reported by the driver/invocator along with the first page
+      ResultsPaginator firstPaginator = collector.createPaginator(pageSize, 0);
+      Set<IdentityModel> firstPage = getSinglePage(executor, firstPaginator, prefetchData);
+      processImportedPage(
+          executor, firstPage, firstPaginator, collector, resultsHandler, prefetchData);
+      if (BooleanUtils.isTrue(firstPaginator.getNoMoreResults())
+          || firstPage.size() < pageSize
+          || collector.isComplete()) {
+        return;
+      }
+      startOffset = pageSize;
+      if (!firstPaginator.hasTotalResults()) {
+        executeMultiPageImportProcess(
+            executor, pageSize, startOffset, prefetchData, resultsHandler, collector);
+        return;
+      }
+      totalResults = firstPaginator.getTotalResults();
+    }
+    executeKnownTotalImportProcess(
+        executor, pageSize, startOffset, totalResults, prefetchData, resultsHandler, collector);
+  }
+
+  private static void executeKnownTotalImportProcess(
+      SearchExecutor executor,
+      int pageSize,
+      int startOffset,
+      int totalResults,
+      Map<String, Object> prefetchData,
+      ResultsHandler resultsHandler,
+      ImportCollector collector) {
+    Logger.info(
+        ImportAllExecutor.class,
+        String.format(
+            "Importing %d total %s identities with page size %d",
+            totalResults,
+            executor.getAdapter().getIdentityModelClass().getSimpleName(),
+            pageSize));
+    // The total only plans the offsets requested ahead: if the last planned page is still full,
+    // the total was stale and pages are requested until one shows the end of the import
+    executePipelinedImportProcess(
+        executor, pageSize, startOffset, totalResults, prefetchData, resultsHandler, collector);
+  }
+
+  /**
+   * Import pages using a pool of fetcher threads (getImportUsingPaginationThreadCount) that request
+   * pages ahead of the calling thread, which passes each page to the ResultsHandler in offset order
+   * as soon as it is available. At most a fixed number of pages are fetched ahead (in flight or
+   * waiting to be handled); once that many are outstanding, no further page is requested until the
+   * handler consumes one. Fetchers run with the OperationDeadline of the calling thread, and pages
+   * still outstanding when it passes are cancelled. A known total only bounds the offsets requested
+   * ahead; once they are handled, the import continues while the last page was full. Since the
+   * offsets of pages fetched ahead are planned with a fixed page size, adaptive page sizing is not
+   * applied.
+   */
+  private static void executePipelinedImportProcess(
+      SearchExecutor executor,
+      int pageSize,
+      int startOffset,
+      Integer totalResults,
+      Map<String, Object> prefetchData,
+      ResultsHandler resultsHandler,
+      ImportCollector collector) {
+    int throttle = Math.max(1, executor.getEnhancedAdapter().getImportUsingPaginationThreadCount());
+    Integer configuredFetchAhead = getConfiguredFetchAheadPages(executor);
+    int fetchAheadPages = configuredFetchAhead == null ? throttle * 2 : configuredFetchAhead;
+    String metricPrefix = executor.getAdapter().getIdentityModelClass().getSimpleName() + ".import";
+    if (isAdaptivePageSizeConfigured(executor)) {
+      Logger.warn(
+          ImportAllExecutor.class,
+          String.format(
+              "Adaptive page sizing is not applied to pipelined or known-total imports of %s; "
+                  + "using page size %d",
+              executor.getAdapter().getIdentityModelClass().getSimpleName(), pageSize));
+    }
+
+    OperationDeadline deadline = OperationDeadline.current();
+    ExecutorService fetcherPool = Executors.newFixedThreadPool(throttle);
+    Deque<PageFetch> fetchWindow = new ArrayDeque<>();
+    int nextOffset = startOffset;
+    Integer plannedTotal = totalResults;
+    // No page has shown the end of the import yet (pages before startOffset were full)
+    boolean lastPageFull = true;
+    int pagesHandled = 0;
+    long handlerStallNanos = 0L;
+    long fetcherStallNanos = 0L;
+    try {
+      boolean importComplete = false;
+      while (!importComplete) {
+        if (fetchWindow.isEmpty()
+            && plannedTotal != null
+            && nextOffset >= plannedTotal
+            && lastPageFull) {
+          Logger.info(
               ImportAllExecutor.class,
               String.format(
-                  "Imported %d identities at %d",
-                  pageOfIdentityResults.size(), System.currentTimeMillis()));
-        } catch (InterruptedException | ExecutionException ee) {
+                  "Import of %s continues past stale total %d at offset %d",
+                  executor.getAdapter().getIdentityModelClass().getSimpleName(),
+                  plannedTotal,
+                  nextOffset));
+          plannedTotal = null;
+        }
+        while (fetchWindow.size() < fetchAheadPages
+            && (plannedTotal == null || nextOffset < plannedTotal)
+            && collector.isWithinBudget()) {
+          fetchWindow.add(
+              new PageFetch(
+                  executor,
+                  fetcherPool,
+                  collector.createPaginator(pageSize, nextOffset),
+                  prefetchData,
+                  deadline));
+          nextOffset += pageSize;
+        }
+        PageFetch nextPage = fetchWindow.peek();
+        if (!collector.isWithinBudget()
+            && (nextPage == null
+                ? plannedTotal == null || nextOffset < plannedTotal
+                : !nextPage.future.isDone())) {
+          // Only pages already fetched are passed once the budget is exhausted
+          collector.stop();
+          break;
+        }
+        nextPage = fetchWindow.poll();
+        if (nextPage == null) {
+          break;
+        }
+        ConnectorMetrics.setGauge(
+            metricPrefix + ".queueDepth",
+            fetchWindow.stream().filter(fetch -> fetch.future.isDone()).count()
+                + (nextPage.future.isDone() ? 1 : 0));
+
+        long waitStart = System.nanoTime();
+        Set<IdentityModel> pageOfIdentityResults;
+        try {
+          pageOfIdentityResults =
+              deadline == null
+                  ? nextPage.future.get()
+                  : nextPage.future.get(deadline.getRemainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw new ConnectorException("Interrupted while executing importAll page thread", ie);
+        } catch (TimeoutException te) {
+          nextPage.future.cancel(true);
+          throw new OperationTimeoutException(
+              "Operation deadline passed while awaiting import page at offset "
+                  + nextPage.paginator.getCurrentOffset(),
+              te);
+        } catch (ExecutionException ee) {
+          if (ee.getCause() instanceof OperationTimeoutException) {
+            throw (OperationTimeoutException) ee.getCause();
+          }
           throw new ConnectorException("Error occurred while executing importAll page thread", ee);
-        } catch (CancellationException cancelled) {
-          Logger.warn(
-              ImportAllExecutor.class,
-              "Cancellation exception occurred while executing completable");
         }
+        long handlerStart = System.nanoTime();
+        // Time the handler waited on the fetchers, and the time the fetched page waited on the
+        // handler (backpressure on the fetchers)
+        handlerStallNanos += handlerStart - waitStart;
+        fetcherStallNanos += Math.max(0L, waitStart - nextPage.completedNanos);
+
+        processImportedPage(
+            executor,
+            pageOfIdentityResults,
+            nextPage.paginator,
+            collector,
+            resultsHandler,
+            prefetchData);
+        pagesHandled++;
+        lastPageFull =
+            pageOfIdentityResults.size() >= pageSize
+                && !BooleanUtils.isTrue(nextPage.paginator.getNoMoreResults());
+        // Once we see the API return number of results smaller than the page size or 0, we know
+        // that import is complete
+        if (plannedTotal == null && !lastPageFull) {
+          importComplete = true;
+        }
+        if (collector.isComplete()) {
+          importComplete = true;
+        }
+        Logger.trace(
+            ImportAllExecutor.class,
+            String.format(
+                "Imported %d identities at %d",
+                pageOfIdentityResults.size(), System.currentTimeMillis()));
       }
+    } finally {
+      // Pages requested beyond the end of the import are no longer needed
+      fetchWindow.forEach(fetch -> fetch.future.cancel(true));
+      fetcherPool.shutdownNow();
+      ConnectorMetrics.setGauge(metricPrefix + ".queueDepth", 0L);
+      ConnectorMetrics.add(
+          metricPrefix + ".handlerStallMillis", TimeUnit.NANOSECONDS.toMillis(handlerStallNanos));
+      ConnectorMetrics.add(
+          metricPrefix + ".fetcherStallMillis", TimeUnit.NANOSECONDS.toMillis(fetcherStallNanos));
+      Logger.info(
+          ImportAllExecutor.class,
+          String.format(
+              "Pipelined import of %d pages using %d fetcher thread(s) and %d fetch-ahead pages; "
+                  + "handler waited %d ms for pages, fetched pages waited %d ms for handler",
+              pagesHandled,
+              throttle,
+              fetchAheadPages,
+              TimeUnit.NANOSECONDS.toMillis(handlerStallNanos),
+              TimeUnit.NANOSECONDS.toMillis(fetcherStallNanos)));
     }
-    return fullCollectedResults;
   }
 
-  private static CompletableFuture<Set<IdentityModel>> importSinglePageExecution(
-      SearchExecutor executor,
-      ResultsPaginator resultsPaginator,
-      Map<String, Object> prefetchData) {
-    CompletableFuture<Set<IdentityModel>> completableFuture = new CompletableFuture<>();
-    Executors.newCachedThreadPool()
-        .submit(
-            () -> importSinglePage(executor, resultsPaginator, prefetchData, completableFuture));
-    return completableFuture;
+  private static Integer getConfiguredFetchAheadPages(SearchExecutor executor) {
+    if (executor.getAdapter().getConfiguration() instanceof ResultsConfiguration) {
+      Integer fetchAhead =
+          ((ResultsConfiguration) executor.getAdapter().getConfiguration())
+              .getImportFetchAheadPages();
+      if (fetchAhead != null && fetchAhead > 0) {
+        return fetchAhead;
+      }
+    }
+    return null;
+  }
+
+  private static Integer getConfiguredFilterImportMaximumMatches(SearchExecutor executor) {
+    if (executor.getAdapter().getConfiguration() instanceof ResultsConfiguration) {
+      Integer maximum =
+          ((ResultsConfiguration) executor.getAdapter().getConfiguration())
+              .getFilterImportMaximumMatches();
+      if (maximum != null && maximum > 0) {
+        return maximum;
+      }
+    }
+    return null;
   }
 
-  private static void importSinglePage(
+  private static void processImportedPage(
       SearchExecutor executor,
+      Set<IdentityModel> pageOfIdentityResults,
       ResultsPaginator paginator,
-      Map<String, Object> prefetchData,
-      CompletableFuture<Set<IdentityModel>> completableFuture) {
-    Set<IdentityModel> resultPage =
-        executor
-            .getAdapter()
-            .getDriver()
-            .getAll(
-                executor.getAdapter().getIdentityModelClass(),
-                new ResultsFilter(),
-                paginator,
-                null,
-                prefetchData);
-    completableFuture.complete(resultPage);
+      ImportCollector collector,
+      ResultsHandler resultsHandler,
+      Map<String, Object> prefetchData) {
+    collector.record(pageOfIdentityResults);
+    if (resultsHandler != null) {
+      Set<IdentityModel> pageToPass = collector.removeEmitted(pageOfIdentityResults);
+      SearchExecutor.processResultsPage(
+          executor.getAdapter(),
+          executor.getEnhancedAdapter(),
+          pageToPass,
+          resultsHandler,
+          prefetchData);
+      collector.commit(pageOfIdentityResults, paginator);
+    } else {
+      IdentityNameIndex.record(executor.getAdapter(), pageOfIdentityResults);
+      collector.collect(pageOfIdentityResults);
+    }
+  }
+
+  private static Set<IdentityModel> getSinglePage(
+      SearchExecutor executor, ResultsPaginator paginator, Map<String, Object> prefetchData) {
+    return executor
+        .getAdapter()
+        .getDriver()
+        .getAll(
+            executor.getAdapter().getIdentityModelClass(),
+            new ResultsFilter(),
+            paginator,
+            null,
+            prefetchData);
   }
 
   protected static Set<IdentityModel> executeMultiPageImportProcessNoMultiThread(
@@ -204,39 +553,350 @@ public class ImportAllExecutor {
       int pageSize,
       Map<String, Object> prefetchData,
       ResultsHandler resultsHandler) {
-    int currentOffset = 0;
+    ImportCollector collector = new ImportCollector(null, null, null);
+    executeMultiPageImportProcessNoMultiThread(
+        executor, pageSize, 0, prefetchData, resultsHandler, collector);
+    return collector.getResults();
+  }
+
+  private static void executeMultiPageImportProcessNoMultiThread(
+      SearchExecutor executor,
+      int pageSize,
+      int startOffset,
+      Map<String, Object> prefetchData,
+      ResultsHandler resultsHandler,
+      ImportCollector collector) {
+    int currentOffset = startOffset;
     boolean importComplete = false;
-    Set<IdentityModel> collectedResults = new LinkedHashSet<>();
+    AdaptivePageSizeController pageSizeController = createPageSizeController(executor, pageSize);
 
     while (!importComplete) {
-      ResultsPaginator currentPaginator = new ResultsPaginator(pageSize, currentOffset);
-      Set<IdentityModel> pageOfIdentityResults =
-          executor
-              .getAdapter()
-              .getDriver()
-              .getAll(
-                  executor.getAdapter().getIdentityModelClass(),
-                  new ResultsFilter(),
-                  currentPaginator,
-                  null,
-                  prefetchData);
-      if (currentPaginator.getNoMoreResults() || pageOfIdentityResults.size() < pageSize) {
+      if (!collector.isWithinBudget()) {
+        collector.stop();
+        break;
+      }
+      int currentPageSize =
+          pageSizeController == null ? pageSize : pageSizeController.getPageSize();
+      ResultsPaginator currentPaginator =
+          collector.createPaginator(currentPageSize, currentOffset);
+      long pageStart = System.currentTimeMillis();
+      Set<IdentityModel> pageOfIdentityResults;
+      try {
+        pageOfIdentityResults = getSinglePage(executor, currentPaginator, prefetchData);
+      } catch (ConnectorException pageFailure) {
+        if (pageSizeController != null
+            && pageSizeController.recordFailure(currentOffset, pageFailure)) {
+          Logger.warn(
+              ImportAllExecutor.class,
+              String.format(
+                  "Import page at offset %d failed, retrying with page size %d",
+                  currentOffset, pageSizeController.getPageSize()),
+              pageFailure);
+          continue;
+        }
+        throw pageFailure;
+      }
+      if (currentPaginator.getNoMoreResults() || pageOfIdentityResults.size() < currentPageSize) {
         importComplete = true;
       } else {
-        currentOffset += pageSize;
+        currentOffset += currentPageSize;
+      }
+      if (pageSizeController != null) {
+        pageSizeController.recordPage(
+            currentOffset,
+            pageOfIdentityResults.size(),
+            System.currentTimeMillis() - pageStart,
+            currentPaginator.getResponseBytes());
       }
 
-      if (resultsHandler != null) {
-        SearchExecutor.processResultsPage(
-            executor.getAdapter(),
-            executor.getEnhancedAdapter(),
-            pageOfIdentityResults,
-            resultsHandler,
-            prefetchData);
-      } else {
-        collectedResults.addAll(pageOfIdentityResults);
+      processImportedPage(
+          executor,
+          pageOfIdentityResults,
+          currentPaginator,
+          collector,
+          resultsHandler,
+          prefetchData);
+      if (collector.isComplete()) {
+        importComplete = true;
       }
     } // end while
-    return collectedResults;
+  }
+
+  private static boolean isAdaptivePageSizeConfigured(SearchExecutor executor) {
+    if (!(executor.getAdapter().getConfiguration() instanceof ResultsConfiguration)) {
+      return false;
+    }
+    ResultsConfiguration configuration =
+        (ResultsConfiguration) executor.getAdapter().getConfiguration();
+    return configuration.getImportBatchSizeMinimum() != null
+        && configuration.getImportBatchSizeMaximum() != null
+        && configuration.getImportBatchSizeMaximum() > configuration.getImportBatchSizeMinimum();
+  }
+
+  private static AdaptivePageSizeController createPageSizeController(
+      SearchExecutor executor, int pageSize) {
+    if (!(executor.getAdapter().getConfiguration() instanceof ResultsConfiguration)) {
+      return null;
+    }
+    Integer sourceMaximum = null;
+    if (executor.getAdapter() instanceof PaginationCapableSource) {
+      PaginationCapableSource paginationCheck = (PaginationCapableSource) executor.getAdapter();
+      if (paginationCheck.hasSearchResultsMaximum()) {
+        sourceMaximum = paginationCheck.getSearchResultsMaximum();
+      }
+    }
+    return AdaptivePageSizeController.fromConfiguration(
+        executor.getAdapter().getIdentityModelClass().getSimpleName(),
+        (ResultsConfiguration) executor.getAdapter().getConfiguration(),
+        pageSize,
+        sourceMaximum);
+  }
+
+  /** A single page requested from a fetcher thread, along with the time that it completed. */
+  private static class PageFetch {
+
+    private final ResultsPaginator paginator;
+    private final Future<Set<IdentityModel>> future;
+    private volatile long completedNanos;
+
+    PageFetch(
+        SearchExecutor executor,
+        ExecutorService fetcherPool,
+        ResultsPaginator paginator,
+        Map<String, Object> prefetchData,
+        OperationDeadline deadline) {
+      this.paginator = paginator;
+      Callable<Set<IdentityModel>> fetchTask = () -> fetch(executor, prefetchData);
+      this.future = fetcherPool.submit(deadline == null ? fetchTask : deadline.wrap(fetchTask));
+    }
+
+    private Set<IdentityModel> fetch(SearchExecutor executor, Map<String, Object> prefetchData)
+        throws InterruptedException {
+      AdaptiveConcurrencyLimiter limiter = executor.getImportPageLimiter();
+      if (limiter != null) {
+        limiter.acquire();
+      }
+      long requestStart = System.nanoTime();
+      try {
+        Set<IdentityModel> resultPage = getSinglePage(executor, paginator, prefetchData);
+        if (limiter != null) {
+          limiter.onSuccess(System.nanoTime() - requestStart);
+        }
+        return resultPage;
+      } catch (RuntimeException pageFailure) {
+        if (limiter != null) {
+          limiter.onDropped();
+        }
+        throw pageFailure;
+      } finally {
+        completedNanos = System.nanoTime();
+      }
+    }
+  }
+
+  /**
+   * Consumer receiving streamed results from the driver and passing them to the results handler
+   * one page at a time, so that no more than one page of results is held at once.
+   */
+  static class PageBuffer implements Consumer<IdentityModel> {
+    private final SearchExecutor executor;
+    private final int pageSize;
+    private final Map<String, Object> prefetchData;
+    private final ResultsHandler resultsHandler;
+    private final IdentitySnapshotExecutor.Recording recording;
+    private Set<IdentityModel> currentPage = new LinkedHashSet<>();
+    private boolean pageProcessed = false;
+
+    PageBuffer(
+        SearchExecutor executor,
+        int pageSize,
+        Map<String, Object> prefetchData,
+        ResultsHandler resultsHandler,
+        IdentitySnapshotExecutor.Recording recording) {
+      this.executor = executor;
+      this.pageSize = pageSize;
+      this.prefetchData = prefetchData;
+      this.resultsHandler = resultsHandler;
+      this.recording = recording;
+    }
+
+    @Override
+    public void accept(IdentityModel identity) {
+      currentPage.add(identity);
+      if (currentPage.size() >= pageSize) {
+        processCurrentPage();
+      }
+    }
+
+    /** Process the final partial page, or an empty page if no results were received at all. */
+    void finish() {
+      if (!currentPage.isEmpty() || !pageProcessed) {
+        processCurrentPage();
+      }
+    }
+
+    private void processCurrentPage() {
+      if (recording != null) {
+        recording.record(currentPage);
+      }
+      SearchExecutor.processResultsPage(
+          executor.getAdapter(),
+          executor.getEnhancedAdapter(),
+          currentPage,
+          resultsHandler,
+          prefetchData);
+      pageProcessed = true;
+      currentPage = new LinkedHashSet<>();
+    }
+  }
+
+  /**
+   * Retains the records of an import that is not passed to a ResultsHandler. If a filter is
+   * present, only matching records are kept as each page arrives, so that a filter scan holds just
+   * its matches rather than the entire source.
+   */
+  static class ImportCollector {
+    private final Predicate<IdentityModel> filter;
+    private final Integer matchLimit;
+    private final Integer retainedMaximum;
+    private final Set<IdentityModel> results = new LinkedHashSet<>();
+    private IdentitySnapshotExecutor.Recording recording;
+    private ImportCheckpoint checkpoint;
+    private SearchBudget budget;
+    private boolean resumed;
+    private int resumeOffset;
+    private String resumeToken;
+    private int nextOffset;
+    private String lastToken;
+    private long pageStartNanos;
+    private boolean stopped;
+    private long scannedCount = 0L;
+
+    ImportCollector(Predicate<IdentityModel> filter, Integer matchLimit, Integer retainedMaximum) {
+      this.filter = filter;
+      this.matchLimit = matchLimit;
+      this.retainedMaximum = retainedMaximum;
+    }
+
+    void setRecording(IdentitySnapshotExecutor.Recording recording) {
+      this.recording = recording;
+    }
+
+    void setCheckpoint(ImportCheckpoint checkpoint) {
+      this.checkpoint = checkpoint;
+    }
+
+    void setBudget(SearchBudget budget) {
+      this.budget = budget;
+      pageStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Continue an import that previously stopped at the given position, from a checkpoint or a
+     * resume cookie.
+     *
+     * @param offset Offset of the next page.
+     * @param pageToken Token reported with the last page passed, or null.
+     */
+    void setResume(int offset, String pageToken) {
+      resumed = true;
+      resumeOffset = offset;
+      resumeToken = pageToken;
+      nextOffset = offset;
+      lastToken = pageToken;
+    }
+
+    boolean isResumed() {
+      return resumed;
+    }
+
+    /**
+     * Create the paginator requesting a page of the import. The page at which an import resumes
+     * receives the page token reported with the last page passed before.
+     */
+    ResultsPaginator createPaginator(int pageSize, int offset) {
+      ResultsPaginator paginator = new ResultsPaginator(pageSize, offset);
+      if (resumed && offset == resumeOffset) {
+        paginator.setToken(resumeToken);
+      }
+      return paginator;
+    }
+
+    boolean isWithinBudget() {
+      return budget == null || budget.allowsRequest();
+    }
+
+    void stop() {
+      stopped = true;
+    }
+
+    boolean isStopped() {
+      return stopped;
+    }
+
+    int getNextOffset() {
+      return nextOffset;
+    }
+
+    String getResumeCookie() {
+      return SearchBudget.getImportCookie(nextOffset, lastToken);
+    }
+
+    Set<IdentityModel> removeEmitted(Set<IdentityModel> pageOfIdentityResults) {
+      return checkpoint == null
+          ? pageOfIdentityResults
+          : checkpoint.removeEmitted(pageOfIdentityResults);
+    }
+
+    void commit(Set<IdentityModel> page, ResultsPaginator paginator) {
+      nextOffset = paginator.getCurrentOffset() + paginator.getPageSize();
+      lastToken = paginator.getTokenAsString();
+      if (checkpoint != null) {
+        checkpoint.commit(page, nextOffset, lastToken);
+      }
+      if (budget != null) {
+        long pageEndNanos = System.nanoTime();
+        budget.recordRequest(pageEndNanos - pageStartNanos);
+        pageStartNanos = pageEndNanos;
+      }
+    }
+
+    void record(Set<IdentityModel> pageOfIdentityResults) {
+      if (recording != null) {
+        recording.record(pageOfIdentityResults);
+      }
+    }
+
+    void collect(Set<IdentityModel> pageOfIdentityResults) {
+      for (IdentityModel identity : pageOfIdentityResults) {
+        if (isComplete()) {
+          return;
+        }
+        scannedCount++;
+        if (filter == null || filter.test(identity)) {
+          results.add(identity);
+          if (retainedMaximum != null && results.size() > retainedMaximum) {
+            throw new ConnectorException(
+                String.format(
+                    "Filter matched more than the maximum of %d records that may be retained "
+                        + "during a full import; narrow the filter or raise "
+                        + "filterImportMaximumMatches",
+                    retainedMaximum));
+          }
+        }
+      }
+    }
+
+    boolean isComplete() {
+      return matchLimit != null && results.size() >= matchLimit;
+    }
+
+    long getScannedCount() {
+      return scannedCount;
+    }
+
+    Set<IdentityModel> getResults() {
+      return results;
+    }
   }
 }
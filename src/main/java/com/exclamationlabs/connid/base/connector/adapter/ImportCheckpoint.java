@@ -0,0 +1,290 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import com.exclamationlabs.connid.base.connector.configuration.basetypes.ResultsConfiguration;
+import com.exclamationlabs.connid.base.connector.logging.Logger;
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.StringUtils;
+import org.identityconnectors.framework.common.objects.OperationOptions;
+
+/**
+ * Position of a full import requested by Midpoint, committed to a local state file after each page
+ * has been passed to the results handler, so that an import which fails part of the way through
+ * resumes from the last committed page when it is requested again instead of starting over.
+ *
+ * <p>The checkpoint holds the offset of the next page, the page token reported by the
+ * driver/invocator with the last committed page, the number of records passed and the ids of the
+ * last committed page (the resume boundary), so that records which moved from that page into the
+ * resumed page are not passed twice. The boundary ids are only held until the resumed import
+ * commits its first page, so memory and checkpoint size are bounded by the page size. A checkpoint
+ * is only resumed by an import of the same object class and destination system instance requesting
+ * the same attributes, within importCheckpointTtlSeconds; it is removed once the import completes.
+ * Checkpoints are only used for adapters implementing PaginationCapableSource, and are enabled by
+ * importCheckpointDirectory.
+ */
+public class ImportCheckpoint {
+
+  public static final int DEFAULT_CHECKPOINT_TTL_SECONDS = 86400;
+
+  private static final String CHECKPOINT_FILE_SUFFIX = ".checkpoint";
+  private static final String OFFSET_PROPERTY = "offset";
+  private static final String TOKEN_PROPERTY = "token";
+  private static final String EMITTED_COUNT_PROPERTY = "emittedCount";
+  private static final String CONTEXT_PROPERTY = "context";
+  private static final String BOUNDARY_ID_PROPERTY_PREFIX = "boundaryId.";
+
+  private final Path checkpointFile;
+  private final String context;
+  // Ids of the last page committed by the interrupted import, until the resumed import moves past
+  private final Set<String> boundaryIds = new HashSet<>();
+  private final boolean resumed;
+  private final int resumeOffset;
+  private final String resumeToken;
+  private int offset;
+  private String token;
+  private long emittedCount;
+  private boolean failed;
+
+  private ImportCheckpoint(Path directory, String key, String context, Properties previous) {
+    checkpointFile = directory.resolve(key + CHECKPOINT_FILE_SUFFIX);
+    this.context = context;
+    resumed = previous != null;
+    if (resumed) {
+      offset = Integer.parseInt(previous.getProperty(OFFSET_PROPERTY));
+      token = previous.getProperty(TOKEN_PROPERTY);
+      emittedCount = Long.parseLong(previous.getProperty(EMITTED_COUNT_PROPERTY));
+      for (String name : previous.stringPropertyNames()) {
+        if (name.startsWith(BOUNDARY_ID_PROPERTY_PREFIX)) {
+          boundaryIds.add(previous.getProperty(name));
+        }
+      }
+    }
+    resumeOffset = offset;
+    resumeToken = token;
+  }
+
+  /**
+   * Obtain the checkpoint for a full import of the adapter's object class, resuming the one left
+   * by a previous import of the same context if it is still fresh.
+   *
+   * @param adapter Adapter for the object class being imported.
+   * @param options Options of the import request.
+   * @return Checkpoint, or null if importCheckpointDirectory is not configured.
+   */
+  static ImportCheckpoint open(BaseAdapter<?, ?> adapter, OperationOptions options) {
+    if (!(adapter.getConfiguration() instanceof ResultsConfiguration)) {
+      return null;
+    }
+    ResultsConfiguration configuration = (ResultsConfiguration) adapter.getConfiguration();
+    if (StringUtils.isBlank(configuration.getImportCheckpointDirectory())) {
+      return null;
+    }
+    Path directory = Paths.get(configuration.getImportCheckpointDirectory());
+    String key = IdentitySnapshotExecutor.getSnapshotKey(adapter);
+    String context = getContext(adapter, options);
+    int ttlSeconds =
+        configuration.getImportCheckpointTtlSeconds() == null
+            ? DEFAULT_CHECKPOINT_TTL_SECONDS
+            : configuration.getImportCheckpointTtlSeconds();
+
+    Properties previous = readCheckpoint(directory.resolve(key + CHECKPOINT_FILE_SUFFIX));
+    if (previous != null
+        && (!context.equals(previous.getProperty(CONTEXT_PROPERTY))
+            || isExpired(directory.resolve(key + CHECKPOINT_FILE_SUFFIX), ttlSeconds))) {
+      previous = null;
+    }
+    ImportCheckpoint checkpoint = new ImportCheckpoint(directory, key, context, previous);
+    if (checkpoint.resumed) {
+      Logger.info(
+          ImportCheckpoint.class,
+          String.format(
+              "Resuming import of %s at offset %d, %d records already passed",
+              adapter.getIdentityModelClass().getSimpleName(),
+              checkpoint.resumeOffset,
+              checkpoint.emittedCount));
+    } else {
+      checkpoint.delete();
+    }
+    return checkpoint;
+  }
+
+  boolean isResumed() {
+    return resumed;
+  }
+
+  /**
+   * Offset of the page at which a resumed import continues.
+   *
+   * @return Offset of the page following the last committed page, or 0 if not resumed.
+   */
+  int getResumeOffset() {
+    return resumeOffset;
+  }
+
+  /**
+   * Page token to be passed to the driver/invocator with the page at which a resumed import
+   * continues.
+   *
+   * @return Token reported with the last committed page, or null.
+   */
+  String getResumeToken() {
+    return resumeToken;
+  }
+
+  long getEmittedCount() {
+    return emittedCount;
+  }
+
+  /**
+   * Remove the records of the resume boundary page, already passed to the results handler by the
+   * interrupted import.
+   *
+   * @param page Page of records received from the driver/invocator.
+   * @return Records not yet passed, in page order.
+   */
+  Set<IdentityModel> removeEmitted(Set<IdentityModel> page) {
+    if (boundaryIds.isEmpty()) {
+      return page;
+    }
+    Set<IdentityModel> remaining = new LinkedHashSet<>();
+    for (IdentityModel identity : page) {
+      if (!boundaryIds.contains(identity.getIdentityIdValue())) {
+        remaining.add(identity);
+      }
+    }
+    return remaining;
+  }
+
+  /**
+   * Commit a page that has been passed to the results handler, making it the resume boundary.
+   * Failure to write the checkpoint does not fail the import; checkpointing stops for the rest of
+   * the import.
+   *
+   * @param page Records received with the page, including those removed by removeEmitted().
+   * @param nextOffset Offset of the page following the committed page.
+   * @param pageToken Token reported by the driver/invocator with the committed page, or null.
+   */
+  void commit(Set<IdentityModel> page, int nextOffset, String pageToken) {
+    offset = nextOffset;
+    token = pageToken;
+    for (IdentityModel identity : page) {
+      if (!boundaryIds.contains(identity.getIdentityIdValue())) {
+        emittedCount++;
+      }
+    }
+    // The import has moved past the boundary of the interrupted import
+    boundaryIds.clear();
+    if (failed) {
+      return;
+    }
+    Properties properties = new Properties();
+    properties.setProperty(OFFSET_PROPERTY, Integer.toString(offset));
+    properties.setProperty(EMITTED_COUNT_PROPERTY, Long.toString(emittedCount));
+    properties.setProperty(CONTEXT_PROPERTY, context);
+    if (token != null) {
+      properties.setProperty(TOKEN_PROPERTY, token);
+    }
+    int index = 0;
+    for (IdentityModel identity : page) {
+      properties.setProperty(BOUNDARY_ID_PROPERTY_PREFIX + index++, identity.getIdentityIdValue());
+    }
+    try {
+      Files.createDirectories(checkpointFile.getParent());
+      Path temporaryFile =
+          Files.createTempFile(
+              checkpointFile.getParent(), checkpointFile.getFileName().toString(), ".tmp");
+      try {
+        try (OutputStream output = Files.newOutputStream(temporaryFile)) {
+          properties.store(output, null);
+        }
+        Files.move(
+            temporaryFile,
+            checkpointFile,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temporaryFile);
+      }
+    } catch (IOException writeFailure) {
+      failed = true;
+      Logger.warn(
+          ImportCheckpoint.class,
+          "Unable to write import checkpoint " + checkpointFile + ", checkpointing stopped",
+          writeFailure);
+    }
+  }
+
+  /**
+   * Remove the checkpoint once the import has completed, or has stopped with a resume cookie
+   * holding its position.
+   */
+  void complete() {
+    delete();
+  }
+
+  private void delete() {
+    try {
+      Files.deleteIfExists(checkpointFile);
+    } catch (IOException deleteFailure) {
+      Logger.warn(
+          ImportCheckpoint.class,
+          "Unable to delete import checkpoint " + checkpointFile,
+          deleteFailure);
+    }
+  }
+
+  private static Properties readCheckpoint(Path file) {
+    if (!Files.exists(file)) {
+      return null;
+    }
+    Properties properties = new Properties();
+    try (InputStream input = Files.newInputStream(file)) {
+      properties.load(input);
+      Integer.parseInt(properties.getProperty(OFFSET_PROPERTY));
+      Long.parseLong(properties.getProperty(EMITTED_COUNT_PROPERTY));
+      return properties;
+    } catch (IOException | NumberFormatException invalidCheckpoint) {
+      Logger.warn(
+          ImportCheckpoint.class,
+          "Ignoring unreadable import checkpoint " + file,
+          invalidCheckpoint);
+      return null;
+    }
+  }
+
+  private static boolean isExpired(Path file, int ttlSeconds) {
+    try {
+      return System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis()
+          > TimeUnit.SECONDS.toMillis(ttlSeconds);
+    } catch (IOException unreadable) {
+      return true;
+    }
+  }
+
+  private static String getContext(BaseAdapter<?, ?> adapter, OperationOptions options) {
+    Set<String> attributes = SearchExecutor.getRequestedAttributes(adapter, options);
+    return attributes == null ? "*" : String.join(",", new TreeSet<>(attributes));
+  }
+}
@@ -0,0 +1,172 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import com.exclamationlabs.connid.base.connector.configuration.basetypes.ResultsConfiguration;
+import com.exclamationlabs.connid.base.connector.driver.OperationDeadline;
+import com.exclamationlabs.connid.base.connector.metrics.ConnectorMetrics;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.exceptions.OperationTimeoutException;
+
+/**
+ * In-memory cache of the prefetch data returned by the driver/invocator getPrefetch() for each
+ * adapter object class, kept for prefetchCacheTtlSeconds. Invocators commonly load reference data
+ * (such as org units, locations or pay groups) in getPrefetch with several API requests, and
+ * getPrefetch is otherwise invoked for every search, getObject and filter lookup. Concurrent
+ * operations finding no current entry share a single getPrefetch invocation.
+ *
+ * <p>Each caller receives its own copy of the cached Map, but the values held in it are shared, so
+ * invocators must not modify prefetch data values once getPrefetch has returned them. Cached data
+ * is discarded when a record is created, updated or deleted through any adapter of the same
+ * configuration, since one object class's prefetch data is often another object class's records.
+ * Drivers may also discard it explicitly with invalidateAll().
+ */
+public class PrefetchCache {
+
+  // Prefetch data of each adapter object class, by the same key used for import snapshots
+  private static final Map<String, CachedPrefetch> CACHES = new ConcurrentHashMap<>();
+
+  private PrefetchCache() {}
+
+  /**
+   * Obtain the prefetch data for the adapter's object class, from the cache if enabled and current.
+   *
+   * @param adapter Adapter pertaining to the current operation.
+   * @return New map of prefetch data that the caller may modify (even if the driver returned an
+   *     immutable map), or null if the driver returned none.
+   */
+  static Map<String, Object> getPrefetch(BaseAdapter<?, ?> adapter) {
+    Integer ttlSeconds = getTtlSeconds(adapter);
+    if (ttlSeconds == null) {
+      return copy(adapter.getDriver().getPrefetch(adapter.getIdentityModelClass()));
+    }
+    String cacheKey = IdentitySnapshotExecutor.getSnapshotKey(adapter);
+    while (true) {
+      CachedPrefetch cached = CACHES.get(cacheKey);
+      if (cached != null && !cached.isExpired()) {
+        ConnectorMetrics.increment(getMetricPrefix(adapter) + ".hit");
+        return copy(cached.await());
+      }
+      CachedPrefetch loading = new CachedPrefetch(adapter.getInstanceId());
+      boolean claimed =
+          cached == null
+              ? CACHES.putIfAbsent(cacheKey, loading) == null
+              : CACHES.replace(cacheKey, cached, loading);
+      if (claimed) {
+        ConnectorMetrics.increment(getMetricPrefix(adapter) + ".miss");
+        Map<String, Object> prefetchData;
+        try {
+          prefetchData = adapter.getDriver().getPrefetch(adapter.getIdentityModelClass());
+        } catch (Throwable loadFailure) {
+          // Operations already awaiting this load fail with it; later ones retry. Errors are
+          // caught too, since an entry left loading would block every later operation
+          CACHES.remove(cacheKey, loading);
+          loading.future.completeExceptionally(loadFailure);
+          throw loadFailure;
+        }
+        loading.complete(prefetchData, TimeUnit.SECONDS.toNanos(ttlSeconds));
+        return copy(prefetchData);
+      }
+      // Another operation began loading the prefetch data first
+    }
+  }
+
+  /**
+   * Discard the cached prefetch data of every object class of the adapter's destination system
+   * instance, leaving that of other resources sharing the JVM in place.
+   *
+   * @param adapter Adapter through which a record was created, updated or deleted.
+   */
+  static void invalidate(BaseAdapter<?, ?> adapter) {
+    if (CACHES.isEmpty()) {
+      return;
+    }
+    String instanceId = adapter.getInstanceId();
+    CACHES.values().removeIf(cached -> cached.instanceId.equals(instanceId));
+  }
+
+  /**
+   * Discard all cached prefetch data, for instance after a driver learns that reference data
+   * changed on the destination system.
+   */
+  public static void invalidateAll() {
+    CACHES.clear();
+  }
+
+  private static Map<String, Object> copy(Map<String, Object> prefetchData) {
+    return prefetchData == null ? null : new LinkedHashMap<>(prefetchData);
+  }
+
+  private static Integer getTtlSeconds(BaseAdapter<?, ?> adapter) {
+    if (!(adapter.getConfiguration() instanceof ResultsConfiguration)) {
+      return null;
+    }
+    Integer ttl = ((ResultsConfiguration) adapter.getConfiguration()).getPrefetchCacheTtlSeconds();
+    return ttl == null || ttl <= 0 ? null : ttl;
+  }
+
+  private static String getMetricPrefix(BaseAdapter<?, ?> adapter) {
+    return adapter.getIdentityModelClass().getSimpleName() + ".prefetchCache";
+  }
+
+  private static class CachedPrefetch {
+    private final String instanceId;
+    private final CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+    // Entries being loaded do not expire
+    private volatile long expiresNanos;
+    private volatile boolean loaded;
+
+    CachedPrefetch(String instanceId) {
+      this.instanceId = instanceId;
+    }
+
+    void complete(Map<String, Object> prefetchData, long ttlNanos) {
+      expiresNanos = System.nanoTime() + ttlNanos;
+      loaded = true;
+      future.complete(prefetchData);
+    }
+
+    boolean isExpired() {
+      return loaded && System.nanoTime() - expiresNanos >= 0;
+    }
+
+    Map<String, Object> await() {
+      OperationDeadline deadline = OperationDeadline.current();
+      try {
+        return deadline == null
+            ? future.get()
+            : future.get(deadline.getRemainingMillis(), TimeUnit.MILLISECONDS);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new ConnectorException("Interrupted while awaiting prefetch data", ie);
+      } catch (TimeoutException te) {
+        throw new OperationTimeoutException("Operation deadline passed awaiting prefetch data");
+      } catch (ExecutionException ee) {
+        if (ee.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) ee.getCause();
+        }
+        if (ee.getCause() instanceof Error) {
+          throw (Error) ee.getCause();
+        }
+        throw new ConnectorException("Prefetch data load failed", ee.getCause());
+      }
+    }
+  }
+}
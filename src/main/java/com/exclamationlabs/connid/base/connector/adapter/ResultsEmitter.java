@@ -0,0 +1,241 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import com.exclamationlabs.connid.base.connector.driver.OperationDeadline;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ResultsHandler;
+
+/**
+ * Passes results produced by many worker threads to a ConnId ResultsHandler, which must only be
+ * invoked from a single thread. Workers publish() each result as it completes into a bounded,
+ * lock-free multi-producer/single-consumer ring buffer, while the thread that owns the
+ * ResultsHandler continuously drains it, converting each result to a ConnectorObject. Since the
+ * conversion runs on the draining thread, it need not be thread-safe (for instance, an adapter's
+ * constructAttributes).
+ *
+ * <p>The ring buffer follows Dmitry Vyukov's bounded queue design: each slot carries a sequence
+ * number, producers claim a slot with a single compare-and-set on the shared tail and then publish
+ * by advancing the slot sequence. When the buffer is full, producers wait (without locking) until
+ * the consumer frees a slot, so memory use is bounded by the buffer capacity.
+ *
+ * <p>If ordered, results are passed to the handler in the order of the sequence numbers given to
+ * publish() (0, 1, 2, ...), holding back results that complete early. Otherwise they are passed in
+ * completion order. To keep the results held back within the buffer capacity as well, publishing
+ * a result that is a full capacity ahead of the next result to be passed waits until that result
+ * has been passed; producers must therefore begin their work in sequence order (for example, by
+ * submitting it to an executor in that order).
+ */
+public class ResultsEmitter<T> {
+
+  private static final int SPINS_BEFORE_PARK = 100;
+  private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final int mask;
+  private final AtomicReferenceArray<Emission<T>> slots;
+  private final AtomicLongArray slotSequences;
+  private final AtomicLong tail = new AtomicLong();
+  private final boolean ordered;
+  private final Function<? super T, ConnectorObject> converter;
+
+  // Only accessed by the consuming thread
+  private long head;
+
+  // Sequence of the next result to be passed in order, written by the consuming thread
+  private volatile long nextOrderedSequence;
+
+  private volatile boolean closed;
+
+  /**
+   * Create a new emitter.
+   *
+   * @param minimumCapacity Minimum number of results that may be buffered; rounded up to a power of
+   *     two.
+   * @param ordered If true, results are passed to the handler in order of sequence number.
+   * @param converter Converts each published result to the ConnectorObject passed to the handler,
+   *     or to null if it should not be passed; invoked on the draining thread.
+   */
+  public ResultsEmitter(
+      int minimumCapacity, boolean ordered, Function<? super T, ConnectorObject> converter) {
+    int capacity = Integer.highestOneBit(Math.max(2, minimumCapacity) - 1) << 1;
+    this.mask = capacity - 1;
+    this.slots = new AtomicReferenceArray<>(capacity);
+    this.slotSequences = new AtomicLongArray(capacity);
+    for (int slot = 0; slot < capacity; slot++) {
+      slotSequences.set(slot, slot);
+    }
+    this.ordered = ordered;
+    this.converter = converter;
+  }
+
+  public int getCapacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Publish a result from any thread, waiting while the buffer is full (or, if ordered, while the
+   * result is a full buffer capacity ahead of the next result to be passed). Each sequence number
+   * from 0 up to the number of results expected by drainTo() must be published exactly once, even
+   * if producing the result failed.
+   *
+   * @param sequence Sequence number of the result.
+   * @param result Result to be converted and passed to the handler, or null if this sequence
+   *     produced no result (for example, the identity could not be retrieved).
+   * @return false if the emitter was closed and the result was discarded.
+   */
+  public boolean publish(long sequence, T result) {
+    Emission<T> emission = new Emission<>(sequence, result);
+    int idleCount = 0;
+    while (ordered && !closed && sequence - nextOrderedSequence > mask) {
+      idleCount = idle(idleCount);
+    }
+    while (!closed) {
+      long position = tail.get();
+      int slot = (int) (position & mask);
+      long difference = slotSequences.get(slot) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          slots.lazySet(slot, emission);
+          slotSequences.set(slot, position + 1);
+          return true;
+        }
+      } else if (difference < 0) {
+        // Buffer is full, wait for the consumer
+        idleCount = idle(idleCount);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Drain published results on the calling thread, passing each to the handler, until the
+   * expected number of results have been published or the handler asks to stop.
+   *
+   * @param resultsHandler Handler receiving the results.
+   * @param expectedCount Number of sequence numbers that will be published.
+   * @return Number of results passed to the handler.
+   */
+  public int drainTo(ResultsHandler resultsHandler, long expectedCount) {
+    return drainTo(resultsHandler, expectedCount, null);
+  }
+
+  /**
+   * Drain published results as drainTo(ResultsHandler, long) does, giving up once the deadline
+   * passes.
+   *
+   * @param resultsHandler Handler receiving the results.
+   * @param expectedCount Number of sequence numbers that will be published.
+   * @param deadline Deadline of the operation, or null.
+   * @return Number of results passed to the handler.
+   * @throws org.identityconnectors.framework.common.exceptions.OperationTimeoutException If the
+   *     deadline passes before the expected number of results have been published.
+   */
+  public int drainTo(
+      ResultsHandler resultsHandler, long expectedCount, OperationDeadline deadline) {
+    Map<Long, T> heldBack = new HashMap<>();
+    long nextSequence = 0;
+    long received = 0;
+    int passCount = 0;
+    int idleCount = 0;
+    try {
+      while (received < expectedCount) {
+        Emission<T> emission = poll();
+        if (emission == null) {
+          if (deadline != null) {
+            deadline.check("all results were received");
+          }
+          idleCount = idle(idleCount);
+          continue;
+        }
+        idleCount = 0;
+        received++;
+        if (!ordered) {
+          ConnectorObject next = convert(emission.result);
+          if (next != null) {
+            passCount++;
+            if (!resultsHandler.handle(next)) {
+              return passCount;
+            }
+          }
+          continue;
+        }
+        heldBack.put(emission.sequence, emission.result);
+        while (heldBack.containsKey(nextSequence)) {
+          ConnectorObject next = convert(heldBack.remove(nextSequence++));
+          nextOrderedSequence = nextSequence;
+          if (next != null) {
+            passCount++;
+            if (!resultsHandler.handle(next)) {
+              return passCount;
+            }
+          }
+        }
+      }
+      return passCount;
+    } finally {
+      close();
+    }
+  }
+
+  /** Close the emitter, causing waiting and future publish() calls to discard their results. */
+  public void close() {
+    closed = true;
+  }
+
+  private ConnectorObject convert(T result) {
+    return result == null ? null : converter.apply(result);
+  }
+
+  private Emission<T> poll() {
+    int slot = (int) (head & mask);
+    if (slotSequences.get(slot) != head + 1) {
+      return null;
+    }
+    Emission<T> emission = slots.get(slot);
+    slots.lazySet(slot, null);
+    slotSequences.set(slot, head + mask + 1);
+    head++;
+    return emission;
+  }
+
+  private static int idle(int idleCount) {
+    if (idleCount < SPINS_BEFORE_PARK) {
+      Thread.onSpinWait();
+    } else {
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+    return idleCount + 1;
+  }
+
+  private static final class Emission<T> {
+    private final long sequence;
+    private final T result;
+
+    private Emission(long sequence, T result) {
+      this.sequence = sequence;
+      this.result = result;
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import com.exclamationlabs.connid.base.connector.configuration.basetypes.ResultsConfiguration;
+import com.exclamationlabs.connid.base.connector.util.OperationOptionsDataFinder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.identityconnectors.framework.common.objects.OperationOptions;
+
+/**
+ * Time budget of a single search, taken from the SEARCH_TIME_BUDGET_MILLIS operation option or
+ * else the searchTimeBudgetMillis configuration value. Executors ask the budget before issuing each
+ * further request to the source API; once the time remaining is shorter than the longest request
+ * (or import page) observed so far, they stop, pass what has been retrieved to the results
+ * handler and return a SearchResult whose cookie resumes the search where it stopped.
+ *
+ * <p>Cookies are "import:{offset}[:{page token}]" for full imports, where offset is the 0-based
+ * offset of the next import page, and "offset:{offset}" for paged searches, where offset is the
+ * ConnId (1-based) offset of the first record not yet passed. The first request of a search is
+ * always issued, so that each resumed search makes progress. Streamed imports (adapters that are
+ * not PaginationCapableSource) are not budgeted, since a stream cannot be resumed part way.
+ */
+public class SearchBudget {
+
+  static final String IMPORT_COOKIE_PREFIX = "import:";
+  static final String OFFSET_COOKIE_PREFIX = "offset:";
+
+  private final long deadlineNanos;
+  private long longestRequestNanos;
+  private long requestCount;
+
+  private SearchBudget(long budgetMillis) {
+    deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+  }
+
+  /**
+   * Start the budget of a search.
+   *
+   * @param adapter Adapter pertaining to the search.
+   * @param options OperationOptions received for the search.
+   * @return Budget, or null if the search has no time budget.
+   */
+  static SearchBudget start(BaseAdapter<?, ?> adapter, OperationOptions options) {
+    Long budgetMillis =
+        options == null
+            ? null
+            : OperationOptionsDataFinder.getSearchTimeBudgetMillis(options.getOptions());
+    if (budgetMillis == null && adapter.getConfiguration() instanceof ResultsConfiguration) {
+      Integer configured =
+          ((ResultsConfiguration) adapter.getConfiguration()).getSearchTimeBudgetMillis();
+      budgetMillis = configured == null ? null : configured.longValue();
+    }
+    return budgetMillis == null || budgetMillis <= 0 ? null : new SearchBudget(budgetMillis);
+  }
+
+  /**
+   * Determine whether another request may be issued within the budget.
+   *
+   * @return true if no request has been recorded yet, or the longest request recorded would still
+   *     complete before the deadline.
+   */
+  boolean allowsRequest() {
+    return requestCount == 0 || System.nanoTime() + longestRequestNanos < deadlineNanos;
+  }
+
+  /**
+   * Record the duration of a completed request, or of a completed import page.
+   *
+   * @param durationNanos Duration in nanoseconds.
+   */
+  void recordRequest(long durationNanos) {
+    requestCount++;
+    longestRequestNanos = Math.max(longestRequestNanos, durationNanos);
+  }
+
+  static String getImportCookie(int offset, String pageToken) {
+    return IMPORT_COOKIE_PREFIX
+        + offset
+        + (pageToken == null
+            ? ""
+            : ":"
+                + Base64.getUrlEncoder()
+                    .withoutPadding()
+                    .encodeToString(pageToken.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  static String getOffsetCookie(int offset) {
+    return OFFSET_COOKIE_PREFIX + offset;
+  }
+
+  /**
+   * Read the position held by a cookie returned for a full import.
+   *
+   * @param cookie Paged results cookie received from Midpoint, or null.
+   * @return Import position, or null if the cookie was not issued by getImportCookie().
+   */
+  static ImportPosition readImportCookie(String cookie) {
+    if (cookie == null || !cookie.startsWith(IMPORT_COOKIE_PREFIX)) {
+      return null;
+    }
+    String[] fields = cookie.substring(IMPORT_COOKIE_PREFIX.length()).split(":", 2);
+    try {
+      int offset = Integer.parseInt(fields[0]);
+      String pageToken =
+          fields.length < 2
+              ? null
+              : new String(Base64.getUrlDecoder().decode(fields[1]), StandardCharsets.UTF_8);
+      return offset < 0 ? null : new ImportPosition(offset, pageToken);
+    } catch (IllegalArgumentException invalidCookie) {
+      return null;
+    }
+  }
+
+  /**
+   * Read the ConnId offset held by a cookie returned for a paged search.
+   *
+   * @param cookie Paged results cookie received from Midpoint, or null.
+   * @return ConnId offset, or null if the cookie was not issued by getOffsetCookie().
+   */
+  static Integer readOffsetCookie(String cookie) {
+    if (cookie == null || !cookie.startsWith(OFFSET_COOKIE_PREFIX)) {
+      return null;
+    }
+    try {
+      int offset = Integer.parseInt(cookie.substring(OFFSET_COOKIE_PREFIX.length()));
+      return offset < 1 ? null : offset;
+    } catch (NumberFormatException invalidCookie) {
+      return null;
+    }
+  }
+
+  /** Position at which a full import stopped by its budget resumes. */
+  static class ImportPosition {
+    final int offset;
+    final String pageToken;
+
+    ImportPosition(int offset, String pageToken) {
+      this.offset = offset;
+      this.pageToken = pageToken;
+    }
+  }
+}
@@ -16,6 +16,10 @@
 
 package com.exclamationlabs.connid.base.connector.adapter;
 
+import com.exclamationlabs.connid.base.connector.configuration.basetypes.ResultsConfiguration;
+import com.exclamationlabs.connid.base.connector.driver.CachingDriver;
+import com.exclamationlabs.connid.base.connector.driver.FetchContext;
+import com.exclamationlabs.connid.base.connector.driver.OperationDeadline;
 import com.exclamationlabs.connid.base.connector.filter.FilterType;
 import com.exclamationlabs.connid.base.connector.filter.FilterValidator;
 import com.exclamationlabs.connid.base.connector.logging.Logger;
@@ -25,6 +29,7 @@ import com.exclamationlabs.connid.base.connector.results.ResultsPaginator;
 import com.exclamationlabs.connid.base.connector.util.OperationOptionsDataFinder;
 import java.util.*;
 import java.util.concurrent.*;
+import org.apache.commons.lang3.BooleanUtils;
 import org.identityconnectors.framework.common.exceptions.ConnectorException;
 import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
 import org.identityconnectors.framework.common.objects.*;
@@ -38,11 +43,16 @@ import org.identityconnectors.framework.common.objects.filter.*;
 public class SearchExecutor {
 
   public static final int DEFAULT_FILTER_PAGE_SIZE = 20;
+  public static final int DEFAULT_DETAIL_BATCH_SIZE = 50;
   public static final String PARTIAL_IDENTITY_KEY = "PARTIAL_IDENTITY";
+  public static final String ATTRIBUTES_TO_GET_KEY = "ATTRIBUTES_TO_GET";
 
   private final BaseAdapter<?, ?> adapter;
   private final EnhancedPaginationAndFiltering enhancedAdapter;
 
+  private AdaptiveConcurrencyLimiter subsequentRequestLimiter;
+  private AdaptiveConcurrencyLimiter importPageLimiter;
+
   public SearchExecutor(BaseAdapter<?, ?> adapterIn) {
     this.adapter = adapterIn;
     this.enhancedAdapter = (EnhancedPaginationAndFiltering) adapterIn;
@@ -63,6 +73,13 @@ public class SearchExecutor {
       Filter filter, ResultsHandler resultsHandler, OperationOptions options)
       throws InvalidAttributeValueException {
 
+    // A paged search stopped by its time budget resumes at the offset held by its cookie
+    Integer resumeOffset = SearchBudget.readOffsetCookie(options.getPagedResultsCookie());
+    if (resumeOffset != null
+        && OperationOptionsDataFinder.hasValidPagingOptions(options.getOptions())) {
+      options = new OperationOptionsBuilder(options).setPagedResultsOffset(resumeOffset).build();
+    }
+
     // Initial Filter Validation (if filter is not null):
     // Examine filter type: supported types: AndFilter, ContainsFilter and EqualsFilter.  Throw
     // error if
@@ -71,11 +88,11 @@ public class SearchExecutor {
     if (filter != null) {
       FilterValidator.validate(filter, adapter);
 
-      if (GetOneExecutor.byUID(this, filter, resultsHandler)) {
+      if (GetOneExecutor.byUID(this, filter, resultsHandler, options)) {
         return new SearchResult(); // Results information not meaningful for single item response
       }
 
-      if (GetOneExecutor.byName(this, filter, resultsHandler)) {
+      if (GetOneExecutor.byName(this, filter, resultsHandler, options)) {
         return new SearchResult(); // Results information not meaningful for single item response
       }
     }
@@ -103,9 +120,8 @@ public class SearchExecutor {
 
     // ImportAll execution
     if (filter == null && (!validPagingValuesSupplied)) {
-      if (ImportAllExecutor.execute(this, resultsHandler)) {
-        return new SearchResult(); // Search Results not relevant for importAll
-      }
+      // Search Results only relevant for importAll if stopped by the search time budget
+      return ImportAllExecutor.execute(this, resultsHandler, options);
     }
 
     // EqualsFilter handling for non UID/Name Attribute
@@ -138,37 +154,49 @@ public class SearchExecutor {
       ResultsHandler resultsHandler,
       OperationOptions options,
       FilterType filterType) {
-    Map<String, Object> prefetchData =
-        adapter.getDriver().getPrefetch(adapter.getIdentityModelClass());
+    Map<String, Object> prefetchData = getPrefetchData(adapter, options);
     ResultsPaginator resultsPaginator =
         OperationOptionsDataFinder.hasValidPagingOptions(options.getOptions())
             ? new ResultsPaginator(options.getPageSize(), options.getPagedResultsOffset())
             : new ResultsPaginator(DEFAULT_FILTER_PAGE_SIZE, 0);
 
+    ResultsFilter resultsFilter =
+        new ResultsFilter(
+            attributeFilter.getName(),
+            AdapterValueTypeConverter.readSingleAttributeValueAsString(
+                attributeFilter.getAttribute()),
+            filterType);
     Set<IdentityModel> matchingResults =
         adapter
             .getDriver()
             .getAll(
                 adapter.getIdentityModelClass(),
-                new ResultsFilter(
-                    attributeFilter.getName(),
-                    AdapterValueTypeConverter.readSingleAttributeValueAsString(
-                        attributeFilter.getAttribute()),
-                    filterType),
+                resultsFilter,
                 resultsPaginator,
                 null,
                 prefetchData);
+    Integer totalResults =
+        adapter instanceof PaginationCapableSource
+            ? getTotalResults(adapter, resultsFilter, resultsPaginator, prefetchData)
+            : Integer.valueOf(matchingResults.size());
     matchingResults =
         performManualPaginationIfNeeded(enhancedAdapter, matchingResults, resultsPaginator);
-    processResultsPage(adapter, enhancedAdapter, matchingResults, resultsHandler, prefetchData);
-    return new SearchResult(
-        resultsPaginator.getTokenAsString(), -1, resultsPaginator.getNoMoreResults());
+    SearchBudget budget =
+        OperationOptionsDataFinder.hasValidPagingOptions(options.getOptions())
+            ? SearchBudget.start(adapter, options)
+            : null;
+    int processed =
+        processResultsPage(
+            adapter, enhancedAdapter, matchingResults, resultsHandler, prefetchData, budget);
+    if (processed < matchingResults.size()) {
+      return buildStoppedSearchResult(options, processed);
+    }
+    return buildSearchResult(resultsPaginator, totalResults, matchingResults.size());
   }
 
   protected SearchResult executePaginationOnly(
       ResultsHandler resultsHandler, OperationOptions options) {
-    Map<String, Object> prefetchData =
-        adapter.getDriver().getPrefetch(adapter.getIdentityModelClass());
+    Map<String, Object> prefetchData = getPrefetchData(adapter, options);
     if (adapter instanceof PaginationCapableSource) {
       ResultsPaginator resultsPaginator =
           new ResultsPaginator(options.getPageSize(), options.getPagedResultsOffset());
@@ -183,47 +211,228 @@ public class SearchExecutor {
                   resultsPaginator,
                   null,
                   prefetchData);
-      processResultsPage(
-          adapter, enhancedAdapter, pageOfIdentityResults, resultsHandler, prefetchData);
-      return new SearchResult(
-          resultsPaginator.getTokenAsString(), -1, resultsPaginator.getNoMoreResults());
+      int processed =
+          processResultsPage(
+              adapter,
+              enhancedAdapter,
+              pageOfIdentityResults,
+              resultsHandler,
+              prefetchData,
+              SearchBudget.start(adapter, options));
+      if (pageOfIdentityResults != null && processed < pageOfIdentityResults.size()) {
+        return buildStoppedSearchResult(options, processed);
+      }
+      return buildSearchResult(
+          resultsPaginator,
+          getTotalResults(adapter, new ResultsFilter(), resultsPaginator, prefetchData),
+          pageOfIdentityResults == null ? 0 : pageOfIdentityResults.size());
     } else {
-      // API cannot handle pagination; need to get all results and splice the applicable page of
-      // results here
+      // API cannot handle pagination; stream all results and keep only the applicable page of
+      // results here (plus the first page, in case all results fit within one page)
       ResultsPaginator paginationData =
           new ResultsPaginator(options.getPageSize(), options.getPagedResultsOffset());
-      Set<IdentityModel> allIdentityResults =
-          adapter
-              .getDriver()
-              .getAll(
-                  adapter.getIdentityModelClass(),
-                  new ResultsFilter(),
-                  new ResultsPaginator(options.getPageSize(), options.getPagedResultsOffset()),
-                  null,
-                  prefetchData);
-
-      if (allIdentityResults.size() <= paginationData.getPageSize()) {
+      int pageSize = paginationData.getPageSize();
+      int windowStart = correctConnIdOffset(paginationData.getCurrentOffset());
+      Set<IdentityModel> firstPageOfResults = new LinkedHashSet<>();
+      Set<IdentityModel> pageOfResults = new LinkedHashSet<>();
+      int[] totalResults = {0};
+      adapter
+          .getDriver()
+          .streamAll(
+              adapter.getIdentityModelClass(),
+              new ResultsFilter(),
+              new ResultsPaginator(options.getPageSize(), options.getPagedResultsOffset()),
+              null,
+              prefetchData,
+              identity -> {
+                int index = totalResults[0]++;
+                if (index < pageSize) {
+                  firstPageOfResults.add(identity);
+                }
+                if (index >= windowStart && index < windowStart + pageSize) {
+                  pageOfResults.add(identity);
+                }
+              });
+
+      if (totalResults[0] <= pageSize) {
         processResultsPage(
-            adapter, enhancedAdapter, allIdentityResults, resultsHandler, prefetchData);
-        return new SearchResult(null, -1, true);
+            adapter, enhancedAdapter, firstPageOfResults, resultsHandler, prefetchData);
+        return new SearchResult(null, 0, true);
       } else {
-        if (paginationData.getCurrentOffset() >= allIdentityResults.size()) {
+        if (paginationData.getCurrentOffset() >= totalResults[0]) {
           // If the offset is at or higher than the number of results present,
           // return nothing to reflect that there are no more results;
-          return new SearchResult(null, -1, true);
+          return new SearchResult(null, 0, true);
         } else {
-          Set<IdentityModel> pageOfResults = new LinkedHashSet<>();
-          allIdentityResults.stream()
-              .skip(correctConnIdOffset(paginationData.getCurrentOffset()))
-              .limit(paginationData.getPageSize())
-              .forEachOrdered(pageOfResults::add);
           processResultsPage(adapter, enhancedAdapter, pageOfResults, resultsHandler, prefetchData);
-          return new SearchResult(null, -1, false);
+          return buildSearchResult(paginationData, totalResults[0], pageOfResults.size());
         }
       }
     }
   }
 
+  /**
+   * Obtain the prefetch data for the adapter's IdentityModel from the driver/invocator (or from
+   * PrefetchCache, if enabled), and include the set of attribute names requested by Midpoint (if
+   * any) under ATTRIBUTES_TO_GET_KEY so that invocators may narrow the fields requested from the
+   * source API.
+   *
+   * @param adapter Adapter pertaining to the current search.
+   * @param options OperationOptions received for the current search.
+   * @return Map of prefetch data for use on all driver/invocator calls for the current search.
+   */
+  static Map<String, Object> getPrefetchData(BaseAdapter<?, ?> adapter, OperationOptions options) {
+    // Always a new LinkedHashMap, since the driver's map may be immutable or shared
+    Map<String, Object> prefetchData = PrefetchCache.getPrefetch(adapter);
+    if (prefetchData == null) {
+      prefetchData = new LinkedHashMap<>();
+    }
+    Set<String> attributesToGet = getRequestedAttributes(adapter, options);
+    if (attributesToGet != null) {
+      prefetchData.put(ATTRIBUTES_TO_GET_KEY, attributesToGet);
+    }
+    return prefetchData;
+  }
+
+  /**
+   * Return the attribute names requested by Midpoint for this operation. If Midpoint also requested
+   * the attributes returned by default, these are included along with the explicitly requested
+   * ones (which may be NOT_RETURNED_BY_DEFAULT attributes).
+   *
+   * @param adapter Adapter pertaining to the current operation.
+   * @param options OperationOptions received for the current operation.
+   * @return Set of requested attribute names, or null if Midpoint did not limit the attributes to
+   *     be returned.
+   */
+  static Set<String> getRequestedAttributes(BaseAdapter<?, ?> adapter, OperationOptions options) {
+    if (options == null || options.getAttributesToGet() == null) {
+      return null;
+    }
+    Set<String> requested = new LinkedHashSet<>();
+    if (Boolean.TRUE.equals(options.getReturnDefaultAttributes())) {
+      requested.addAll(adapter.getDefaultAttributeNames());
+    }
+    requested.addAll(Arrays.asList(options.getAttributesToGet()));
+    return Collections.unmodifiableSet(requested);
+  }
+
+  /**
+   * Return the attribute names requested by Midpoint that were placed in the prefetch data.
+   *
+   * @param prefetchDataMap Prefetch data for the current search.
+   * @return Set of requested attribute names, or null if not limited by Midpoint.
+   */
+  @SuppressWarnings("unchecked")
+  static Set<String> getRequestedAttributes(Map<String, Object> prefetchDataMap) {
+    Object requested = prefetchDataMap == null ? null : prefetchDataMap.get(ATTRIBUTES_TO_GET_KEY);
+    return requested instanceof Set ? (Set<String>) requested : null;
+  }
+
+  /**
+   * Determine if every attribute requested by Midpoint is already present on the identities
+   * returned by getAll, in which case a subsequent getOne for each identity is unnecessary.
+   *
+   * @param enhancedAdapter Adapter with capability information for the source API.
+   * @param prefetchDataMap Prefetch data possibly holding requested attributes under
+   *     ATTRIBUTES_TO_GET_KEY.
+   * @return true if attributes were requested and all of them are returned by getAll.
+   */
+  static boolean requestedAttributesPresentInResults(
+      EnhancedPaginationAndFiltering enhancedAdapter, Map<String, Object> prefetchDataMap) {
+    Set<String> requested = getRequestedAttributes(prefetchDataMap);
+    if (requested == null) {
+      return false;
+    }
+    Set<String> presentAttributes = enhancedAdapter.getSearchResultsAttributesPresent();
+    for (String attributeName : requested) {
+      if (Uid.NAME.equals(attributeName)) {
+        continue;
+      }
+      if (Name.NAME.equals(attributeName)
+          && enhancedAdapter.getSearchResultsContainsNameAttribute()) {
+        continue;
+      }
+      if (presentAttributes == null || !presentAttributes.contains(attributeName)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Determine the total number of records available for the current search, if the adapter
+   * implements CountCapableSource. A total supplied by the driver/invocator on the paginator during
+   * getAll is preferred; otherwise a count request is made if the adapter supports it.
+   *
+   * @param adapter Adapter pertaining to the current search.
+   * @param filter Filter applicable to the current search.
+   * @param paginator Paginator used by getAll for the current search, or null if getAll was not
+   *     yet invoked.
+   * @param prefetchData Prefetch data for the current search.
+   * @return Total number of records, or null if the total is not known.
+   */
+  static Integer getTotalResults(
+      BaseAdapter<?, ?> adapter,
+      ResultsFilter filter,
+      ResultsPaginator paginator,
+      Map<String, Object> prefetchData) {
+    if (!(adapter instanceof CountCapableSource)) {
+      return null;
+    }
+    if (paginator != null && paginator.hasTotalResults()) {
+      return paginator.getTotalResults();
+    }
+    if (!((CountCapableSource) adapter).hasCountRequest()) {
+      return null;
+    }
+    Integer totalResults =
+        adapter.getDriver().getCount(adapter.getIdentityModelClass(), filter, prefetchData);
+    if (totalResults != null && paginator != null) {
+      paginator.setTotalResults(totalResults);
+    }
+    return totalResults;
+  }
+
+  /**
+   * Calculate the number of results remaining after the current page, for use as
+   * remainingPagedResults on the SearchResult.
+   *
+   * @param totalResults Total number of records, or null if not known.
+   * @param offset ConnId 1-based offset of the current page.
+   * @param pageResultCount Number of results returned on the current page.
+   * @return Number of remaining results, or -1 if it is not known.
+   */
+  static int getRemainingPagedResults(Integer totalResults, Integer offset, int pageResultCount) {
+    if (totalResults == null) {
+      return -1;
+    }
+    int consumed = correctConnIdOffset(offset) + pageResultCount;
+    // A total smaller than the results already seen was not accurately reported
+    return totalResults < consumed ? -1 : totalResults - consumed;
+  }
+
+  static SearchResult buildSearchResult(
+      ResultsPaginator paginator, Integer totalResults, int pageResultCount) {
+    int remaining =
+        getRemainingPagedResults(totalResults, paginator.getCurrentOffset(), pageResultCount);
+    return new SearchResult(
+        paginator.getTokenAsString(),
+        remaining,
+        remaining == 0 || BooleanUtils.isTrue(paginator.getNoMoreResults()));
+  }
+
+  /**
+   * Build the result of a paged search stopped by its time budget, whose cookie resumes the search
+   * at the first record of the page not passed to the results handler.
+   */
+  static SearchResult buildStoppedSearchResult(OperationOptions options, int processed) {
+    int resumeOffset = Math.max(1, options.getPagedResultsOffset()) + processed;
+    Logger.info(
+        SearchExecutor.class,
+        String.format("Search stopped by search time budget, resumes at offset %d", resumeOffset));
+    return new SearchResult(SearchBudget.getOffsetCookie(resumeOffset), -1, false);
+  }
+
   static ResultsPaginator getMaximumPageSizePaginator(BaseAdapter<?, ?> currentAdapter) {
     if (currentAdapter instanceof PaginationCapableSource) {
       PaginationCapableSource pageable = (PaginationCapableSource) currentAdapter;
@@ -256,34 +465,88 @@ public class SearchExecutor {
       Set<IdentityModel> results,
       ResultsHandler resultsHandler,
       Map<String, Object> prefetchDataMap) {
-    if (!enhancedAdapter.getSearchResultsContainsAllAttributes()) {
-      // IdentityModels do not contain all attributes, need to call getOne for each.
-      Set<IdentityModel> pageOfDetailedIdentities = new LinkedHashSet<>();
+    processResultsPage(adapter, enhancedAdapter, results, resultsHandler, prefetchDataMap, null);
+  }
 
+  /**
+   * Pass a page of results to the results handler, retrieving the details of each identity by
+   * getOne if the results do not hold all requested attributes, or by getMany in batches of ids if
+   * the driver supports it. If a search time budget is given, no further getOne or getMany is
+   * issued once it is nearly exhausted (not applicable to parallel getOne), and only the
+   * identities retrieved until then are passed.
+   *
+   * @return Number of identities of the page that were processed, from the start of the page.
+   */
+  static int processResultsPage(
+      BaseAdapter<?, ?> adapter,
+      EnhancedPaginationAndFiltering enhancedAdapter,
+      Set<IdentityModel> results,
+      ResultsHandler resultsHandler,
+      Map<String, Object> prefetchDataMap,
+      SearchBudget budget) {
+    IdentityNameIndex.record(adapter, results);
+    if (!enhancedAdapter.getSearchResultsContainsAllAttributes()
+        && !requestedAttributesPresentInResults(enhancedAdapter, prefetchDataMap)) {
+      // IdentityModels do not contain all requested attributes, need to call getOne for each.
+      if (adapter.getDriver().supportsGetMany(adapter.getIdentityModelClass())) {
+        return passBatchedDetailResults(adapter, results, resultsHandler, prefetchDataMap, budget);
+      }
       if (enhancedAdapter.getSubsequentRequestThreadCount() != null
           && enhancedAdapter.getSubsequentRequestThreadCount() > 1) {
         // Invoke multiple execution threads to help resolve getOne requests for identities in the
-        // set
-        pageOfDetailedIdentities =
-            invokeParallelGetOneRequests(adapter, enhancedAdapter, results, prefetchDataMap);
-      } else {
-        for (IdentityModel identity : results) {
-          // Place the partial identity object in the data map in case driver/invocator
-          // is in need of it
-          prefetchDataMap.put(PARTIAL_IDENTITY_KEY, identity);
-          IdentityModel identityWithDetails =
+        // set, passing each to the results handler as soon as it is available
+        emitParallelGetOneResults(
+            adapter, enhancedAdapter, results, resultsHandler, prefetchDataMap);
+        return results.size();
+      }
+
+      Set<IdentityModel> pageOfDetailedIdentities = new LinkedHashSet<>();
+      FetchContext searchContext = FetchContext.of(prefetchDataMap);
+      int processed = 0;
+      for (IdentityModel identity : results) {
+        // Details retrieved earlier are reused while the change marker is unchanged
+        String marker = ChangeMarkerCache.getMarker(adapter, identity);
+        IdentityModel identityWithDetails =
+            ChangeMarkerCache.lookup(adapter, identity.getIdentityIdValue(), marker);
+        if (identityWithDetails == null) {
+          if (budget != null && !budget.allowsRequest()) {
+            break;
+          }
+          // Pass the partial identity object in case driver/invocator is in need of it
+          long requestStart = System.nanoTime();
+          identityWithDetails =
               adapter
                   .getDriver()
                   .getOne(
                       adapter.getIdentityModelClass(),
                       identity.getIdentityIdValue(),
-                      prefetchDataMap);
-          pageOfDetailedIdentities.add(identityWithDetails);
+                      searchContext.withPartialIdentity(identity));
+          if (budget != null) {
+            budget.recordRequest(System.nanoTime() - requestStart);
+          }
+          recordChangeMarker(adapter, identity, marker, identityWithDetails, prefetchDataMap);
         }
+        pageOfDetailedIdentities.add(identityWithDetails);
+        processed++;
       }
-      adapter.passSetToResultsHandler(resultsHandler, pageOfDetailedIdentities, false);
+      adapter.passSetToResultsHandler(
+          resultsHandler,
+          pageOfDetailedIdentities,
+          false,
+          getRequestedAttributes(prefetchDataMap));
+      return processed;
     } else {
-      adapter.passSetToResultsHandler(resultsHandler, results, false);
+      if (enhancedAdapter.getSearchResultsContainsAllAttributes()
+          && getRequestedAttributes(prefetchDataMap) == null
+          && adapter.getDriver() instanceof CachingDriver) {
+        // Complete identities can serve later getOne requests for the same id; results of a
+        // search narrowed to requested attributes may have been narrowed by getAll as well
+        ((CachingDriver<?>) adapter.getDriver())
+            .cacheAll(adapter.getIdentityModelClass(), results);
+      }
+      adapter.passSetToResultsHandler(
+          resultsHandler, results, false, getRequestedAttributes(prefetchDataMap));
+      return results.size();
     }
   }
 
@@ -307,84 +570,262 @@ public class SearchExecutor {
     return adapter;
   }
 
+  /**
+   * Return the limiter for concurrent getOne requests made for identity details, kept for the life
+   * of the adapter so that the learned limit carries over between searches.
+   *
+   * @return Limiter, or null if adaptive concurrency is not used by the adapter.
+   */
+  synchronized AdaptiveConcurrencyLimiter getSubsequentRequestLimiter() {
+    if (subsequentRequestLimiter == null) {
+      subsequentRequestLimiter =
+          createLimiter("getOne", enhancedAdapter.getSubsequentRequestThreadCount());
+    }
+    return subsequentRequestLimiter;
+  }
+
+  /**
+   * Return the limiter for concurrent page requests made during a full import.
+   *
+   * @return Limiter, or null if adaptive concurrency is not used by the adapter.
+   */
+  synchronized AdaptiveConcurrencyLimiter getImportPageLimiter() {
+    if (importPageLimiter == null) {
+      importPageLimiter =
+          createLimiter("importPage", enhancedAdapter.getImportUsingPaginationThreadCount());
+    }
+    return importPageLimiter;
+  }
+
+  private AdaptiveConcurrencyLimiter createLimiter(String requestType, Integer maximum) {
+    if (!enhancedAdapter.getUseAdaptiveConcurrency() || maximum == null || maximum < 2) {
+      return null;
+    }
+    return new AdaptiveConcurrencyLimiter(
+        adapter.getIdentityModelClass().getSimpleName() + "." + requestType, 1, maximum);
+  }
+
   EnhancedPaginationAndFiltering getEnhancedAdapter() {
     return enhancedAdapter;
   }
 
-  private static Set<IdentityModel> invokeParallelGetOneRequests(
+  /**
+   * Retrieve the details of a page of identities with getMany requests of up to detailBatchSize
+   * ids each, then pass them to the results handler in the order of the page. Identities whose
+   * change marker is unchanged are served by ChangeMarkerCache and not requested.
+   *
+   * @return Number of identities of the page that were processed, from the start of the page.
+   */
+  private static int passBatchedDetailResults(
       BaseAdapter<?, ?> adapter,
-      EnhancedPaginationAndFiltering enhancedAdapter,
-      Set<IdentityModel> identitySet,
-      Map<String, Object> prefetchDataMap) {
-    Set<IdentityModel> resultSet = new LinkedHashSet<>();
-    Integer maxConcurrent = enhancedAdapter.getSubsequentRequestThreadCount();
-    int ctr = 0;
-    int employeeCount = identitySet.size();
-    Iterator<IdentityModel> iterator = identitySet.iterator();
-    while (ctr < employeeCount) {
-      int currentThrottle = Math.min((employeeCount - ctr), maxConcurrent);
-      List<Future<IdentityModel>> getOneExecutions = new ArrayList<>();
-      for (int xx = ctr; xx < (ctr + currentThrottle); xx++) {
-        IdentityModel currentIdentity = iterator.next();
-        prefetchDataMap.put(PARTIAL_IDENTITY_KEY, currentIdentity);
-        getOneExecutions.add(getOneExecution(adapter, currentIdentity, prefetchDataMap));
+      Set<IdentityModel> results,
+      ResultsHandler resultsHandler,
+      Map<String, Object> prefetchDataMap,
+      SearchBudget budget) {
+    int batchSize = getDetailBatchSize(adapter);
+    List<IdentityModel> identities = new ArrayList<>(results);
+    Map<String, IdentityModel> detailsById = new HashMap<>();
+    Map<String, String> markersById = new HashMap<>();
+    List<IdentityModel> batch = new ArrayList<>();
+    int processed = 0;
+    int requestCount = 0;
+    for (int index = 0; index < identities.size(); index++) {
+      IdentityModel identity = identities.get(index);
+      String marker = ChangeMarkerCache.getMarker(adapter, identity);
+      IdentityModel cachedIdentity =
+          ChangeMarkerCache.lookup(adapter, identity.getIdentityIdValue(), marker);
+      if (cachedIdentity != null) {
+        detailsById.put(identity.getIdentityIdValue(), cachedIdentity);
+      } else {
+        batch.add(identity);
+        markersById.put(identity.getIdentityIdValue(), marker);
+      }
+      if (!batch.isEmpty() && batch.size() < batchSize && index < identities.size() - 1) {
+        continue;
       }
-      for (Future<IdentityModel> oneExecution : getOneExecutions) {
-        try {
-          IdentityModel responseIdentityModel = oneExecution.get();
-          resultSet.add(responseIdentityModel);
-          Logger.trace(
-              SearchExecutor.class,
-              String.format("%s at %d", responseIdentityModel, System.currentTimeMillis()));
-        } catch (InterruptedException | ExecutionException ee) {
-          throw new ConnectorException("Error occurred while executing getOne thread", ee);
-        } catch (CancellationException cancelled) {
-          Logger.warn(
-              SearchExecutor.class, "Cancellation exception occurred while executing completable");
+      if (!batch.isEmpty()) {
+        if (budget != null && !budget.allowsRequest()) {
+          break;
+        }
+        List<String> batchIds = new ArrayList<>();
+        batch.forEach(batchIdentity -> batchIds.add(batchIdentity.getIdentityIdValue()));
+        long requestStart = System.nanoTime();
+        Map<String, IdentityModel> retrieved =
+            adapter.getDriver().getMany(adapter.getIdentityModelClass(), batchIds, prefetchDataMap);
+        if (budget != null) {
+          budget.recordRequest(System.nanoTime() - requestStart);
         }
+        requestCount++;
+        for (IdentityModel batchIdentity : batch) {
+          String id = batchIdentity.getIdentityIdValue();
+          IdentityModel identityWithDetails = retrieved == null ? null : retrieved.get(id);
+          if (identityWithDetails == null) {
+            Logger.warn(
+                SearchExecutor.class, String.format("No identity details found for id %s", id));
+          } else {
+            detailsById.put(id, identityWithDetails);
+            recordChangeMarker(
+                adapter, batchIdentity, markersById.get(id), identityWithDetails, prefetchDataMap);
+          }
+        }
+        batch.clear();
       }
-      ctr += currentThrottle;
+      processed = index + 1;
     }
 
-    return resultSet;
+    Set<IdentityModel> pageOfDetailedIdentities = new LinkedHashSet<>();
+    for (IdentityModel identity : identities.subList(0, processed)) {
+      IdentityModel identityWithDetails = detailsById.get(identity.getIdentityIdValue());
+      if (identityWithDetails != null) {
+        pageOfDetailedIdentities.add(identityWithDetails);
+      }
+    }
+    adapter.passSetToResultsHandler(
+        resultsHandler, pageOfDetailedIdentities, false, getRequestedAttributes(prefetchDataMap));
+    Logger.info(
+        SearchExecutor.class,
+        String.format(
+            "Passed %d detailed items retrieved by %d getMany requests for type %s",
+            pageOfDetailedIdentities.size(),
+            requestCount,
+            adapter.getIdentityModelClass().getSimpleName()));
+    return processed;
   }
 
-  private static CompletableFuture<IdentityModel> getOneExecution(
-      BaseAdapter<?, ?> adapter, IdentityModel identity, Map<String, Object> prefetchDataMap) {
-    CompletableFuture<IdentityModel> completableFuture = new CompletableFuture<>();
-    Executors.newCachedThreadPool()
-        .submit(() -> getRetryableGetOne(adapter, identity, completableFuture, prefetchDataMap));
-    return completableFuture;
+  private static int getDetailBatchSize(BaseAdapter<?, ?> adapter) {
+    if (adapter.getConfiguration() instanceof ResultsConfiguration) {
+      Integer batchSize = ((ResultsConfiguration) adapter.getConfiguration()).getDetailBatchSize();
+      if (batchSize != null && batchSize > 0) {
+        return batchSize;
+      }
+    }
+    return DEFAULT_DETAIL_BATCH_SIZE;
   }
 
-  private static void getRetryableGetOne(
+  private static void emitParallelGetOneResults(
       BaseAdapter<?, ?> adapter,
-      IdentityModel identity,
-      CompletableFuture<IdentityModel> completableFuture,
+      EnhancedPaginationAndFiltering enhancedAdapter,
+      Set<IdentityModel> identitySet,
+      ResultsHandler resultsHandler,
       Map<String, Object> prefetchDataMap) {
-    boolean success = false;
-    IdentityModel resultIdentity = null;
+    if (identitySet.isEmpty()) {
+      return;
+    }
+    int maxConcurrent =
+        Math.min(enhancedAdapter.getSubsequentRequestThreadCount(), identitySet.size());
+    AdaptiveConcurrencyLimiter limiter =
+        adapter.searchExecutor == null
+            ? null
+            : adapter.searchExecutor.getSubsequentRequestLimiter();
+    FetchContext searchContext = FetchContext.of(prefetchDataMap);
+    Set<String> attributesToGet = searchContext.getAttributesToGet();
+    // Workers only retrieve identities; ConnectorObjects are constructed on this thread while
+    // draining, so that the adapter's constructAttributes need not be thread-safe
+    ResultsEmitter<IdentityModel> emitter =
+        new ResultsEmitter<>(
+            maxConcurrent * 2,
+            enhancedAdapter.getSubsequentRequestResultsOrdered(),
+            identity -> adapter.constructConnectorObjectForIdentity(identity, attributesToGet));
+    OperationDeadline deadline = OperationDeadline.current();
+    ExecutorService getOnePool = Executors.newFixedThreadPool(maxConcurrent);
+    int passCount;
     try {
-      resultIdentity =
+      long sequence = 0;
+      for (IdentityModel currentIdentity : identitySet) {
+        // Each task receives its own context, since tasks run concurrently
+        FetchContext getOneContext = searchContext.withPartialIdentity(currentIdentity);
+        long currentSequence = sequence++;
+        Runnable getOneTask =
+            () -> {
+              IdentityModel result = null;
+              try {
+                result = getOneIdentity(adapter, currentIdentity, getOneContext, limiter);
+              } finally {
+                // Published even if the task failed, since the emitter awaits every sequence
+                emitter.publish(currentSequence, result);
+              }
+            };
+        getOnePool.submit(deadline == null ? getOneTask : deadline.wrap(getOneTask));
+      }
+      passCount = emitter.drainTo(resultsHandler, identitySet.size(), deadline);
+      if (deadline != null) {
+        // Identities whose getOne was cut short by the deadline were not passed
+        deadline.check("all detailed results were passed");
+      }
+    } finally {
+      emitter.close();
+      getOnePool.shutdownNow();
+    }
+    Logger.info(
+        SearchExecutor.class,
+        String.format(
+            "Passed %d detailed items to result handler for type %s",
+            passCount, adapter.getIdentityModelClass().getSimpleName()));
+  }
+
+  private static IdentityModel getOneIdentity(
+      BaseAdapter<?, ?> adapter,
+      IdentityModel identity,
+      FetchContext getOneContext,
+      AdaptiveConcurrencyLimiter limiter) {
+    String marker = ChangeMarkerCache.getMarker(adapter, identity);
+    IdentityModel cachedIdentity =
+        ChangeMarkerCache.lookup(adapter, identity.getIdentityIdValue(), marker);
+    if (cachedIdentity != null) {
+      return cachedIdentity;
+    }
+    if (limiter != null) {
+      try {
+        limiter.acquire();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
+    long requestStart = System.nanoTime();
+    try {
+      IdentityModel resultIdentity =
           adapter
               .getDriver()
               .getOne(
-                  adapter.getIdentityModelClass(), identity.getIdentityIdValue(), prefetchDataMap);
-      success = true;
-    } finally {
-      if (success && (resultIdentity != null)) {
-        String completionMessage =
-            String.format(
-                "Successfully retrieved identity details for id %s",
-                resultIdentity.getIdentityIdValue());
-        Logger.trace(SearchExecutor.class, completionMessage);
-        completableFuture.complete(resultIdentity);
-      } else {
+                  adapter.getIdentityModelClass(), identity.getIdentityIdValue(), getOneContext);
+      if (limiter != null) {
+        limiter.onSuccess(System.nanoTime() - requestStart);
+      }
+      if (resultIdentity == null) {
         Logger.warn(
             SearchExecutor.class,
-            String.format("Cancelling work for identity id %s", identity.getIdentityIdValue()));
-        completableFuture.cancel(true);
+            String.format("No identity details found for id %s", identity.getIdentityIdValue()));
+        return null;
+      }
+      recordChangeMarker(adapter, identity, marker, resultIdentity, getOneContext);
+      Logger.trace(
+          SearchExecutor.class,
+          String.format(
+              "Successfully retrieved identity details for id %s",
+              resultIdentity.getIdentityIdValue()));
+      return resultIdentity;
+    } catch (RuntimeException getOneFailure) {
+      if (limiter != null) {
+        limiter.onDropped();
       }
+      Logger.warn(
+          SearchExecutor.class,
+          String.format("Cancelling work for identity id %s", identity.getIdentityIdValue()),
+          getOneFailure);
+      return null;
+    }
+  }
+
+  private static void recordChangeMarker(
+      BaseAdapter<?, ?> adapter,
+      IdentityModel identity,
+      String marker,
+      IdentityModel identityWithDetails,
+      Map<String, Object> prefetchDataMap) {
+    // Details narrowed to the requested attributes cannot serve later searches
+    if (prefetchDataMap.get(ATTRIBUTES_TO_GET_KEY) == null) {
+      ChangeMarkerCache.record(adapter, identity.getIdentityIdValue(), marker, identityWithDetails);
     }
   }
 }
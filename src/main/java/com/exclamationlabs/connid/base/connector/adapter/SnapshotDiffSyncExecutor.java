@@ -0,0 +1,224 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import com.exclamationlabs.connid.base.connector.configuration.basetypes.ResultsConfiguration;
+import com.exclamationlabs.connid.base.connector.logging.Logger;
+import com.exclamationlabs.connid.base.connector.metrics.ConnectorMetrics;
+import com.exclamationlabs.connid.base.connector.results.IdentityHashStore;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
+import org.identityconnectors.common.security.GuardedString;
+import org.identityconnectors.framework.common.exceptions.ConfigurationException;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.objects.*;
+import org.identityconnectors.framework.spi.SyncTokenResultsHandler;
+
+/**
+ * Executor used by SyncExecutor for adapters using SNAPSHOT_DIFF change tokens. Each sync imports
+ * all records of the object class and compares a 64-bit hash of each ConnectorObject's attributes
+ * with the IdentityHashStore written by the previous sync: records with unknown ids are passed as
+ * CREATE deltas, records with a different hash as UPDATE deltas, and ids of the store that were
+ * not imported as DELETE deltas. The store is only replaced once every delta has been passed, so an
+ * interrupted sync is compared against the same store again.
+ *
+ * <p>If no store exists yet (or it cannot be read), every imported record is passed as a
+ * CREATE_OR_UPDATE delta. getLatestSyncToken() writes a store from a full import without passing
+ * any deltas. Since hashes cover the attributes returned, Midpoint should request the same
+ * attributes for every sync of an object class.
+ */
+public class SnapshotDiffSyncExecutor {
+
+  private static final String STORE_FILE_SUFFIX = ".hashes";
+
+  private SnapshotDiffSyncExecutor() {}
+
+  static void execute(
+      BaseAdapter<?, ?> adapter,
+      SyncToken token,
+      SyncResultsHandler syncResultsHandler,
+      OperationOptions options) {
+    String startToken =
+        token == null || token.getValue() == null ? null : token.getValue().toString();
+    String syncToken = SyncExecutor.issueTimestampToken(SyncExecutor.getSyncSource(adapter));
+    SyncExecutor.DeltaEmitter emitter =
+        new SyncExecutor.DeltaEmitter(adapter.getType(), syncResultsHandler);
+    emitter.setToken(startToken == null ? syncToken : startToken);
+
+    if (compareWithImport(adapter, emitter, options)
+        && syncResultsHandler instanceof SyncTokenResultsHandler) {
+      ((SyncTokenResultsHandler) syncResultsHandler).handleResult(new SyncToken(syncToken));
+    }
+    ConnectorMetrics.add(
+        adapter.getIdentityModelClass().getSimpleName() + ".sync.deltas", emitter.getCount());
+    Logger.info(
+        SnapshotDiffSyncExecutor.class,
+        String.format(
+            "Passed %d snapshot diff sync deltas to sync results handler for type %s",
+            emitter.getCount(), adapter.getIdentityModelClass().getSimpleName()));
+  }
+
+  static SyncToken getLatestSyncToken(BaseAdapter<?, ?> adapter) {
+    String syncToken = SyncExecutor.issueTimestampToken(SyncExecutor.getSyncSource(adapter));
+    compareWithImport(adapter, null, null);
+    return new SyncToken(syncToken);
+  }
+
+  /**
+   * Compute the hash of the attributes of a ConnectorObject, independent of the order of its
+   * attributes and of the values of multivalued attributes.
+   *
+   * @param connectorObject Object for which to compute the hash.
+   * @return 64-bit content hash.
+   */
+  static long getContentHash(ConnectorObject connectorObject) {
+    List<String> entries = new ArrayList<>();
+    for (Attribute attribute : connectorObject.getAttributes()) {
+      List<String> values = new ArrayList<>();
+      if (attribute.getValue() != null) {
+        for (Object value : attribute.getValue()) {
+          values.add(valueToString(value));
+        }
+      }
+      Collections.sort(values);
+      entries.add(attribute.getName() + '=' + String.join("\u0000", values));
+    }
+    Collections.sort(entries);
+    return IdentityHashStore.hash(String.join("\u0001", entries));
+  }
+
+  /**
+   * Import all records, passing those that differ from the hash store to the emitter, then replace
+   * the hash store.
+   *
+   * @param adapter Adapter for the object class being synced.
+   * @param emitter Receives deltas, or null to only write the hash store.
+   * @param options Options of the sync request, or null.
+   * @return true if the hash store was replaced, false if the handler stopped the sync.
+   */
+  private static boolean compareWithImport(
+      BaseAdapter<?, ?> adapter, SyncExecutor.DeltaEmitter emitter, OperationOptions options) {
+    Path storeFile = getStoreFile(adapter);
+    try (IdentityHashStore previous = openPrevious(storeFile);
+        IdentityHashStore.Writer writer = IdentityHashStore.writer(storeFile)) {
+      BitSet imported = new BitSet(previous == null ? 0 : previous.getCapacity());
+      adapter.get(
+          null,
+          connectorObject -> {
+            if (emitter != null && emitter.isStopped()) {
+              return false;
+            }
+            String id = connectorObject.getUid().getUidValue();
+            long contentHash = getContentHash(connectorObject);
+            try {
+              writer.add(id, contentHash);
+            } catch (IOException writeFailure) {
+              throw new ConnectorException(
+                  "Unable to write identity hash store " + storeFile, writeFailure);
+            }
+            if (emitter == null) {
+              return true;
+            }
+            int slot = previous == null ? -1 : previous.findSlot(id);
+            if (slot < 0) {
+              return emitter.handle(
+                  connectorObject,
+                  previous == null ? SyncDeltaType.CREATE_OR_UPDATE : SyncDeltaType.CREATE);
+            }
+            imported.set(slot);
+            return previous.getContentHash(slot) == contentHash
+                || emitter.handle(connectorObject, SyncDeltaType.UPDATE);
+          },
+          getImportOptions(options),
+          true);
+
+      if (emitter != null && previous != null) {
+        for (int slot = 0; slot < previous.getCapacity() && !emitter.isStopped(); slot++) {
+          if (previous.isOccupied(slot) && !imported.get(slot)) {
+            emitter.delete(previous.getId(slot));
+          }
+        }
+      }
+      if (emitter != null && emitter.isStopped()) {
+        return false;
+      }
+      writer.commit();
+      return true;
+    } catch (IOException storeFailure) {
+      throw new ConnectorException(
+          "Unable to write identity hash store " + storeFile, storeFailure);
+    }
+  }
+
+  private static IdentityHashStore openPrevious(Path storeFile) {
+    try {
+      return IdentityHashStore.open(storeFile);
+    } catch (IOException invalidStore) {
+      Logger.warn(
+          SnapshotDiffSyncExecutor.class,
+          String.format(
+              "Identity hash store %s could not be read, all records will be synced", storeFile),
+          invalidStore);
+      return null;
+    }
+  }
+
+  // Store of the object class on the adapter's destination system instance
+  private static Path getStoreFile(BaseAdapter<?, ?> adapter) {
+    String directory =
+        adapter.getConfiguration() instanceof ResultsConfiguration
+            ? ((ResultsConfiguration) adapter.getConfiguration()).getSyncHashStoreDirectory()
+            : null;
+    if (StringUtils.isBlank(directory)) {
+      throw new ConfigurationException(
+          String.format(
+              "syncHashStoreDirectory is required for sync of object class %s", adapter.getType()));
+    }
+    return Paths.get(
+        directory, IdentitySnapshotExecutor.getSnapshotKey(adapter) + STORE_FILE_SUFFIX);
+  }
+
+  private static OperationOptions getImportOptions(OperationOptions options) {
+    // Paging options of the sync request must not limit the import
+    OperationOptionsBuilder builder = new OperationOptionsBuilder();
+    if (options != null && options.getAttributesToGet() != null) {
+      builder.setAttributesToGet(options.getAttributesToGet());
+    }
+    if (options != null && options.getReturnDefaultAttributes() != null) {
+      builder.setReturnDefaultAttributes(options.getReturnDefaultAttributes());
+    }
+    return builder.build();
+  }
+
+  private static String valueToString(Object value) {
+    if (value instanceof byte[]) {
+      return Base64.getEncoder().encodeToString((byte[]) value);
+    }
+    if (value instanceof GuardedString) {
+      // GuardedString does not expose its content through toString()
+      return "guarded:" + value.hashCode();
+    }
+    return String.valueOf(value);
+  }
+}
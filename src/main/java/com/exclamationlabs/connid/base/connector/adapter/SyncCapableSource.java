@@ -0,0 +1,83 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+/**
+ * Since Base Connector 5.3, this interface may be implemented by BaseAdapters whose respective
+ * source API can report the records changed since a previous point in time, so that Midpoint can
+ * perform LiveSync (ConnId SyncOp) for the object class instead of a full import. The
+ * driver/invocator must implement getChanges(), and getLatestChangeToken() unless TIMESTAMP change
+ * tokens are used. Sources with no change API at all may use SNAPSHOT_DIFF change tokens instead,
+ * and sources pushing change notifications may implement WebhookCapableSource.
+ */
+public interface SyncCapableSource {
+
+  /** Form of the change token exchanged between Midpoint and the source API. */
+  enum ChangeTokenType {
+    /**
+     * Token is the ISO-8601 instant of the previous sync, for APIs accepting a modifiedSince (or
+     * similar) filter. The framework issues new tokens from its own clock; tokens only advance once
+     * all changes have been passed to Midpoint.
+     */
+    TIMESTAMP,
+
+    /**
+     * Token is an opaque value issued by the API along with each batch of changes, such as a delta
+     * link or sync cookie.
+     */
+    DELTA_TOKEN,
+
+    /**
+     * Token identifies the latest entry processed from a change log endpoint, such as a sequence or
+     * change number.
+     */
+    CHANGE_LOG,
+
+    /**
+     * For APIs with no change endpoint: each sync performs a full import and compares a hash of
+     * each record with the hash store kept from the previous sync (see syncHashStoreDirectory),
+     * passing only created, updated and deleted records. The driver/invocator needs no getChanges
+     * implementation. Token is the ISO-8601 instant of the previous sync.
+     */
+    SNAPSHOT_DIFF,
+
+    /**
+     * For APIs pushing change notifications: changes received by the embedded webhook receiver
+     * are journaled locally and passed by sync without polling the API. The adapter must implement
+     * WebhookCapableSource. Token is the sequence number of the last journaled change processed.
+     */
+    WEBHOOK
+  }
+
+  /**
+   * Return the form of change token understood by the driver/invocator getChanges().
+   *
+   * @return Change token type.
+   */
+  ChangeTokenType getChangeTokenType();
+
+  /**
+   * Number of seconds subtracted from the sync start time when issuing TIMESTAMP tokens, to allow
+   * for clock differences between the connector and the source API. Changes inside this window
+   * may be reported to Midpoint twice.
+   *
+   * @return Overlap in seconds; default is 0.
+   */
+  default int getChangeTokenOverlapSeconds() {
+    return 0;
+  }
+}
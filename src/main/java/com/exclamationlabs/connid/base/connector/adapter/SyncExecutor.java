@@ -0,0 +1,273 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import com.exclamationlabs.connid.base.connector.adapter.SyncCapableSource.ChangeTokenType;
+import com.exclamationlabs.connid.base.connector.logging.Logger;
+import com.exclamationlabs.connid.base.connector.metrics.ConnectorMetrics;
+import com.exclamationlabs.connid.base.connector.results.SyncChanges;
+import java.time.Instant;
+import java.util.Map;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.objects.*;
+import org.identityconnectors.framework.spi.SyncTokenResultsHandler;
+
+/**
+ * Executor used by BaseAdapter to service ConnId sync (LiveSync) requests for adapters implementing
+ * SyncCapableSource. Changes are requested from the driver/invocator in batches until the source
+ * API reports no more changes; changed identities in each batch go through the same detail
+ * retrieval as search and import results (getOne for partial identities, multithreaded when
+ * getSubsequentRequestThreadCount() is greater than 1) and are passed to Midpoint as SyncDeltas.
+ *
+ * <p>Each SyncDelta carries a token from which a later sync can safely continue, so that no change
+ * is lost if the sync fails part way: the token its batch was requested with, or the token the
+ * sync started from for TIMESTAMP sources. Only the last delta of a DELTA_TOKEN or CHANGE_LOG batch
+ * carries the next token reported with the batch. A sync started without a token stamps its deltas
+ * with INITIAL_TOKEN until a token is known, and a later sync from INITIAL_TOKEN requests all
+ * changes again. Once all changes are passed, the final token is reported to Midpoint if the
+ * handler accepts one.
+ */
+public class SyncExecutor {
+
+  /** Token of deltas obtained by a sync started without a token, requesting all changes again. */
+  public static final String INITIAL_TOKEN = "";
+
+  private SyncExecutor() {}
+
+  static void execute(
+      BaseAdapter<?, ?> adapter,
+      SyncToken token,
+      SyncResultsHandler syncResultsHandler,
+      OperationOptions options) {
+    SyncCapableSource syncSource = getSyncSource(adapter);
+    if (syncSource.getChangeTokenType() == ChangeTokenType.SNAPSHOT_DIFF) {
+      SnapshotDiffSyncExecutor.execute(adapter, token, syncResultsHandler, options);
+      return;
+    }
+    if (syncSource.getChangeTokenType() == ChangeTokenType.WEBHOOK) {
+      WebhookSyncExecutor.execute(adapter, token, syncResultsHandler, options);
+      return;
+    }
+    boolean timestampTokens = syncSource.getChangeTokenType() == ChangeTokenType.TIMESTAMP;
+    Map<String, Object> prefetchData = SearchExecutor.getPrefetchData(adapter, options);
+    String startToken =
+        token == null || token.getValue() == null || INITIAL_TOKEN.equals(token.getValue())
+            ? null
+            : token.getValue().toString();
+    String timestampToken = timestampTokens ? issueTimestampToken(syncSource) : null;
+    DeltaEmitter emitter = new DeltaEmitter(adapter.getType(), syncResultsHandler);
+
+    String requestToken = startToken;
+    boolean invalidated = false;
+    SyncChanges changes;
+    do {
+      changes =
+          adapter
+              .getDriver()
+              .getChanges(adapter.getIdentityModelClass(), requestToken, prefetchData);
+      if (changes == null) {
+        break;
+      }
+      if (!changes.isEmpty() && !invalidated) {
+        // Retained imports no longer reflect the source system
+        IdentitySnapshotExecutor.invalidate(adapter);
+        invalidated = true;
+      }
+      // Resuming from the token a batch was requested with obtains the whole batch again
+      String batchToken = timestampTokens ? startToken : requestToken;
+      emitter.setToken(batchToken == null ? INITIAL_TOKEN : batchToken);
+      emitChanges(adapter, changes, emitter, prefetchData);
+      emitter.endBatch(timestampTokens ? null : changes.getNextToken());
+
+      if (changes.hasMoreChanges() && changes.getNextToken() == null) {
+        Logger.warn(
+            SyncExecutor.class,
+            String.format(
+                "getChanges for type %s reported more changes without a next token",
+                adapter.getIdentityModelClass().getSimpleName()));
+        break;
+      }
+      if (changes.getNextToken() != null) {
+        requestToken = changes.getNextToken();
+      }
+    } while (changes.hasMoreChanges() && !emitter.isStopped());
+
+    String finalToken = timestampTokens ? timestampToken : requestToken;
+    if (!emitter.isStopped()
+        && finalToken != null
+        && syncResultsHandler instanceof SyncTokenResultsHandler) {
+      ((SyncTokenResultsHandler) syncResultsHandler).handleResult(new SyncToken(finalToken));
+    }
+    ConnectorMetrics.add(
+        adapter.getIdentityModelClass().getSimpleName() + ".sync.deltas", emitter.getCount());
+    Logger.info(
+        SyncExecutor.class,
+        String.format(
+            "Passed %d sync deltas to sync results handler for type %s",
+            emitter.getCount(), adapter.getIdentityModelClass().getSimpleName()));
+  }
+
+  static SyncToken getLatestSyncToken(BaseAdapter<?, ?> adapter) {
+    SyncCapableSource syncSource = getSyncSource(adapter);
+    if (syncSource.getChangeTokenType() == ChangeTokenType.TIMESTAMP) {
+      return new SyncToken(issueTimestampToken(syncSource));
+    }
+    if (syncSource.getChangeTokenType() == ChangeTokenType.SNAPSHOT_DIFF) {
+      return SnapshotDiffSyncExecutor.getLatestSyncToken(adapter);
+    }
+    if (syncSource.getChangeTokenType() == ChangeTokenType.WEBHOOK) {
+      return WebhookSyncExecutor.getLatestSyncToken(adapter);
+    }
+    String latestToken =
+        adapter
+            .getDriver()
+            .getLatestChangeToken(
+                adapter.getIdentityModelClass(), SearchExecutor.getPrefetchData(adapter, null));
+    return latestToken == null ? null : new SyncToken(latestToken);
+  }
+
+  private static void emitChanges(
+      BaseAdapter<?, ?> adapter,
+      SyncChanges changes,
+      DeltaEmitter emitter,
+      Map<String, Object> prefetchData) {
+    if (!changes.getChangedIdentities().isEmpty()) {
+      if (adapter instanceof EnhancedPaginationAndFiltering) {
+        SearchExecutor.processResultsPage(
+            adapter,
+            (EnhancedPaginationAndFiltering) adapter,
+            changes.getChangedIdentities(),
+            emitter,
+            prefetchData);
+      } else {
+        adapter.passSetToResultsHandler(
+            emitter,
+            changes.getChangedIdentities(),
+            false,
+            SearchExecutor.getRequestedAttributes(prefetchData));
+      }
+    }
+    for (String deletedId : changes.getDeletedIds()) {
+      if (!emitter.delete(deletedId)) {
+        break;
+      }
+    }
+  }
+
+  static SyncCapableSource getSyncSource(BaseAdapter<?, ?> adapter) {
+    if (!(adapter instanceof SyncCapableSource)) {
+      throw new UnsupportedOperationException(
+          String.format("Sync is not supported for object class %s", adapter.getType()));
+    }
+    return (SyncCapableSource) adapter;
+  }
+
+  static String issueTimestampToken(SyncCapableSource syncSource) {
+    return Instant.now().minusSeconds(syncSource.getChangeTokenOverlapSeconds()).toString();
+  }
+
+  /**
+   * ResultsHandler converting each ConnectorObject into a CREATE_OR_UPDATE SyncDelta for the
+   * SyncResultsHandler, so that changed identities can be passed through the search result
+   * machinery. Delete deltas are passed directly. The latest delta of a batch is held back until
+   * the next one arrives or the batch ends, so that only the last delta of the batch carries the
+   * batch's next token.
+   */
+  static class DeltaEmitter implements ResultsHandler {
+    private final ObjectClass objectClass;
+    private final SyncResultsHandler syncResultsHandler;
+    private SyncToken token;
+    private SyncDeltaBuilder heldBack;
+    private boolean stopped;
+    private int count;
+
+    DeltaEmitter(ObjectClass objectClass, SyncResultsHandler syncResultsHandler) {
+      this.objectClass = objectClass;
+      this.syncResultsHandler = syncResultsHandler;
+    }
+
+    void setToken(String tokenValue) {
+      token = tokenValue == null ? null : new SyncToken(tokenValue);
+    }
+
+    /**
+     * Pass the delta held back from the batch.
+     *
+     * @param nextToken Token reported with the batch, or null to keep the token of the delta.
+     */
+    void endBatch(String nextToken) {
+      if (heldBack != null && !stopped) {
+        if (nextToken != null) {
+          heldBack.setToken(new SyncToken(nextToken));
+        }
+        pass(heldBack.build());
+      }
+      heldBack = null;
+    }
+
+    @Override
+    public boolean handle(ConnectorObject connectorObject) {
+      return handle(connectorObject, SyncDeltaType.CREATE_OR_UPDATE);
+    }
+
+    boolean handle(ConnectorObject connectorObject, SyncDeltaType deltaType) {
+      if (stopped || connectorObject == null) {
+        return !stopped;
+      }
+      return holdBack(new SyncDeltaBuilder().setDeltaType(deltaType).setObject(connectorObject));
+    }
+
+    boolean delete(String id) {
+      if (stopped) {
+        return false;
+      }
+      return holdBack(
+          new SyncDeltaBuilder()
+              .setDeltaType(SyncDeltaType.DELETE)
+              .setObjectClass(objectClass)
+              .setUid(new Uid(id)));
+    }
+
+    boolean isStopped() {
+      return stopped;
+    }
+
+    int getCount() {
+      return count;
+    }
+
+    private SyncToken getToken() {
+      if (token == null) {
+        throw new ConnectorException(
+            String.format("No change token available for sync of object class %s", objectClass));
+      }
+      return token;
+    }
+
+    private boolean holdBack(SyncDeltaBuilder delta) {
+      SyncDeltaBuilder previous = heldBack;
+      heldBack = delta.setToken(getToken());
+      return previous == null || pass(previous.build());
+    }
+
+    private boolean pass(SyncDelta delta) {
+      count++;
+      stopped = !syncResultsHandler.handle(delta);
+      return !stopped;
+    }
+  }
+}
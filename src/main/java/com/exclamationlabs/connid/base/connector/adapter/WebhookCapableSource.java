@@ -0,0 +1,54 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import com.exclamationlabs.connid.base.connector.results.ChangeJournal;
+import java.util.List;
+
+/**
+ * Since Base Connector 5.3, this interface may be implemented by BaseAdapters whose respective
+ * source API pushes change notifications (webhooks) instead of, or in addition to, offering a
+ * change endpoint. When the connector configuration implements WebhookConfiguration, notifications
+ * posted to getWebhookPath() on the configured port are authenticated, parsed by
+ * parseWebhookEvents() and journaled, and LiveSync passes the journaled changes to Midpoint without
+ * polling the source API. The driver/invocator needs no getChanges implementation.
+ */
+public interface WebhookCapableSource extends SyncCapableSource {
+
+  @Override
+  default ChangeTokenType getChangeTokenType() {
+    return ChangeTokenType.WEBHOOK;
+  }
+
+  /**
+   * Return the HTTP path, such as /webhooks/users, to which the source API posts notifications for
+   * this object class.
+   *
+   * @return Webhook path beginning with a slash.
+   */
+  String getWebhookPath();
+
+  /**
+   * Extract the changes described by a webhook body whose signature has been verified. Changed
+   * identities only need their id; their details are retrieved by getOne during sync.
+   *
+   * @param body Request body as received.
+   * @return Changes to identities of this object class; empty for notifications to be ignored.
+   * @throws IllegalArgumentException If the body is not a valid notification.
+   */
+  List<ChangeJournal.Change> parseWebhookEvents(byte[] body);
+}
@@ -0,0 +1,408 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import com.exclamationlabs.connid.base.connector.configuration.basetypes.WebhookConfiguration;
+import com.exclamationlabs.connid.base.connector.logging.Logger;
+import com.exclamationlabs.connid.base.connector.metrics.ConnectorMetrics;
+import com.exclamationlabs.connid.base.connector.results.ChangeJournal;
+import com.exclamationlabs.connid.base.connector.util.GuardedStringUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.apache.commons.lang3.StringUtils;
+import org.identityconnectors.framework.common.exceptions.ConfigurationException;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+
+/**
+ * Embedded HTTP listener (JDK HttpServer) receiving change notifications for adapters implementing
+ * WebhookCapableSource. Each POST must carry an HMAC-SHA256 signature of its body, computed with
+ * the configured webhook secret, as hexadecimal or Base64 (optionally prefixed by "sha256=").
+ * Requests with a missing or wrong signature are answered with 401 and bodies the adapter cannot
+ * parse with 400. Parsed changes are durably appended to the ChangeJournal of the object class
+ * before 200 is answered, so the sender retries any notification that was not journaled.
+ *
+ * <p>One listener is kept per port while any endpoint is registered on it. Since Midpoint disposes
+ * and recreates pooled connector instances while notifications keep arriving, an endpoint is shared
+ * by the connector instances of its destination system instance (see
+ * ConnectorConfiguration.getInstanceId()) and parses notifications with the adapter registered
+ * last; it is removed once all of them are disposed, and the listener is stopped once no endpoint
+ * is left on its port. A port and path can only be registered for one destination system instance.
+ */
+public class WebhookReceiver {
+
+  static final String DEFAULT_SIGNATURE_HEADER = "X-Signature";
+  private static final String SIGNATURE_ALGORITHM = "HmacSHA256";
+  private static final String SIGNATURE_PREFIX = "sha256=";
+  private static final String JOURNAL_FILE_SUFFIX = ".journal";
+  private static final int MAXIMUM_BODY_BYTES = 1024 * 1024;
+  private static final int HANDLER_THREAD_COUNT = 4;
+
+  // Listener of each port; also guards the registrations
+  private static final Map<Integer, Listener> LISTENERS = new HashMap<>();
+
+  // Endpoint each adapter is registered with, until it is disposed or registered again
+  private static final Map<BaseAdapter<?, ?>, Endpoint> REGISTRATIONS = new IdentityHashMap<>();
+
+  private WebhookReceiver() {}
+
+  /**
+   * Start listening for notifications to the given adapter, if its configuration specifies a
+   * webhook port. A previous registration of the adapter is released first.
+   *
+   * @param adapter Adapter implementing WebhookCapableSource.
+   * @throws ConfigurationException If the webhook secret or journal directory is not configured,
+   *     or the port and path are registered for another destination system instance.
+   */
+  static void register(BaseAdapter<?, ?> adapter) {
+    if (!(adapter instanceof WebhookCapableSource)
+        || !(adapter.getConfiguration() instanceof WebhookConfiguration)) {
+      return;
+    }
+    WebhookConfiguration configuration = (WebhookConfiguration) adapter.getConfiguration();
+    if (configuration.getWebhookPort() == null) {
+      return;
+    }
+    String secret = GuardedStringUtil.read(configuration.getWebhookSecret());
+    if (StringUtils.isEmpty(secret)) {
+      throw new ConfigurationException("webhookSecret is required when webhookPort is set");
+    }
+    String signatureHeader =
+        StringUtils.isBlank(configuration.getWebhookSignatureHeader())
+            ? DEFAULT_SIGNATURE_HEADER
+            : configuration.getWebhookSignatureHeader();
+    int port = configuration.getWebhookPort();
+    String path = ((WebhookCapableSource) adapter).getWebhookPath();
+    WebhookHandler handler =
+        new WebhookHandler(
+            adapter, getJournal(adapter), secret.getBytes(StandardCharsets.UTF_8), signatureHeader);
+
+    synchronized (LISTENERS) {
+      release(adapter);
+      Listener listener = getListener(port);
+      Endpoint endpoint = listener.endpoints.get(path);
+      if (endpoint == null) {
+        endpoint = new Endpoint(port, path, adapter.getInstanceId());
+        listener.endpoints.put(path, endpoint);
+        listener.server.createContext(path, endpoint);
+      } else if (!endpoint.instanceId.equals(adapter.getInstanceId())) {
+        throw new ConfigurationException(
+            String.format(
+                "Webhook port %d path %s is already registered for another resource", port, path));
+      }
+      endpoint.adapters.add(adapter);
+      endpoint.handler = handler;
+      REGISTRATIONS.put(adapter, endpoint);
+    }
+    Logger.info(
+        WebhookReceiver.class,
+        String.format(
+            "Receiving webhooks for type %s at port %d path %s",
+            adapter.getIdentityModelClass().getSimpleName(), port, path));
+  }
+
+  /**
+   * Release the endpoint registration of a disposed adapter, removing the endpoint once no
+   * connector instance uses it and stopping the listener once no endpoint is left on its port.
+   *
+   * @param adapter Adapter of a disposed connector instance.
+   */
+  static void unregister(BaseAdapter<?, ?> adapter) {
+    synchronized (LISTENERS) {
+      release(adapter);
+    }
+  }
+
+  /**
+   * Stop the listener on the given port, if any, regardless of the endpoints registered on it.
+   *
+   * @param port Webhook port.
+   */
+  static void stop(int port) {
+    synchronized (LISTENERS) {
+      Listener listener = LISTENERS.remove(port);
+      if (listener != null) {
+        REGISTRATIONS.values().removeIf(endpoint -> endpoint.port == port);
+        listener.stop();
+      }
+    }
+  }
+
+  // Guarded by LISTENERS
+  private static void release(BaseAdapter<?, ?> adapter) {
+    Endpoint endpoint = REGISTRATIONS.remove(adapter);
+    if (endpoint == null) {
+      return;
+    }
+    endpoint.adapters.removeIf(registered -> registered == adapter);
+    if (!endpoint.adapters.isEmpty()) {
+      return;
+    }
+    Listener listener = LISTENERS.get(endpoint.port);
+    if (listener == null) {
+      return;
+    }
+    listener.endpoints.remove(endpoint.path);
+    listener.server.removeContext(endpoint.path);
+    if (listener.endpoints.isEmpty()) {
+      LISTENERS.remove(endpoint.port);
+      listener.stop();
+      Logger.info(
+          WebhookReceiver.class,
+          String.format("Stopped receiving webhooks at port %d", endpoint.port));
+    }
+  }
+
+  /**
+   * Obtain the journal holding the changes received for the adapter's object class.
+   *
+   * @param adapter Adapter implementing WebhookCapableSource.
+   * @return Change journal.
+   * @throws ConfigurationException If no journal directory is configured.
+   */
+  static ChangeJournal getJournal(BaseAdapter<?, ?> adapter) {
+    String directory =
+        adapter.getConfiguration() instanceof WebhookConfiguration
+            ? ((WebhookConfiguration) adapter.getConfiguration()).getWebhookJournalDirectory()
+            : null;
+    if (StringUtils.isBlank(directory)) {
+      throw new ConfigurationException(
+          String.format(
+              "webhookJournalDirectory is required for webhooks of object class %s",
+              adapter.getType()));
+    }
+    Path journalFile =
+        Paths.get(
+            directory, IdentitySnapshotExecutor.getSnapshotKey(adapter) + JOURNAL_FILE_SUFFIX);
+    try {
+      return ChangeJournal.get(journalFile);
+    } catch (IOException journalFailure) {
+      throw new ConnectorException("Unable to open change journal " + journalFile, journalFailure);
+    }
+  }
+
+  /**
+   * Verify the signature received with a webhook body.
+   *
+   * @param secret Shared webhook secret.
+   * @param body Request body.
+   * @param signature Value of the signature header, or null if absent.
+   * @return true if the signature is the HMAC-SHA256 of the body.
+   */
+  static boolean isValidSignature(byte[] secret, byte[] body, String signature) {
+    if (StringUtils.isBlank(signature)) {
+      return false;
+    }
+    String value = signature.trim();
+    if (StringUtils.startsWithIgnoreCase(value, SIGNATURE_PREFIX)) {
+      value = value.substring(SIGNATURE_PREFIX.length());
+    }
+    byte[] expected;
+    try {
+      Mac mac = Mac.getInstance(SIGNATURE_ALGORITHM);
+      mac.init(new SecretKeySpec(secret, SIGNATURE_ALGORITHM));
+      expected = mac.doFinal(body);
+    } catch (GeneralSecurityException macFailure) {
+      throw new ConnectorException("Unable to compute webhook signature", macFailure);
+    }
+    byte[] received = decodeSignature(value, expected.length);
+    return received != null && MessageDigest.isEqual(expected, received);
+  }
+
+  private static byte[] decodeSignature(String value, int signatureBytes) {
+    if (value.length() == signatureBytes * 2 && value.matches("[0-9a-fA-F]+")) {
+      byte[] decoded = new byte[signatureBytes];
+      for (int index = 0; index < signatureBytes; index++) {
+        decoded[index] = (byte) Integer.parseInt(value.substring(index * 2, index * 2 + 2), 16);
+      }
+      return decoded;
+    }
+    try {
+      return Base64.getDecoder().decode(value);
+    } catch (IllegalArgumentException notBase64) {
+      return null;
+    }
+  }
+
+  // Guarded by LISTENERS
+  private static Listener getListener(int port) {
+    Listener listener = LISTENERS.get(port);
+    if (listener == null) {
+      HttpServer server;
+      try {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+      } catch (IOException bindFailure) {
+        throw new ConnectorException("Unable to listen for webhooks on port " + port, bindFailure);
+      }
+      ExecutorService executor =
+          Executors.newFixedThreadPool(
+              HANDLER_THREAD_COUNT,
+              runnable -> {
+                Thread thread = new Thread(runnable, "webhook-receiver-" + port);
+                thread.setDaemon(true);
+                return thread;
+              });
+      server.setExecutor(executor);
+      server.start();
+      listener = new Listener(server, executor);
+      LISTENERS.put(port, listener);
+    }
+    return listener;
+  }
+
+  private static class Listener {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Endpoint> endpoints = new HashMap<>();
+
+    Listener(HttpServer server, ExecutorService executor) {
+      this.server = server;
+      this.executor = executor;
+    }
+
+    void stop() {
+      server.stop(0);
+      executor.shutdown();
+    }
+  }
+
+  /** Path of a listener, shared by the connector instances of one destination system instance. */
+  private static class Endpoint implements HttpHandler {
+    private final int port;
+    private final String path;
+    private final String instanceId;
+    // Adapters of connector instances not yet disposed, guarded by LISTENERS
+    private final List<BaseAdapter<?, ?>> adapters = new ArrayList<>();
+    // Handler of the adapter registered last, guarded by LISTENERS
+    private WebhookHandler handler;
+
+    Endpoint(int port, String path, String instanceId) {
+      this.port = port;
+      this.path = path;
+      this.instanceId = instanceId;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      WebhookHandler current;
+      WebhookCapableSource source;
+      synchronized (LISTENERS) {
+        current = handler;
+        source =
+            adapters.isEmpty() ? null : (WebhookCapableSource) adapters.get(adapters.size() - 1);
+      }
+      try {
+        // A request may still arrive while the endpoint is being removed
+        exchange.sendResponseHeaders(
+            source == null ? HttpURLConnection.HTTP_UNAVAILABLE : current.receive(exchange, source),
+            -1);
+      } finally {
+        exchange.close();
+      }
+    }
+  }
+
+  /** Signature verification and journaling settings of the adapter registered last. */
+  private static class WebhookHandler {
+    private final ChangeJournal journal;
+    private final byte[] secret;
+    private final String signatureHeader;
+    private final String metricPrefix;
+
+    WebhookHandler(
+        BaseAdapter<?, ?> adapter, ChangeJournal journal, byte[] secret, String signatureHeader) {
+      this.journal = journal;
+      this.secret = secret;
+      this.signatureHeader = signatureHeader;
+      metricPrefix = adapter.getIdentityModelClass().getSimpleName() + ".webhook.";
+    }
+
+    int receive(HttpExchange exchange, WebhookCapableSource source) throws IOException {
+      if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+        return HttpURLConnection.HTTP_BAD_METHOD;
+      }
+      byte[] body = readBody(exchange.getRequestBody());
+      if (body == null) {
+        ConnectorMetrics.increment(metricPrefix + "rejected");
+        return HttpURLConnection.HTTP_ENTITY_TOO_LARGE;
+      }
+      if (!isValidSignature(
+          secret, body, exchange.getRequestHeaders().getFirst(signatureHeader))) {
+        ConnectorMetrics.increment(metricPrefix + "rejected");
+        Logger.warn(
+            WebhookReceiver.class,
+            String.format(
+                "Rejected webhook with invalid signature from %s", exchange.getRemoteAddress()));
+        return HttpURLConnection.HTTP_UNAUTHORIZED;
+      }
+      List<ChangeJournal.Change> changes;
+      try {
+        changes = source.parseWebhookEvents(body);
+      } catch (IllegalArgumentException invalidBody) {
+        ConnectorMetrics.increment(metricPrefix + "rejected");
+        Logger.warn(WebhookReceiver.class, "Rejected invalid webhook body", invalidBody);
+        return HttpURLConnection.HTTP_BAD_REQUEST;
+      }
+      try {
+        journal.append(changes);
+      } catch (IOException | IllegalArgumentException journalFailure) {
+        Logger.warn(WebhookReceiver.class, "Unable to journal webhook changes", journalFailure);
+        return HttpURLConnection.HTTP_INTERNAL_ERROR;
+      }
+      ConnectorMetrics.add(metricPrefix + "changes", changes.size());
+      return HttpURLConnection.HTTP_OK;
+    }
+
+    /**
+     * Read the request body.
+     *
+     * @return Body, or null if it exceeds the maximum size.
+     */
+    private static byte[] readBody(InputStream input) throws IOException {
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int count;
+      while ((count = input.read(buffer)) >= 0) {
+        if (body.size() + count > MAXIMUM_BODY_BYTES) {
+          return null;
+        }
+        body.write(buffer, 0, count);
+      }
+      return body.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import com.exclamationlabs.connid.base.connector.driver.CachingDriver;
+import com.exclamationlabs.connid.base.connector.logging.Logger;
+import com.exclamationlabs.connid.base.connector.metrics.ConnectorMetrics;
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import com.exclamationlabs.connid.base.connector.results.ChangeJournal;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.objects.*;
+import org.identityconnectors.framework.spi.SyncTokenResultsHandler;
+
+/**
+ * Executor used by SyncExecutor for adapters using WEBHOOK change tokens. Changes journaled by the
+ * WebhookReceiver since the sequence number held by the sync token are read in batches; details
+ * of changed identities are retrieved by getOne (an identity no longer found is passed as deleted)
+ * and each SyncDelta carries the sequence number of its change. Since Midpoint only returns a token
+ * once it has processed the changes up to it, journal entries up to the token are then removed.
+ */
+public class WebhookSyncExecutor {
+
+  private static final int JOURNAL_BATCH_SIZE = 1000;
+
+  private WebhookSyncExecutor() {}
+
+  static void execute(
+      BaseAdapter<?, ?> adapter,
+      SyncToken token,
+      SyncResultsHandler syncResultsHandler,
+      OperationOptions options) {
+    ChangeJournal journal = WebhookReceiver.getJournal(adapter);
+    long sequence = getSequence(adapter, token);
+    Map<String, Object> prefetchData = SearchExecutor.getPrefetchData(adapter, options);
+    Set<String> attributesToGet = SearchExecutor.getRequestedAttributes(prefetchData);
+    SyncExecutor.DeltaEmitter emitter =
+        new SyncExecutor.DeltaEmitter(adapter.getType(), syncResultsHandler);
+
+    boolean invalidated = false;
+    try {
+      journal.compact(sequence);
+      List<ChangeJournal.Change> batch;
+      while (!emitter.isStopped()
+          && !(batch = journal.read(sequence, JOURNAL_BATCH_SIZE)).isEmpty()) {
+        if (!invalidated) {
+          // Retained imports no longer reflect the source system
+          IdentitySnapshotExecutor.invalidate(adapter);
+          invalidated = true;
+        }
+        // Only the latest change to an identity within the batch is passed
+        Map<String, ChangeJournal.Change> latestChanges = new LinkedHashMap<>();
+        for (ChangeJournal.Change change : batch) {
+          latestChanges.remove(change.getId());
+          latestChanges.put(change.getId(), change);
+        }
+        for (ChangeJournal.Change change : latestChanges.values()) {
+          emitter.setToken(Long.toString(change.getSequence()));
+          if (!emitChange(adapter, change, emitter, attributesToGet, prefetchData)) {
+            break;
+          }
+        }
+        emitter.endBatch(null);
+        sequence = batch.get(batch.size() - 1).getSequence();
+      }
+    } catch (IOException journalFailure) {
+      throw new ConnectorException("Unable to read webhook change journal", journalFailure);
+    }
+
+    if (!emitter.isStopped() && syncResultsHandler instanceof SyncTokenResultsHandler) {
+      ((SyncTokenResultsHandler) syncResultsHandler)
+          .handleResult(new SyncToken(Long.toString(sequence)));
+    }
+    ConnectorMetrics.add(
+        adapter.getIdentityModelClass().getSimpleName() + ".sync.deltas", emitter.getCount());
+    Logger.info(
+        WebhookSyncExecutor.class,
+        String.format(
+            "Passed %d webhook sync deltas to sync results handler for type %s",
+            emitter.getCount(), adapter.getIdentityModelClass().getSimpleName()));
+  }
+
+  static SyncToken getLatestSyncToken(BaseAdapter<?, ?> adapter) {
+    return new SyncToken(Long.toString(WebhookReceiver.getJournal(adapter).getLastSequence()));
+  }
+
+  private static boolean emitChange(
+      BaseAdapter<?, ?> adapter,
+      ChangeJournal.Change change,
+      SyncExecutor.DeltaEmitter emitter,
+      Set<String> attributesToGet,
+      Map<String, Object> prefetchData) {
+    if (change.isDeleted()) {
+      return emitter.delete(change.getId());
+    }
+    if (adapter.getDriver() instanceof CachingDriver) {
+      ((CachingDriver<?>) adapter.getDriver())
+          .invalidate(adapter.getIdentityModelClass(), change.getId());
+    }
+    IdentityModel identity =
+        adapter.getDriver().getOne(adapter.getIdentityModelClass(), change.getId(), prefetchData);
+    if (identity == null) {
+      return emitter.delete(change.getId());
+    }
+    return emitter.handle(adapter.constructConnectorObjectForIdentity(identity, attributesToGet));
+  }
+
+  private static long getSequence(BaseAdapter<?, ?> adapter, SyncToken token) {
+    if (token == null || token.getValue() == null) {
+      return 0;
+    }
+    try {
+      return Long.parseLong(token.getValue().toString());
+    } catch (NumberFormatException invalidToken) {
+      Logger.warn(
+          WebhookSyncExecutor.class,
+          String.format(
+              "Sync token %s is not a webhook journal sequence for type %s, syncing all changes",
+              token.getValue(), adapter.getIdentityModelClass().getSimpleName()));
+      return 0;
+    }
+  }
+}
@@ -16,15 +16,94 @@
 
 package com.exclamationlabs.connid.base.connector.configuration;
 
+import com.exclamationlabs.connid.base.connector.configuration.basetypes.RestConfiguration;
+import com.exclamationlabs.connid.base.connector.configuration.basetypes.ResultsConfiguration;
+import com.exclamationlabs.connid.base.connector.configuration.basetypes.WebhookConfiguration;
 import com.exclamationlabs.connid.base.connector.logging.Logger;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import org.identityconnectors.common.security.GuardedString;
 
 public class ConfigurationWriter {
 
+  // Properties tuning how the framework reads a destination system, rather than identifying it
+  private static final Set<String> TUNING_PROPERTIES =
+      getPropertyNames(
+          ResultsConfiguration.class, RestConfiguration.class, WebhookConfiguration.class);
+
   private ConfigurationWriter() {}
 
+  /**
+   * Write a digest identifying the destination system instance (such as the tenant and the
+   * credentials used for it) described by a configuration. The digest covers every configuration
+   * property except internal properties (such as the current access token) and the framework's
+   * results, REST and webhook tuning properties, so configurations of different resources yield
+   * different digests while connector instances of the same resource share one.
+   *
+   * @param configuration Configuration of a connector instance.
+   * @return Hexadecimal digest of the identifying configuration properties.
+   */
+  public static String writeInstanceDigest(ConnectorConfiguration configuration) {
+    Map<String, Object> properties = new TreeMap<>();
+    for (Class<?> configClass = configuration.getClass();
+        configClass != null && configClass != Object.class;
+        configClass = configClass.getSuperclass()) {
+      for (Field field : configClass.getDeclaredFields()) {
+        ConfigurationInfo configInfo = field.getAnnotation(ConfigurationInfo.class);
+        if (configInfo == null || configInfo.internal() || isTuningProperty(field, configInfo)) {
+          continue;
+        }
+        try {
+          field.setAccessible(true);
+          properties.putIfAbsent(configInfo.path(), field.get(configuration));
+        } catch (IllegalAccessException ill) {
+          Logger.warn(
+              ConfigurationWriter.class, "Error while reading field value " + field.getName(), ill);
+        }
+      }
+    }
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException unavailable) {
+      throw new IllegalStateException("SHA-256 digest unavailable", unavailable);
+    }
+    digest.update(configuration.getClass().getName().getBytes(StandardCharsets.UTF_8));
+    for (Map.Entry<String, Object> property : properties.entrySet()) {
+      digest.update(("\n" + property.getKey() + "=").getBytes(StandardCharsets.UTF_8));
+      Object value = property.getValue();
+      if (value instanceof GuardedString) {
+        ((GuardedString) value)
+            .access(
+                chars -> {
+                  ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(chars));
+                  digest.update(bytes);
+                  Arrays.fill(bytes.array(), (byte) 0);
+                });
+      } else if (value instanceof String[]) {
+        digest.update(Arrays.toString((String[]) value).getBytes(StandardCharsets.UTF_8));
+      } else if (value != null) {
+        digest.update(value.toString().getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    StringBuilder hex = new StringBuilder();
+    byte[] hash = digest.digest();
+    for (int index = 0; index < 16; index++) {
+      hex.append(String.format("%02x", hash[index]));
+    }
+    return hex.toString();
+  }
+
   public static String writeToString(ConnectorConfiguration configuration) {
     StringBuilder build = new StringBuilder();
     Class<?> configClass = configuration.getClass();
@@ -70,4 +149,23 @@ public class ConfigurationWriter {
       }
     } // end for fields
   }
+
+  private static boolean isTuningProperty(Field field, ConfigurationInfo configInfo) {
+    String path = configInfo.path();
+    return TUNING_PROPERTIES.contains(field.getName())
+        || TUNING_PROPERTIES.contains(path.substring(path.lastIndexOf('.') + 1));
+  }
+
+  private static Set<String> getPropertyNames(Class<?>... configurationTypes) {
+    Set<String> names = new HashSet<>();
+    for (Class<?> configurationType : configurationTypes) {
+      for (Method method : configurationType.getDeclaredMethods()) {
+        if (method.getName().startsWith("get") && method.getName().length() > 3) {
+          names.add(
+              Character.toLowerCase(method.getName().charAt(3)) + method.getName().substring(4));
+        }
+      }
+    }
+    return names;
+  }
 }
@@ -25,6 +25,37 @@ If deepImport is false, deepGet should also be false.
 importBatchSize - integer for batch size when "import" is true.  Driver
     must support pagination in order to perform import in batches.
     If not set, there is no batch size and all records are imported at once.
+importBatchSizeMinimum/importBatchSizeMaximum - optional bounds that enable
+    adaptive import page sizing based on observed page latency, size and failures.
+importPageTargetMillis - optional target latency for an adaptive import page.
+filterImportMaximumMatches - optional limit on the matching records retained while a
+    full import is scanned to evaluate a filter.
+importSnapshotDirectory/importSnapshotTtlSeconds - optional directory and freshness
+    for reusing the last full import file when filtering requires a full import.
+importRetentionSeconds - optional window for answering filter and name searches from the
+    most recent full import held in memory.
+nameIndexTtlSeconds/nameIndexMaximumEntries - optional name to UID index used to answer
+    Name equals searches with a single getOne when there is no getOneByName API.
+changeMarkerCacheMaximumEntries - optional bound on detailed identities kept so that getOne is
+    only repeated for search results whose change marker attribute differs.
+syncHashStoreDirectory - directory holding id to content hash stores used by LiveSync for
+    sources without a change API.
+webhookPort/webhookSecret/webhookSignatureHeader/webhookJournalDirectory - optional embedded
+    receiver for signed change notifications, journaled locally and passed by LiveSync.
+importCheckpointDirectory/importCheckpointTtlSeconds - optional directory and freshness of
+    import positions, so that a failed full import resumes from its last committed page.
+searchTimeBudgetMillis - optional time after which imports and paged searches stop and return
+    the results passed so far with a cookie resuming where they stopped.
+connectTimeoutMillis/readTimeoutMillis/requestTimeoutMillis - optional connect, socket read
+    and total time limits of each RESTful request.
+operationTimeoutMillis - optional time limit of a whole connector operation; outstanding
+    requests and worker threads are cancelled once it passes.
+detailBatchSize - optional number of ids per getMany request when a driver retrieves identity
+    details of search results in batches.
+getObjectBatchWindowMillis - optional time during which concurrent getObject requests are
+    gathered and retrieved as one batch.
+prefetchCacheTtlSeconds - optional time for which prefetch (reference) data loaded by the
+    driver is reused by later operations.
 pagination - if true, this indicates the driver supports pagination
     if false, pagination is not supported and getAll always returns all
     results (except when filter is used)
@@ -65,6 +96,20 @@ public interface ConnectorConfiguration extends Configuration {
     return ConfigurationWriter.writeToString(this);
   }
 
+  /**
+   * Identify the destination system instance (such as the tenant, and the credentials used for it)
+   * this configuration connects to. Data cached across connector instances and the files kept in
+   * snapshot, checkpoint, journal and hash store directories are keyed by it, so that resources
+   * connecting to different instances never share them. By default this is a digest of the
+   * identifying configuration properties (see ConfigurationWriter.writeInstanceDigest), which
+   * changes whenever one of them changes; connectors may return a stable id instead.
+   *
+   * @return Identity of the destination system instance, safe for use in file names.
+   */
+  default String getInstanceId() {
+    return ConfigurationWriter.writeInstanceDigest(this);
+  }
+
   default boolean isTestConfiguration() {
     return (!StringUtils.equalsIgnoreCase("default", getName()));
   }
@@ -23,4 +23,51 @@ public interface RestConfiguration extends ConnectorConfiguration {
   Integer getIoErrorRetries();
 
   void setIoErrorRetries(Integer input);
+
+  /**
+   * Maximum time to establish a connection to the RESTful service, and to obtain a pooled
+   * connection.
+   *
+   * @return Connect timeout in milliseconds, or null to wait without limit.
+   */
+  default Integer getConnectTimeoutMillis() {
+    return null;
+  }
+
+  default void setConnectTimeoutMillis(Integer input) {}
+
+  /**
+   * Maximum time without receiving data while reading a response (socket timeout).
+   *
+   * @return Read timeout in milliseconds, or null to wait without limit.
+   */
+  default Integer getReadTimeoutMillis() {
+    return null;
+  }
+
+  default void setReadTimeoutMillis(Integer input) {}
+
+  /**
+   * Maximum total time of a single request, including reading the response body; requests
+   * exceeding it are aborted and fail with OperationTimeoutException, without IO error retries.
+   *
+   * @return Request timeout in milliseconds, or null if requests have no total limit.
+   */
+  default Integer getRequestTimeoutMillis() {
+    return null;
+  }
+
+  default void setRequestTimeoutMillis(Integer input) {}
+
+  /**
+   * Maximum time of a whole connector operation, such as a search or sync, across every request it
+   * makes (see OperationDeadline). Requests still outstanding when it passes are aborted.
+   *
+   * @return Operation timeout in milliseconds, or null if operations have no time limit.
+   */
+  default Integer getOperationTimeoutMillis() {
+    return null;
+  }
+
+  default void setOperationTimeoutMillis(Integer input) {}
 }
@@ -40,6 +40,244 @@ public interface ResultsConfiguration extends ConnectorConfiguration {
 
   void setImportBatchSize(Integer input);
 
+  /**
+   * Smallest page size the import may use when adaptive page sizing is enabled. Adaptive page
+   * sizing is enabled when both a minimum and a maximum (larger than the minimum) are configured;
+   * otherwise importBatchSize is used for every page. It only applies to single-threaded imports
+   * without fetch-ahead pages and without a known total: multithreaded imports
+   * (getImportUsingPaginationThreadCount), imports with importFetchAheadPages and imports of
+   * CountCapableSource adapters reporting a total plan their page offsets ahead with
+   * importBatchSize, and log a warning when adaptive page sizing is configured.
+   *
+   * @return Minimum import page size, or null if adaptive page sizing is not used.
+   */
+  default Integer getImportBatchSizeMinimum() {
+    return null;
+  }
+
+  default void setImportBatchSizeMinimum(Integer input) {}
+
+  /**
+   * Largest page size the import may use when adaptive page sizing is enabled.
+   *
+   * @return Maximum import page size, or null if adaptive page sizing is not used.
+   */
+  default Integer getImportBatchSizeMaximum() {
+    return null;
+  }
+
+  default void setImportBatchSizeMaximum(Integer input) {}
+
+  /**
+   * Target duration for retrieving a single import page when adaptive page sizing is enabled.
+   * Pages completing well under this target allow the page size to grow, while slower pages
+   * shrink it.
+   *
+   * @return Target page latency in milliseconds, or null to use the framework default.
+   */
+  default Integer getImportPageTargetMillis() {
+    return null;
+  }
+
+  default void setImportPageTargetMillis(Integer input) {}
+
+  /**
+   * Number of pages that may be requested ahead of the ResultsHandler during a paginated import
+   * (counting pages in flight and pages fetched but not yet handled). When set, pages are fetched
+   * on background threads while the handler processes earlier pages, even if the adapter uses a
+   * single import thread.
+   *
+   * @return Number of fetch-ahead pages, or null to use twice the import thread count for
+   *     multithreaded imports and no fetch-ahead for single threaded imports.
+   */
+  default Integer getImportFetchAheadPages() {
+    return null;
+  }
+
+  default void setImportFetchAheadPages(Integer input) {}
+
+  /**
+   * Maximum number of matching records that may be retained while a full import is scanned to
+   * evaluate a filter (when getFilteringRequiresFullImport is true). Non-matching records are
+   * discarded as each page arrives, so this bounds the memory used by such searches.
+   *
+   * @return Maximum number of retained matches, or null for no limit.
+   */
+  default Integer getFilterImportMaximumMatches() {
+    return null;
+  }
+
+  default void setFilterImportMaximumMatches(Integer input) {}
+
+  /**
+   * Directory in which a snapshot of the last full import of each object class is kept, for
+   * adapters whose filtering requires a full import. When set, name lookups and Equals, Contains
+   * and And filters are evaluated against the snapshot file until it expires, instead of importing
+   * all records again. Snapshot files are shared by the connector instances connected to the same
+   * destination system instance (see ConnectorConfiguration.getInstanceId()).
+   *
+   * @return Snapshot directory path, or null if import snapshots are not used.
+   */
+  default String getImportSnapshotDirectory() {
+    return null;
+  }
+
+  default void setImportSnapshotDirectory(String input) {}
+
+  /**
+   * Number of seconds an import snapshot file may be used after it was written.
+   *
+   * @return Snapshot freshness in seconds, or null to use the framework default.
+   */
+  default Integer getImportSnapshotTtlSeconds() {
+    return null;
+  }
+
+  default void setImportSnapshotTtlSeconds(Integer input) {}
+
+  /**
+   * Number of seconds the snapshot of the most recent full import is retained in memory, for
+   * adapters whose filtering requires a full import. Name lookups and Equals, Contains and And
+   * filters issued within that window (such as during reconciliation) are answered from the
+   * retained snapshot. The snapshot is discarded when a record of the object class is created,
+   * updated or deleted through the adapter.
+   *
+   * @return Retention in seconds, or null if import results are not retained.
+   */
+  default Integer getImportRetentionSeconds() {
+    return null;
+  }
+
+  default void setImportRetentionSeconds(Integer input) {}
+
+  /**
+   * Number of seconds an identity name to UID mapping, observed from records passing through the
+   * adapter, may be used to answer a Name equals search with a single getOne. Only applicable to
+   * adapters without a getOneByName API.
+   *
+   * @return Name index entry lifetime in seconds, or null if the name index is not used.
+   */
+  default Integer getNameIndexTtlSeconds() {
+    return null;
+  }
+
+  default void setNameIndexTtlSeconds(Integer input) {}
+
+  /**
+   * Maximum number of name index entries held per object class; least recently used entries are
+   * discarded beyond this.
+   *
+   * @return Maximum entries, or null to use the framework default.
+   */
+  default Integer getNameIndexMaximumEntries() {
+    return null;
+  }
+
+  default void setNameIndexMaximumEntries(Integer input) {}
+
+  /**
+   * Maximum number of detailed identities held per object class for adapters declaring a change
+   * marker attribute (see EnhancedPaginationAndFiltering.getChangeMarkerAttribute()); least
+   * recently used entries are discarded beyond this.
+   *
+   * @return Maximum entries, or null to use the framework default.
+   */
+  default Integer getChangeMarkerCacheMaximumEntries() {
+    return null;
+  }
+
+  default void setChangeMarkerCacheMaximumEntries(Integer input) {}
+
+  /**
+   * Directory in which the id to content hash store of each object class is kept, for adapters
+   * whose LiveSync compares full imports (SyncCapableSource ChangeTokenType.SNAPSHOT_DIFF). Store
+   * files are named by object class and destination system instance (see
+   * ConnectorConfiguration.getInstanceId()), so resources of different tenants may share it.
+   *
+   * @return Hash store directory path, or null if snapshot-diff sync is not used.
+   */
+  default String getSyncHashStoreDirectory() {
+    return null;
+  }
+
+  default void setSyncHashStoreDirectory(String input) {}
+
+  /**
+   * Directory in which the position of each full import is committed after every page, so that a
+   * failed import resumes from its last committed page when requested again (see
+   * ImportCheckpoint).
+   *
+   * @return Checkpoint directory path, or null if imports are not checkpointed.
+   */
+  default String getImportCheckpointDirectory() {
+    return null;
+  }
+
+  default void setImportCheckpointDirectory(String input) {}
+
+  /**
+   * Age after which the checkpoint of a failed import is no longer resumed.
+   *
+   * @return Checkpoint freshness in seconds, or null to use the framework default.
+   */
+  default Integer getImportCheckpointTtlSeconds() {
+    return null;
+  }
+
+  default void setImportCheckpointTtlSeconds(Integer input) {}
+
+  /**
+   * Time allowed for each search before it stops issuing requests to the source API and returns
+   * the results passed so far along with a resume cookie (see SearchBudget). May be overridden per
+   * search by the SEARCH_TIME_BUDGET_MILLIS operation option. Only paginated imports and searches
+   * honor the budget; imports of adapters that are not PaginationCapableSource stream every record.
+   *
+   * @return Search time budget in milliseconds, or null if searches are not time-budgeted.
+   */
+  default Integer getSearchTimeBudgetMillis() {
+    return null;
+  }
+
+  default void setSearchTimeBudgetMillis(Integer input) {}
+
+  /**
+   * Maximum number of ids passed to each getMany request when search results are completed with
+   * identity details, for drivers supporting batch retrieval (see Driver.supportsGetMany()).
+   *
+   * @return Ids per getMany request, or null to use the framework default.
+   */
+  default Integer getDetailBatchSize() {
+    return null;
+  }
+
+  default void setDetailBatchSize(Integer input) {}
+
+  /**
+   * Time during which concurrent getObject requests for an object class are gathered, so that they
+   * are retrieved with a single getMany request (or a bounded number of parallel getOne requests)
+   * of at most detailBatchSize ids.
+   *
+   * @return Window in milliseconds, or null to retrieve each getObject request on its own.
+   */
+  default Integer getGetObjectBatchWindowMillis() {
+    return null;
+  }
+
+  default void setGetObjectBatchWindowMillis(Integer input) {}
+
+  /**
+   * Time for which the prefetch data returned by the driver/invocator getPrefetch() is reused by
+   * later operations on the same object class. Cached data is discarded when a record is created,
+   * updated or deleted through the connector.
+   *
+   * @return Time to live in seconds, or null to invoke getPrefetch for every operation.
+   */
+  default Integer getPrefetchCacheTtlSeconds() {
+    return null;
+  }
+
+  default void setPrefetchCacheTtlSeconds(Integer input) {}
+
   @Deprecated
   Boolean getPagination();
 
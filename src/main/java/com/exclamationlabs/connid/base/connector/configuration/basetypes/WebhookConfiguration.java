@@ -0,0 +1,47 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.configuration.basetypes;
+
+import com.exclamationlabs.connid.base.connector.configuration.ConnectorConfiguration;
+import org.identityconnectors.common.security.GuardedString;
+
+/**
+ * Configuration properties for connectors whose destination system pushes change notifications
+ * (webhooks) to the embedded webhook receiver, which are then passed to Midpoint by LiveSync for
+ * adapters using SyncCapableSource ChangeTokenType.WEBHOOK. The receiver is only started if a port
+ * is configured.
+ */
+public interface WebhookConfiguration extends ConnectorConfiguration {
+  Integer getWebhookPort();
+
+  void setWebhookPort(Integer input);
+
+  /** Shared secret with which the destination system signs (HMAC-SHA256) each webhook body. */
+  GuardedString getWebhookSecret();
+
+  void setWebhookSecret(GuardedString input);
+
+  /** Name of the request header holding the signature; if not set, X-Signature is used. */
+  String getWebhookSignatureHeader();
+
+  void setWebhookSignatureHeader(String input);
+
+  /** Directory in which the change journal of each object class is kept. */
+  String getWebhookJournalDirectory();
+
+  void setWebhookJournalDirectory(String input);
+}
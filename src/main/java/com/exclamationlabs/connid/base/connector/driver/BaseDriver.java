@@ -20,9 +20,12 @@ import com.exclamationlabs.connid.base.connector.configuration.ConnectorConfigur
 import com.exclamationlabs.connid.base.connector.model.IdentityModel;
 import com.exclamationlabs.connid.base.connector.results.ResultsFilter;
 import com.exclamationlabs.connid.base.connector.results.ResultsPaginator;
+import com.exclamationlabs.connid.base.connector.results.SyncChanges;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import org.identityconnectors.framework.common.exceptions.ConnectorException;
 
 /**
@@ -78,6 +81,20 @@ public abstract class BaseDriver<T extends ConnectorConfiguration> implements Dr
     return getInvocator(modelClass).getOne(this, id, prefetchDataMap);
   }
 
+  @Override
+  public Map<String, IdentityModel> getMany(
+      Class<? extends IdentityModel> modelClass,
+      Collection<String> ids,
+      Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    return getInvocator(modelClass).getMany(this, ids, prefetchDataMap);
+  }
+
+  @Override
+  public boolean supportsGetMany(Class<? extends IdentityModel> modelClass) {
+    return getInvocator(modelClass).supportsGetMany();
+  }
+
   @Override
   @Deprecated
   public Set<IdentityModel> getAll(
@@ -100,6 +117,42 @@ public abstract class BaseDriver<T extends ConnectorConfiguration> implements Dr
     return getInvocator(modelClass).getAll(this, filter, paginator, resultCap, prefetchDataMap);
   }
 
+  @Override
+  public void streamAll(
+      Class<? extends IdentityModel> modelClass,
+      ResultsFilter filter,
+      ResultsPaginator paginator,
+      Integer resultCap,
+      Map<String, Object> prefetchDataMap,
+      Consumer<IdentityModel> consumer)
+      throws ConnectorException {
+    getInvocator(modelClass)
+        .streamAll(this, filter, paginator, resultCap, prefetchDataMap, consumer);
+  }
+
+  @Override
+  public Integer getCount(
+      Class<? extends IdentityModel> modelClass,
+      ResultsFilter filter,
+      Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    return getInvocator(modelClass).getCount(this, filter, prefetchDataMap);
+  }
+
+  @Override
+  public SyncChanges getChanges(
+      Class<? extends IdentityModel> modelClass, String token, Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    return getInvocator(modelClass).getChanges(this, token, prefetchDataMap);
+  }
+
+  @Override
+  public String getLatestChangeToken(
+      Class<? extends IdentityModel> modelClass, Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    return getInvocator(modelClass).getLatestChangeToken(this, prefetchDataMap);
+  }
+
   public Map<String, Object> getPrefetch(Class<? extends IdentityModel> modelClass)
       throws ConnectorException {
     return getInvocator(modelClass).getPrefetch(this);
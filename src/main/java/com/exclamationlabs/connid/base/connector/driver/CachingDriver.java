@@ -0,0 +1,393 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.driver;
+
+import com.exclamationlabs.connid.base.connector.adapter.SearchExecutor;
+import com.exclamationlabs.connid.base.connector.authenticator.Authenticator;
+import com.exclamationlabs.connid.base.connector.configuration.ConnectorConfiguration;
+import com.exclamationlabs.connid.base.connector.metrics.ConnectorMetrics;
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import com.exclamationlabs.connid.base.connector.results.ResultsFilter;
+import com.exclamationlabs.connid.base.connector.results.ResultsPaginator;
+import com.exclamationlabs.connid.base.connector.results.SyncChanges;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+
+/**
+ * Driver decorator that caches getOne results per IdentityModel class and id, so that repeated
+ * requests for the same identity during a reconciliation (getObject, search by UID, and detail
+ * requests for search results) are served without a request to the destination system. All other
+ * operations are passed to the wrapped driver.
+ *
+ * <p>Cached entries expire after a time-to-live, and the least recently used entries are discarded
+ * beyond a maximum number of entries. Entries are removed when their identity is updated or
+ * deleted through this driver. Results of getOne requests narrowed to a subset of attributes (see
+ * SearchExecutor.ATTRIBUTES_TO_GET_KEY) are neither served from nor placed in the cache.
+ *
+ * <p>Cached identities are not copied: every getOne request served from the cache receives the
+ * same IdentityModel instance, possibly on several threads at once. Adapters and invocators must
+ * therefore treat getOne results as read-only; an identity that has to be modified must be copied
+ * first.
+ *
+ * <p>Usage: in the connector constructor, call setDriver(new CachingDriver&lt;&gt;(new
+ * MyDriver())) instead of setDriver(new MyDriver()). Note that the wrapped driver, not this
+ * decorator, is passed to invocators.
+ *
+ * @param <T> ConnectorConfiguration type of the wrapped driver.
+ */
+@SuppressWarnings("rawtypes")
+public class CachingDriver<T extends ConnectorConfiguration> implements Driver<T> {
+
+  public static final int DEFAULT_MAXIMUM_ENTRIES = 10000;
+  public static final long DEFAULT_TTL_SECONDS = 300L;
+
+  private final Driver<T> delegate;
+  private final long ttlMillis;
+  private final Map<CacheKey, CacheEntry> cache;
+
+  public CachingDriver(Driver<T> delegate) {
+    this(delegate, DEFAULT_MAXIMUM_ENTRIES, DEFAULT_TTL_SECONDS);
+  }
+
+  public CachingDriver(Driver<T> delegate, int maximumEntries, long ttlSeconds) {
+    this.delegate = delegate;
+    this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+    this.cache =
+        Collections.synchronizedMap(
+            new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true) {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+                return size() > maximumEntries;
+              }
+            });
+  }
+
+  public Driver<T> getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public void initialize(T configuration, Authenticator<T> authenticator)
+      throws ConnectorException {
+    delegate.initialize(configuration, authenticator);
+  }
+
+  @Override
+  public void test() throws ConnectorException {
+    delegate.test();
+  }
+
+  @Override
+  public void fullConnectionTest() throws ConnectorException {
+    delegate.fullConnectionTest();
+  }
+
+  @Override
+  public void close() {
+    invalidateAll();
+    delegate.close();
+  }
+
+  @Override
+  public DriverInvocator getInvocator(Class<? extends IdentityModel> identityModelClass) {
+    return delegate.getInvocator(identityModelClass);
+  }
+
+  @Override
+  public void addInvocator(
+      Class<? extends IdentityModel> identityModelClass, DriverInvocator invocator) {
+    delegate.addInvocator(identityModelClass, invocator);
+  }
+
+  @Override
+  public String create(Class<? extends IdentityModel> identityModelClass, IdentityModel model)
+      throws ConnectorException {
+    return delegate.create(identityModelClass, model);
+  }
+
+  @Override
+  public void update(
+      Class<? extends IdentityModel> identityModelClass, String objectId, IdentityModel userModel)
+      throws ConnectorException {
+    try {
+      delegate.update(identityModelClass, objectId, userModel);
+    } finally {
+      invalidate(identityModelClass, objectId);
+    }
+  }
+
+  @Override
+  public void delete(Class<? extends IdentityModel> identityModelClass, String objectId)
+      throws ConnectorException {
+    try {
+      delegate.delete(identityModelClass, objectId);
+    } finally {
+      invalidate(identityModelClass, objectId);
+    }
+  }
+
+  @Override
+  @Deprecated
+  public Set<IdentityModel> getAll(
+      Class<? extends IdentityModel> identityModelClass,
+      ResultsFilter resultsFilter,
+      ResultsPaginator pagination,
+      Integer resultCap)
+      throws ConnectorException {
+    return delegate.getAll(identityModelClass, resultsFilter, pagination, resultCap);
+  }
+
+  @Override
+  public Set<IdentityModel> getAll(
+      Class<? extends IdentityModel> identityModelClass,
+      ResultsFilter resultsFilter,
+      ResultsPaginator pagination,
+      Integer resultCap,
+      Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    return delegate.getAll(
+        identityModelClass, resultsFilter, pagination, resultCap, prefetchDataMap);
+  }
+
+  @Override
+  public void streamAll(
+      Class<? extends IdentityModel> identityModelClass,
+      ResultsFilter resultsFilter,
+      ResultsPaginator pagination,
+      Integer resultCap,
+      Map<String, Object> prefetchDataMap,
+      Consumer<IdentityModel> consumer)
+      throws ConnectorException {
+    delegate.streamAll(
+        identityModelClass, resultsFilter, pagination, resultCap, prefetchDataMap, consumer);
+  }
+
+  @Override
+  public IdentityModel getOne(
+      Class<? extends IdentityModel> identityModelClass,
+      String idValue,
+      Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    if (isNarrowedRequest(prefetchDataMap)) {
+      return delegate.getOne(identityModelClass, idValue, prefetchDataMap);
+    }
+    CacheKey key = new CacheKey(identityModelClass, idValue);
+    CacheEntry entry = cache.get(key);
+    if (entry != null && entry.expiresMillis >= System.currentTimeMillis()) {
+      ConnectorMetrics.increment(getMetricPrefix(identityModelClass) + ".hit");
+      return entry.identity;
+    }
+    ConnectorMetrics.increment(getMetricPrefix(identityModelClass) + ".miss");
+    IdentityModel identity = delegate.getOne(identityModelClass, idValue, prefetchDataMap);
+    if (identity != null) {
+      cache.put(key, new CacheEntry(identity, System.currentTimeMillis() + ttlMillis));
+    } else if (entry != null) {
+      cache.remove(key, entry);
+    }
+    return identity;
+  }
+
+  @Override
+  public Map<String, IdentityModel> getMany(
+      Class<? extends IdentityModel> identityModelClass,
+      Collection<String> idValues,
+      Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    if (isNarrowedRequest(prefetchDataMap)) {
+      return delegate.getMany(identityModelClass, idValues, prefetchDataMap);
+    }
+    Map<String, IdentityModel> results = new LinkedHashMap<>();
+    List<String> missingIds = new ArrayList<>();
+    long nowMillis = System.currentTimeMillis();
+    for (String idValue : idValues) {
+      CacheEntry entry = cache.get(new CacheKey(identityModelClass, idValue));
+      if (entry != null && entry.expiresMillis >= nowMillis) {
+        results.put(idValue, entry.identity);
+      } else {
+        missingIds.add(idValue);
+      }
+    }
+    ConnectorMetrics.add(getMetricPrefix(identityModelClass) + ".hit", results.size());
+    ConnectorMetrics.add(getMetricPrefix(identityModelClass) + ".miss", missingIds.size());
+    if (!missingIds.isEmpty()) {
+      Map<String, IdentityModel> retrieved =
+          delegate.getMany(identityModelClass, missingIds, prefetchDataMap);
+      long expiresMillis = System.currentTimeMillis() + ttlMillis;
+      for (String idValue : missingIds) {
+        IdentityModel identity = retrieved == null ? null : retrieved.get(idValue);
+        if (identity != null) {
+          cache.put(
+              new CacheKey(identityModelClass, idValue), new CacheEntry(identity, expiresMillis));
+          results.put(idValue, identity);
+        } else {
+          invalidate(identityModelClass, idValue);
+        }
+      }
+    }
+    return results;
+  }
+
+  @Override
+  public boolean supportsGetMany(Class<? extends IdentityModel> identityModelClass) {
+    return delegate.supportsGetMany(identityModelClass);
+  }
+
+  @Override
+  public Integer getCount(
+      Class<? extends IdentityModel> identityModelClass,
+      ResultsFilter resultsFilter,
+      Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    return delegate.getCount(identityModelClass, resultsFilter, prefetchDataMap);
+  }
+
+  @Override
+  public SyncChanges getChanges(
+      Class<? extends IdentityModel> identityModelClass,
+      String token,
+      Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    SyncChanges changes = delegate.getChanges(identityModelClass, token, prefetchDataMap);
+    if (changes != null) {
+      changes
+          .getChangedIdentities()
+          .forEach(identity -> invalidate(identityModelClass, identity.getIdentityIdValue()));
+      changes.getDeletedIds().forEach(id -> invalidate(identityModelClass, id));
+    }
+    return changes;
+  }
+
+  @Override
+  public String getLatestChangeToken(
+      Class<? extends IdentityModel> identityModelClass, Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    return delegate.getLatestChangeToken(identityModelClass, prefetchDataMap);
+  }
+
+  @Override
+  public Map<String, Object> getPrefetch(Class<? extends IdentityModel> identityModelClass) {
+    return delegate.getPrefetch(identityModelClass);
+  }
+
+  @Override
+  @Deprecated
+  public IdentityModel getOneByName(
+      Class<? extends IdentityModel> identityModelClass, String nameValue)
+      throws ConnectorException {
+    return delegate.getOneByName(identityModelClass, nameValue);
+  }
+
+  @Override
+  public IdentityModel getOneByName(
+      Class<? extends IdentityModel> identityModelClass,
+      String nameValue,
+      Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    return delegate.getOneByName(identityModelClass, nameValue, prefetchDataMap);
+  }
+
+  /**
+   * Place identities holding all of their attributes (such as getAll results for an adapter whose
+   * getSearchResultsContainsAllAttributes is true) in the cache, so that subsequent getOne
+   * requests for them are served from the cache. The identities are cached as is, so they must
+   * not be modified afterwards.
+   *
+   * @param identityModelClass Class of the identities.
+   * @param identities Complete identities to be cached.
+   */
+  public void cacheAll(
+      Class<? extends IdentityModel> identityModelClass, Collection<IdentityModel> identities) {
+    long expiresMillis = System.currentTimeMillis() + ttlMillis;
+    for (IdentityModel identity : identities) {
+      if (identity != null && identity.getIdentityIdValue() != null) {
+        cache.put(
+            new CacheKey(identityModelClass, identity.getIdentityIdValue()),
+            new CacheEntry(identity, expiresMillis));
+      }
+    }
+  }
+
+  public void invalidate(Class<? extends IdentityModel> identityModelClass, String objectId) {
+    cache.remove(new CacheKey(identityModelClass, objectId));
+  }
+
+  public void invalidateAll() {
+    cache.clear();
+  }
+
+  /**
+   * Obtain the fraction of getOne requests for an IdentityModel class that were served from the
+   * cache since the metrics were last reset.
+   *
+   * @param identityModelClass Class of IdentityModel.
+   * @return Hit ratio between 0 and 1, or 0 if no requests have been made.
+   */
+  public double getHitRatio(Class<? extends IdentityModel> identityModelClass) {
+    long hits = ConnectorMetrics.getCount(getMetricPrefix(identityModelClass) + ".hit");
+    long misses = ConnectorMetrics.getCount(getMetricPrefix(identityModelClass) + ".miss");
+    return hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+  }
+
+  public int size() {
+    return cache.size();
+  }
+
+  private static boolean isNarrowedRequest(Map<String, Object> prefetchDataMap) {
+    return prefetchDataMap != null
+        && prefetchDataMap.get(SearchExecutor.ATTRIBUTES_TO_GET_KEY) != null;
+  }
+
+  private static String getMetricPrefix(Class<? extends IdentityModel> identityModelClass) {
+    return identityModelClass.getSimpleName() + ".identityCache";
+  }
+
+  private static class CacheKey {
+    private final Class<? extends IdentityModel> identityModelClass;
+    private final String id;
+
+    CacheKey(Class<? extends IdentityModel> identityModelClass, String id) {
+      this.identityModelClass = identityModelClass;
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object input) {
+      if (!(input instanceof CacheKey)) {
+        return false;
+      }
+      CacheKey other = (CacheKey) input;
+      return identityModelClass == other.identityModelClass && Objects.equals(id, other.id);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(identityModelClass, id);
+    }
+  }
+
+  private static class CacheEntry {
+    private final IdentityModel identity;
+    private final long expiresMillis;
+
+    CacheEntry(IdentityModel identity, long expiresMillis) {
+      this.identity = identity;
+      this.expiresMillis = expiresMillis;
+    }
+  }
+}
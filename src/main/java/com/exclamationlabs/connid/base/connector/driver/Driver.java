@@ -21,8 +21,12 @@ import com.exclamationlabs.connid.base.connector.configuration.ConnectorConfigur
 import com.exclamationlabs.connid.base.connector.model.IdentityModel;
 import com.exclamationlabs.connid.base.connector.results.ResultsFilter;
 import com.exclamationlabs.connid.base.connector.results.ResultsPaginator;
+import com.exclamationlabs.connid.base.connector.results.SyncChanges;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import org.identityconnectors.framework.common.exceptions.ConnectorException;
 
 /**
@@ -207,6 +211,151 @@ public interface Driver<T extends ConnectorConfiguration> {
       Map<String, Object> prefetchDataMap)
       throws ConnectorException;
 
+  /**
+   * Process a request to get several objects of a particular type from the destination system,
+   * matching the requested ids.
+   *
+   * <p>Default behavior calls getOne for each id. Drivers whose invocators can retrieve records in
+   * batches should implement this method along with supportsGetMany().
+   *
+   * @param identityModelClass Class reference pertaining to the IdentityModel object applicable for
+   *     the get request.
+   * @param idValues Ids of the records to be retrieved.
+   * @param prefetchDataMap Map of prefetch data applicable to the Identity Model and that may be
+   *     understood by the invocator.
+   * @return Map of id to IdentityModel instance for each id found; ids of records not found are
+   *     absent.
+   * @throws ConnectorException If get operation failed or was invalid.
+   */
+  default Map<String, IdentityModel> getMany(
+      Class<? extends IdentityModel> identityModelClass,
+      Collection<String> idValues,
+      Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    Map<String, IdentityModel> results = new LinkedHashMap<>();
+    for (String idValue : idValues) {
+      IdentityModel result = getOne(identityModelClass, idValue, prefetchDataMap);
+      if (result != null) {
+        results.put(idValue, result);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Indicate whether getMany() retrieves the records of a particular type in batch requests, in
+   * which case deep searches prefer it to one getOne per identity.
+   *
+   * @param identityModelClass Class reference pertaining to the IdentityModel object.
+   * @return true if batch retrieval is supported; default is false.
+   */
+  default boolean supportsGetMany(Class<? extends IdentityModel> identityModelClass) {
+    return false;
+  }
+
+  /**
+   * Process a request to get all objects of a particular type from the destination system, passing
+   * each object to the given consumer as it is obtained instead of returning a Set.
+   *
+   * <p>The consumer must be invoked on the calling thread, and only before this method returns.
+   * Default behavior calls getAll (with prefetch) and passes each object of the returned Set to the
+   * consumer.
+   *
+   * @param identityModelClass Class reference pertaining to the IdentityModel object applicable for
+   *     the get request.
+   * @param resultsFilter Object possibly containing an attribute value to filter upon.
+   * @param pagination Object possibly containing current pagination information for results being
+   *     processed.
+   * @param resultCap The maximum number of results that should be returned. This can be null but if
+   *     present will override the pagination pageSize.
+   * @param prefetchDataMap Map of prefetch data applicable to the Identity Model and that may be
+   *     understood by the invocator.
+   * @param consumer Receives each IdentityModel instance of the particular type.
+   * @throws ConnectorException If get operation failed or was invalid.
+   */
+  default void streamAll(
+      Class<? extends IdentityModel> identityModelClass,
+      ResultsFilter resultsFilter,
+      ResultsPaginator pagination,
+      Integer resultCap,
+      Map<String, Object> prefetchDataMap,
+      Consumer<IdentityModel> consumer)
+      throws ConnectorException {
+    Set<IdentityModel> results =
+        getAll(identityModelClass, resultsFilter, pagination, resultCap, prefetchDataMap);
+    if (results != null) {
+      results.forEach(consumer);
+    }
+  }
+
+  /**
+   * Process a request to obtain the total number of objects of a particular type on the destination
+   * system, matching the given filter if present.
+   *
+   * <p>Default behavior is to throw UnsupportedOperationException. Underlying driver/invocator must
+   * both provide their own support for this method if it supported and needed, and the adapter
+   * should implement CountCapableSource.
+   *
+   * @param identityModelClass Class reference pertaining to the IdentityModel object applicable for
+   *     the count request.
+   * @param resultsFilter Object possibly containing an attribute value to filter upon.
+   * @param prefetchDataMap Map of prefetch data applicable to the Identity Model and that may be
+   *     understood by the invocator.
+   * @return Total number of objects, or null if the destination system could not report it.
+   * @throws ConnectorException If count operation failed or was invalid.
+   */
+  default Integer getCount(
+      Class<? extends IdentityModel> identityModelClass,
+      ResultsFilter resultsFilter,
+      Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    throw new UnsupportedOperationException("Driver does not support getCount");
+  }
+
+  /**
+   * Process a request to obtain the objects of a particular type that were created, updated or
+   * deleted on the destination system since the given change token.
+   *
+   * <p>Default behavior is to throw UnsupportedOperationException. Underlying driver/invocator must
+   * both provide their own support for this method if it supported and needed, and the adapter
+   * should implement SyncCapableSource.
+   *
+   * @param identityModelClass Class reference pertaining to the IdentityModel object applicable for
+   *     the change request.
+   * @param token Change token from a previous sync, or null if changes from the beginning are
+   *     requested.
+   * @param prefetchDataMap Map of prefetch data applicable to the Identity Model and that may be
+   *     understood by the invocator.
+   * @return Batch of changes and the token to continue from.
+   * @throws ConnectorException If change request failed or was invalid.
+   */
+  default SyncChanges getChanges(
+      Class<? extends IdentityModel> identityModelClass,
+      String token,
+      Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    throw new UnsupportedOperationException("Driver does not support getChanges");
+  }
+
+  /**
+   * Process a request to obtain the current change token of the destination system for a
+   * particular type, from which a later getChanges request will report changes.
+   *
+   * <p>Default behavior is to throw UnsupportedOperationException.
+   *
+   * @param identityModelClass Class reference pertaining to the IdentityModel object applicable for
+   *     the request.
+   * @param prefetchDataMap Map of prefetch data applicable to the Identity Model and that may be
+   *     understood by the invocator.
+   * @return Latest change token.
+   * @throws ConnectorException If request failed or was invalid.
+   */
+  default String getLatestChangeToken(
+      Class<? extends IdentityModel> identityModelClass, Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    throw new UnsupportedOperationException("Driver does not support getLatestChangeToken");
+  }
+
   /**
    * Gives the ability for an Invocator to provide custom prefetched data prior to the execution of
    * any getAll/getOne/getOneByName call. For requests where a string of get requests is required
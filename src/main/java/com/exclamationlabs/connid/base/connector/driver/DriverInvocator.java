@@ -19,9 +19,12 @@ package com.exclamationlabs.connid.base.connector.driver;
 import com.exclamationlabs.connid.base.connector.model.IdentityModel;
 import com.exclamationlabs.connid.base.connector.results.ResultsFilter;
 import com.exclamationlabs.connid.base.connector.results.ResultsPaginator;
+import com.exclamationlabs.connid.base.connector.results.SyncChanges;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import org.identityconnectors.framework.common.exceptions.ConnectorException;
 
 /**
@@ -90,7 +93,9 @@ public interface DriverInvocator<D extends Driver<?>, T extends IdentityModel> {
    * @param resultCap The maximum number of results that should be returned by getAll. This can be
    *     null but if present will override the pagination pageSize.
    * @param prefetchDataMap Map of prefetch data applicable to the Identity Model and that may be
-   *     understood by the invocator.
+   *     understood by the invocator. If Midpoint limited the attributes to be returned, the Set of
+   *     requested attribute names is also present under SearchExecutor.ATTRIBUTES_TO_GET_KEY, so
+   *     the invocator may restrict the fields requested from the destination system.
    * @return A list of all IdentityModel objects of this Invocator's particular type. Can be null or
    *     an empty list if the destination system currently has no records.
    * @throws ConnectorException If get request failed, was invalid or was not permitted.
@@ -105,6 +110,42 @@ public interface DriverInvocator<D extends Driver<?>, T extends IdentityModel> {
     throw new UnsupportedOperationException("getAll with prefetch not implemented");
   }
 
+  /**
+   * Get all the objects of this invocator's particular type, passing each one to the given
+   * consumer as it is read from the destination system rather than collecting them into a Set. An
+   * invocator reading a large result set page by page (or from a streaming response) can override
+   * this so that the full result set never needs to be held in memory.
+   *
+   * <p>The consumer must be invoked on the calling thread, in the order results should be returned
+   * to Midpoint, and only before this method returns. Default behavior calls getAll (with
+   * prefetch) and passes each object of the returned Set to the consumer.
+   *
+   * @param driver Driver belonging to this Invocator and providing interaction with the applicable
+   *     destination system.
+   * @param filter Object possibly containing an attribute value to filter upon.
+   * @param paginator Object possibly containing current pagination information for results being
+   *     processed.
+   * @param resultCap The maximum number of results that should be returned. This can be null but if
+   *     present will override the pagination pageSize.
+   * @param prefetchDataMap Map of prefetch data applicable to the Identity Model and that may be
+   *     understood by the invocator.
+   * @param consumer Receives each IdentityModel object of this Invocator's particular type.
+   * @throws ConnectorException If get request failed, was invalid or was not permitted.
+   */
+  default void streamAll(
+      D driver,
+      ResultsFilter filter,
+      ResultsPaginator paginator,
+      Integer resultCap,
+      Map<String, Object> prefetchDataMap,
+      Consumer<? super T> consumer)
+      throws ConnectorException {
+    Set<T> results = getAll(driver, filter, paginator, resultCap, prefetchDataMap);
+    if (results != null) {
+      results.forEach(consumer);
+    }
+  }
+
   /**
    * Get a single object of this invocator's particular type on the destination system that matches
    * the given identifier.
@@ -114,7 +155,10 @@ public interface DriverInvocator<D extends Driver<?>, T extends IdentityModel> {
    * @param objectId String holding the identifier for the object being sought on the destination
    *     system.
    * @param prefetchDataMap Map of prefetch data applicable to the Identity Model and that may be
-   *     understood by the invocator.
+   *     understood by the invocator. May contain SearchExecutor.ATTRIBUTES_TO_GET_KEY (see getAll).
+   *     When retrieving the details of a search result this is a per-invocation FetchContext, also
+   *     holding the partial identity returned by getAll (see FetchContext.of()); values written to
+   *     it are not seen by other invocations.
    * @return An IdentityModel object of this Invocator's particular type that corresponds to the
    *     given identifier. Can return null if no record matching the id was found on the destination
    *     system.
@@ -123,6 +167,109 @@ public interface DriverInvocator<D extends Driver<?>, T extends IdentityModel> {
   T getOne(D driver, String objectId, Map<String, Object> prefetchDataMap)
       throws ConnectorException;
 
+  /**
+   * Get the objects of this invocator's particular type matching each of the given identifiers,
+   * for destination systems able to return several records by id in a single request (such as
+   * ?ids=a,b,c, a filter on id in (...) or a lookup request body). Invocators overriding this
+   * method should also override supportsGetMany() to return true, so that deep searches retrieve
+   * identity details in batches instead of with one getOne per identity.
+   *
+   * <p>Default behavior calls getOne for each identifier.
+   *
+   * @param driver Driver belonging to this Invocator and providing interaction with the applicable
+   *     destination system.
+   * @param objectIds Identifiers of the objects being sought on the destination system; at most
+   *     the detail batch size configured for the connector.
+   * @param prefetchDataMap Map of prefetch data applicable to the Identity Model and that may be
+   *     understood by the invocator. May contain SearchExecutor.ATTRIBUTES_TO_GET_KEY (see getAll).
+   * @return Map of identifier to IdentityModel object for each identifier found. Identifiers with
+   *     no matching record on the destination system are absent from the Map.
+   * @throws ConnectorException If get request failed, was invalid or was not permitted.
+   */
+  default Map<String, T> getMany(
+      D driver, Collection<String> objectIds, Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    Map<String, T> results = new LinkedHashMap<>();
+    for (String objectId : objectIds) {
+      T result = getOne(driver, objectId, prefetchDataMap);
+      if (result != null) {
+        results.put(objectId, result);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Indicate whether getMany() is implemented with batch requests to the destination system.
+   *
+   * @return true if getMany() is overridden with a batch implementation; default is false.
+   */
+  default boolean supportsGetMany() {
+    return false;
+  }
+
+  /**
+   * Get the total number of existing objects of this invocator's particular type on the
+   * destination system, matching the supplied filter if present.
+   *
+   * <p>Default behavior is to throw UnsupportedOperationException. Invocators whose destination
+   * system offers a count request should override this method.
+   *
+   * @param driver Driver belonging to this Invocator and providing interaction with the applicable
+   *     destination system.
+   * @param filter Object possibly containing an attribute value to filter upon.
+   * @param prefetchDataMap Map of prefetch data applicable to the Identity Model and that may be
+   *     understood by the invocator.
+   * @return Total number of objects, or null if the destination system could not report it.
+   * @throws ConnectorException If count request failed, was invalid or was not permitted.
+   */
+  default Integer getCount(D driver, ResultsFilter filter, Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    throw new UnsupportedOperationException("DriverInvocator does not support getCount");
+  }
+
+  /**
+   * Get the objects of this invocator's particular type that were created, updated or deleted on
+   * the destination system since the given change token. Only needed for object types whose
+   * adapter implements SyncCapableSource.
+   *
+   * <p>Default behavior is to throw UnsupportedOperationException.
+   *
+   * @param driver Driver belonging to this Invocator and providing interaction with the applicable
+   *     destination system.
+   * @param token Change token from a previous sync, in the form given by the adapter's
+   *     ChangeTokenType (an ISO-8601 instant for TIMESTAMP). Null if changes from the beginning are
+   *     requested.
+   * @param prefetchDataMap Map of prefetch data applicable to the Identity Model and that may be
+   *     understood by the invocator.
+   * @return Batch of changes and the token to continue from.
+   * @throws ConnectorException If the change request failed, was invalid or was not permitted.
+   */
+  default SyncChanges getChanges(D driver, String token, Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    throw new UnsupportedOperationException("DriverInvocator does not support getChanges");
+  }
+
+  /**
+   * Get the current change token of the destination system (such as a newly issued delta token or
+   * the latest change log entry), from which a later getChanges request will report changes. Not
+   * used for TIMESTAMP change tokens.
+   *
+   * <p>Default behavior is to throw UnsupportedOperationException.
+   *
+   * @param driver Driver belonging to this Invocator and providing interaction with the applicable
+   *     destination system.
+   * @param prefetchDataMap Map of prefetch data applicable to the Identity Model and that may be
+   *     understood by the invocator.
+   * @return Latest change token.
+   * @throws ConnectorException If the request failed, was invalid or was not permitted.
+   */
+  default String getLatestChangeToken(D driver, Map<String, Object> prefetchDataMap)
+      throws ConnectorException {
+    throw new UnsupportedOperationException(
+        "DriverInvocator does not support getLatestChangeToken");
+  }
+
   /**
    * Gives the ability for an Invocator to provide custom prefetched data prior to the execution of
    * any getAll/getOne/getOneByName call. For requests where a string of get requests is required
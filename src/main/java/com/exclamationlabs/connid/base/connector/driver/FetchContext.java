@@ -0,0 +1,184 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.driver;
+
+import com.exclamationlabs.connid.base.connector.adapter.SearchExecutor;
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import java.util.*;
+
+/**
+ * Prefetch data of a single getOne invocation. A search shares one read-only prefetch Map between
+ * all its getOne invocations, which may run concurrently on several threads; each invocation
+ * receives its own FetchContext adding the partial identity returned by getAll for the identity
+ * being retrieved.
+ *
+ * <p>FetchContext is passed as the prefetchDataMap argument of Driver/DriverInvocator getOne, so
+ * invocators reading SearchExecutor.PARTIAL_IDENTITY_KEY or ATTRIBUTES_TO_GET_KEY from the Map are
+ * unaffected. Invocators may instead use FetchContext.of(prefetchDataMap) and its typed getters.
+ * Values put into or removed from the Map are copy-on-write: the first write copies the shared
+ * prefetch data into this context, so writes are seen by the invocation making them but not by
+ * other invocations of the search.
+ */
+public final class FetchContext extends AbstractMap<String, Object> {
+
+  private final Map<String, Object> prefetchData;
+  // Copy of the prefetch data made on the first write through this context
+  private Map<String, Object> written;
+  private IdentityModel partialIdentity;
+  private Set<String> attributesToGet;
+
+  private FetchContext(
+      Map<String, Object> prefetchData,
+      IdentityModel partialIdentity,
+      Set<String> attributesToGet) {
+    this.prefetchData = prefetchData;
+    this.partialIdentity = partialIdentity;
+    this.attributesToGet = attributesToGet;
+  }
+
+  /**
+   * Obtain the FetchContext for prefetch data received by a driver or invocator.
+   *
+   * @param prefetchDataMap Prefetch data, possibly already a FetchContext, or null.
+   * @return FetchContext holding the same data.
+   */
+  @SuppressWarnings("unchecked")
+  public static FetchContext of(Map<String, Object> prefetchDataMap) {
+    if (prefetchDataMap instanceof FetchContext) {
+      return (FetchContext) prefetchDataMap;
+    }
+    if (prefetchDataMap == null) {
+      return new FetchContext(Collections.emptyMap(), null, null);
+    }
+    Object partial = prefetchDataMap.get(SearchExecutor.PARTIAL_IDENTITY_KEY);
+    Object requested = prefetchDataMap.get(SearchExecutor.ATTRIBUTES_TO_GET_KEY);
+    return new FetchContext(
+        prefetchDataMap,
+        partial instanceof IdentityModel ? (IdentityModel) partial : null,
+        requested instanceof Set ? (Set<String>) requested : null);
+  }
+
+  /**
+   * Create the context of a getOne invocation for one identity, sharing the prefetch data of this
+   * context.
+   *
+   * @param identity Partial identity returned by getAll.
+   * @return New FetchContext.
+   */
+  public FetchContext withPartialIdentity(IdentityModel identity) {
+    return new FetchContext(
+        written == null ? prefetchData : new LinkedHashMap<>(written), identity, attributesToGet);
+  }
+
+  /**
+   * Return the partial identity returned by getAll for the identity being retrieved.
+   *
+   * @return Partial identity, or null if getOne was not invoked to complete a search result.
+   */
+  public IdentityModel getPartialIdentity() {
+    return partialIdentity;
+  }
+
+  /**
+   * Return the attribute names requested by Midpoint.
+   *
+   * @return Set of requested attribute names, or null if Midpoint did not limit the attributes.
+   */
+  public Set<String> getAttributesToGet() {
+    return attributesToGet;
+  }
+
+  @Override
+  public Object get(Object key) {
+    if (SearchExecutor.PARTIAL_IDENTITY_KEY.equals(key)) {
+      return partialIdentity;
+    }
+    if (SearchExecutor.ATTRIBUTES_TO_GET_KEY.equals(key)) {
+      return attributesToGet;
+    }
+    return getData().get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    if (SearchExecutor.PARTIAL_IDENTITY_KEY.equals(key)
+        || SearchExecutor.ATTRIBUTES_TO_GET_KEY.equals(key)) {
+      return get(key) != null;
+    }
+    return getData().containsKey(key);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Object put(String key, Object value) {
+    Object previous = get(key);
+    if (SearchExecutor.PARTIAL_IDENTITY_KEY.equals(key)) {
+      partialIdentity = (IdentityModel) value;
+    } else if (SearchExecutor.ATTRIBUTES_TO_GET_KEY.equals(key)) {
+      attributesToGet = (Set<String>) value;
+    } else {
+      getWritableData().put(key, value);
+    }
+    return previous;
+  }
+
+  @Override
+  public Object remove(Object key) {
+    Object previous = get(key);
+    if (SearchExecutor.PARTIAL_IDENTITY_KEY.equals(key)) {
+      partialIdentity = null;
+    } else if (SearchExecutor.ATTRIBUTES_TO_GET_KEY.equals(key)) {
+      attributesToGet = null;
+    } else if (getData().containsKey(key)) {
+      getWritableData().remove(key);
+    }
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    written = new LinkedHashMap<>();
+    partialIdentity = null;
+    attributesToGet = null;
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    // Copied only when the context is iterated, which getOne invocations rarely do
+    Map<String, Object> combined = new LinkedHashMap<>(getData());
+    combined.remove(SearchExecutor.PARTIAL_IDENTITY_KEY);
+    combined.remove(SearchExecutor.ATTRIBUTES_TO_GET_KEY);
+    if (partialIdentity != null) {
+      combined.put(SearchExecutor.PARTIAL_IDENTITY_KEY, partialIdentity);
+    }
+    if (attributesToGet != null) {
+      combined.put(SearchExecutor.ATTRIBUTES_TO_GET_KEY, attributesToGet);
+    }
+    return Collections.unmodifiableMap(combined).entrySet();
+  }
+
+  private Map<String, Object> getData() {
+    return written == null ? prefetchData : written;
+  }
+
+  private Map<String, Object> getWritableData() {
+    if (written == null) {
+      written = new LinkedHashMap<>(prefetchData);
+    }
+    return written;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.driver;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.identityconnectors.framework.common.exceptions.OperationTimeoutException;
+
+/**
+ * Point in time by which a connector operation (create, update, delete, get or search, sync) must
+ * complete. BaseAdapter attaches a deadline to the thread servicing each operation when
+ * RestConfiguration operationTimeoutMillis is set, and the framework carries it to the worker
+ * threads that make driver calls on behalf of the operation. BaseRestDriver bounds the connect,
+ * read and total time of each request by the time remaining, and refuses to issue requests once
+ * the deadline has passed.
+ *
+ * <p>Drivers that do not extend BaseRestDriver may read current() and call check() before each
+ * request to the source API.
+ */
+public final class OperationDeadline {
+
+  private static final ThreadLocal<OperationDeadline> CURRENT = new ThreadLocal<>();
+
+  private final long deadlineNanos;
+
+  private OperationDeadline(long deadlineNanos) {
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  /**
+   * Create a deadline the given time from now.
+   *
+   * @param timeoutMillis Time allowed, in milliseconds.
+   * @return New deadline, not attached to any thread.
+   */
+  public static OperationDeadline afterMillis(long timeoutMillis) {
+    return new OperationDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+  }
+
+  /**
+   * Return the deadline attached to the calling thread.
+   *
+   * @return Current deadline, or null if the calling thread has none.
+   */
+  public static OperationDeadline current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Attach a new deadline to the calling thread for an operation, unless the thread already has
+   * one (the operation then belongs to an enclosing operation, such as the import performed by a
+   * sync).
+   *
+   * @param timeoutMillis Time allowed for the operation, or null if it has no timeout.
+   * @return Attachment to be closed when the operation completes, or null if no deadline was
+   *     attached.
+   */
+  public static Attachment begin(Integer timeoutMillis) {
+    if (timeoutMillis == null || timeoutMillis <= 0 || CURRENT.get() != null) {
+      return null;
+    }
+    return afterMillis(timeoutMillis).attach();
+  }
+
+  /**
+   * Attach this deadline to the calling thread, until the returned Attachment is closed.
+   *
+   * @return Attachment restoring the previous deadline of the thread when closed.
+   */
+  public Attachment attach() {
+    Attachment attachment = new Attachment(CURRENT.get());
+    CURRENT.set(this);
+    return attachment;
+  }
+
+  /**
+   * Wrap a task submitted to another thread, so that it runs with this deadline attached.
+   *
+   * @param task Task to be wrapped.
+   * @param <V> Result type of the task.
+   * @return Wrapped task.
+   */
+  public <V> Callable<V> wrap(Callable<V> task) {
+    return () -> {
+      try (Attachment ignored = attach()) {
+        return task.call();
+      }
+    };
+  }
+
+  public Runnable wrap(Runnable task) {
+    return () -> {
+      try (Attachment ignored = attach()) {
+        task.run();
+      }
+    };
+  }
+
+  public boolean isExpired() {
+    return System.nanoTime() - deadlineNanos >= 0;
+  }
+
+  /**
+   * Return the time remaining before the deadline.
+   *
+   * @return Remaining milliseconds (rounded up), or 0 if the deadline has passed.
+   */
+  public long getRemainingMillis() {
+    long remainingNanos = deadlineNanos - System.nanoTime();
+    return remainingNanos <= 0 ? 0L : TimeUnit.NANOSECONDS.toMillis(remainingNanos + 999_999L);
+  }
+
+  /**
+   * Throw if the deadline has passed.
+   *
+   * @param activity Description of the work about to be performed, for the exception message.
+   * @throws OperationTimeoutException If the deadline has passed.
+   */
+  public void check(String activity) {
+    if (isExpired()) {
+      throw new OperationTimeoutException("Operation deadline passed before " + activity);
+    }
+  }
+
+  /** Restores the deadline that was attached to a thread before attach() was called. */
+  public static final class Attachment implements AutoCloseable {
+    private final OperationDeadline previous;
+
+    private Attachment(OperationDeadline previous) {
+      this.previous = previous;
+    }
+
+    @Override
+    public void close() {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+}
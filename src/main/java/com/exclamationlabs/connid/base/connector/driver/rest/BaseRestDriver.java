@@ -23,6 +23,7 @@ import com.exclamationlabs.connid.base.connector.configuration.basetypes.RestCon
 import com.exclamationlabs.connid.base.connector.configuration.basetypes.security.HttpBasicAuthConfiguration;
 import com.exclamationlabs.connid.base.connector.configuration.basetypes.security.ProxyConfiguration;
 import com.exclamationlabs.connid.base.connector.driver.BaseDriver;
+import com.exclamationlabs.connid.base.connector.driver.OperationDeadline;
 import com.exclamationlabs.connid.base.connector.driver.exception.DriverRenewableTokenExpiredException;
 import com.exclamationlabs.connid.base.connector.driver.exception.DriverTokenExpiredException;
 import com.exclamationlabs.connid.base.connector.driver.rest.util.CustomConnectionSocketFactory;
@@ -37,6 +38,10 @@ import java.net.InetSocketAddress;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.*;
 import org.apache.http.auth.AuthScope;
@@ -44,6 +49,7 @@ import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.*;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.config.Registry;
@@ -62,6 +68,7 @@ import org.apache.http.util.EntityUtils;
 import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
 import org.identityconnectors.framework.common.exceptions.ConnectorException;
 import org.identityconnectors.framework.common.exceptions.ConnectorIOException;
+import org.identityconnectors.framework.common.exceptions.OperationTimeoutException;
 
 /**
  * Abstract class for drivers that need to make calls to RESTful web services to manage user and
@@ -71,6 +78,15 @@ public abstract class BaseRestDriver<U extends ConnectorConfiguration> extends B
 
   protected static GsonBuilder gsonBuilder;
 
+  // Aborts requests exceeding requestTimeoutMillis or the operation deadline
+  private static final ScheduledExecutorService REQUEST_ABORT_TIMER =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "rest-request-abort-timer");
+            thread.setDaemon(true);
+            return thread;
+          });
+
   protected U configuration;
   protected Authenticator<U> authenticator;
 
@@ -103,6 +119,8 @@ public abstract class BaseRestDriver<U extends ConnectorConfiguration> extends B
    * <p>If configuration implements ProxyConfiguration, a Client with Proxy connection information
    * will be established. Supported proxy types are 'socks5' and 'http'.
    *
+   * <p>Connect and read timeouts configured in RestConfiguration are applied to the client.
+   *
    * @return A constructed HttpClient set up as needed per configuration values.
    */
   protected HttpClient createClient() {
@@ -132,32 +150,31 @@ public abstract class BaseRestDriver<U extends ConnectorConfiguration> extends B
       if (usesProxy) {
         if (socksProxy) {
           restClient =
-              HttpClients.custom()
+              createClientBuilder()
                   .setConnectionManager(socksProxyConnectionManager)
                   .setDefaultCredentialsProvider(basicAuthProvider)
                   .build();
         } else {
           restClient =
-              HttpClients.custom()
+              createClientBuilder()
                   .setRoutePlanner(httpProxyRoutePlanner)
                   .setDefaultCredentialsProvider(basicAuthProvider)
                   .build();
         }
       } else {
-        restClient =
-            HttpClientBuilder.create().setDefaultCredentialsProvider(basicAuthProvider).build();
+        restClient = createClientBuilder().setDefaultCredentialsProvider(basicAuthProvider).build();
       }
 
     } else {
       if (usesProxy) {
         if (socksProxy) {
           restClient =
-              HttpClients.custom().setConnectionManager(socksProxyConnectionManager).build();
+              createClientBuilder().setConnectionManager(socksProxyConnectionManager).build();
         } else {
-          restClient = HttpClients.custom().setRoutePlanner(httpProxyRoutePlanner).build();
+          restClient = createClientBuilder().setRoutePlanner(httpProxyRoutePlanner).build();
         }
       } else {
-        restClient = HttpClients.custom().build();
+        restClient = createClientBuilder().build();
       }
     }
 
@@ -169,6 +186,48 @@ public abstract class BaseRestDriver<U extends ConnectorConfiguration> extends B
     return restClient;
   }
 
+  /**
+   * Create the builder used by createClient(), with the connect and read timeouts configured in
+   * RestConfiguration as the default request configuration.
+   *
+   * @return New HttpClientBuilder.
+   */
+  protected HttpClientBuilder createClientBuilder() {
+    return HttpClients.custom().setDefaultRequestConfig(getRequestConfig(null));
+  }
+
+  /**
+   * Build the request configuration applying the connect and read timeouts of RestConfiguration,
+   * shortened to the time remaining before the given deadline.
+   *
+   * @param deadline Deadline of the request, or null.
+   * @return RequestConfig, or null if no timeout applies.
+   */
+  protected RequestConfig getRequestConfig(OperationDeadline deadline) {
+    if (!(configuration instanceof RestConfiguration)) {
+      return null;
+    }
+    Integer connectTimeout = ((RestConfiguration) configuration).getConnectTimeoutMillis();
+    Integer readTimeout = ((RestConfiguration) configuration).getReadTimeoutMillis();
+    if (deadline != null) {
+      int remaining =
+          (int) Math.min(Integer.MAX_VALUE, Math.max(1L, deadline.getRemainingMillis()));
+      connectTimeout = connectTimeout == null ? remaining : Math.min(connectTimeout, remaining);
+      readTimeout = readTimeout == null ? remaining : Math.min(readTimeout, remaining);
+    }
+    if (connectTimeout == null && readTimeout == null) {
+      return null;
+    }
+    RequestConfig.Builder builder = RequestConfig.custom();
+    if (connectTimeout != null) {
+      builder.setConnectTimeout(connectTimeout).setConnectionRequestTimeout(connectTimeout);
+    }
+    if (readTimeout != null) {
+      builder.setSocketTimeout(readTimeout);
+    }
+    return builder.build();
+  }
+
   protected DefaultProxyRoutePlanner setupHttpProxyRouteManager(ProxyConfiguration configuration) {
     HttpHost proxyHost = new HttpHost(configuration.getProxyHost(), configuration.getProxyPort());
     return new DefaultProxyRoutePlanner(proxyHost);
@@ -256,11 +315,43 @@ public abstract class BaseRestDriver<U extends ConnectorConfiguration> extends B
               + "; configuration: "
               + configuration);
     }
+    OperationDeadline deadline =
+        request.getDeadline() == null ? OperationDeadline.current() : request.getDeadline();
     HttpRequestBase requestForClient = prepareHttpRequest(request);
+    if (deadline != null) {
+      deadline.check(
+          String.format("request %s %s", requestForClient.getMethod(), requestForClient.getURI()));
+    }
     if (requestForClient instanceof HttpEntityEnclosingRequestBase) {
       setupJsonRequestBody((HttpEntityEnclosingRequestBase) requestForClient, request);
     }
+    RequestConfig requestConfig = getRequestConfig(deadline);
+    if (requestConfig != null) {
+      requestForClient.setConfig(requestConfig);
+    }
 
+    ScheduledFuture<?> abortTask = scheduleAbort(requestForClient, deadline);
+    try {
+      return executePreparedRequest(requestForClient, request, isRetry, retryCount);
+    } catch (ConnectorException requestFailure) {
+      if (requestForClient.isAborted() && !(requestFailure instanceof OperationTimeoutException)) {
+        // Response body was being read when the request was aborted
+        throw new OperationTimeoutException(
+            String.format(
+                "Request %s %s exceeded its time limit",
+                requestForClient.getMethod(), requestForClient.getURI()),
+            requestFailure);
+      }
+      throw requestFailure;
+    } finally {
+      if (abortTask != null) {
+        abortTask.cancel(false);
+      }
+    }
+  }
+
+  private <T> RestResponseData<T> executePreparedRequest(
+      HttpRequestBase requestForClient, RestRequest<T> request, boolean isRetry, int retryCount) {
     HttpClient client = createClient();
     HttpResponse response;
     int responseStatusCode;
@@ -341,6 +432,13 @@ public abstract class BaseRestDriver<U extends ConnectorConfiguration> extends B
           "Unexpected ClientProtocolException occurred while attempting call: " + e.getMessage(),
           e);
     } catch (IOException | ConnectorIOException e) {
+      if (requestForClient.isAborted()) {
+        throw new OperationTimeoutException(
+            String.format(
+                "Request %s %s exceeded its time limit",
+                requestForClient.getMethod(), requestForClient.getURI()),
+            e);
+      }
       if (getIoErrorRetryCount() > 0) {
         if (isRetry) {
           if (retryCount < getIoErrorRetryCount()) {
@@ -372,6 +470,30 @@ public abstract class BaseRestDriver<U extends ConnectorConfiguration> extends B
     }
   }
 
+  /**
+   * Schedule the abort of a request once requestTimeoutMillis or the deadline passes, whichever is
+   * sooner.
+   *
+   * @param requestForClient Request to be aborted.
+   * @param deadline Deadline of the request, or null.
+   * @return Scheduled abort, to be cancelled once the request completes, or null if the request
+   *     has no time limit.
+   */
+  private ScheduledFuture<?> scheduleAbort(
+      HttpRequestBase requestForClient, OperationDeadline deadline) {
+    Integer requestTimeout = ((RestConfiguration) configuration).getRequestTimeoutMillis();
+    long limitMillis =
+        requestTimeout == null || requestTimeout <= 0 ? Long.MAX_VALUE : requestTimeout;
+    if (deadline != null) {
+      limitMillis = Math.min(limitMillis, deadline.getRemainingMillis());
+    }
+    if (limitMillis == Long.MAX_VALUE) {
+      return null;
+    }
+    return REQUEST_ABORT_TIMER.schedule(
+        requestForClient::abort, limitMillis, TimeUnit.MILLISECONDS);
+  }
+
   /**
    * Perform custom response handling for specific driver implementations. This method is invoked
    * before checking for HTTP responses &gt;= 400 and proceeding with any fault processing, retry
@@ -18,6 +18,7 @@ package com.exclamationlabs.connid.base.connector.driver.rest;
 
 import static com.exclamationlabs.connid.base.connector.driver.rest.RestRequestMethod.*;
 
+import com.exclamationlabs.connid.base.connector.driver.OperationDeadline;
 import com.google.gson.ExclusionStrategy;
 import java.util.Collections;
 import java.util.Map;
@@ -58,6 +59,8 @@ public class RestRequest<T> {
 
   private final String contentTypeHeader;
 
+  private final OperationDeadline deadline;
+
   /**
    * This constructor, with a Builder configured as needed, must be used perform a RESTful request.
    *
@@ -75,6 +78,7 @@ public class RestRequest<T> {
     fullUrl = builder.fullUrl;
     requestBody = builder.requestBody;
     contentTypeHeader = builder.contentTypeHeader;
+    deadline = builder.deadline;
   }
 
   public Object getRequestBody() {
@@ -121,6 +125,10 @@ public class RestRequest<T> {
     return ioErrorRetries;
   }
 
+  public OperationDeadline getDeadline() {
+    return deadline;
+  }
+
   public static class Builder<T> {
 
     private RestRequestMethod method = GET;
@@ -143,6 +151,8 @@ public class RestRequest<T> {
 
     private String contentTypeHeader = ContentType.APPLICATION_JSON.getMimeType();
 
+    private OperationDeadline deadline = null;
+
     /**
      * This constructor, with a class designating the response type you wish to receive, must be
      * used.a Builder configured as needed, must be used perform a RESTful request.
@@ -312,6 +322,19 @@ public class RestRequest<T> {
       return this;
     }
 
+    /**
+     * Apply a deadline to this invocation instead of the OperationDeadline attached to the calling
+     * thread (if any). The request is not issued once the deadline has passed, and is aborted if
+     * it is still outstanding when it passes.
+     *
+     * @param requestDeadline Deadline for the invocation.
+     * @return The updated Builder instance
+     */
+    public Builder<T> withDeadline(OperationDeadline requestDeadline) {
+      this.deadline = requestDeadline;
+      return this;
+    }
+
     /**
      * If supplied, the request will use the given full URL for the invocation, as opposed to
      * `withRequestUri` which is partial and uses the driver to determine full path.
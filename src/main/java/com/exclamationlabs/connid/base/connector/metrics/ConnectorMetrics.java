@@ -0,0 +1,108 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lightweight, in-process registry of named counters and gauges recorded by the base connector
+ * framework (for example, import page sizes chosen by the adaptive page size controller). Values
+ * are kept for the life of the connector classloader and can be obtained through snapshot() for
+ * logging or exposure by a connector implementation.
+ *
+ * <p>All methods are thread-safe.
+ */
+public final class ConnectorMetrics {
+
+  private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+  private static final Map<String, AtomicLong> GAUGES = new ConcurrentHashMap<>();
+
+  private ConnectorMetrics() {}
+
+  /**
+   * Increment the named counter by one.
+   *
+   * @param name Name of the counter.
+   */
+  public static void increment(String name) {
+    add(name, 1L);
+  }
+
+  /**
+   * Add the given amount to the named counter.
+   *
+   * @param name Name of the counter.
+   * @param amount Amount to be added.
+   */
+  public static void add(String name, long amount) {
+    COUNTERS.computeIfAbsent(name, key -> new LongAdder()).add(amount);
+  }
+
+  /**
+   * Set the named gauge to the given value.
+   *
+   * @param name Name of the gauge.
+   * @param value Current value of the gauge.
+   */
+  public static void setGauge(String name, long value) {
+    GAUGES.computeIfAbsent(name, key -> new AtomicLong()).set(value);
+  }
+
+  /**
+   * Return the current value of the named counter.
+   *
+   * @param name Name of the counter.
+   * @return Current value, or 0 if the counter was never incremented.
+   */
+  public static long getCount(String name) {
+    LongAdder counter = COUNTERS.get(name);
+    return counter == null ? 0L : counter.sum();
+  }
+
+  /**
+   * Return the current value of the named gauge.
+   *
+   * @param name Name of the gauge.
+   * @return Current value, or null if the gauge was never set.
+   */
+  public static Long getGauge(String name) {
+    AtomicLong gauge = GAUGES.get(name);
+    return gauge == null ? null : gauge.get();
+  }
+
+  /**
+   * Return a sorted copy of all counter and gauge values currently recorded.
+   *
+   * @return Map of metric name to current value.
+   */
+  public static Map<String, Long> snapshot() {
+    Map<String, Long> values = new TreeMap<>();
+    COUNTERS.forEach((name, counter) -> values.put(name, counter.sum()));
+    GAUGES.forEach((name, gauge) -> values.put(name, gauge.get()));
+    return values;
+  }
+
+  /** Clear all counters and gauges. */
+  public static void reset() {
+    COUNTERS.clear();
+    GAUGES.clear();
+  }
+}
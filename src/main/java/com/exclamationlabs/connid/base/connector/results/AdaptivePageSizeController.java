@@ -0,0 +1,217 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.results;
+
+import com.exclamationlabs.connid.base.connector.configuration.basetypes.ResultsConfiguration;
+import com.exclamationlabs.connid.base.connector.logging.Logger;
+import com.exclamationlabs.connid.base.connector.metrics.ConnectorMetrics;
+import java.io.InterruptedIOException;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.exceptions.ConnectorIOException;
+import org.identityconnectors.framework.common.exceptions.OperationTimeoutException;
+
+/**
+ * Chooses the page size for each page of a sequential import, growing or shrinking it within
+ * configured bounds based upon the observed latency, response size and failures of previous pages.
+ *
+ * <p>Some source APIs derive a page number from offset / pageSize. To keep pages contiguous for
+ * those APIs, a new page size is only chosen if it evenly divides the offset of the next page.
+ *
+ * <p>Instances are not thread-safe and are intended for a single import.
+ */
+public class AdaptivePageSizeController {
+
+  public static final int DEFAULT_TARGET_MILLIS = 2000;
+  public static final long DEFAULT_MAXIMUM_PAGE_BYTES = 8L * 1024L * 1024L;
+
+  // Number of successful pages required after a failure before the page size may grow again
+  static final int PAGES_BEFORE_GROWTH = 2;
+
+  private final String name;
+  private final int minimum;
+  private final int maximum;
+  private final long targetMillis;
+  private final long maximumPageBytes;
+
+  private int pageSize;
+  private int successfulPages;
+
+  public AdaptivePageSizeController(
+      String name,
+      int initialPageSize,
+      int minimum,
+      int maximum,
+      long targetMillis,
+      long maximumPageBytes) {
+    this.name = name;
+    this.minimum = Math.max(1, minimum);
+    this.maximum = Math.max(this.minimum, maximum);
+    this.targetMillis = targetMillis;
+    this.maximumPageBytes = maximumPageBytes;
+    this.pageSize = Math.min(this.maximum, Math.max(this.minimum, initialPageSize));
+    this.successfulPages = PAGES_BEFORE_GROWTH;
+    ConnectorMetrics.setGauge(getPageSizeMetricName(), pageSize);
+  }
+
+  /**
+   * Create a controller using the adaptive page size bounds from the connector configuration.
+   *
+   * @param name Name used for log messages and metrics, typically the IdentityModel simple name.
+   * @param configuration Connector configuration holding the adaptive page size bounds.
+   * @param initialPageSize Page size to be used for the first page.
+   * @param sourceMaximum Maximum page size enforced by the source API, or null if none.
+   * @return A new controller, or null if adaptive page sizing is not configured.
+   */
+  public static AdaptivePageSizeController fromConfiguration(
+      String name, ResultsConfiguration configuration, int initialPageSize, Integer sourceMaximum) {
+    Integer minimum = configuration.getImportBatchSizeMinimum();
+    Integer maximum = configuration.getImportBatchSizeMaximum();
+    if (minimum == null || maximum == null) {
+      return null;
+    }
+    if (sourceMaximum != null && sourceMaximum > 0) {
+      maximum = Math.min(maximum, sourceMaximum);
+    }
+    if (maximum <= minimum) {
+      return null;
+    }
+    Integer target = configuration.getImportPageTargetMillis();
+    return new AdaptivePageSizeController(
+        name,
+        initialPageSize,
+        minimum,
+        maximum,
+        target == null ? DEFAULT_TARGET_MILLIS : target,
+        DEFAULT_MAXIMUM_PAGE_BYTES);
+  }
+
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  /**
+   * Record a successfully retrieved page and choose the page size for the next page.
+   *
+   * @param nextOffset Offset of the next page to be requested.
+   * @param resultCount Number of results returned on the page.
+   * @param elapsedMillis Time taken to retrieve the page.
+   * @param responseBytes Size of the page response, or null if not reported by the driver.
+   */
+  public void recordPage(int nextOffset, int resultCount, long elapsedMillis, Long responseBytes) {
+    successfulPages++;
+    int candidate = pageSize;
+    if (elapsedMillis > targetMillis
+        || (responseBytes != null && responseBytes > maximumPageBytes)) {
+      long byLatency =
+          elapsedMillis > targetMillis ? pageSize * targetMillis / elapsedMillis : pageSize;
+      long byBytes =
+          responseBytes != null && responseBytes > maximumPageBytes
+              ? pageSize * maximumPageBytes / responseBytes
+              : pageSize;
+      candidate = (int) Math.max(pageSize / 2, Math.min(byLatency, byBytes));
+    } else if (resultCount >= pageSize
+        && successfulPages > PAGES_BEFORE_GROWTH
+        && elapsedMillis < targetMillis / 2
+        && (responseBytes == null || responseBytes < maximumPageBytes / 2)) {
+      candidate = pageSize * 2;
+    }
+    resize(
+        candidate,
+        nextOffset,
+        String.format("latency %d ms, response bytes %s", elapsedMillis, responseBytes));
+    ConnectorMetrics.setGauge(getPageSizeMetricName(), pageSize);
+  }
+
+  /**
+   * Record a failed page request and, if the failure may be caused by the page size (a timeout or
+   * IO error), shrink the page size so that the same offset may be retried. Other failures (such
+   * as authentication, invalid configuration or unknown uid) would recur with any page size.
+   *
+   * @param offset Offset of the page that failed.
+   * @param failure Exception thrown by the page request.
+   * @return true if the page size was reduced and the page should be retried, false if the failure
+   *     is not related to the page size or the page size is already at its minimum.
+   */
+  public boolean recordFailure(int offset, ConnectorException failure) {
+    if (!isPageSizeRelated(failure)) {
+      return false;
+    }
+    ConnectorMetrics.increment(name + ".import.pageFailures");
+    successfulPages = 0;
+    int previous = pageSize;
+    resize(pageSize / 2, offset, "page request failed");
+    ConnectorMetrics.setGauge(getPageSizeMetricName(), pageSize);
+    return pageSize < previous;
+  }
+
+  static boolean isPageSizeRelated(ConnectorException failure) {
+    if (failure instanceof OperationTimeoutException || failure instanceof ConnectorIOException) {
+      return true;
+    }
+    // Socket and connect timeouts wrapped by the driver
+    for (Throwable cause = failure.getCause(); cause != null; cause = cause.getCause()) {
+      if (cause instanceof InterruptedIOException) {
+        return true;
+      }
+      if (cause == cause.getCause()) {
+        break;
+      }
+    }
+    return false;
+  }
+
+  private void resize(int candidate, int nextOffset, String reason) {
+    int newSize = alignToOffset(Math.min(maximum, Math.max(minimum, candidate)), nextOffset);
+    if (newSize == pageSize) {
+      return;
+    }
+    ConnectorMetrics.increment(
+        name + (newSize > pageSize ? ".import.pageSizeIncreases" : ".import.pageSizeDecreases"));
+    Logger.info(
+        this,
+        String.format(
+            "Import page size for %s changed from %d to %d at offset %d (%s)",
+            name, pageSize, newSize, nextOffset, reason));
+    pageSize = newSize;
+  }
+
+  private int alignToOffset(int candidate, int offset) {
+    if (candidate > pageSize) {
+      for (int size = candidate; size > pageSize; size--) {
+        if (offset % size == 0) {
+          return size;
+        }
+      }
+    } else if (candidate < pageSize) {
+      for (int size = candidate; size >= minimum; size--) {
+        if (offset % size == 0) {
+          return size;
+        }
+      }
+      for (int size = candidate + 1; size < pageSize; size++) {
+        if (offset % size == 0) {
+          return size;
+        }
+      }
+    }
+    return pageSize;
+  }
+
+  String getPageSizeMetricName() {
+    return name + ".import.pageSize";
+  }
+}
@@ -0,0 +1,350 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.results;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Durable, append-only journal of changes pushed by a destination system, assigning each change a
+ * sequence number that serves as LiveSync token. Changes are forced to disk before append()
+ * returns, so a change acknowledged to the sender survives a connector restart; a record left
+ * incomplete by a crash is detected by its checksum and discarded when the journal is opened.
+ *
+ * <p>Each journal file is represented by a single instance shared by all threads (see get()), so
+ * changes appended by the webhook receiver are immediately visible to sync. Processed changes are
+ * removed by compact().
+ */
+public class ChangeJournal {
+
+  private static final int FILE_MAGIC = 0x43484a31; // "CHJ1"
+  private static final int FILE_VERSION = 1;
+  private static final int HEADER_BYTES = 16;
+  private static final int RECORD_FIXED_BYTES = 13;
+  private static final int MAXIMUM_ID_BYTES = 4096;
+
+  private static final Map<Path, ChangeJournal> JOURNALS = new HashMap<>();
+
+  private final Path file;
+  private long firstSequence;
+  private long lastSequence;
+  private long length;
+  // File offset of the record following the change with sequence number readSequence, so that
+  // consecutive reads continue where the previous read ended instead of scanning from the header
+  private long readSequence;
+  private long readOffset;
+
+  private ChangeJournal(Path fileIn) throws IOException {
+    file = fileIn;
+    if (!Files.exists(file)) {
+      Files.createDirectories(file.getParent());
+      replaceFile(0, Collections.emptyList());
+    }
+    load();
+  }
+
+  /**
+   * Obtain the journal kept in the given file, creating the file if it does not exist.
+   *
+   * @param file Journal file.
+   * @return Journal shared by all callers for this file.
+   * @throws IOException If the journal file could not be created or is not a change journal.
+   */
+  public static ChangeJournal get(Path file) throws IOException {
+    Path key = file.toAbsolutePath().normalize();
+    synchronized (JOURNALS) {
+      ChangeJournal journal = JOURNALS.get(key);
+      if (journal == null) {
+        journal = new ChangeJournal(key);
+        JOURNALS.put(key, journal);
+      }
+      return journal;
+    }
+  }
+
+  /**
+   * Durably append changes to the journal, assigning each its sequence number.
+   *
+   * @param changes Changes to be appended.
+   * @return Sequence number of the last change in the journal.
+   * @throws IOException If the changes could not be written and forced to disk.
+   */
+  public synchronized long append(List<Change> changes) throws IOException {
+    List<Change> numbered = new ArrayList<>();
+    long sequence = lastSequence;
+    for (Change change : changes) {
+      numbered.add(new Change(change.getId(), change.isDeleted(), ++sequence));
+    }
+    if (numbered.isEmpty()) {
+      return lastSequence;
+    }
+    byte[] records = encode(numbered);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.wrap(records);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, length + buffer.position());
+      }
+      channel.force(false);
+    }
+    length += records.length;
+    lastSequence = sequence;
+    return lastSequence;
+  }
+
+  /**
+   * Read the changes following the given sequence number, in the order they were appended.
+   *
+   * @param afterSequence Sequence number of the last change already processed; 0 for all changes.
+   * @param maximum Maximum number of changes to be returned.
+   * @return Changes found, with their sequence numbers.
+   * @throws IOException If the journal could not be read.
+   */
+  public synchronized List<Change> read(long afterSequence, int maximum) throws IOException {
+    List<Change> changes = new ArrayList<>();
+    if (afterSequence >= lastSequence) {
+      return changes;
+    }
+    boolean continued = afterSequence >= readSequence;
+    long offset = continued ? readOffset : HEADER_BYTES;
+    long sequence = continued ? readSequence : firstSequence;
+    try (DataInputStream input = openRecords(offset)) {
+      Change change;
+      while (changes.size() < maximum && (change = readRecord(input)) != null) {
+        offset += getRecordBytes(change);
+        sequence = change.getSequence();
+        if (sequence > afterSequence) {
+          changes.add(change);
+        }
+      }
+    }
+    readSequence = sequence;
+    readOffset = offset;
+    return changes;
+  }
+
+  /**
+   * Remove the changes up to and including the given sequence number once they are no longer
+   * needed. Sequence numbers of the remaining and later changes are not affected.
+   *
+   * @param throughSequence Sequence number of the last change to be removed.
+   * @throws IOException If the journal could not be rewritten.
+   */
+  public synchronized void compact(long throughSequence) throws IOException {
+    long newFirstSequence = Math.min(throughSequence, lastSequence);
+    if (newFirstSequence <= firstSequence) {
+      return;
+    }
+    replaceFile(newFirstSequence, read(newFirstSequence, Integer.MAX_VALUE));
+  }
+
+  /**
+   * Sequence number of the last change appended; changes appended later have greater sequence
+   * numbers.
+   *
+   * @return Last sequence number, or 0 if no change was ever appended.
+   */
+  public synchronized long getLastSequence() {
+    return lastSequence;
+  }
+
+  private void load() throws IOException {
+    try (DataInputStream input =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (input.readInt() != FILE_MAGIC || input.readInt() != FILE_VERSION) {
+        throw new IOException("File " + file + " is not a supported change journal");
+      }
+      firstSequence = input.readLong();
+      lastSequence = firstSequence;
+      length = HEADER_BYTES;
+      readSequence = firstSequence;
+      readOffset = HEADER_BYTES;
+      Change change;
+      while ((change = readRecord(input)) != null && change.getSequence() > lastSequence) {
+        lastSequence = change.getSequence();
+        length += getRecordBytes(change);
+      }
+    } catch (EOFException incompleteHeader) {
+      throw new IOException("Change journal " + file + " is incomplete", incompleteHeader);
+    }
+    if (Files.size(file) > length) {
+      // Discard a record left incomplete when the connector stopped during append()
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        channel.truncate(length);
+        channel.force(false);
+      }
+    }
+  }
+
+  private void replaceFile(long newFirstSequence, List<Change> changes) throws IOException {
+    byte[] records = encode(changes);
+    ByteBuffer content = ByteBuffer.allocate(HEADER_BYTES + records.length);
+    content.putInt(FILE_MAGIC).putInt(FILE_VERSION).putLong(newFirstSequence).put(records);
+    content.flip();
+    Path temporaryFile =
+        Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+        while (content.hasRemaining()) {
+          channel.write(content);
+        }
+        channel.force(true);
+      }
+      Files.move(
+          temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+    firstSequence = newFirstSequence;
+    length = HEADER_BYTES + records.length;
+    readSequence = firstSequence;
+    readOffset = HEADER_BYTES;
+  }
+
+  private DataInputStream openRecords(long offset) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      channel.position(offset);
+    } catch (IOException positionFailure) {
+      channel.close();
+      throw positionFailure;
+    }
+    return new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+  }
+
+  private static byte[] encode(List<Change> changes) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    for (Change change : changes) {
+      byte[] idBytes = change.getId().getBytes(StandardCharsets.UTF_8);
+      if (idBytes.length > MAXIMUM_ID_BYTES) {
+        throw new IllegalArgumentException("Change id exceeds " + MAXIMUM_ID_BYTES + " bytes");
+      }
+      byte[] fixed =
+          ByteBuffer.allocate(RECORD_FIXED_BYTES)
+              .putLong(change.getSequence())
+              .put((byte) (change.isDeleted() ? 1 : 0))
+              .putInt(idBytes.length)
+              .array();
+      CRC32 checksum = new CRC32();
+      checksum.update(fixed);
+      checksum.update(idBytes);
+      output.write(fixed);
+      output.write(idBytes);
+      output.writeInt((int) checksum.getValue());
+    }
+    output.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Read the next record of the journal.
+   *
+   * @return Change read, or null at the end of the journal or at an incomplete record.
+   */
+  private static Change readRecord(DataInputStream input) throws IOException {
+    byte[] fixed = new byte[RECORD_FIXED_BYTES];
+    try {
+      input.readFully(fixed);
+      ByteBuffer fields = ByteBuffer.wrap(fixed);
+      long sequence = fields.getLong();
+      boolean deleted = fields.get() != 0;
+      int idLength = fields.getInt();
+      if (idLength < 0 || idLength > MAXIMUM_ID_BYTES) {
+        return null;
+      }
+      byte[] idBytes = new byte[idLength];
+      input.readFully(idBytes);
+      int storedChecksum = input.readInt();
+      CRC32 checksum = new CRC32();
+      checksum.update(fixed);
+      checksum.update(idBytes);
+      if ((int) checksum.getValue() != storedChecksum) {
+        return null;
+      }
+      return new Change(new String(idBytes, StandardCharsets.UTF_8), deleted, sequence);
+    } catch (EOFException endOfJournal) {
+      return null;
+    }
+  }
+
+  private static int getRecordBytes(Change change) {
+    return RECORD_FIXED_BYTES + change.getId().getBytes(StandardCharsets.UTF_8).length + 4;
+  }
+
+  /** Change to an identity reported by the destination system. */
+  public static final class Change {
+    private final String id;
+    private final boolean deleted;
+    private final long sequence;
+
+    private Change(String id, boolean deleted, long sequence) {
+      this.id = id;
+      this.deleted = deleted;
+      this.sequence = sequence;
+    }
+
+    /**
+     * Create or update of the identity with the given id, whose details are retrieved by sync.
+     *
+     * @param id Identity id value.
+     * @return Change to be appended.
+     */
+    public static Change changed(String id) {
+      return new Change(id, false, 0);
+    }
+
+    /**
+     * Removal of the identity with the given id.
+     *
+     * @param id Identity id value.
+     * @return Change to be appended.
+     */
+    public static Change deleted(String id) {
+      return new Change(id, true, 0);
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public boolean isDeleted() {
+      return deleted;
+    }
+
+    /**
+     * Sequence number of the change in the journal.
+     *
+     * @return Sequence number, or 0 for a change that has not been appended.
+     */
+    public long getSequence() {
+      return sequence;
+    }
+  }
+}
@@ -0,0 +1,332 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.results;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Persisted map of identity id to a 64-bit content hash, used to detect which identities were
+ * created, changed or removed between two full imports of a source API that offers no change
+ * endpoint.
+ *
+ * <p>The store file holds an open-addressing hash table of fixed-width slots (id hash, content
+ * hash, offset of the id) followed by the id strings. It is read through a memory-mapped view, so
+ * lookups do not load the store into the heap, and a new store is built by appending entries to a
+ * log file (see Writer) that is only turned into a table once complete. Ids are matched by their
+ * 64-bit hash; the chance of two ids of a store sharing a hash is negligible (less than 1 in 10^7
+ * for a million ids).
+ *
+ * <p>A store holds at most 2^26 ids. Stores may be read by multiple threads.
+ */
+public class IdentityHashStore implements Closeable {
+
+  private static final int FILE_MAGIC = 0x49444831; // "IDH1"
+  private static final int FILE_VERSION = 1;
+  private static final int HEADER_BYTES = 24;
+  private static final int SLOT_BYTES = 24;
+  private static final int MINIMUM_CAPACITY = 16;
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer table;
+  private final MappedByteBuffer strings;
+  private final int size;
+  private final int capacity;
+
+  private IdentityHashStore(
+      FileChannel channel,
+      MappedByteBuffer table,
+      MappedByteBuffer strings,
+      int size,
+      int capacity) {
+    this.channel = channel;
+    this.table = table;
+    this.strings = strings;
+    this.size = size;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Open a store previously written by Writer.commit().
+   *
+   * @param file Store file.
+   * @return Store reading the file, or null if the file does not exist.
+   * @throws IOException If the file could not be read or is not a complete store file.
+   */
+  public static IdentityHashStore open(Path file) throws IOException {
+    if (!Files.exists(file)) {
+      return null;
+    }
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+        // read until header is complete or end of file
+      }
+      header.flip();
+      if (header.remaining() < HEADER_BYTES
+          || header.getInt() != FILE_MAGIC
+          || header.getInt() != FILE_VERSION) {
+        throw new IOException("File " + file + " is not a supported identity hash store");
+      }
+      int size = header.getInt();
+      int capacity = header.getInt();
+      long stringBytes = header.getLong();
+      long tableBytes = (long) capacity * SLOT_BYTES;
+      if (capacity < MINIMUM_CAPACITY
+          || Integer.bitCount(capacity) != 1
+          || size < 0
+          || size >= capacity
+          || tableBytes > Integer.MAX_VALUE
+          || stringBytes < 0
+          || stringBytes > Integer.MAX_VALUE
+          || HEADER_BYTES + tableBytes + stringBytes != channel.size()) {
+        throw new IOException("Identity hash store " + file + " is incomplete or invalid");
+      }
+      return new IdentityHashStore(
+          channel,
+          channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, tableBytes),
+          channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + tableBytes, stringBytes),
+          size,
+          capacity);
+    } catch (IOException invalidFile) {
+      channel.close();
+      throw invalidFile;
+    }
+  }
+
+  /**
+   * Begin building a new store, which replaces the given file once committed.
+   *
+   * @param file Store file to be written.
+   * @return Writer for the new store.
+   * @throws IOException If the log file for the new store could not be created.
+   */
+  public static Writer writer(Path file) throws IOException {
+    return new Writer(file);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Number of slots in the store table; slot numbers range from 0 to getCapacity() - 1.
+   *
+   * @return Slot count.
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Find the slot holding the given id.
+   *
+   * @param id Identity id value.
+   * @return Slot number, or -1 if the store does not hold the id.
+   */
+  public int findSlot(String id) {
+    long idHash = hash(id);
+    int slot = firstSlot(idHash, capacity);
+    while (isOccupied(slot)) {
+      if (table.getLong(slot * SLOT_BYTES) == idHash) {
+        return slot;
+      }
+      slot = (slot + 1) & (capacity - 1);
+    }
+    return -1;
+  }
+
+  public boolean isOccupied(int slot) {
+    return table.getLong(slot * SLOT_BYTES + 16) != 0;
+  }
+
+  public long getContentHash(int slot) {
+    return table.getLong(slot * SLOT_BYTES + 8);
+  }
+
+  public String getId(int slot) {
+    int offset = (int) (table.getLong(slot * SLOT_BYTES + 16) - 1);
+    byte[] idBytes = new byte[strings.getInt(offset)];
+    ByteBuffer view = strings.duplicate();
+    view.position(offset + 4);
+    view.get(idBytes);
+    return new String(idBytes, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Compute a 64-bit FNV-1a hash of the given characters.
+   *
+   * @param value Characters to be hashed.
+   * @return Hash value.
+   */
+  public static long hash(CharSequence value) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int index = 0; index < value.length(); index++) {
+      hash ^= value.charAt(index);
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+
+  private static int firstSlot(long idHash, int capacity) {
+    return (int) (idHash ^ (idHash >>> 32)) & (capacity - 1);
+  }
+
+  private static int getTableCapacity(long count) throws IOException {
+    long capacity = MINIMUM_CAPACITY;
+    while (capacity < count * 2) {
+      capacity <<= 1;
+    }
+    if (capacity * SLOT_BYTES > Integer.MAX_VALUE) {
+      throw new IOException("Too many identities (" + count + ") for identity hash store");
+    }
+    return (int) capacity;
+  }
+
+  /**
+   * Builds a new store. Entries are appended to a log file next to the store file as they are
+   * added, keeping only a small buffer in the heap; commit() then builds the table from the log
+   * and atomically replaces the store file. Closing a writer that was not committed leaves the
+   * previous store in place.
+   */
+  public static class Writer implements Closeable {
+    private final Path file;
+    private final Path logFile;
+    private final DataOutputStream log;
+    private long count;
+
+    private Writer(Path fileIn) throws IOException {
+      file = fileIn;
+      Path directory = file.toAbsolutePath().getParent();
+      Files.createDirectories(directory);
+      logFile = Files.createTempFile(directory, file.getFileName().toString(), ".log");
+      log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(logFile)));
+    }
+
+    /**
+     * Add an identity to the new store. If the same id is added again, the last content hash
+     * added is kept.
+     *
+     * @param id Identity id value.
+     * @param contentHash Hash of the identity content.
+     * @throws IOException If the entry could not be written to the log file.
+     */
+    public void add(String id, long contentHash) throws IOException {
+      byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+      log.writeLong(contentHash);
+      log.writeInt(idBytes.length);
+      log.write(idBytes);
+      count++;
+    }
+
+    /**
+     * Build the table from all added entries and replace the store file with it.
+     *
+     * @throws IOException If the store could not be written.
+     */
+    public void commit() throws IOException {
+      log.close();
+      int capacity = getTableCapacity(count);
+      long tableBytes = (long) capacity * SLOT_BYTES;
+      Path directory = file.toAbsolutePath().getParent();
+      Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+      try {
+        try (FileChannel channel =
+                FileChannel.open(
+                    temporaryFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            DataInputStream input =
+                new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile)))) {
+          MappedByteBuffer table =
+              channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES, tableBytes);
+          channel.position(HEADER_BYTES + tableBytes);
+          // Not closed, since closing would close the channel before the header is written
+          DataOutputStream strings =
+              new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+          int size = 0;
+          long stringBytes = 0;
+          for (long entry = 0; entry < count; entry++) {
+            long contentHash = input.readLong();
+            byte[] idBytes = new byte[input.readInt()];
+            input.readFully(idBytes);
+            long idHash = hash(new String(idBytes, StandardCharsets.UTF_8));
+            int slot = firstSlot(idHash, capacity);
+            while (table.getLong(slot * SLOT_BYTES + 16) != 0
+                && table.getLong(slot * SLOT_BYTES) != idHash) {
+              slot = (slot + 1) & (capacity - 1);
+            }
+            int position = slot * SLOT_BYTES;
+            if (table.getLong(position + 16) == 0) {
+              table.putLong(position, idHash);
+              table.putLong(position + 16, stringBytes + 1);
+              strings.writeInt(idBytes.length);
+              strings.write(idBytes);
+              stringBytes += 4 + idBytes.length;
+              size++;
+            }
+            table.putLong(position + 8, contentHash);
+          }
+          strings.flush();
+          if (stringBytes > Integer.MAX_VALUE) {
+            throw new IOException("Identity ids exceed the size of an identity hash store");
+          }
+          table.force();
+          ByteBuffer header =
+              ByteBuffer.allocate(HEADER_BYTES)
+                  .putInt(FILE_MAGIC)
+                  .putInt(FILE_VERSION)
+                  .putInt(size)
+                  .putInt(capacity)
+                  .putLong(stringBytes);
+          header.flip();
+          while (header.hasRemaining()) {
+            channel.write(header, header.position());
+          }
+          channel.force(true);
+        }
+        Files.move(
+            temporaryFile,
+            file,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temporaryFile);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      log.close();
+      Files.deleteIfExists(logFile);
+    }
+  }
+}
@@ -0,0 +1,453 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.results;
+
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.apache.commons.lang3.StringUtils;
+import org.identityconnectors.framework.common.objects.Name;
+import org.identityconnectors.framework.common.objects.Uid;
+
+/**
+ * Compact, column-oriented snapshot of imported identities, for connectors that must hold a full
+ * import in memory in order to filter it locally. Instead of retaining an IdentityModel object per
+ * record, the snapshot retains an id column, a name column and one dictionary-encoded column per
+ * searchable attribute (obtained from getValueBySearchableAttributeName). Repeated values such as
+ * department or location are stored once, and each row holds only an int code.
+ *
+ * <p>Filters are evaluated once per distinct value of a column rather than once per row. Rows are
+ * identified by their int position in the snapshot; full IdentityModel objects are only obtained
+ * again (using the id column) for the rows of the final page via rehydrate.
+ *
+ * <p>A snapshot may be written to a compact binary file (writeTo) and later loaded from a
+ * memory-mapped view of that file (readFrom), so that it may be reused by other connector instances
+ * or after a restart.
+ *
+ * <p>Instances are not thread-safe while being built. Once all rows have been added, a snapshot
+ * may be read by multiple threads.
+ */
+public class IdentitySnapshot {
+
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int NO_VALUE = -1;
+  private static final int FILE_MAGIC = 0x49445331; // "IDS1"
+  private static final int FILE_VERSION = 1;
+
+  private final List<String> attributeNames;
+  private final Map<String, Integer> attributeColumns;
+  private final List<Map<String, Integer>> dictionaryCodes;
+  private final List<List<String>> dictionaryValues;
+
+  private String[] ids;
+  private String[] names;
+  private int[][] valueCodes;
+  private int size;
+
+  /**
+   * Create an empty snapshot holding the given searchable attributes.
+   *
+   * @param attributeNames Names of the searchable attributes to be held in columns, typically
+   *     getSearchResultsAttributesPresent() of the adapter.
+   */
+  public IdentitySnapshot(Collection<String> attributeNames) {
+    this.attributeNames = new ArrayList<>(new LinkedHashSet<>(attributeNames));
+    this.attributeColumns = new HashMap<>();
+    this.dictionaryCodes = new ArrayList<>();
+    this.dictionaryValues = new ArrayList<>();
+    for (int column = 0; column < this.attributeNames.size(); column++) {
+      attributeColumns.put(this.attributeNames.get(column), column);
+      dictionaryCodes.add(new HashMap<>());
+      dictionaryValues.add(new ArrayList<>());
+    }
+    ids = new String[INITIAL_CAPACITY];
+    names = new String[INITIAL_CAPACITY];
+    valueCodes = new int[this.attributeNames.size()][INITIAL_CAPACITY];
+  }
+
+  /**
+   * Build a snapshot from the given identities.
+   *
+   * @param identities Identities to be held, in the order rows should be returned.
+   * @param attributeNames Names of the searchable attributes to be held in columns.
+   * @return New snapshot containing one row per identity.
+   */
+  public static IdentitySnapshot of(
+      Collection<? extends IdentityModel> identities, Collection<String> attributeNames) {
+    IdentitySnapshot snapshot = new IdentitySnapshot(attributeNames);
+    identities.forEach(snapshot::add);
+    snapshot.trimToSize();
+    return snapshot;
+  }
+
+  /**
+   * Add a row for the given identity, reading each held attribute from
+   * getValueBySearchableAttributeName.
+   *
+   * @param identity Identity to be added.
+   */
+  public void add(IdentityModel identity) {
+    ensureCapacity(size + 1);
+    ids[size] = identity.getIdentityIdValue();
+    names[size] = identity.getIdentityNameValue();
+    for (int column = 0; column < attributeNames.size(); column++) {
+      valueCodes[column][size] =
+          encode(column, identity.getValueBySearchableAttributeName(attributeNames.get(column)));
+    }
+    size++;
+  }
+
+  /** Release unused capacity once all rows have been added. */
+  public void trimToSize() {
+    if (ids.length > size) {
+      resize(size);
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public List<String> getAttributeNames() {
+    return Collections.unmodifiableList(attributeNames);
+  }
+
+  public String getId(int row) {
+    checkRow(row);
+    return ids[row];
+  }
+
+  public String getName(int row) {
+    checkRow(row);
+    return names[row];
+  }
+
+  /**
+   * Get the value of an attribute for a row.
+   *
+   * @param row Row position in the snapshot.
+   * @param attributeName Held attribute name, or the ConnId Uid/Name attribute names.
+   * @return Value of the attribute, or null if the identity had no value.
+   * @throws IllegalArgumentException If the attribute is not held by this snapshot.
+   */
+  public String getValue(int row, String attributeName) {
+    checkRow(row);
+    if (StringUtils.equalsIgnoreCase(attributeName, Uid.NAME)) {
+      return ids[row];
+    }
+    if (StringUtils.equalsIgnoreCase(attributeName, Name.NAME)) {
+      return names[row];
+    }
+    int column = getColumn(attributeName);
+    int code = valueCodes[column][row];
+    return code == NO_VALUE ? null : dictionaryValues.get(column).get(code);
+  }
+
+  /**
+   * Get the number of distinct values held for an attribute.
+   *
+   * @param attributeName Held attribute name.
+   * @return Count of distinct non-null values in the attribute's column.
+   */
+  public int getDistinctValueCount(String attributeName) {
+    return dictionaryValues.get(getColumn(attributeName)).size();
+  }
+
+  /**
+   * Find the rows whose value for an attribute matches the given test. For held attributes, the
+   * test is evaluated once per distinct value rather than once per row.
+   *
+   * @param attributeName Held attribute name, or the ConnId Uid/Name attribute names.
+   * @param valueTest Test applied to attribute values (which may be null).
+   * @return Ascending row positions of matching rows.
+   */
+  public int[] findRows(String attributeName, Predicate<String> valueTest) {
+    if (StringUtils.equalsIgnoreCase(attributeName, Uid.NAME)) {
+      return findRows(ids, valueTest);
+    }
+    if (StringUtils.equalsIgnoreCase(attributeName, Name.NAME)) {
+      return findRows(names, valueTest);
+    }
+    int column = getColumn(attributeName);
+    List<String> values = dictionaryValues.get(column);
+    boolean[] matchingCodes = new boolean[values.size()];
+    for (int code = 0; code < values.size(); code++) {
+      matchingCodes[code] = valueTest.test(values.get(code));
+    }
+    boolean nullMatches = valueTest.test(null);
+    int[] codes = valueCodes[column];
+    int[] matches = new int[size];
+    int matchCount = 0;
+    for (int row = 0; row < size; row++) {
+      int code = codes[row];
+      if (code == NO_VALUE ? nullMatches : matchingCodes[code]) {
+        matches[matchCount++] = row;
+      }
+    }
+    return Arrays.copyOf(matches, matchCount);
+  }
+
+  public int[] findRowsEqualsIgnoreCase(String attributeName, String filterValue) {
+    return findRows(attributeName, value -> StringUtils.equalsIgnoreCase(filterValue, value));
+  }
+
+  public int[] findRowsContainsIgnoreCase(String attributeName, String filterValue) {
+    return findRows(attributeName, value -> StringUtils.containsIgnoreCase(value, filterValue));
+  }
+
+  /**
+   * Intersect two ascending arrays of row positions, as for an And filter.
+   *
+   * @param first Ascending row positions.
+   * @param second Ascending row positions.
+   * @return Ascending row positions present in both inputs.
+   */
+  public static int[] intersect(int[] first, int[] second) {
+    int[] matches = new int[Math.min(first.length, second.length)];
+    int matchCount = 0;
+    int xx = 0;
+    int yy = 0;
+    while (xx < first.length && yy < second.length) {
+      if (first[xx] < second[yy]) {
+        xx++;
+      } else if (first[xx] > second[yy]) {
+        yy++;
+      } else {
+        matches[matchCount++] = first[xx];
+        xx++;
+        yy++;
+      }
+    }
+    return Arrays.copyOf(matches, matchCount);
+  }
+
+  /**
+   * Select a page from the given row positions.
+   *
+   * @param rows Row positions, such as those returned by findRows.
+   * @param offset Zero-based offset of the first row of the page.
+   * @param pageSize Maximum number of rows in the page.
+   * @return Row positions for the requested page, empty if the offset is beyond the end.
+   */
+  public static int[] page(int[] rows, int offset, int pageSize) {
+    int start = Math.min(Math.max(0, offset), rows.length);
+    int end = (int) Math.min(rows.length, (long) start + Math.max(0, pageSize));
+    return Arrays.copyOfRange(rows, start, end);
+  }
+
+  /**
+   * Obtain full IdentityModel objects for the given rows, typically only those of the final page.
+   *
+   * @param rows Row positions to be rehydrated.
+   * @param loader Obtains the full IdentityModel for an id value, such as a driver getOne call.
+   *     Rows for which it returns null are omitted.
+   * @return Set of IdentityModels in the order of the given rows.
+   */
+  public Set<IdentityModel> rehydrate(int[] rows, Function<String, IdentityModel> loader) {
+    Set<IdentityModel> identities = new LinkedHashSet<>();
+    for (int row : rows) {
+      IdentityModel identity = loader.apply(getId(row));
+      if (identity != null) {
+        identities.add(identity);
+      }
+    }
+    return identities;
+  }
+
+  /**
+   * Write this snapshot to a binary file. The snapshot is first written to a temporary file in the
+   * same directory and then moved into place, so that readers never observe a partial file.
+   *
+   * @param file Destination file, replaced if it already exists.
+   * @throws IOException If the file could not be written.
+   */
+  public void writeTo(Path file) throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+    try {
+      try (DataOutputStream output =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+        output.writeInt(FILE_MAGIC);
+        output.writeInt(FILE_VERSION);
+        output.writeInt(attributeNames.size());
+        for (int column = 0; column < attributeNames.size(); column++) {
+          writeString(output, attributeNames.get(column));
+          List<String> values = dictionaryValues.get(column);
+          output.writeInt(values.size());
+          for (String value : values) {
+            writeString(output, value);
+          }
+        }
+        output.writeInt(size);
+        for (int row = 0; row < size; row++) {
+          writeString(output, ids[row]);
+          writeString(output, names[row]);
+        }
+        for (int[] codes : valueCodes) {
+          for (int row = 0; row < size; row++) {
+            output.writeInt(codes[row]);
+          }
+        }
+      }
+      Files.move(
+          temporaryFile,
+          file,
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+  }
+
+  /**
+   * Load a snapshot previously written by writeTo, reading it through a memory-mapped view of the
+   * file.
+   *
+   * @param file File written by writeTo.
+   * @return Snapshot holding the rows and columns of the file.
+   * @throws IOException If the file could not be read or is not a valid snapshot file.
+   */
+  public static IdentitySnapshot readFrom(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != FILE_MAGIC || buffer.getInt() != FILE_VERSION) {
+        throw new IOException("File " + file + " is not a supported identity snapshot");
+      }
+      int attributeCount = buffer.getInt();
+      List<String> attributeNames = new ArrayList<>();
+      List<List<String>> values = new ArrayList<>();
+      for (int column = 0; column < attributeCount; column++) {
+        attributeNames.add(readString(buffer));
+        int valueCount = buffer.getInt();
+        List<String> columnValues = new ArrayList<>(valueCount);
+        for (int code = 0; code < valueCount; code++) {
+          columnValues.add(readString(buffer));
+        }
+        values.add(columnValues);
+      }
+      IdentitySnapshot snapshot = new IdentitySnapshot(attributeNames);
+      for (int column = 0; column < attributeCount; column++) {
+        for (String value : values.get(column)) {
+          snapshot.encode(column, value);
+        }
+      }
+      int rowCount = buffer.getInt();
+      snapshot.resize(rowCount);
+      for (int row = 0; row < rowCount; row++) {
+        snapshot.ids[row] = readString(buffer);
+        snapshot.names[row] = readString(buffer);
+      }
+      for (int column = 0; column < attributeCount; column++) {
+        buffer.asIntBuffer().get(snapshot.valueCodes[column], 0, rowCount);
+        buffer.position(buffer.position() + rowCount * Integer.BYTES);
+      }
+      snapshot.size = rowCount;
+      return snapshot;
+    } catch (RuntimeException invalidContent) {
+      // Truncated or corrupt file (buffer underflow or negative lengths)
+      throw new IOException(
+          "File " + file + " is not a complete identity snapshot", invalidContent);
+    }
+  }
+
+  private static void writeString(DataOutputStream output, String value) throws IOException {
+    if (value == null) {
+      output.writeInt(NO_VALUE);
+    } else {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length == NO_VALUE) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private int[] findRows(String[] column, Predicate<String> valueTest) {
+    int[] matches = new int[size];
+    int matchCount = 0;
+    for (int row = 0; row < size; row++) {
+      if (valueTest.test(column[row])) {
+        matches[matchCount++] = row;
+      }
+    }
+    return Arrays.copyOf(matches, matchCount);
+  }
+
+  private int encode(int column, String value) {
+    if (value == null) {
+      return NO_VALUE;
+    }
+    Map<String, Integer> codes = dictionaryCodes.get(column);
+    Integer code = codes.get(value);
+    if (code == null) {
+      code = dictionaryValues.get(column).size();
+      dictionaryValues.get(column).add(value);
+      codes.put(value, code);
+    }
+    return code;
+  }
+
+  private int getColumn(String attributeName) {
+    Integer column = attributeColumns.get(attributeName);
+    if (column == null) {
+      throw new IllegalArgumentException(
+          "Attribute " + attributeName + " is not held by this identity snapshot");
+    }
+    return column;
+  }
+
+  private void checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row " + row + " outside snapshot of size " + size);
+    }
+  }
+
+  private void ensureCapacity(int required) {
+    if (required > ids.length) {
+      resize(Math.max(required, ids.length * 2));
+    }
+  }
+
+  private void resize(int capacity) {
+    ids = Arrays.copyOf(ids, capacity);
+    names = Arrays.copyOf(names, capacity);
+    for (int column = 0; column < valueCodes.length; column++) {
+      valueCodes[column] = Arrays.copyOf(valueCodes[column], capacity);
+    }
+  }
+}
@@ -42,6 +42,8 @@ public class ResultsPaginator {
 
   private Object token;
 
+  private Long responseBytes;
+
   public ResultsPaginator() {
     setPageSize(null);
     setCurrentOffset(null);
@@ -82,6 +84,16 @@ public class ResultsPaginator {
     this.totalResults = totalResults;
   }
 
+  /**
+   * Determine if the driver/invocator (or a count request) has supplied the total number of
+   * results available from the source API.
+   *
+   * @return true if a positive total number of results is known.
+   */
+  public boolean hasTotalResults() {
+    return getTotalResults() != null && getTotalResults() > 0;
+  }
+
   public Integer getPageSize() {
     return pageSize;
   }
@@ -158,6 +170,20 @@ public class ResultsPaginator {
     this.token = token;
   }
 
+  public Long getResponseBytes() {
+    return responseBytes;
+  }
+
+  /**
+   * Optionally set by the driver/invocator during getAll to report the size of the response
+   * received from the source API for this page. Used by adaptive import page sizing.
+   *
+   * @param responseBytes Size of the page response in bytes.
+   */
+  public void setResponseBytes(Long responseBytes) {
+    this.responseBytes = responseBytes;
+  }
+
   @Override
   public String toString() {
     return hasPagination()
@@ -0,0 +1,92 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.results;
+
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * SyncChanges holds one batch of changes returned by a driver/invocator getChanges request: the
+ * identities created or updated and the ids of identities deleted since the change token supplied,
+ * along with the token from which the next request should continue.
+ *
+ * <p>Changed identities may be partial (as returned by getAll); the framework will invoke getOne
+ * for their details unless the adapter reports getSearchResultsContainsAllAttributes().
+ */
+public class SyncChanges {
+
+  private final Set<IdentityModel> changedIdentities = new LinkedHashSet<>();
+  private final Set<String> deletedIds = new LinkedHashSet<>();
+  private String nextToken;
+  private boolean moreChanges;
+
+  public SyncChanges() {}
+
+  public SyncChanges(String nextTokenIn) {
+    setNextToken(nextTokenIn);
+  }
+
+  public void addChanged(IdentityModel identity) {
+    changedIdentities.add(identity);
+  }
+
+  public void addDeleted(String id) {
+    deletedIds.add(id);
+  }
+
+  public Set<IdentityModel> getChangedIdentities() {
+    return changedIdentities;
+  }
+
+  public Set<String> getDeletedIds() {
+    return deletedIds;
+  }
+
+  public boolean isEmpty() {
+    return changedIdentities.isEmpty() && deletedIds.isEmpty();
+  }
+
+  /**
+   * Token from which the next getChanges request should continue: the delta token or last change
+   * log entry reported by the destination system. For timestamp tokens this may be left null, in
+   * which case the time the sync started is used.
+   *
+   * @return Next change token.
+   */
+  public String getNextToken() {
+    return nextToken;
+  }
+
+  public void setNextToken(String nextToken) {
+    this.nextToken = nextToken;
+  }
+
+  /**
+   * Set to true if the destination system holds further changes beyond this batch, so that
+   * getChanges is invoked again with getNextToken().
+   *
+   * @return true if more changes are available.
+   */
+  public boolean hasMoreChanges() {
+    return moreChanges;
+  }
+
+  public void setMoreChanges(boolean moreChanges) {
+    this.moreChanges = moreChanges;
+  }
+}
@@ -18,6 +18,7 @@ package com.exclamationlabs.connid.base.connector.schema;
 
 import com.exclamationlabs.connid.base.connector.BaseConnector;
 import com.exclamationlabs.connid.base.connector.adapter.BaseAdapter;
+import com.exclamationlabs.connid.base.connector.adapter.SyncCapableSource;
 import com.exclamationlabs.connid.base.connector.attribute.ConnectorAttribute;
 import com.exclamationlabs.connid.base.connector.configuration.ConnectorConfiguration;
 import com.exclamationlabs.connid.base.connector.configuration.basetypes.ResultsConfiguration;
@@ -54,8 +55,13 @@ public class DefaultConnectorSchemaBuilder<T extends ConnectorConfiguration>
           String.format(
               "Determining schema elements for connector %s, object class %s ...",
               connector.getName(), currentAdapter.getType()));
-      schemaBuilder.defineObjectClass(
-          buildObjectClassInfo(currentAdapter.getType(), currentAttributes));
+      ObjectClassInfo objectClassInfo =
+          buildObjectClassInfo(currentAdapter.getType(), currentAttributes);
+      schemaBuilder.defineObjectClass(objectClassInfo);
+      if (connector instanceof SyncOp && !(currentAdapter instanceof SyncCapableSource)) {
+        // LiveSync is only offered for object classes whose source API reports changes
+        schemaBuilder.removeSupportedObjectClass(SyncOp.class, objectClassInfo);
+      }
     }
 
     T configuration = connector.getConnectorConfiguration();
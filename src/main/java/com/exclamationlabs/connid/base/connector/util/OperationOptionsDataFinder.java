@@ -29,6 +29,7 @@ public class OperationOptionsDataFinder {
 
   public static final String PAGE_SIZE_KEY = "PAGE_SIZE";
   public static final String RESULTS_OFFSET_KEY = "PAGED_RESULTS_OFFSET";
+  public static final String SEARCH_TIME_BUDGET_KEY = "SEARCH_TIME_BUDGET_MILLIS";
 
   private OperationOptionsDataFinder() {}
 
@@ -114,6 +115,23 @@ public class OperationOptionsDataFinder {
     return pageNumber;
   }
 
+  public static Long getSearchTimeBudgetMillis(Map<String, Object> operationOptionsData) {
+    Long budget = null;
+    if (operationOptionsData != null && operationOptionsData.containsKey(SEARCH_TIME_BUDGET_KEY)) {
+      try {
+        budget = Long.parseLong(operationOptionsData.get(SEARCH_TIME_BUDGET_KEY).toString());
+      } catch (NumberFormatException nfe) {
+        Logger.warn(
+            OperationOptionsDataFinder.class,
+            String.format(
+                "Invalid search time budget from OperationOptions: %s",
+                operationOptionsData.get(SEARCH_TIME_BUDGET_KEY).toString()));
+      }
+    }
+
+    return budget;
+  }
+
   public static Boolean getAllowPartialAttributeValues(Map<String, Object> operationOptionsData) {
     Object value = operationOptionsData.get(OperationOptions.OP_ALLOW_PARTIAL_ATTRIBUTE_VALUES);
     return (value instanceof Boolean && BooleanUtils.isTrue((Boolean) value));
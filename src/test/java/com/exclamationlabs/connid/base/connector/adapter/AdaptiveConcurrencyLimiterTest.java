@@ -0,0 +1,87 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+  private static final long LATENCY = 1_000_000L;
+
+  @Test
+  public void limitGrowsWhileLatencyStable() throws InterruptedException {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("Test", 1, 4);
+    assertEquals(1, limiter.getLimit());
+    for (int xx = 0; xx < 20; xx++) {
+      limiter.acquire();
+      limiter.onSuccess(LATENCY);
+    }
+    assertEquals(4, limiter.getLimit());
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  public void limitBacksOffOnFailure() throws InterruptedException {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("Test", 8, 8);
+    limiter.acquire();
+    limiter.onDropped();
+    assertEquals(4, limiter.getLimit());
+    limiter.acquire();
+    limiter.onDropped();
+    limiter.acquire();
+    limiter.onDropped();
+    limiter.acquire();
+    limiter.onDropped();
+    assertEquals(1, limiter.getLimit());
+  }
+
+  @Test
+  public void limitBacksOffOnLatencySpike() throws InterruptedException {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("Test", 8, 8);
+    limiter.acquire();
+    limiter.onSuccess(LATENCY);
+    assertEquals(8, limiter.getLimit());
+    limiter.acquire();
+    limiter.onSuccess(LATENCY * 5);
+    assertEquals(7, limiter.getLimit());
+  }
+
+  @Test
+  public void acquireWaitsForRelease() throws InterruptedException {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("Test", 1, 1);
+    limiter.acquire();
+    Thread waiting =
+        new Thread(
+            () -> {
+              try {
+                limiter.acquire();
+                limiter.onSuccess(LATENCY);
+              } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+              }
+            });
+    waiting.start();
+    waiting.join(200L);
+    assertTrue(waiting.isAlive());
+    limiter.onSuccess(LATENCY);
+    waiting.join(5000L);
+    assertFalse(waiting.isAlive());
+    assertEquals(0, limiter.getInFlight());
+  }
+}
@@ -18,6 +18,8 @@ package com.exclamationlabs.connid.base.connector.adapter;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.exclamationlabs.connid.base.connector.attribute.ConnectorAttribute;
+import com.exclamationlabs.connid.base.connector.attribute.ConnectorAttributeDataType;
 import com.exclamationlabs.connid.base.connector.stub.adapter.StubUsersAdapter;
 import com.exclamationlabs.connid.base.connector.stub.attribute.StubUserAttribute;
 import com.exclamationlabs.connid.base.connector.stub.model.StubUser;
@@ -170,4 +172,106 @@ public class BaseAdapterTest {
     assertEquals("value1", lookMap.get("key1"));
     assertEquals("value2", lookMap.get("key2"));
   }
+
+  @Test
+  public void constructConnectorObjectWithAttributesToGet() {
+    StubUser user = new StubUser();
+    user.setId("user123");
+    user.setUserName("name123");
+    user.setEmail("test@test.com");
+    ConnectorObject object =
+        adapter.constructConnectorObject(
+            user, Collections.singleton(StubUserAttribute.EMAIL.name()));
+    assertEquals("user123", object.getUid().getUidValue());
+    assertEquals("name123", object.getName().getNameValue());
+    assertEquals(
+        "test@test.com",
+        object.getAttributeByName(StubUserAttribute.EMAIL.name()).getValue().get(0));
+    assertNull(object.getAttributeByName(StubUserAttribute.USER_TEST_LONG.name()));
+  }
+
+  @Test
+  public void constructConnectorObjectUsingAttributeProviders() {
+    ProviderUsersAdapter providerAdapter = new ProviderUsersAdapter();
+    providerAdapter.init();
+    StubUser user = new StubUser();
+    user.setId("user123");
+    user.setUserName("name123");
+    user.setEmail("test@test.com");
+    user.setGroupIds(new HashSet<>(Arrays.asList("g1", "g2")));
+
+    ConnectorObject object = providerAdapter.constructConnectorObject(user, null);
+    assertEquals(
+        "test@test.com",
+        object.getAttributeByName(StubUserAttribute.EMAIL.name()).getValue().get(0));
+    assertEquals(
+        2, object.getAttributeByName(StubUserAttribute.GROUP_IDS.name()).getValue().size());
+    assertEquals(0, providerAdapter.userTestLongEvaluations);
+
+    object =
+        providerAdapter.constructConnectorObject(
+            user, Collections.singleton(StubUserAttribute.USER_TEST_LONG.name()));
+    assertNull(object.getAttributeByName(StubUserAttribute.EMAIL.name()));
+    assertNotNull(object.getAttributeByName(StubUserAttribute.USER_TEST_LONG.name()));
+    assertEquals(1, providerAdapter.userTestLongEvaluations);
+  }
+
+  @Test
+  public void constructConnectorObjectOmitsNotReturnedByDefault() {
+    StubUsersAdapter legacyAdapter =
+        new StubUsersAdapter() {
+          @Override
+          public Set<ConnectorAttribute> getConnectorAttributes() {
+            return ProviderUsersAdapter.flagUserTestLong(super.getConnectorAttributes());
+          }
+        };
+    legacyAdapter.init();
+    StubUser user = new StubUser();
+    user.setId("user123");
+    user.setUserName("name123");
+    user.setEmail("test@test.com");
+    user.setUserTestLong(-654321654321L);
+
+    ConnectorObject object = legacyAdapter.constructConnectorObject(user, null);
+    assertNotNull(object.getAttributeByName(StubUserAttribute.EMAIL.name()));
+    assertNull(object.getAttributeByName(StubUserAttribute.USER_TEST_LONG.name()));
+
+    object =
+        legacyAdapter.constructConnectorObject(
+            user, Collections.singleton(StubUserAttribute.USER_TEST_LONG.name()));
+    assertNull(object.getAttributeByName(StubUserAttribute.EMAIL.name()));
+    assertNotNull(object.getAttributeByName(StubUserAttribute.USER_TEST_LONG.name()));
+  }
+
+  static class ProviderUsersAdapter extends StubUsersAdapter {
+    int userTestLongEvaluations = 0;
+
+    ProviderUsersAdapter() {
+      addAttributeProvider(StubUserAttribute.EMAIL.name(), StubUser::getEmail);
+      addAttributeProvider(StubUserAttribute.GROUP_IDS.name(), StubUser::getGroupIds);
+      addAttributeProvider(
+          StubUserAttribute.USER_TEST_LONG.name(),
+          user -> {
+            userTestLongEvaluations++;
+            return user.getUserTestLong();
+          });
+    }
+
+    @Override
+    public Set<ConnectorAttribute> getConnectorAttributes() {
+      return flagUserTestLong(super.getConnectorAttributes());
+    }
+
+    static Set<ConnectorAttribute> flagUserTestLong(Set<ConnectorAttribute> result) {
+      result.removeIf(
+          attribute ->
+              StringUtils.equals(StubUserAttribute.USER_TEST_LONG.name(), attribute.getName()));
+      result.add(
+          new ConnectorAttribute(
+              StubUserAttribute.USER_TEST_LONG.name(),
+              ConnectorAttributeDataType.LONG,
+              AttributeInfo.Flags.NOT_RETURNED_BY_DEFAULT));
+      return result;
+    }
+  }
 }
@@ -0,0 +1,96 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import static com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUsers.user;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.exclamationlabs.connid.base.connector.stub.adapter.EnhancedPFUserAdapter;
+import com.exclamationlabs.connid.base.connector.stub.attribute.EnhancedPFUserAttribute;
+import com.exclamationlabs.connid.base.connector.stub.configuration.EnhancedPFConfiguration;
+import com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ChangeMarkerCacheTest {
+
+  private EnhancedPFUserAdapter adapter;
+
+  @BeforeEach
+  public void setup() {
+    adapter =
+        new EnhancedPFUserAdapter() {
+          @Override
+          public String getChangeMarkerAttribute() {
+            return EnhancedPFUserAttribute.JOB_TITLE.name();
+          }
+        };
+    adapter.setConfiguration(
+        new EnhancedPFConfiguration() {
+          @Override
+          public Integer getChangeMarkerCacheMaximumEntries() {
+            return 2;
+          }
+        });
+    ChangeMarkerCache.clear(adapter);
+  }
+
+  @Test
+  public void unchangedMarkerReusesDetails() {
+    EnhancedPFUser detailed = user("1", "v1");
+    ChangeMarkerCache.record(adapter, "1", "v1", detailed);
+    String marker = ChangeMarkerCache.getMarker(adapter, user("1", "v1"));
+    assertEquals("v1", marker);
+    assertSame(detailed, ChangeMarkerCache.lookup(adapter, "1", marker));
+  }
+
+  @Test
+  public void changedMarkerRequiresGetOne() {
+    ChangeMarkerCache.record(adapter, "2", "v1", user("2", "v1"));
+    String marker = ChangeMarkerCache.getMarker(adapter, user("2", "v2"));
+    assertNull(ChangeMarkerCache.lookup(adapter, "2", marker));
+  }
+
+  @Test
+  public void leastRecentlyUsedEvicted() {
+    ChangeMarkerCache.record(adapter, "3", "v1", user("3", "v1"));
+    ChangeMarkerCache.record(adapter, "4", "v1", user("4", "v1"));
+    ChangeMarkerCache.record(adapter, "5", "v1", user("5", "v1"));
+    assertNull(ChangeMarkerCache.lookup(adapter, "3", "v1"));
+    assertNotNull(ChangeMarkerCache.lookup(adapter, "5", "v1"));
+  }
+
+  @Test
+  public void cachedPerInstance() {
+    ChangeMarkerCache.record(adapter, "6", "v1", user("6", "v1"));
+    adapter.setConfiguration(
+        new EnhancedPFConfiguration() {
+          @Override
+          public String getInstanceId() {
+            return "otherTenant";
+          }
+        });
+    assertNull(ChangeMarkerCache.lookup(adapter, "6", "v1"));
+  }
+
+  @Test
+  public void noMarkerAttribute() {
+    EnhancedPFUserAdapter plainAdapter = new EnhancedPFUserAdapter();
+    plainAdapter.setConfiguration(new EnhancedPFConfiguration());
+    assertNull(ChangeMarkerCache.getMarker(plainAdapter, user("6", "v1")));
+  }
+}
@@ -0,0 +1,173 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import static com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUsers.user;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import com.exclamationlabs.connid.base.connector.stub.adapter.EnhancedPFUserAdapter;
+import com.exclamationlabs.connid.base.connector.stub.configuration.EnhancedPFConfiguration;
+import com.exclamationlabs.connid.base.connector.stub.driver.EnhancedPFDriver;
+import java.util.*;
+import java.util.concurrent.*;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.OperationOptionsBuilder;
+import org.identityconnectors.framework.common.objects.Uid;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class GetObjectCollapserTest {
+
+  private final List<List<String>> requestedBatches = new CopyOnWriteArrayList<>();
+  private final List<String> requestedIds = new CopyOnWriteArrayList<>();
+  private EnhancedPFUserAdapter adapter;
+  private ExecutorService callers;
+
+  private void setup(int windowMillis, boolean supportsGetMany) {
+    adapter = new EnhancedPFUserAdapter();
+    adapter.setConfiguration(
+        new EnhancedPFConfiguration() {
+          @Override
+          public Integer getGetObjectBatchWindowMillis() {
+            return windowMillis;
+          }
+
+          @Override
+          public Integer getDetailBatchSize() {
+            return 3;
+          }
+        });
+    adapter.setDriver(
+        new EnhancedPFDriver() {
+          @Override
+          public boolean supportsGetMany(Class<? extends IdentityModel> modelClass) {
+            return supportsGetMany;
+          }
+
+          @Override
+          public Map<String, IdentityModel> getMany(
+              Class<? extends IdentityModel> modelClass,
+              Collection<String> ids,
+              Map<String, Object> prefetchDataMap) {
+            requestedBatches.add(new ArrayList<>(ids));
+            Map<String, IdentityModel> found = new HashMap<>();
+            ids.stream().filter(id -> !id.equals("2")).forEach(id -> found.put(id, user(id)));
+            return found;
+          }
+
+          @Override
+          public IdentityModel getOne(
+              Class<? extends IdentityModel> modelClass,
+              String id,
+              Map<String, Object> prefetchDataMap) {
+            requestedIds.add(id);
+            return user(id);
+          }
+        });
+    GetObjectCollapser.clear(adapter);
+  }
+
+  private List<Future<ConnectorObject>> getObjects(String... ids) {
+    CyclicBarrier start = new CyclicBarrier(ids.length);
+    List<Future<ConnectorObject>> results = new ArrayList<>();
+    for (String id : ids) {
+      results.add(
+          callers.submit(
+              () -> {
+                start.await();
+                return adapter.getObject(new Uid(id), new OperationOptionsBuilder().build());
+              }));
+    }
+    return results;
+  }
+
+  @BeforeEach
+  public void startCallers() {
+    callers = Executors.newCachedThreadPool();
+  }
+
+  @AfterEach
+  public void stopCallers() {
+    callers.shutdownNow();
+  }
+
+  @Test
+  public void fullBatchRetrievedWithGetMany() throws Exception {
+    // Batch is dispatched once detailBatchSize ids are requested, well before the window passes
+    setup(60000, true);
+    List<Future<ConnectorObject>> results = getObjects("1", "2", "3");
+
+    assertEquals("1", results.get(0).get(10, TimeUnit.SECONDS).getUid().getUidValue());
+    assertNull(results.get(1).get(10, TimeUnit.SECONDS));
+    assertEquals("3", results.get(2).get(10, TimeUnit.SECONDS).getUid().getUidValue());
+    assertEquals(1, requestedBatches.size());
+    assertEquals(Set.of("1", "2", "3"), new HashSet<>(requestedBatches.get(0)));
+    assertTrue(requestedIds.isEmpty());
+  }
+
+  @Test
+  public void sameIdRetrievedOnceWithoutGetMany() throws Exception {
+    setup(500, false);
+    List<Future<ConnectorObject>> results = getObjects("7", "7");
+
+    for (Future<ConnectorObject> result : results) {
+      assertEquals("7", result.get(10, TimeUnit.SECONDS).getUid().getUidValue());
+    }
+    assertEquals(List.of("7"), requestedIds);
+  }
+
+  @Test
+  public void collapsersSeparatePerInstance() {
+    setup(500, true);
+    EnhancedPFUserAdapter sameTenant = new EnhancedPFUserAdapter();
+    sameTenant.setConfiguration(adapter.getConfiguration());
+    EnhancedPFUserAdapter otherTenant = new EnhancedPFUserAdapter();
+    otherTenant.setConfiguration(
+        new EnhancedPFConfiguration() {
+          @Override
+          public Integer getGetObjectBatchWindowMillis() {
+            return 500;
+          }
+
+          @Override
+          public String getInstanceId() {
+            return "otherTenant";
+          }
+        });
+
+    GetObjectCollapser collapser = GetObjectCollapser.forAdapter(adapter);
+    assertSame(collapser, GetObjectCollapser.forAdapter(sameTenant));
+    assertNotSame(collapser, GetObjectCollapser.forAdapter(otherTenant));
+    GetObjectCollapser.clear(otherTenant);
+  }
+
+  @Test
+  public void optionsKeyComparesArrayValues() {
+    Map<String, Object> first = new HashMap<>();
+    first.put("ATTRS_TO_GET", new String[] {"email", "title"});
+    Map<String, Object> second = new HashMap<>();
+    second.put("ATTRS_TO_GET", new String[] {"email", "title"});
+    Map<String, Object> third = new HashMap<>();
+    third.put("ATTRS_TO_GET", new String[] {"email"});
+
+    assertEquals(GetObjectCollapser.getOptionsKey(first), GetObjectCollapser.getOptionsKey(second));
+    assertNotEquals(
+        GetObjectCollapser.getOptionsKey(first), GetObjectCollapser.getOptionsKey(third));
+  }
+}
@@ -0,0 +1,104 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import static com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUsers.user;
+import static com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUsers.users;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.exclamationlabs.connid.base.connector.stub.adapter.EnhancedPFUserAdapter;
+import com.exclamationlabs.connid.base.connector.stub.configuration.EnhancedPFConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class IdentityNameIndexTest {
+
+  private EnhancedPFUserAdapter adapter;
+
+  @BeforeEach
+  public void setup() {
+    adapter = new EnhancedPFUserAdapter();
+    adapter.setConfiguration(
+        new EnhancedPFConfiguration() {
+          @Override
+          public Integer getNameIndexTtlSeconds() {
+            return 60;
+          }
+
+          @Override
+          public Integer getNameIndexMaximumEntries() {
+            return 2;
+          }
+        });
+  }
+
+  @Test
+  public void lookupRecordedName() {
+    IdentityNameIndex.record(adapter, user("1"));
+    assertEquals("1", IdentityNameIndex.lookup(adapter, "USER1@test.com"));
+    assertNull(IdentityNameIndex.lookup(adapter, "unknown@test.com"));
+  }
+
+  @Test
+  public void lookupRecordedPage() {
+    IdentityNameIndex.record(adapter, users("7", "8"));
+    assertEquals("7", IdentityNameIndex.lookup(adapter, "user7@test.com"));
+    assertEquals("8", IdentityNameIndex.lookup(adapter, "user8@test.com"));
+  }
+
+  @Test
+  public void removeStaleName() {
+    IdentityNameIndex.record(adapter, user("2"));
+    IdentityNameIndex.remove(adapter, "user2@test.com");
+    assertNull(IdentityNameIndex.lookup(adapter, "user2@test.com"));
+  }
+
+  @Test
+  public void leastRecentlyUsedEvicted() {
+    IdentityNameIndex.record(adapter, user("3"));
+    IdentityNameIndex.record(adapter, user("4"));
+    IdentityNameIndex.record(adapter, user("5"));
+    assertNull(IdentityNameIndex.lookup(adapter, "user3@test.com"));
+    assertEquals("5", IdentityNameIndex.lookup(adapter, "user5@test.com"));
+  }
+
+  @Test
+  public void indexedPerInstance() {
+    EnhancedPFUserAdapter otherTenant = new EnhancedPFUserAdapter();
+    otherTenant.setConfiguration(
+        new EnhancedPFConfiguration() {
+          @Override
+          public Integer getNameIndexTtlSeconds() {
+            return 60;
+          }
+
+          @Override
+          public String getInstanceId() {
+            return "otherTenant";
+          }
+        });
+    IdentityNameIndex.record(adapter, user("9"));
+    assertNull(IdentityNameIndex.lookup(otherTenant, "user9@test.com"));
+  }
+
+  @Test
+  public void notConfigured() {
+    adapter.setConfiguration(new EnhancedPFConfiguration());
+    IdentityNameIndex.record(adapter, user("6"));
+    assertNull(IdentityNameIndex.lookup(adapter, "user6@test.com"));
+  }
+}
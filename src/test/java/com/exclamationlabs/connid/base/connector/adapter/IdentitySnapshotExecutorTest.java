@@ -0,0 +1,168 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import static com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUsers.users;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import com.exclamationlabs.connid.base.connector.results.IdentitySnapshot;
+import com.exclamationlabs.connid.base.connector.results.ResultsFilter;
+import com.exclamationlabs.connid.base.connector.results.ResultsPaginator;
+import com.exclamationlabs.connid.base.connector.stub.adapter.EnhancedPFUserAdapter;
+import com.exclamationlabs.connid.base.connector.stub.configuration.EnhancedPFConfiguration;
+import com.exclamationlabs.connid.base.connector.stub.driver.EnhancedPFDriver;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.identityconnectors.framework.common.objects.Uid;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class IdentitySnapshotExecutorTest {
+
+  private final AtomicInteger imports = new AtomicInteger();
+
+  private EnhancedPFUserAdapter adapter(Path directory, int retentionSeconds) {
+    EnhancedPFUserAdapter adapter =
+        new EnhancedPFUserAdapter() {
+          @Override
+          public boolean getSearchResultsContainsAllAttributes() {
+            return true;
+          }
+
+          @Override
+          public boolean getFilteringRequiresFullImport() {
+            return true;
+          }
+        };
+    adapter.setConfiguration(
+        new EnhancedPFConfiguration() {
+          @Override
+          public String getImportSnapshotDirectory() {
+            return directory == null ? null : directory.toString();
+          }
+
+          @Override
+          public Integer getImportRetentionSeconds() {
+            return retentionSeconds;
+          }
+        });
+    adapter.setDriver(
+        new EnhancedPFDriver() {
+          @Override
+          public Set<IdentityModel> getAll(
+              Class<? extends IdentityModel> modelClass,
+              ResultsFilter filter,
+              ResultsPaginator paginator,
+              Integer resultCap,
+              Map<String, Object> prefetchDataMap) {
+            imports.incrementAndGet();
+            return users("1", "2");
+          }
+
+          @Override
+          public String create(Class<? extends IdentityModel> modelClass, IdentityModel model) {
+            return "3";
+          }
+
+          @Override
+          public void update(
+              Class<? extends IdentityModel> modelClass, String id, IdentityModel model) {}
+
+          @Override
+          public void delete(Class<? extends IdentityModel> modelClass, String id) {}
+        });
+    IdentitySnapshotExecutor.invalidate(adapter);
+    return adapter;
+  }
+
+  private static IdentitySnapshot recordImport(SearchExecutor executor) {
+    IdentitySnapshotExecutor.Recording recording =
+        IdentitySnapshotExecutor.startRecording(executor);
+    recording.record(users("1", "2", "3"));
+    recording.complete();
+    return IdentitySnapshotExecutor.getSnapshot(executor, null);
+  }
+
+  @Test
+  public void retainedUntilRetentionPasses() throws Exception {
+    SearchExecutor executor = new SearchExecutor(adapter(null, 1));
+    IdentitySnapshot retained = recordImport(executor);
+    assertEquals(3, retained.size());
+    assertSame(retained, IdentitySnapshotExecutor.getSnapshot(executor, null));
+    assertEquals(0, imports.get());
+
+    Thread.sleep(1100);
+    IdentitySnapshot imported = IdentitySnapshotExecutor.getSnapshot(executor, null);
+    assertNotSame(retained, imported);
+    assertEquals(2, imported.size());
+    assertEquals(1, imports.get());
+  }
+
+  @Test
+  public void retainedPerInstance() {
+    EnhancedPFUserAdapter otherTenant = adapter(null, 300);
+    recordImport(new SearchExecutor(adapter(null, 300)));
+    otherTenant.setConfiguration(
+        new EnhancedPFConfiguration() {
+          @Override
+          public Integer getImportRetentionSeconds() {
+            return 300;
+          }
+
+          @Override
+          public String getInstanceId() {
+            return "otherTenant";
+          }
+        });
+
+    SearchExecutor otherExecutor = new SearchExecutor(otherTenant);
+    assertEquals(2, IdentitySnapshotExecutor.getSnapshot(otherExecutor, null).size());
+    assertEquals(1, imports.get());
+  }
+
+  @Test
+  public void invalidatedWhenRecordsChange(@TempDir Path directory) {
+    EnhancedPFUserAdapter adapter = adapter(directory, 300);
+    SearchExecutor executor = new SearchExecutor(adapter);
+    Path snapshotFile = IdentitySnapshotExecutor.getSnapshotFile(adapter);
+
+    recordImport(executor);
+    assertTrue(Files.exists(snapshotFile));
+    adapter.create(Collections.emptySet());
+    assertFalse(Files.exists(snapshotFile));
+    assertEquals(2, IdentitySnapshotExecutor.getSnapshot(executor, null).size());
+    assertEquals(1, imports.get());
+
+    recordImport(executor);
+    adapter.updateDelta(new Uid("1"), Collections.emptySet());
+    assertFalse(Files.exists(snapshotFile));
+    assertEquals(2, IdentitySnapshotExecutor.getSnapshot(executor, null).size());
+    assertEquals(2, imports.get());
+
+    recordImport(executor);
+    adapter.delete(new Uid("1"));
+    assertFalse(Files.exists(snapshotFile));
+    assertEquals(2, IdentitySnapshotExecutor.getSnapshot(executor, null).size());
+    assertEquals(3, imports.get());
+    assertTrue(Files.exists(snapshotFile));
+  }
+}
@@ -0,0 +1,107 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import static com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUsers.users;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import com.exclamationlabs.connid.base.connector.results.ResultsFilter;
+import com.exclamationlabs.connid.base.connector.results.ResultsPaginator;
+import com.exclamationlabs.connid.base.connector.stub.configuration.EnhancedPFConfiguration;
+import com.exclamationlabs.connid.base.connector.stub.driver.EnhancedPFDriver;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.identityconnectors.framework.common.objects.OperationOptionsBuilder;
+import org.junit.jupiter.api.Test;
+
+public class ImportAllExecutorTest {
+
+  private final List<Integer> requestedOffsets = new CopyOnWriteArrayList<>();
+  private final List<String> handled = new CopyOnWriteArrayList<>();
+
+  static class CountedUserAdapter extends ImportCheckpointTest.BudgetedUserAdapter
+      implements CountCapableSource {
+    @Override
+    public boolean hasCountRequest() {
+      return true;
+    }
+  }
+
+  /** Driver of a source holding sourceSize users, reporting reportedCount as its total. */
+  private EnhancedPFDriver driver(int sourceSize, int reportedCount) {
+    return new EnhancedPFDriver() {
+      @Override
+      public Integer getCount(
+          Class<? extends IdentityModel> modelClass,
+          ResultsFilter filter,
+          Map<String, Object> prefetchDataMap) {
+        return reportedCount;
+      }
+
+      @Override
+      public Set<IdentityModel> getAll(
+          Class<? extends IdentityModel> modelClass,
+          ResultsFilter filter,
+          ResultsPaginator paginator,
+          Integer resultCap,
+          Map<String, Object> prefetchDataMap) {
+        requestedOffsets.add(paginator.getCurrentOffset());
+        Set<IdentityModel> page = new LinkedHashSet<>();
+        for (int row = paginator.getCurrentOffset();
+            row < Math.min(sourceSize, paginator.getCurrentOffset() + paginator.getPageSize());
+            row++) {
+          page.addAll(users(String.valueOf(row)));
+        }
+        return page;
+      }
+    };
+  }
+
+  private void importAll(BaseAdapter<?, ?> adapter) {
+    ImportAllExecutor.execute(
+        new SearchExecutor(adapter),
+        object -> handled.add(object.getUid().getUidValue()),
+        new OperationOptionsBuilder().build());
+  }
+
+  @Test
+  public void knownTotalImportContinuesPastStaleTotal() {
+    CountedUserAdapter adapter = new CountedUserAdapter();
+    adapter.setConfiguration(new EnhancedPFConfiguration());
+    // Records were added after the total was counted
+    adapter.setDriver(driver(45, 20));
+
+    importAll(adapter);
+    assertEquals(45, handled.size());
+    assertEquals(List.of(0, 20, 40), requestedOffsets);
+  }
+
+  @Test
+  public void knownTotalImportEndsWithPartialPage() {
+    CountedUserAdapter adapter = new CountedUserAdapter();
+    adapter.setConfiguration(new EnhancedPFConfiguration());
+    adapter.setDriver(driver(30, 30));
+
+    importAll(adapter);
+    assertEquals(30, handled.size());
+    assertEquals(List.of(0, 20), requestedOffsets);
+  }
+}
@@ -0,0 +1,206 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import static com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUsers.users;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import com.exclamationlabs.connid.base.connector.results.ResultsFilter;
+import com.exclamationlabs.connid.base.connector.results.ResultsPaginator;
+import com.exclamationlabs.connid.base.connector.stub.adapter.EnhancedPFUserAdapter;
+import com.exclamationlabs.connid.base.connector.stub.configuration.EnhancedPFConfiguration;
+import com.exclamationlabs.connid.base.connector.stub.driver.EnhancedPFDriver;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.identityconnectors.framework.common.objects.OperationOptions;
+import org.identityconnectors.framework.common.objects.OperationOptionsBuilder;
+import org.identityconnectors.framework.common.objects.SearchResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ImportCheckpointTest {
+
+  static class BudgetedUserAdapter extends EnhancedPFUserAdapter
+      implements PaginationCapableSource {
+    @Override
+    public boolean hasSearchResultsMaximum() {
+      return false;
+    }
+
+    @Override
+    public Integer getSearchResultsMaximum() {
+      return null;
+    }
+
+    @Override
+    public boolean getSearchResultsContainsAllAttributes() {
+      return true;
+    }
+  }
+
+  private static EnhancedPFUserAdapter adapter(Path directory) {
+    EnhancedPFUserAdapter adapter = new EnhancedPFUserAdapter();
+    adapter.setConfiguration(
+        new EnhancedPFConfiguration() {
+          @Override
+          public String getImportCheckpointDirectory() {
+            return directory.toString();
+          }
+        });
+    return adapter;
+  }
+
+  @Test
+  public void notConfigured() {
+    EnhancedPFUserAdapter adapter = new EnhancedPFUserAdapter();
+    adapter.setConfiguration(new EnhancedPFConfiguration());
+    assertNull(ImportCheckpoint.open(adapter, new OperationOptionsBuilder().build()));
+  }
+
+  @Test
+  public void resumeAfterFailure(@TempDir Path directory) throws IOException {
+    EnhancedPFUserAdapter adapter = adapter(directory);
+    OperationOptions options = new OperationOptionsBuilder().build();
+    ImportCheckpoint checkpoint = ImportCheckpoint.open(adapter, options);
+    assertFalse(checkpoint.isResumed());
+    checkpoint.commit(users("1", "2"), 2, null);
+    checkpoint.commit(users("3", "4"), 4, "page3");
+
+    // Import requested again after the failure of the previous one
+    ImportCheckpoint resumed = ImportCheckpoint.open(adapter, options);
+    assertTrue(resumed.isResumed());
+    assertEquals(4, resumed.getResumeOffset());
+    assertEquals("page3", resumed.getResumeToken());
+    assertEquals(4, resumed.getEmittedCount());
+    // A record that moved into the resumed page is not passed twice
+    Set<IdentityModel> remaining = resumed.removeEmitted(users("4", "5"));
+    assertEquals(1, remaining.size());
+    assertEquals("5", remaining.iterator().next().getIdentityIdValue());
+
+    resumed.complete();
+    assertEquals(0, Files.list(directory).count());
+    assertFalse(ImportCheckpoint.open(adapter, options).isResumed());
+  }
+
+  @Test
+  public void onlyBoundaryPageKept(@TempDir Path directory) {
+    EnhancedPFUserAdapter adapter = adapter(directory);
+    OperationOptions options = new OperationOptionsBuilder().build();
+    ImportCheckpoint checkpoint = ImportCheckpoint.open(adapter, options);
+    checkpoint.commit(users("1", "2"), 2, null);
+    checkpoint.commit(users("3", "4"), 4, null);
+
+    ImportCheckpoint resumed = ImportCheckpoint.open(adapter, options);
+    // Records of pages before the boundary are not held
+    assertEquals(2, resumed.removeEmitted(users("2", "5")).size());
+    Set<IdentityModel> resumedPage = users("4", "5", "6");
+    assertEquals(2, resumed.removeEmitted(resumedPage).size());
+    resumed.commit(resumedPage, 6, null);
+    assertEquals(6, resumed.getEmittedCount());
+    // Boundary ids are cleared once the resumed import moves past them
+    assertEquals(1, resumed.removeEmitted(users("3")).size());
+
+    ImportCheckpoint resumedAgain = ImportCheckpoint.open(adapter, options);
+    assertEquals(6, resumedAgain.getEmittedCount());
+    Set<IdentityModel> remaining = resumedAgain.removeEmitted(users("3", "6", "7"));
+    assertEquals(2, remaining.size());
+    assertFalse(remaining.stream().anyMatch(user -> user.getIdentityIdValue().equals("6")));
+  }
+
+  @Test
+  public void budgetStopRemovesCheckpoint(@TempDir Path directory) throws IOException {
+    List<Integer> requestedOffsets = new ArrayList<>();
+    BudgetedUserAdapter adapter = new BudgetedUserAdapter();
+    adapter.setConfiguration(
+        new EnhancedPFConfiguration() {
+          @Override
+          public String getImportCheckpointDirectory() {
+            return directory.toString();
+          }
+
+          @Override
+          public Integer getSearchTimeBudgetMillis() {
+            return 1;
+          }
+        });
+    adapter.setDriver(
+        new EnhancedPFDriver() {
+          @Override
+          public Set<IdentityModel> getAll(
+              Class<? extends IdentityModel> modelClass,
+              ResultsFilter filter,
+              ResultsPaginator paginator,
+              Integer resultCap,
+              Map<String, Object> prefetchDataMap) {
+            requestedOffsets.add(paginator.getCurrentOffset());
+            // Longer than the budget, so that the import stops after this page
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+            Set<IdentityModel> page = new LinkedHashSet<>();
+            for (int row = 0; row < paginator.getPageSize(); row++) {
+              page.addAll(users(String.valueOf(paginator.getCurrentOffset() + row)));
+            }
+            return page;
+          }
+        });
+    List<String> handled = new ArrayList<>();
+
+    SearchResult stopped =
+        ImportAllExecutor.execute(
+            new SearchExecutor(adapter),
+            object -> handled.add(object.getUid().getUidValue()),
+            new OperationOptionsBuilder().build());
+
+    assertNotNull(stopped.getPagedResultsCookie());
+    assertEquals(1, requestedOffsets.size());
+    assertEquals(20, handled.size());
+    // An import requested again without the cookie starts over instead of resuming
+    assertEquals(0, Files.list(directory).count());
+    assertFalse(ImportCheckpoint.open(adapter, new OperationOptionsBuilder().build()).isResumed());
+
+    ImportAllExecutor.execute(
+        new SearchExecutor(adapter),
+        object -> handled.add(object.getUid().getUidValue()),
+        new OperationOptionsBuilder()
+            .setPagedResultsCookie(stopped.getPagedResultsCookie())
+            .build());
+    assertEquals(requestedOffsets.get(0) + 20, (int) requestedOffsets.get(1));
+    assertEquals(0, Files.list(directory).count());
+  }
+
+  @Test
+  public void differentAttributesStartOver(@TempDir Path directory) {
+    EnhancedPFUserAdapter adapter = adapter(directory);
+    ImportCheckpoint checkpoint =
+        ImportCheckpoint.open(adapter, new OperationOptionsBuilder().build());
+    checkpoint.commit(users("1", "2"), 2, null);
+
+    ImportCheckpoint other =
+        ImportCheckpoint.open(
+            adapter, new OperationOptionsBuilder().setAttributesToGet("email").build());
+    assertFalse(other.isResumed());
+    assertEquals(0, other.getResumeOffset());
+  }
+}
@@ -0,0 +1,87 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUser;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.junit.jupiter.api.Test;
+
+public class ImportCollectorTest {
+
+  private static Set<IdentityModel> page(int start, int count) {
+    Set<IdentityModel> page = new LinkedHashSet<>();
+    for (int xx = start; xx < start + count; xx++) {
+      page.add(
+          new EnhancedPFUser(
+              "" + xx,
+              "user" + xx + "@test.com",
+              "First" + xx,
+              "Last" + xx,
+              xx % 2 == 0 ? "Even" : "Odd",
+              "Tester",
+              "Here"));
+    }
+    return page;
+  }
+
+  private static boolean isEven(IdentityModel identity) {
+    return "Even".equals(((EnhancedPFUser) identity).getDepartment());
+  }
+
+  @Test
+  public void collectAllWithoutFilter() {
+    ImportAllExecutor.ImportCollector collector =
+        new ImportAllExecutor.ImportCollector(null, null, null);
+    collector.collect(page(0, 10));
+    collector.collect(page(10, 10));
+    assertEquals(20, collector.getResults().size());
+    assertFalse(collector.isComplete());
+  }
+
+  @Test
+  public void collectOnlyMatches() {
+    ImportAllExecutor.ImportCollector collector =
+        new ImportAllExecutor.ImportCollector(ImportCollectorTest::isEven, null, null);
+    collector.collect(page(0, 10));
+    collector.collect(page(10, 10));
+    assertEquals(10, collector.getResults().size());
+    assertTrue(collector.getResults().stream().allMatch(ImportCollectorTest::isEven));
+    assertEquals(20, collector.getScannedCount());
+  }
+
+  @Test
+  public void collectStopsAtMatchLimit() {
+    ImportAllExecutor.ImportCollector collector =
+        new ImportAllExecutor.ImportCollector(ImportCollectorTest::isEven, 3, null);
+    collector.collect(page(0, 10));
+    assertTrue(collector.isComplete());
+    assertEquals(3, collector.getResults().size());
+    assertEquals(5, collector.getScannedCount());
+  }
+
+  @Test
+  public void collectExceedsRetainedMaximum() {
+    ImportAllExecutor.ImportCollector collector =
+        new ImportAllExecutor.ImportCollector(ImportCollectorTest::isEven, null, 4);
+    assertThrows(ConnectorException.class, () -> collector.collect(page(0, 10)));
+  }
+}
@@ -0,0 +1,141 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import com.exclamationlabs.connid.base.connector.stub.adapter.EnhancedPFUserAdapter;
+import com.exclamationlabs.connid.base.connector.stub.configuration.EnhancedPFConfiguration;
+import com.exclamationlabs.connid.base.connector.stub.driver.EnhancedPFDriver;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PrefetchCacheTest {
+
+  private final AtomicInteger loads = new AtomicInteger();
+  private final AtomicInteger failures = new AtomicInteger();
+  private final CountDownLatch loadReleased = new CountDownLatch(1);
+  private EnhancedPFUserAdapter adapter;
+
+  @BeforeEach
+  public void setup() {
+    PrefetchCache.invalidateAll();
+    adapter = new EnhancedPFUserAdapter();
+    adapter.setConfiguration(
+        new EnhancedPFConfiguration() {
+          @Override
+          public Integer getPrefetchCacheTtlSeconds() {
+            return 300;
+          }
+        });
+    adapter.setDriver(
+        new EnhancedPFDriver() {
+          @Override
+          public Map<String, Object> getPrefetch(Class<? extends IdentityModel> modelClass) {
+            loads.incrementAndGet();
+            if (failures.getAndDecrement() > 0) {
+              throw new NoClassDefFoundError("ReferenceDataClient");
+            }
+            try {
+              loadReleased.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ie) {
+              Thread.currentThread().interrupt();
+            }
+            Map<String, Object> prefetch = new HashMap<>();
+            prefetch.put("locations", List.of("Here", "There"));
+            return prefetch;
+          }
+        });
+  }
+
+  @Test
+  public void cachedUntilInvalidated() {
+    loadReleased.countDown();
+    Map<String, Object> first = PrefetchCache.getPrefetch(adapter);
+    first.put(SearchExecutor.ATTRIBUTES_TO_GET_KEY, "modified by caller");
+    Map<String, Object> second = PrefetchCache.getPrefetch(adapter);
+
+    assertEquals(1, loads.get());
+    assertEquals(List.of("Here", "There"), second.get("locations"));
+    assertFalse(second.containsKey(SearchExecutor.ATTRIBUTES_TO_GET_KEY));
+
+    PrefetchCache.invalidate(adapter);
+    PrefetchCache.getPrefetch(adapter);
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void cachedPerInstance() {
+    loadReleased.countDown();
+    EnhancedPFUserAdapter otherTenant = new EnhancedPFUserAdapter();
+    otherTenant.setConfiguration(
+        new EnhancedPFConfiguration() {
+          @Override
+          public Integer getPrefetchCacheTtlSeconds() {
+            return 300;
+          }
+
+          @Override
+          public String getInstanceId() {
+            return "otherTenant";
+          }
+        });
+    otherTenant.setDriver(adapter.getDriver());
+    PrefetchCache.getPrefetch(adapter);
+    PrefetchCache.getPrefetch(otherTenant);
+    assertEquals(2, loads.get());
+
+    PrefetchCache.invalidate(otherTenant);
+    PrefetchCache.getPrefetch(adapter);
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void failedLoadRetried() {
+    loadReleased.countDown();
+    failures.set(1);
+    assertThrows(NoClassDefFoundError.class, () -> PrefetchCache.getPrefetch(adapter));
+    assertEquals(List.of("Here", "There"), PrefetchCache.getPrefetch(adapter).get("locations"));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void concurrentOperationsShareOneLoad() throws Exception {
+    ExecutorService callers = Executors.newFixedThreadPool(3);
+    try {
+      List<Future<Map<String, Object>>> results = new ArrayList<>();
+      for (int caller = 0; caller < 3; caller++) {
+        results.add(callers.submit(() -> PrefetchCache.getPrefetch(adapter)));
+      }
+      Thread.sleep(200);
+      loadReleased.countDown();
+      for (Future<Map<String, Object>> result : results) {
+        assertNotNull(result.get(10, TimeUnit.SECONDS).get("locations"));
+      }
+      assertEquals(1, loads.get());
+    } finally {
+      callers.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ConnectorObjectBuilder;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.junit.jupiter.api.Test;
+
+public class ResultsEmitterTest {
+
+  private static final int RESULT_COUNT = 500;
+
+  private static ConnectorObject connectorObject(long id) {
+    return new ConnectorObjectBuilder()
+        .setObjectClass(ObjectClass.ACCOUNT)
+        .setUid(String.valueOf(id))
+        .setName("name" + id)
+        .build();
+  }
+
+  private static ResultsEmitter<ConnectorObject> emitter(int minimumCapacity, boolean ordered) {
+    return new ResultsEmitter<>(minimumCapacity, ordered, Function.identity());
+  }
+
+  private static List<String> emit(ResultsEmitter<ConnectorObject> emitter, int stopAfter)
+      throws InterruptedException {
+    ExecutorService producers = Executors.newFixedThreadPool(4);
+    for (long sequence = 0; sequence < RESULT_COUNT; sequence++) {
+      long current = sequence;
+      producers.submit(
+          () -> {
+            // Some results complete later than results with greater sequence numbers
+            if (current % 7 == 0) {
+              LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            // Every tenth sequence produces no result
+            return emitter.publish(current, current % 10 == 5 ? null : connectorObject(current));
+          });
+    }
+    List<String> handled = new ArrayList<>();
+    emitter.drainTo(
+        item -> {
+          handled.add(item.getUid().getUidValue());
+          return handled.size() < stopAfter;
+        },
+        RESULT_COUNT);
+    producers.shutdown();
+    assertTrue(producers.awaitTermination(10, TimeUnit.SECONDS));
+    return handled;
+  }
+
+  @Test
+  public void capacityRoundedToPowerOfTwo() {
+    assertEquals(2, emitter(1, true).getCapacity());
+    assertEquals(8, emitter(5, true).getCapacity());
+    assertEquals(16, emitter(16, true).getCapacity());
+  }
+
+  @Test
+  public void orderedResults() throws InterruptedException {
+    List<String> handled = emit(emitter(8, true), Integer.MAX_VALUE);
+    assertEquals(RESULT_COUNT - RESULT_COUNT / 10, handled.size());
+    List<String> expected = new ArrayList<>();
+    for (long id = 0; id < RESULT_COUNT; id++) {
+      if (id % 10 != 5) {
+        expected.add(String.valueOf(id));
+      }
+    }
+    assertEquals(expected, handled);
+  }
+
+  @Test
+  public void unorderedResults() throws InterruptedException {
+    List<String> handled = emit(emitter(8, false), Integer.MAX_VALUE);
+    assertEquals(RESULT_COUNT - RESULT_COUNT / 10, handled.size());
+    assertEquals(handled.size(), handled.stream().distinct().count());
+  }
+
+  @Test
+  public void resultsFarAheadWaitForEarlierResults() throws Exception {
+    ResultsEmitter<ConnectorObject> emitter = emitter(4, true);
+    ExecutorService producers = Executors.newFixedThreadPool(2);
+    try {
+      Future<Boolean> farAhead = producers.submit(() -> emitter.publish(4, connectorObject(4)));
+      Thread.sleep(100);
+      // Sequence 4 is beyond the reorder window until sequence 0 has been passed
+      assertFalse(farAhead.isDone());
+      producers.submit(
+          () -> {
+            for (long sequence = 0; sequence < 4; sequence++) {
+              emitter.publish(sequence, connectorObject(sequence));
+            }
+          });
+      List<String> handled = new ArrayList<>();
+      emitter.drainTo(item -> handled.add(item.getUid().getUidValue()), 5);
+      assertTrue(farAhead.get(10, TimeUnit.SECONDS));
+      assertEquals(List.of("0", "1", "2", "3", "4"), handled);
+    } finally {
+      producers.shutdownNow();
+    }
+  }
+
+  @Test
+  public void handlerStopClosesEmitter() throws InterruptedException {
+    ResultsEmitter<ConnectorObject> emitter = emitter(4, false);
+    List<String> handled = emit(emitter, 10);
+    assertEquals(10, handled.size());
+    assertFalse(emitter.publish(RESULT_COUNT, connectorObject(RESULT_COUNT)));
+  }
+}
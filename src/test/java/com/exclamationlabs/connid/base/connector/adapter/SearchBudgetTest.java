@@ -0,0 +1,88 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.exclamationlabs.connid.base.connector.stub.adapter.EnhancedPFUserAdapter;
+import com.exclamationlabs.connid.base.connector.stub.configuration.EnhancedPFConfiguration;
+import com.exclamationlabs.connid.base.connector.util.OperationOptionsDataFinder;
+import java.util.concurrent.TimeUnit;
+import org.identityconnectors.framework.common.objects.OperationOptionsBuilder;
+import org.junit.jupiter.api.Test;
+
+public class SearchBudgetTest {
+
+  private static EnhancedPFUserAdapter adapter(Integer configuredBudget) {
+    EnhancedPFUserAdapter adapter = new EnhancedPFUserAdapter();
+    adapter.setConfiguration(
+        new EnhancedPFConfiguration() {
+          @Override
+          public Integer getSearchTimeBudgetMillis() {
+            return configuredBudget;
+          }
+        });
+    return adapter;
+  }
+
+  @Test
+  public void noBudget() {
+    assertNull(SearchBudget.start(adapter(null), new OperationOptionsBuilder().build()));
+  }
+
+  @Test
+  public void stopsBeforeRequestExceedingBudget() {
+    SearchBudget budget =
+        SearchBudget.start(
+            adapter(null),
+            new OperationOptionsBuilder()
+                .setOption(OperationOptionsDataFinder.SEARCH_TIME_BUDGET_KEY, 60000L)
+                .build());
+    // The first request is always allowed
+    assertTrue(budget.allowsRequest());
+    budget.recordRequest(TimeUnit.SECONDS.toNanos(1));
+    assertTrue(budget.allowsRequest());
+    budget.recordRequest(TimeUnit.SECONDS.toNanos(120));
+    assertFalse(budget.allowsRequest());
+  }
+
+  @Test
+  public void configuredBudget() {
+    SearchBudget budget = SearchBudget.start(adapter(1000), new OperationOptionsBuilder().build());
+    assertNotNull(budget);
+    budget.recordRequest(TimeUnit.SECONDS.toNanos(2));
+    assertFalse(budget.allowsRequest());
+  }
+
+  @Test
+  public void importCookie() {
+    SearchBudget.ImportPosition position =
+        SearchBudget.readImportCookie(SearchBudget.getImportCookie(400, "next:page/token"));
+    assertEquals(400, position.offset);
+    assertEquals("next:page/token", position.pageToken);
+    assertNull(SearchBudget.readImportCookie(SearchBudget.getImportCookie(20, null)).pageToken);
+    assertNull(SearchBudget.readImportCookie("someOtherCookie"));
+    assertNull(SearchBudget.readImportCookie(SearchBudget.getOffsetCookie(5)));
+  }
+
+  @Test
+  public void offsetCookie() {
+    assertEquals(17, SearchBudget.readOffsetCookie(SearchBudget.getOffsetCookie(17)));
+    assertNull(SearchBudget.readOffsetCookie("offset:zero"));
+    assertNull(SearchBudget.readOffsetCookie(null));
+  }
+}
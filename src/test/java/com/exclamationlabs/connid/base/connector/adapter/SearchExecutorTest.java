@@ -0,0 +1,274 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import static com.exclamationlabs.connid.base.connector.adapter.SearchExecutor.ATTRIBUTES_TO_GET_KEY;
+import static com.exclamationlabs.connid.base.connector.attribute.ConnectorAttributeDataType.STRING;
+import static com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUsers.user;
+import static org.identityconnectors.framework.common.objects.AttributeInfo.Flags.NOT_RETURNED_BY_DEFAULT;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.exclamationlabs.connid.base.connector.attribute.ConnectorAttribute;
+import com.exclamationlabs.connid.base.connector.driver.CachingDriver;
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import com.exclamationlabs.connid.base.connector.stub.adapter.EnhancedPFUserAdapter;
+import com.exclamationlabs.connid.base.connector.results.ResultsFilter;
+import com.exclamationlabs.connid.base.connector.results.ResultsPaginator;
+import com.exclamationlabs.connid.base.connector.stub.attribute.EnhancedPFUserAttribute;
+import com.exclamationlabs.connid.base.connector.stub.configuration.EnhancedPFConfiguration;
+import com.exclamationlabs.connid.base.connector.stub.driver.EnhancedPFDriver;
+import com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUser;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.identityconnectors.framework.common.objects.Name;
+import org.identityconnectors.framework.common.objects.OperationOptionsBuilder;
+import org.identityconnectors.framework.common.objects.SearchResult;
+import org.identityconnectors.framework.common.objects.Uid;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SearchExecutorTest {
+
+  private EnhancedPFUserAdapter adapter;
+
+  @BeforeEach
+  public void setup() {
+    adapter =
+        new EnhancedPFUserAdapter() {
+          @Override
+          public boolean getSearchResultsContainsNameAttribute() {
+            return true;
+          }
+
+          @Override
+          public Set<String> getSearchResultsAttributesPresent() {
+            return Set.of(
+                EnhancedPFUserAttribute.FIRST_NAME.name(),
+                EnhancedPFUserAttribute.LAST_NAME.name());
+          }
+        };
+  }
+
+  @Test
+  public void requestedAttributesNotSupplied() {
+    assertNull(
+        SearchExecutor.getRequestedAttributes(adapter, new OperationOptionsBuilder().build()));
+    assertFalse(SearchExecutor.requestedAttributesPresentInResults(adapter, new HashMap<>()));
+  }
+
+  @Test
+  public void prefetchDataCopiedFromImmutableMap() {
+    adapter.setConfiguration(new EnhancedPFConfiguration());
+    adapter.setDriver(
+        new EnhancedPFDriver() {
+          @Override
+          public Map<String, Object> getPrefetch(Class<? extends IdentityModel> modelClass) {
+            return Map.of("locations", List.of("Here"));
+          }
+        });
+    Map<String, Object> prefetchData =
+        SearchExecutor.getPrefetchData(
+            adapter,
+            new OperationOptionsBuilder()
+                .setAttributesToGet(EnhancedPFUserAttribute.FIRST_NAME.name())
+                .build());
+    assertEquals(List.of("Here"), prefetchData.get("locations"));
+    assertEquals(
+        Set.of(EnhancedPFUserAttribute.FIRST_NAME.name()), prefetchData.get(ATTRIBUTES_TO_GET_KEY));
+  }
+
+  @Test
+  public void requestedAttributesWithDefaultAttributes() {
+    EnhancedPFUserAdapter detailAdapter =
+        new EnhancedPFUserAdapter() {
+          @Override
+          public Set<ConnectorAttribute> getConnectorAttributes() {
+            return Set.of(
+                new ConnectorAttribute(EnhancedPFUserAttribute.FIRST_NAME.name(), STRING),
+                new ConnectorAttribute(
+                    EnhancedPFUserAttribute.DETAIL.name(), STRING, NOT_RETURNED_BY_DEFAULT));
+          }
+        };
+
+    // Explicitly requested attributes not returned by default are kept along with the defaults
+    assertEquals(
+        Set.of(EnhancedPFUserAttribute.FIRST_NAME.name(), EnhancedPFUserAttribute.DETAIL.name()),
+        SearchExecutor.getRequestedAttributes(
+            detailAdapter,
+            new OperationOptionsBuilder()
+                .setAttributesToGet(EnhancedPFUserAttribute.DETAIL.name())
+                .setReturnDefaultAttributes(true)
+                .build()));
+    assertEquals(
+        Set.of(EnhancedPFUserAttribute.FIRST_NAME.name()),
+        SearchExecutor.getRequestedAttributes(
+            detailAdapter,
+            new OperationOptionsBuilder()
+                .setAttributesToGet()
+                .setReturnDefaultAttributes(true)
+                .build()));
+  }
+
+  @Test
+  public void requestedAttributesPresentInResults() {
+    Map<String, Object> prefetch = new HashMap<>();
+    prefetch.put(
+        ATTRIBUTES_TO_GET_KEY,
+        SearchExecutor.getRequestedAttributes(
+            adapter,
+            new OperationOptionsBuilder()
+                .setAttributesToGet(Uid.NAME, Name.NAME, EnhancedPFUserAttribute.FIRST_NAME.name())
+                .build()));
+    assertTrue(SearchExecutor.requestedAttributesPresentInResults(adapter, prefetch));
+  }
+
+  @Test
+  public void requestedAttributesNotPresentInResults() {
+    Map<String, Object> prefetch = new HashMap<>();
+    prefetch.put(
+        ATTRIBUTES_TO_GET_KEY,
+        SearchExecutor.getRequestedAttributes(
+            adapter,
+            new OperationOptionsBuilder()
+                .setAttributesToGet(Name.NAME, EnhancedPFUserAttribute.DETAIL.name())
+                .build()));
+    assertFalse(SearchExecutor.requestedAttributesPresentInResults(adapter, prefetch));
+  }
+
+  @Test
+  public void detailsRetrievedInBatches() {
+    List<List<String>> requestedBatches = new ArrayList<>();
+    adapter.setConfiguration(
+        new EnhancedPFConfiguration() {
+          @Override
+          public Integer getDetailBatchSize() {
+            return 2;
+          }
+        });
+    adapter.setDriver(
+        new EnhancedPFDriver() {
+          @Override
+          public boolean supportsGetMany(Class<? extends IdentityModel> modelClass) {
+            return true;
+          }
+
+          @Override
+          public Map<String, IdentityModel> getMany(
+              Class<? extends IdentityModel> modelClass,
+              Collection<String> ids,
+              Map<String, Object> prefetchDataMap) {
+            requestedBatches.add(new ArrayList<>(ids));
+            Map<String, IdentityModel> found = new LinkedHashMap<>();
+            // Id 3 is no longer present on the destination system
+            ids.stream().filter(id -> !id.equals("3")).forEach(id -> found.put(id, user(id)));
+            return found;
+          }
+        });
+    Set<IdentityModel> page = new LinkedHashSet<>();
+    for (int id = 1; id <= 5; id++) {
+      page.add(user(String.valueOf(id)));
+    }
+    List<String> handled = new ArrayList<>();
+
+    int processed =
+        SearchExecutor.processResultsPage(
+            adapter,
+            adapter,
+            page,
+            connectorObject -> handled.add(connectorObject.getUid().getUidValue()),
+            new HashMap<>(),
+            null);
+
+    assertEquals(5, processed);
+    assertEquals(List.of(List.of("1", "2"), List.of("3", "4"), List.of("5")), requestedBatches);
+    assertEquals(List.of("1", "2", "4", "5"), handled);
+  }
+
+  @Test
+  public void onlyUnnarrowedResultsCached() {
+    List<String> requestedIds = new ArrayList<>();
+    CachingDriver<EnhancedPFConfiguration> driver =
+        new CachingDriver<>(
+            new EnhancedPFDriver() {
+              @Override
+              public IdentityModel getOne(
+                  Class<? extends IdentityModel> modelClass,
+                  String id,
+                  Map<String, Object> prefetchDataMap) {
+                requestedIds.add(id);
+                return user(id);
+              }
+            });
+    EnhancedPFUserAdapter completeAdapter =
+        new EnhancedPFUserAdapter() {
+          @Override
+          public boolean getSearchResultsContainsAllAttributes() {
+            return true;
+          }
+        };
+    completeAdapter.setConfiguration(new EnhancedPFConfiguration());
+    completeAdapter.setDriver(driver);
+    Map<String, Object> narrowed = new HashMap<>();
+    narrowed.put(ATTRIBUTES_TO_GET_KEY, Set.of(EnhancedPFUserAttribute.FIRST_NAME.name()));
+
+    SearchExecutor.processResultsPage(
+        completeAdapter, completeAdapter, Set.of(user("1")), object -> true, narrowed, null);
+    driver.getOne(EnhancedPFUser.class, "1", new HashMap<>());
+    assertEquals(List.of("1"), requestedIds);
+
+    SearchExecutor.processResultsPage(
+        completeAdapter, completeAdapter, Set.of(user("2")), object -> true, new HashMap<>(), null);
+    driver.getOne(EnhancedPFUser.class, "2", new HashMap<>());
+    assertEquals(List.of("1"), requestedIds);
+  }
+
+  @Test
+  public void remainingPagedResults() {
+    assertEquals(-1, SearchExecutor.getRemainingPagedResults(null, 1, 20));
+    assertEquals(80, SearchExecutor.getRemainingPagedResults(100, 1, 20));
+    assertEquals(60, SearchExecutor.getRemainingPagedResults(100, 21, 20));
+    assertEquals(0, SearchExecutor.getRemainingPagedResults(100, 81, 20));
+    assertEquals(-1, SearchExecutor.getRemainingPagedResults(10, 81, 20));
+  }
+
+  @Test
+  public void buildSearchResultWithTotal() {
+    ResultsPaginator paginator = new ResultsPaginator(20, 81);
+    SearchResult result = SearchExecutor.buildSearchResult(paginator, 100, 20);
+    assertEquals(0, result.getRemainingPagedResults());
+    assertTrue(result.isAllResultsReturned());
+
+    paginator = new ResultsPaginator(20, 1);
+    result = SearchExecutor.buildSearchResult(paginator, 100, 20);
+    assertEquals(80, result.getRemainingPagedResults());
+    assertFalse(result.isAllResultsReturned());
+  }
+
+  @Test
+  public void totalResultsNotCountCapable() {
+    ResultsPaginator paginator = new ResultsPaginator(20, 1);
+    paginator.setTotalResults(100);
+    assertNull(
+        SearchExecutor.getTotalResults(adapter, new ResultsFilter(), paginator, new HashMap<>()));
+  }
+}
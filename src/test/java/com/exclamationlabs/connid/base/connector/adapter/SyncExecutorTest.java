@@ -0,0 +1,192 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import static com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUsers.user;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import com.exclamationlabs.connid.base.connector.results.SyncChanges;
+import com.exclamationlabs.connid.base.connector.stub.adapter.EnhancedPFUserAdapter;
+import com.exclamationlabs.connid.base.connector.stub.configuration.EnhancedPFConfiguration;
+import com.exclamationlabs.connid.base.connector.stub.driver.EnhancedPFDriver;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import org.identityconnectors.framework.common.objects.OperationOptionsBuilder;
+import org.identityconnectors.framework.common.objects.SyncDelta;
+import org.identityconnectors.framework.common.objects.SyncDeltaType;
+import org.identityconnectors.framework.common.objects.SyncResultsHandler;
+import org.identityconnectors.framework.common.objects.SyncToken;
+import org.identityconnectors.framework.spi.SyncTokenResultsHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SyncExecutorTest {
+
+  private final LinkedList<SyncChanges> batches = new LinkedList<>();
+  private final List<String> requestedTokens = new ArrayList<>();
+  private SyncUserAdapter adapter;
+  private CollectingHandler handler;
+
+  static class SyncUserAdapter extends EnhancedPFUserAdapter implements SyncCapableSource {
+    private final ChangeTokenType changeTokenType;
+
+    SyncUserAdapter(ChangeTokenType changeTokenType) {
+      this.changeTokenType = changeTokenType;
+    }
+
+    @Override
+    public ChangeTokenType getChangeTokenType() {
+      return changeTokenType;
+    }
+  }
+
+  static class CollectingHandler implements SyncResultsHandler, SyncTokenResultsHandler {
+    final List<SyncDelta> deltas = new ArrayList<>();
+    SyncToken finalToken;
+
+    @Override
+    public boolean handle(SyncDelta delta) {
+      deltas.add(delta);
+      return true;
+    }
+
+    @Override
+    public void handleResult(SyncToken result) {
+      finalToken = result;
+    }
+  }
+
+  private void setup(SyncCapableSource.ChangeTokenType changeTokenType) {
+    adapter = new SyncUserAdapter(changeTokenType);
+    adapter.setConfiguration(new EnhancedPFConfiguration());
+    adapter.setDriver(
+        new EnhancedPFDriver() {
+          @Override
+          public SyncChanges getChanges(
+              Class<? extends IdentityModel> modelClass,
+              String token,
+              Map<String, Object> prefetchDataMap) {
+            requestedTokens.add(token);
+            return batches.poll();
+          }
+
+          @Override
+          public IdentityModel getOne(
+              Class<? extends IdentityModel> modelClass,
+              String id,
+              Map<String, Object> prefetchDataMap) {
+            return user(id);
+          }
+        });
+    handler = new CollectingHandler();
+  }
+
+  @BeforeEach
+  public void clearBatches() {
+    batches.clear();
+    requestedTokens.clear();
+  }
+
+  @Test
+  public void changeLogBatches() {
+    setup(SyncCapableSource.ChangeTokenType.CHANGE_LOG);
+    SyncChanges first = new SyncChanges("10");
+    first.addChanged(user("1"));
+    first.setMoreChanges(true);
+    SyncChanges second = new SyncChanges("12");
+    second.addChanged(user("2"));
+    second.addDeleted("3");
+    batches.add(first);
+    batches.add(second);
+
+    adapter.sync(new SyncToken("5"), handler, new OperationOptionsBuilder().build());
+
+    assertEquals(List.of("5", "10"), requestedTokens);
+    assertEquals(3, handler.deltas.size());
+    // Only the last delta of a batch carries the batch's next token
+    assertEquals("10", handler.deltas.get(0).getToken().getValue());
+    assertEquals(SyncDeltaType.CREATE_OR_UPDATE, handler.deltas.get(1).getDeltaType());
+    assertEquals("10", handler.deltas.get(1).getToken().getValue());
+    assertEquals(SyncDeltaType.DELETE, handler.deltas.get(2).getDeltaType());
+    assertEquals("3", handler.deltas.get(2).getUid().getUidValue());
+    assertEquals("12", handler.deltas.get(2).getToken().getValue());
+    assertEquals("12", handler.finalToken.getValue());
+  }
+
+  @Test
+  public void changeLogWithoutStartToken() {
+    setup(SyncCapableSource.ChangeTokenType.DELTA_TOKEN);
+    SyncChanges changes = new SyncChanges("20");
+    changes.addChanged(user("1"));
+    changes.addChanged(user("2"));
+    batches.add(changes);
+
+    adapter.sync(null, handler, new OperationOptionsBuilder().build());
+
+    assertEquals(2, handler.deltas.size());
+    assertEquals(SyncExecutor.INITIAL_TOKEN, handler.deltas.get(0).getToken().getValue());
+    assertEquals("20", handler.deltas.get(1).getToken().getValue());
+    assertEquals("20", handler.finalToken.getValue());
+
+    // A sync resumed from the first delta requests all changes again
+    batches.add(new SyncChanges("20"));
+    adapter.sync(handler.deltas.get(0).getToken(), handler, new OperationOptionsBuilder().build());
+    assertEquals(Arrays.asList(null, null), requestedTokens);
+  }
+
+  @Test
+  public void timestampTokens() {
+    setup(SyncCapableSource.ChangeTokenType.TIMESTAMP);
+    SyncChanges changes = new SyncChanges();
+    changes.addChanged(user("4"));
+    batches.add(changes);
+
+    String previous = "2020-01-01T00:00:00Z";
+    adapter.sync(new SyncToken(previous), handler, new OperationOptionsBuilder().build());
+
+    assertEquals(List.of(previous), requestedTokens);
+    assertEquals(1, handler.deltas.size());
+    // Deltas keep the starting token until every change has been passed
+    assertEquals(previous, handler.deltas.get(0).getToken().getValue());
+    assertTrue(handler.finalToken.getValue().toString().compareTo(previous) > 0);
+    assertNotNull(adapter.getLatestSyncToken());
+  }
+
+  @Test
+  public void timestampTokensWithoutStartToken() {
+    setup(SyncCapableSource.ChangeTokenType.TIMESTAMP);
+    SyncChanges changes = new SyncChanges();
+    changes.addChanged(user("5"));
+    batches.add(changes);
+
+    adapter.sync(null, handler, new OperationOptionsBuilder().build());
+
+    assertEquals(1, handler.deltas.size());
+    assertEquals(SyncExecutor.INITIAL_TOKEN, handler.deltas.get(0).getToken().getValue());
+    assertNotEquals(SyncExecutor.INITIAL_TOKEN, handler.finalToken.getValue());
+  }
+
+  @Test
+  public void notSyncCapable() {
+    EnhancedPFUserAdapter plainAdapter = new EnhancedPFUserAdapter();
+    assertThrows(UnsupportedOperationException.class, plainAdapter::getLatestSyncToken);
+  }
+}
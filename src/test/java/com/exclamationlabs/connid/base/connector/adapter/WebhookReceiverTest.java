@@ -0,0 +1,261 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.adapter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.exclamationlabs.connid.base.connector.configuration.basetypes.WebhookConfiguration;
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import com.exclamationlabs.connid.base.connector.results.ChangeJournal;
+import com.exclamationlabs.connid.base.connector.stub.adapter.EnhancedPFUserAdapter;
+import com.exclamationlabs.connid.base.connector.stub.configuration.EnhancedPFConfiguration;
+import com.exclamationlabs.connid.base.connector.stub.driver.EnhancedPFDriver;
+import com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUser;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.identityconnectors.common.security.GuardedString;
+import org.identityconnectors.framework.common.exceptions.ConfigurationException;
+import org.identityconnectors.framework.common.objects.OperationOptionsBuilder;
+import org.identityconnectors.framework.common.objects.SyncDeltaType;
+import org.identityconnectors.framework.common.objects.SyncToken;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class WebhookReceiverTest {
+
+  private static final String SECRET = "webhook-secret";
+
+  private int port;
+
+  static class WebhookTestConfiguration extends EnhancedPFConfiguration
+      implements WebhookConfiguration {
+    private Integer webhookPort;
+    private String webhookJournalDirectory;
+
+    @Override
+    public Integer getWebhookPort() {
+      return webhookPort;
+    }
+
+    @Override
+    public void setWebhookPort(Integer input) {
+      webhookPort = input;
+    }
+
+    @Override
+    public GuardedString getWebhookSecret() {
+      return new GuardedString(SECRET.toCharArray());
+    }
+
+    @Override
+    public void setWebhookSecret(GuardedString input) {}
+
+    @Override
+    public String getWebhookSignatureHeader() {
+      return null;
+    }
+
+    @Override
+    public void setWebhookSignatureHeader(String input) {}
+
+    @Override
+    public String getWebhookJournalDirectory() {
+      return webhookJournalDirectory;
+    }
+
+    @Override
+    public void setWebhookJournalDirectory(String input) {
+      webhookJournalDirectory = input;
+    }
+  }
+
+  /** Accepts bodies holding one change per line: +id for a changed and -id for a deleted user. */
+  static class WebhookUserAdapter extends EnhancedPFUserAdapter implements WebhookCapableSource {
+    @Override
+    public String getWebhookPath() {
+      return "/webhooks/users";
+    }
+
+    @Override
+    public List<ChangeJournal.Change> parseWebhookEvents(byte[] body) {
+      List<ChangeJournal.Change> changes = new ArrayList<>();
+      for (String line : new String(body, StandardCharsets.UTF_8).split("\n")) {
+        if (line.startsWith("+")) {
+          changes.add(ChangeJournal.Change.changed(line.substring(1)));
+        } else if (line.startsWith("-")) {
+          changes.add(ChangeJournal.Change.deleted(line.substring(1)));
+        } else {
+          throw new IllegalArgumentException("Invalid change " + line);
+        }
+      }
+      return changes;
+    }
+  }
+
+  private static String sign(String body) throws Exception {
+    Mac mac = Mac.getInstance("HmacSHA256");
+    mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+    StringBuilder hex = new StringBuilder("sha256=");
+    for (byte value : mac.doFinal(body.getBytes(StandardCharsets.UTF_8))) {
+      hex.append(String.format("%02x", value));
+    }
+    return hex.toString();
+  }
+
+  private int post(String body, String signature) throws IOException {
+    URL url = new URL("http://localhost:" + port + "/webhooks/users");
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    if (signature != null) {
+      connection.setRequestProperty(WebhookReceiver.DEFAULT_SIGNATURE_HEADER, signature);
+    }
+    try (OutputStream output = connection.getOutputStream()) {
+      output.write(body.getBytes(StandardCharsets.UTF_8));
+    }
+    int status = connection.getResponseCode();
+    connection.disconnect();
+    return status;
+  }
+
+  private WebhookUserAdapter setup(Path directory) throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    WebhookTestConfiguration configuration = new WebhookTestConfiguration();
+    configuration.setWebhookPort(port);
+    configuration.setWebhookJournalDirectory(directory.toString());
+    WebhookUserAdapter adapter = new WebhookUserAdapter();
+    adapter.setConfiguration(configuration);
+    adapter.setDriver(
+        new EnhancedPFDriver() {
+          @Override
+          public IdentityModel getOne(
+              Class<? extends IdentityModel> modelClass,
+              String id,
+              Map<String, Object> prefetchDataMap) {
+            return "gone".equals(id)
+                ? null
+                : new EnhancedPFUser(
+                    id, "user" + id + "@test.com", "First", "Last", "Department", "Tester", "Here");
+          }
+        });
+    adapter.init();
+    return adapter;
+  }
+
+  @AfterEach
+  public void stopReceiver() {
+    WebhookReceiver.stop(port);
+  }
+
+  @Test
+  public void signatureFormats() throws Exception {
+    byte[] secret = SECRET.getBytes(StandardCharsets.UTF_8);
+    byte[] body = "+1".getBytes(StandardCharsets.UTF_8);
+    String hexSignature = sign("+1");
+    assertTrue(WebhookReceiver.isValidSignature(secret, body, hexSignature));
+    assertTrue(WebhookReceiver.isValidSignature(secret, body, hexSignature.substring(7)));
+
+    Mac mac = Mac.getInstance("HmacSHA256");
+    mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+    String base64Signature = Base64.getEncoder().encodeToString(mac.doFinal(body));
+    assertTrue(WebhookReceiver.isValidSignature(secret, body, base64Signature));
+
+    assertFalse(WebhookReceiver.isValidSignature(secret, "+2".getBytes(), hexSignature));
+    assertFalse(WebhookReceiver.isValidSignature(secret, body, null));
+    assertFalse(WebhookReceiver.isValidSignature(secret, body, "not a signature"));
+  }
+
+  @Test
+  public void listenerReleasedOnDispose(@TempDir Path directory) throws Exception {
+    WebhookUserAdapter adapter = setup(directory);
+    WebhookUserAdapter pooled = new WebhookUserAdapter();
+    pooled.setConfiguration(adapter.getConfiguration());
+    pooled.init();
+
+    adapter.dispose();
+    assertEquals(HttpURLConnection.HTTP_OK, post("+1", sign("+1")));
+    pooled.dispose();
+    // Port is free again once no endpoint is left
+    new ServerSocket(port).close();
+  }
+
+  @Test
+  public void otherResourceEndpointNotReplaced(@TempDir Path directory) throws Exception {
+    WebhookUserAdapter adapter = setup(directory);
+    WebhookTestConfiguration otherConfiguration =
+        new WebhookTestConfiguration() {
+          @Override
+          public String getInstanceId() {
+            return "otherTenant";
+          }
+        };
+    otherConfiguration.setWebhookPort(port);
+    otherConfiguration.setWebhookJournalDirectory(directory.toString());
+    WebhookUserAdapter otherTenant = new WebhookUserAdapter();
+    otherTenant.setConfiguration(otherConfiguration);
+
+    assertThrows(ConfigurationException.class, otherTenant::init);
+    assertEquals(HttpURLConnection.HTTP_OK, post("+1", sign("+1")));
+    assertEquals("1", adapter.getLatestSyncToken().getValue());
+  }
+
+  @Test
+  public void receiveAndSync(@TempDir Path directory) throws Exception {
+    WebhookUserAdapter adapter = setup(directory);
+    SyncToken initialToken = adapter.getLatestSyncToken();
+    assertEquals("0", initialToken.getValue());
+
+    assertEquals(HttpURLConnection.HTTP_UNAUTHORIZED, post("+1", null));
+    assertEquals(HttpURLConnection.HTTP_UNAUTHORIZED, post("+1", sign("+2")));
+    assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, post("?1", sign("?1")));
+    assertEquals(HttpURLConnection.HTTP_OK, post("+1\n+2", sign("+1\n+2")));
+    assertEquals(HttpURLConnection.HTTP_OK, post("-2\n+gone\n+1", sign("-2\n+gone\n+1")));
+
+    SyncExecutorTest.CollectingHandler handler = new SyncExecutorTest.CollectingHandler();
+    adapter.sync(initialToken, handler, new OperationOptionsBuilder().build());
+
+    // Only the latest change of each user is passed, in journal order
+    assertEquals(3, handler.deltas.size());
+    assertEquals(SyncDeltaType.DELETE, handler.deltas.get(0).getDeltaType());
+    assertEquals("2", handler.deltas.get(0).getUid().getUidValue());
+    assertEquals("3", handler.deltas.get(0).getToken().getValue());
+    assertEquals(SyncDeltaType.DELETE, handler.deltas.get(1).getDeltaType());
+    assertEquals("gone", handler.deltas.get(1).getUid().getUidValue());
+    assertEquals(SyncDeltaType.CREATE_OR_UPDATE, handler.deltas.get(2).getDeltaType());
+    assertEquals("1", handler.deltas.get(2).getUid().getUidValue());
+    assertEquals("5", handler.finalToken.getValue());
+
+    SyncExecutorTest.CollectingHandler nextHandler = new SyncExecutorTest.CollectingHandler();
+    adapter.sync(handler.finalToken, nextHandler, new OperationOptionsBuilder().build());
+    assertTrue(nextHandler.deltas.isEmpty());
+    assertEquals("5", nextHandler.finalToken.getValue());
+  }
+}
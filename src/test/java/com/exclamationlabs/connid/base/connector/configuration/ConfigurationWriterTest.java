@@ -17,8 +17,10 @@
 package com.exclamationlabs.connid.base.connector.configuration;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 
+import org.identityconnectors.common.security.GuardedString;
 import org.junit.jupiter.api.Test;
 
 public class ConfigurationWriterTest {
@@ -48,4 +50,25 @@ public class ConfigurationWriterTest {
     String output = ConfigurationWriter.writeToString(configuration);
     assertEquals(expectedOutput, output);
   }
+
+  @Test
+  public void writeInstanceDigest() {
+    TestingConfiguration configuration = new TestingConfiguration("testing");
+    ConfigurationReader.prepareTestConfiguration(configuration);
+    ConfigurationReader.readPropertiesFromSource(configuration);
+    String digest = ConfigurationWriter.writeInstanceDigest(configuration);
+    assertEquals(32, digest.length());
+
+    configuration.setName("default");
+    configuration.setCurrentToken("refreshed");
+    configuration.setRestIoErrorRetries(3);
+    assertEquals(digest, ConfigurationWriter.writeInstanceDigest(configuration));
+
+    configuration.setThing1("otherTenant");
+    String otherTenant = ConfigurationWriter.writeInstanceDigest(configuration);
+    assertNotEquals(digest, otherTenant);
+
+    configuration.setGuardedValue(new GuardedString("otherSecret".toCharArray()));
+    assertNotEquals(otherTenant, ConfigurationWriter.writeInstanceDigest(configuration));
+  }
 }
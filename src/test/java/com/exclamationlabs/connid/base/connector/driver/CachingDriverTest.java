@@ -0,0 +1,124 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.driver;
+
+import static com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUsers.user;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.exclamationlabs.connid.base.connector.adapter.SearchExecutor;
+import com.exclamationlabs.connid.base.connector.metrics.ConnectorMetrics;
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import com.exclamationlabs.connid.base.connector.stub.configuration.EnhancedPFConfiguration;
+import com.exclamationlabs.connid.base.connector.stub.driver.EnhancedPFDriver;
+import com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUser;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CachingDriverTest {
+
+  private int getOneCount;
+  private final List<List<String>> getManyRequests = new ArrayList<>();
+  private CachingDriver<EnhancedPFConfiguration> driver;
+
+  @BeforeEach
+  public void setup() {
+    ConnectorMetrics.reset();
+    getOneCount = 0;
+    getManyRequests.clear();
+    driver =
+        new CachingDriver<>(
+            new EnhancedPFDriver() {
+              @Override
+              public IdentityModel getOne(
+                  Class<? extends IdentityModel> modelClass,
+                  String id,
+                  Map<String, Object> prefetchDataMap) {
+                getOneCount++;
+                return user(id);
+              }
+
+              @Override
+              public Map<String, IdentityModel> getMany(
+                  Class<? extends IdentityModel> modelClass,
+                  Collection<String> ids,
+                  Map<String, Object> prefetchDataMap) {
+                getManyRequests.add(new ArrayList<>(ids));
+                Map<String, IdentityModel> found = new LinkedHashMap<>();
+                ids.forEach(id -> found.put(id, user(id)));
+                return found;
+              }
+            },
+            2,
+            60);
+  }
+
+  @Test
+  public void getOneServedFromCache() {
+    IdentityModel first = driver.getOne(EnhancedPFUser.class, "1", new HashMap<>());
+    assertSame(first, driver.getOne(EnhancedPFUser.class, "1", new HashMap<>()));
+    assertEquals(1, getOneCount);
+    assertEquals(0.5, driver.getHitRatio(EnhancedPFUser.class));
+  }
+
+  @Test
+  public void getManyRequestsOnlyMissingIds() {
+    IdentityModel first = driver.getOne(EnhancedPFUser.class, "1", new HashMap<>());
+    Map<String, IdentityModel> found =
+        driver.getMany(EnhancedPFUser.class, List.of("1", "2"), new HashMap<>());
+    assertSame(first, found.get("1"));
+    assertEquals("2", found.get("2").getIdentityIdValue());
+    assertEquals(List.of(List.of("2")), getManyRequests);
+    driver.getOne(EnhancedPFUser.class, "2", new HashMap<>());
+    assertEquals(1, getOneCount);
+  }
+
+  @Test
+  public void narrowedRequestBypassesCache() {
+    Map<String, Object> prefetch = new HashMap<>();
+    prefetch.put(SearchExecutor.ATTRIBUTES_TO_GET_KEY, List.of("DEPARTMENT"));
+    driver.getOne(EnhancedPFUser.class, "1", prefetch);
+    driver.getOne(EnhancedPFUser.class, "1", prefetch);
+    assertEquals(2, getOneCount);
+    assertEquals(0, driver.size());
+  }
+
+  @Test
+  public void deleteInvalidates() {
+    driver.getOne(EnhancedPFUser.class, "2", new HashMap<>());
+    // Stub driver does not support delete, but the entry must not outlive the attempt
+    assertThrows(ConnectorException.class, () -> driver.delete(EnhancedPFUser.class, "2"));
+    driver.getOne(EnhancedPFUser.class, "2", new HashMap<>());
+    assertEquals(2, getOneCount);
+  }
+
+  @Test
+  public void populatedFromCompleteResults() {
+    driver.cacheAll(EnhancedPFUser.class, List.of(user("3"), user("4"), user("5")));
+    assertEquals(2, driver.size());
+    driver.getOne(EnhancedPFUser.class, "5", new HashMap<>());
+    assertEquals(0, getOneCount);
+    driver.getOne(EnhancedPFUser.class, "3", new HashMap<>());
+    assertEquals(1, getOneCount);
+  }
+}
@@ -0,0 +1,77 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.driver;
+
+import static com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUsers.user;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.exclamationlabs.connid.base.connector.adapter.SearchExecutor;
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class FetchContextTest {
+
+  @Test
+  public void eachInvocationHoldsItsPartialIdentity() {
+    Map<String, Object> prefetch = new HashMap<>();
+    prefetch.put("groups", "shared");
+    prefetch.put(SearchExecutor.ATTRIBUTES_TO_GET_KEY, Set.of("email"));
+    FetchContext searchContext = FetchContext.of(prefetch);
+
+    FetchContext first = searchContext.withPartialIdentity(user("1"));
+    FetchContext second = searchContext.withPartialIdentity(user("2"));
+
+    assertEquals("1", first.getPartialIdentity().getIdentityIdValue());
+    assertEquals(
+        "2",
+        ((IdentityModel) second.get(SearchExecutor.PARTIAL_IDENTITY_KEY)).getIdentityIdValue());
+    assertEquals("shared", second.get("groups"));
+    assertEquals(Set.of("email"), first.getAttributesToGet());
+    assertEquals(3, first.size());
+    assertNull(searchContext.getPartialIdentity());
+    assertFalse(prefetch.containsKey(SearchExecutor.PARTIAL_IDENTITY_KEY));
+  }
+
+  @Test
+  public void writesStayWithinInvocation() {
+    Map<String, Object> prefetch = new HashMap<>();
+    prefetch.put("groups", "shared");
+    FetchContext searchContext = FetchContext.of(prefetch);
+    FetchContext context = searchContext.withPartialIdentity(user("1"));
+
+    assertEquals("shared", context.put("groups", "changed"));
+    context.put("loaded", "value");
+    context.remove(SearchExecutor.PARTIAL_IDENTITY_KEY);
+    assertEquals("changed", context.get("groups"));
+    assertEquals("value", context.get("loaded"));
+    assertNull(context.getPartialIdentity());
+    assertEquals(2, context.size());
+
+    // Neither the search's prefetch data nor other invocations see the writes
+    assertEquals("shared", prefetch.get("groups"));
+    assertFalse(prefetch.containsKey("loaded"));
+    FetchContext other = searchContext.withPartialIdentity(user("2"));
+    assertEquals("shared", other.get("groups"));
+    assertEquals("2", other.getPartialIdentity().getIdentityIdValue());
+
+    assertSame(context, FetchContext.of(context));
+    assertTrue(FetchContext.of(null).isEmpty());
+  }
+}
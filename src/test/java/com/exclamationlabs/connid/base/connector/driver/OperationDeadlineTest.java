@@ -0,0 +1,68 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.driver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.identityconnectors.framework.common.exceptions.OperationTimeoutException;
+import org.junit.jupiter.api.Test;
+
+public class OperationDeadlineTest {
+
+  @Test
+  public void beginAttachesOnce() {
+    assertNull(OperationDeadline.begin(null));
+    assertNull(OperationDeadline.current());
+    try (OperationDeadline.Attachment outer = OperationDeadline.begin(60000)) {
+      OperationDeadline operationDeadline = OperationDeadline.current();
+      assertNotNull(outer);
+      assertFalse(operationDeadline.isExpired());
+      assertTrue(operationDeadline.getRemainingMillis() > 0);
+      // Nested operations keep the deadline of the enclosing operation
+      assertNull(OperationDeadline.begin(10));
+      assertSame(operationDeadline, OperationDeadline.current());
+    }
+    assertNull(OperationDeadline.current());
+  }
+
+  @Test
+  public void expiredDeadline() {
+    OperationDeadline expired = OperationDeadline.afterMillis(0);
+    assertTrue(expired.isExpired());
+    assertEquals(0, expired.getRemainingMillis());
+    assertThrows(OperationTimeoutException.class, () -> expired.check("test request"));
+  }
+
+  @Test
+  public void wrappedTaskRunsWithDeadline() throws Exception {
+    OperationDeadline operationDeadline = OperationDeadline.afterMillis(60000);
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    try {
+      assertSame(
+          operationDeadline,
+          pool.submit(operationDeadline.wrap(OperationDeadline::current)).get());
+      // Worker thread no longer has the deadline once the task completes
+      assertNull(pool.submit(OperationDeadline::current).get());
+    } finally {
+      pool.shutdown();
+      assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+  }
+}
@@ -21,6 +21,7 @@ import static org.mockito.ArgumentMatchers.any;
 
 import com.exclamationlabs.connid.base.connector.configuration.basetypes.RestConfiguration;
 import com.exclamationlabs.connid.base.connector.driver.DriverInvocator;
+import com.exclamationlabs.connid.base.connector.driver.OperationDeadline;
 import com.exclamationlabs.connid.base.connector.driver.exception.DriverRenewableTokenExpiredException;
 import com.exclamationlabs.connid.base.connector.driver.exception.DriverTokenExpiredException;
 import com.exclamationlabs.connid.base.connector.model.IdentityModel;
@@ -42,6 +43,7 @@ import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.exceptions.OperationTimeoutException;
 import org.identityconnectors.framework.common.exceptions.UnknownUidException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -266,6 +268,15 @@ public class BaseRestDriverTest extends ConnectorMockRestTest {
     assertEquals(USER_EMAIL, user.getEmail());
   }
 
+  @Test
+  public void expiredDeadlineIssuesNoRequest() {
+    try (OperationDeadline.Attachment ignored = OperationDeadline.afterMillis(0).attach()) {
+      assertThrows(
+          OperationTimeoutException.class,
+          () -> driver.getOne(StubUser.class, USER_ID, Collections.emptyMap()));
+    }
+  }
+
   @Test
   public void getOneUserNotFound() {
     prepareClientFaultResponse("{not_found:1}", HttpStatus.SC_NOT_FOUND);
@@ -0,0 +1,98 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.results;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.exclamationlabs.connid.base.connector.metrics.ConnectorMetrics;
+import java.net.SocketTimeoutException;
+import org.identityconnectors.framework.common.exceptions.ConfigurationException;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.exceptions.OperationTimeoutException;
+import org.identityconnectors.framework.common.exceptions.UnknownUidException;
+import org.junit.jupiter.api.Test;
+
+public class AdaptivePageSizeControllerTest {
+
+  private static final OperationTimeoutException TIMEOUT =
+      new OperationTimeoutException("Page request exceeded its time limit");
+
+  private static AdaptivePageSizeController controller(int initial) {
+    return new AdaptivePageSizeController("Test", initial, 10, 200, 1000L, 1000L);
+  }
+
+  @Test
+  public void growsWhenFastAndFull() {
+    AdaptivePageSizeController controller = controller(25);
+    // Offset 25 cannot be reached by whole pages of a larger size
+    controller.recordPage(25, 25, 100L, null);
+    assertEquals(25, controller.getPageSize());
+    controller.recordPage(50, 25, 100L, null);
+    assertEquals(50, controller.getPageSize());
+    controller.recordPage(100, 50, 100L, null);
+    assertEquals(100, controller.getPageSize());
+    controller.recordPage(200, 100, 100L, null);
+    assertEquals(200, controller.getPageSize());
+    controller.recordPage(400, 200, 100L, null);
+    assertEquals(200, controller.getPageSize());
+    assertEquals(200L, ConnectorMetrics.getGauge(controller.getPageSizeMetricName()));
+  }
+
+  @Test
+  public void shrinksWhenSlowOrLarge() {
+    AdaptivePageSizeController controller = controller(100);
+    controller.recordPage(100, 100, 4000L, null);
+    assertEquals(50, controller.getPageSize());
+    controller.recordPage(150, 50, 100L, 2000L);
+    assertEquals(25, controller.getPageSize());
+  }
+
+  @Test
+  public void newSizeDividesNextOffset() {
+    AdaptivePageSizeController controller = controller(40);
+    controller.recordPage(120, 40, 100L, null);
+    assertEquals(60, controller.getPageSize());
+    assertEquals(0, 120 % controller.getPageSize());
+  }
+
+  @Test
+  public void failureShrinksUntilMinimum() {
+    AdaptivePageSizeController controller = controller(40);
+    assertTrue(controller.recordFailure(0, TIMEOUT));
+    assertEquals(20, controller.getPageSize());
+    assertTrue(controller.recordFailure(0, TIMEOUT));
+    assertEquals(10, controller.getPageSize());
+    assertFalse(controller.recordFailure(0, TIMEOUT));
+    assertEquals(10, controller.getPageSize());
+
+    // Growth waits for several successful pages after a failure
+    controller.recordPage(10, 10, 100L, null);
+    assertEquals(10, controller.getPageSize());
+  }
+
+  @Test
+  public void failureUnrelatedToPageSizeIsNotRetried() {
+    AdaptivePageSizeController controller = controller(40);
+    assertFalse(controller.recordFailure(0, new ConfigurationException("Invalid credentials")));
+    assertFalse(controller.recordFailure(0, new UnknownUidException("No such page")));
+    assertEquals(40, controller.getPageSize());
+    assertTrue(
+        controller.recordFailure(
+            0, new ConnectorException("Read failed", new SocketTimeoutException("timeout"))));
+    assertEquals(20, controller.getPageSize());
+  }
+}
@@ -0,0 +1,91 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.results;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ChangeJournalTest {
+
+  @Test
+  public void appendAndRead(@TempDir Path directory) throws IOException {
+    ChangeJournal journal = ChangeJournal.get(directory.resolve("users.journal"));
+    assertEquals(0, journal.getLastSequence());
+    List<ChangeJournal.Change> received =
+        List.of(ChangeJournal.Change.changed("1"), ChangeJournal.Change.deleted("2"));
+    assertEquals(2, journal.append(received));
+    assertEquals(3, journal.append(List.of(ChangeJournal.Change.changed("3"))));
+
+    List<ChangeJournal.Change> changes = journal.read(1, 10);
+    assertEquals(2, changes.size());
+    assertEquals("2", changes.get(0).getId());
+    assertTrue(changes.get(0).isDeleted());
+    assertEquals(3, changes.get(1).getSequence());
+    assertEquals(1, journal.read(0, 1).size());
+    assertTrue(journal.read(3, 10).isEmpty());
+  }
+
+  @Test
+  public void consecutiveReadsContinue(@TempDir Path directory) throws IOException {
+    ChangeJournal journal = ChangeJournal.get(directory.resolve("users.journal"));
+    for (int id = 1; id <= 5; id++) {
+      journal.append(List.of(ChangeJournal.Change.changed("user" + id)));
+    }
+    assertEquals("user1", journal.read(0, 2).get(0).getId());
+    List<ChangeJournal.Change> next = journal.read(2, 2);
+    assertEquals(3, next.get(0).getSequence());
+    assertEquals("user4", next.get(1).getId());
+    journal.append(List.of(ChangeJournal.Change.deleted("user1")));
+    assertEquals(2, journal.read(4, 10).size());
+    // Reading earlier changes again starts over from the beginning of the journal
+    assertEquals("user2", journal.read(1, 1).get(0).getId());
+    assertEquals(6, journal.read(5, 10).get(0).getSequence());
+  }
+
+  @Test
+  public void compactKeepsSequence(@TempDir Path directory) throws IOException {
+    ChangeJournal journal = ChangeJournal.get(directory.resolve("users.journal"));
+    journal.append(List.of(ChangeJournal.Change.changed("1"), ChangeJournal.Change.changed("2")));
+    journal.compact(2);
+    assertTrue(journal.read(0, 10).isEmpty());
+    assertEquals(2, journal.getLastSequence());
+    assertEquals(3, journal.append(List.of(ChangeJournal.Change.changed("3"))));
+    assertEquals(1, Files.list(directory).count());
+  }
+
+  @Test
+  public void incompleteRecordDiscarded(@TempDir Path directory) throws IOException {
+    Path file = directory.resolve("users.journal");
+    ChangeJournal.get(file).append(List.of(ChangeJournal.Change.changed("1")));
+    Files.write(file, new byte[] {0, 0, 0, 0, 0, 0}, StandardOpenOption.APPEND);
+
+    // Opened as a separate journal, since journals are shared per file
+    Path copy = directory.resolve("copy.journal");
+    Files.copy(file, copy);
+    ChangeJournal reopened = ChangeJournal.get(copy);
+    assertEquals(1, reopened.getLastSequence());
+    assertEquals(2, reopened.append(List.of(ChangeJournal.Change.deleted("1"))));
+    assertEquals(2, reopened.read(0, 10).size());
+  }
+}
@@ -0,0 +1,92 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.results;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class IdentityHashStoreTest {
+
+  private static Path writeStore(Path directory, int count) throws IOException {
+    Path file = directory.resolve("users.hashes");
+    try (IdentityHashStore.Writer writer = IdentityHashStore.writer(file)) {
+      for (int xx = 0; xx < count; xx++) {
+        writer.add("id" + xx, xx);
+      }
+      writer.add("id5", 99);
+      writer.commit();
+    }
+    return file;
+  }
+
+  @Test
+  public void missingStore(@TempDir Path directory) throws IOException {
+    assertNull(IdentityHashStore.open(directory.resolve("users.hashes")));
+  }
+
+  @Test
+  public void writeAndLookup(@TempDir Path directory) throws IOException {
+    try (IdentityHashStore store = IdentityHashStore.open(writeStore(directory, 1000))) {
+      assertEquals(1000, store.size());
+      assertEquals(77, store.getContentHash(store.findSlot("id77")));
+      // Last hash added for an id is kept
+      assertEquals(99, store.getContentHash(store.findSlot("id5")));
+      assertEquals(-1, store.findSlot("unknown"));
+      assertEquals("id999", store.getId(store.findSlot("id999")));
+    }
+    // Log and temporary files are removed
+    assertEquals(1, Files.list(directory).count());
+  }
+
+  @Test
+  public void everyIdOccupiesOneSlot(@TempDir Path directory) throws IOException {
+    try (IdentityHashStore store = IdentityHashStore.open(writeStore(directory, 500))) {
+      int occupied = 0;
+      for (int slot = 0; slot < store.getCapacity(); slot++) {
+        if (store.isOccupied(slot)) {
+          occupied++;
+        }
+      }
+      assertEquals(500, occupied);
+    }
+  }
+
+  @Test
+  public void uncommittedWriterKeepsStore(@TempDir Path directory) throws IOException {
+    Path file = writeStore(directory, 10);
+    try (IdentityHashStore.Writer writer = IdentityHashStore.writer(file)) {
+      writer.add("other", 1);
+    }
+    try (IdentityHashStore store = IdentityHashStore.open(file)) {
+      assertEquals(10, store.size());
+    }
+  }
+
+  @Test
+  public void readIncompleteFile(@TempDir Path directory) throws IOException {
+    Path file = writeStore(directory, 10);
+    byte[] content = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(content, content.length - 3));
+    assertThrows(IOException.class, () -> IdentityHashStore.open(file));
+  }
+}
@@ -0,0 +1,136 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.results;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import com.exclamationlabs.connid.base.connector.stub.attribute.EnhancedPFUserAttribute;
+import com.exclamationlabs.connid.base.connector.stub.model.EnhancedPFUser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import org.identityconnectors.framework.common.objects.Name;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class IdentitySnapshotTest {
+
+  private static final String DEPARTMENT = EnhancedPFUserAttribute.DEPARTMENT.name();
+  private static final String LOCATION = EnhancedPFUserAttribute.LOCATION.name();
+
+  private List<IdentityModel> users;
+  private IdentitySnapshot snapshot;
+
+  @BeforeEach
+  public void setup() {
+    users = new ArrayList<>();
+    for (int xx = 0; xx < 100; xx++) {
+      users.add(
+          new EnhancedPFUser(
+              "" + xx,
+              "user" + xx + "@test.com",
+              "First" + xx,
+              "Last" + xx,
+              "Department" + (xx % 4),
+              "Tester",
+              xx % 10 == 0 ? null : "Denver"));
+    }
+    snapshot = IdentitySnapshot.of(users, List.of(DEPARTMENT, LOCATION));
+  }
+
+  @Test
+  public void valuesAreDictionaryEncoded() {
+    assertEquals(100, snapshot.size());
+    assertEquals(4, snapshot.getDistinctValueCount(DEPARTMENT));
+    assertEquals(1, snapshot.getDistinctValueCount(LOCATION));
+    assertEquals("42", snapshot.getId(42));
+    assertEquals("user42@test.com", snapshot.getValue(42, Name.NAME));
+    assertEquals("Department2", snapshot.getValue(42, DEPARTMENT));
+    assertNull(snapshot.getValue(40, LOCATION));
+  }
+
+  @Test
+  public void findRowsByEqualsAndContains() {
+    assertEquals(25, snapshot.findRowsEqualsIgnoreCase(DEPARTMENT, "department1").length);
+    assertEquals(90, snapshot.findRowsContainsIgnoreCase(LOCATION, "denv").length);
+    assertArrayEquals(
+        new int[] {7}, snapshot.findRowsEqualsIgnoreCase(Name.NAME, "USER7@test.com"));
+  }
+
+  @Test
+  public void intersectAndPage() {
+    int[] rows =
+        IdentitySnapshot.intersect(
+            snapshot.findRowsEqualsIgnoreCase(DEPARTMENT, "Department0"),
+            snapshot.findRowsEqualsIgnoreCase(LOCATION, "Denver"));
+    // Department0 is every 4th row; rows divisible by 10 have no location
+    assertEquals(20, rows.length);
+    assertArrayEquals(new int[] {4, 8, 12}, IdentitySnapshot.page(rows, 0, 3));
+    assertArrayEquals(new int[] {96}, IdentitySnapshot.page(rows, 19, 3));
+    assertEquals(0, IdentitySnapshot.page(rows, 25, 3).length);
+  }
+
+  @Test
+  public void rehydrateOnlyRequestedRows() {
+    List<String> loaded = new ArrayList<>();
+    Set<IdentityModel> page =
+        snapshot.rehydrate(
+            new int[] {3, 5},
+            id -> {
+              loaded.add(id);
+              return users.get(Integer.parseInt(id));
+            });
+    assertEquals(List.of("3", "5"), loaded);
+    assertEquals(2, page.size());
+    assertEquals("3", page.iterator().next().getIdentityIdValue());
+  }
+
+  @Test
+  public void unknownAttribute() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> snapshot.findRowsEqualsIgnoreCase(EnhancedPFUserAttribute.JOB_TITLE.name(), "x"));
+  }
+
+  @Test
+  public void writeAndReadFile(@TempDir Path directory) throws IOException {
+    Path file = directory.resolve("users.snapshot");
+    snapshot.writeTo(file);
+    IdentitySnapshot loaded = IdentitySnapshot.readFrom(file);
+    assertEquals(100, loaded.size());
+    assertEquals(List.of(DEPARTMENT, LOCATION), loaded.getAttributeNames());
+    assertEquals("user42@test.com", loaded.getName(42));
+    assertEquals("Department2", loaded.getValue(42, DEPARTMENT));
+    assertNull(loaded.getValue(40, LOCATION));
+    assertEquals(25, loaded.findRowsEqualsIgnoreCase(DEPARTMENT, "Department3").length);
+  }
+
+  @Test
+  public void readIncompleteFile(@TempDir Path directory) throws IOException {
+    Path file = directory.resolve("users.snapshot");
+    snapshot.writeTo(file);
+    byte[] content = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(content, content.length / 2));
+    assertThrows(IOException.class, () -> IdentitySnapshot.readFrom(file));
+  }
+}
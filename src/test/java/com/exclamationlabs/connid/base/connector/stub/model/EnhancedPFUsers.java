@@ -0,0 +1,44 @@
+/*
+    Copyright 2020 Exclamation Labs
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.exclamationlabs.connid.base.connector.stub.model;
+
+import com.exclamationlabs.connid.base.connector.model.IdentityModel;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/** EnhancedPFUser records shared by tests, with email user{id}@test.com. */
+public class EnhancedPFUsers {
+
+  private EnhancedPFUsers() {}
+
+  public static EnhancedPFUser user(String id) {
+    return user(id, "Tester");
+  }
+
+  public static EnhancedPFUser user(String id, String jobTitle) {
+    return new EnhancedPFUser(
+        id, "user" + id + "@test.com", "First", "Last", "Department", jobTitle, "Here");
+  }
+
+  public static Set<IdentityModel> users(String... ids) {
+    Set<IdentityModel> users = new LinkedHashSet<>();
+    for (String id : ids) {
+      users.add(user(id));
+    }
+    return users;
+  }
+}